@@ -0,0 +1,85 @@
+package com.railviz.cluster;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+import org.springframework.amqp.core.AnonymousQueue;
+import org.springframework.amqp.core.BindingBuilder;
+import org.springframework.amqp.core.FanoutExchange;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.rabbit.connection.ConnectionFactory;
+import org.springframework.amqp.rabbit.core.RabbitAdmin;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.amqp.rabbit.listener.SimpleMessageListenerContainer;
+
+/**
+ * Transport AMQP : un exchange fanout par canal (railviz.cluster.control,
+ * railviz.cluster.telemetry) et, par instance, une file anonyme exclusive liée
+ * à chacun. Un seul consommateur par file préserve l'ordre d'émission.
+ */
+public final class AmqpClusterTransport implements ClusterTransport {
+
+	private static final String NODE_HEADER = "railviz-node";
+
+	private final String nodeId;
+	private final ConnectionFactory connections;
+	private final RabbitTemplate template;
+	private final RabbitAdmin admin;
+	private final Map<Channel, String> exchanges = new EnumMap<>(Channel.class);
+	private final List<SimpleMessageListenerContainer> containers = new ArrayList<>();
+
+	public AmqpClusterTransport(ConnectionFactory connections, String nodeId) {
+		this.nodeId = nodeId;
+		this.connections = connections;
+		this.template = new RabbitTemplate(connections);
+		this.admin = new RabbitAdmin(connections);
+		for (var c : Channel.values()) {
+			var ex = new FanoutExchange("railviz.cluster." + c.name().toLowerCase(), false, false);
+			admin.declareExchange(ex);
+			exchanges.put(c, ex.getName());
+		}
+	}
+
+	@Override
+	public String nodeId() {
+		return nodeId;
+	}
+
+	@Override
+	public void publish(Channel channel, byte[] payload) {
+		var props = new MessageProperties();
+		props.setHeader(NODE_HEADER, nodeId);
+		props.setContentType(MessageProperties.CONTENT_TYPE_BYTES);
+		template.send(exchanges.get(channel), "", new Message(payload, props));
+	}
+
+	@Override
+	public synchronized void subscribe(Channel channel, BiConsumer<String, byte[]> handler) {
+		var queue = new AnonymousQueue();
+		admin.declareQueue(queue);
+		admin.declareBinding(BindingBuilder.bind(queue).to(new FanoutExchange(exchanges.get(channel))));
+		var container = new SimpleMessageListenerContainer(connections);
+		container.setQueues(queue);
+		container.setConcurrentConsumers(1);
+		// un message illisible n'est pas remis en file indéfiniment
+		container.setDefaultRequeueRejected(false);
+		container.setMessageListener(m -> {
+			Object from = m.getMessageProperties().getHeader(NODE_HEADER);
+			if (from != null && !nodeId.equals(from.toString())) {
+				handler.accept(from.toString(), m.getBody());
+			}
+		});
+		container.start();
+		containers.add(container);
+	}
+
+	@Override
+	public synchronized void close() {
+		containers.forEach(SimpleMessageListenerContainer::stop);
+		containers.clear();
+	}
+}
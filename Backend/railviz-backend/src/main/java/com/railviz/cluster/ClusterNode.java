@@ -0,0 +1,385 @@
+package com.railviz.cluster;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+import com.railviz.cluster.ClusterTransport.Channel;
+import com.railviz.persistence.RecoveredState;
+import com.railviz.persistence.StoreEvent;
+import com.railviz.persistence.TrainTable;
+import com.railviz.telemetry.TelemetryDecoder;
+import com.railviz.telemetry.TelemetryEncoder;
+import com.railviz.telemetry.TelemetrySnapshot;
+
+/**
+ * Une instance du cluster. Les routes (et donc leurs trains) sont réparties
+ * entre instances par hachage de rendez-vous ({@link Membership}) ; chaque
+ * instance ne simule que sa partition.
+ *
+ * <ul>
+ * <li>Mutations : diffusées à toutes les instances, qui tiennent un catalogue
+ * répliqué de toute la flotte ; seule la propriétaire de la route l'applique à
+ * sa simulation.</li>
+ * <li>Rebalancement : à chaque changement de vue, une instance qui perd des
+ * routes en retire les trains et diffuse leur état complet (TrainState) ; la
+ * nouvelle propriétaire les reprend tels quels. Si l'ancienne propriétaire a
+ * disparu sans prévenir, la reprise part du catalogue (dernier état
+ * diffusé).</li>
+ * <li>Démarrage : une instance écoute pendant un délai de garde, demande le
+ * catalogue (SYNC) puis s'annonce ; avant cela elle ne possède rien.</li>
+ * <li>Télémétrie : chaque instance diffuse la frame delta de sa partition et
+ * reconstitue celles des autres, pour servir la flotte entière à ses propres
+ * clients WebSocket.</li>
+ * </ul>
+ *
+ * Thread-safe : l'état de contrôle est protégé par l'instance, la télémétrie
+ * relayée par son propre verrou.
+ */
+public final class ClusterNode {
+
+	/** Côté application : la simulation locale */
+	public interface Host {
+		/** Applique une mutation (locale ou reçue) ; la partition se lit par {@link ClusterNode#owns} */
+		void apply(StoreEvent event);
+
+		/** Retire de la simulation locale les trains des routes perdues et renvoie leur état */
+		List<StoreEvent.TrainState> release(Predicate<String> lostRoute);
+	}
+
+	private static final byte HELLO = 1, BYE = 2, SYNC_REQUEST = 3, EVENTS = 4, SYNC = 5;
+
+	private final ClusterTransport transport;
+	private final String self;
+	private final Membership membership;
+	private final long settleMs;
+
+	private Host host;
+	private RecoveredState catalog = RecoveredState.empty();
+	private boolean ready;
+	private long readyAt;
+	/** Date du dernier battement (ms) : horloge des messages reçus */
+	private long clock;
+	private volatile List<String> view = List.of();
+
+	private final TelemetryEncoder relayEncoder;
+	private final Map<String, TelemetryDecoder> decoders = new HashMap<>();
+	private final Map<String, TelemetrySnapshot> remote = new HashMap<>();
+	private volatile boolean keyframeWanted;
+	private long relayedBytes;
+
+	/**
+	 * @param timeoutMs instance considérée partie après ce délai sans battement
+	 *                  (c'est aussi le délai de garde au démarrage)
+	 */
+	public ClusterNode(ClusterTransport transport, long timeoutMs, int keyframeInterval, double posThresholdM,
+			double speedThresholdKmh) {
+		this.transport = transport;
+		this.self = transport.nodeId();
+		this.membership = new Membership(self, timeoutMs);
+		this.settleMs = timeoutMs;
+		this.relayEncoder = new TelemetryEncoder(keyframeInterval, posThresholdM, speedThresholdKmh);
+	}
+
+	public String nodeId() {
+		return self;
+	}
+
+	/**
+	 * Rejoint le cluster avec l'état local (persisté) comme catalogue initial :
+	 * il ne sert que si aucune autre instance ne répond.
+	 */
+	public synchronized void start(Host h, Map<String, List<double[]>> routes, TrainTable trains, long now) {
+		this.host = h;
+		routes.forEach((id, pts) -> catalog.apply(new StoreEvent.RoutePut(id, pts)));
+		for (int k = 0; k < trains.size(); k++) {
+			if (trains.live(k)) {
+				catalog.apply(state(trains, k));
+			}
+		}
+		clock = now;
+		readyAt = now + settleMs;
+		transport.subscribe(Channel.CONTROL, this::onControl);
+		transport.subscribe(Channel.TELEMETRY, this::onTelemetry);
+		send(SYNC_REQUEST, "", List.of());
+	}
+
+	/** Battement de cœur : s'annonce, expire les instances muettes et rebalance si la vue change */
+	public synchronized void heartbeat(long now) {
+		clock = now;
+		if (!ready && now >= readyAt) {
+			ready = true;
+		}
+		if (ready) {
+			membership.seen(self, now);
+			send(HELLO, "", List.of());
+		}
+		refresh(now);
+	}
+
+	/** Départ propre : les trains locaux sont remis aux instances restantes */
+	public synchronized void leave() {
+		if (ready) {
+			var states = host.release(r -> true);
+			send(EVENTS, "", states);
+			send(BYE, "", List.of());
+			ready = false;
+			membership.left(self);
+			view = List.of();
+		}
+		transport.close();
+	}
+
+	public boolean isReady() {
+		return ready;
+	}
+
+	/** Instances vivantes (triées) */
+	public List<String> view() {
+		return view;
+	}
+
+	/** Vrai si la route est dans la partition de cette instance */
+	public boolean owns(String routeId) {
+		var v = view;
+		return self.equals(Membership.owner(v, routeId));
+	}
+
+	/** Diffuse une mutation déjà appliquée localement */
+	public synchronized void publish(StoreEvent event) {
+		catalog.apply(event);
+		send(EVENTS, "", List.of(event));
+	}
+
+	/* ============ Catalogue (toute la flotte) ============ */
+
+	public synchronized boolean knows(String trainId) {
+		int k = catalog.trains().row(trainId);
+		return k >= 0 && catalog.trains().live(k);
+	}
+
+	/** Dernier état connu d'un train (mouvement figé au dernier transfert) ; null si inconnu */
+	public synchronized StoreEvent.TrainState lookup(String trainId) {
+		int k = catalog.trains().row(trainId);
+		return (k < 0 || !catalog.trains().live(k)) ? null : state(catalog.trains(), k);
+	}
+
+	/** Trains du catalogue qui satisfont filter */
+	public synchronized List<StoreEvent.TrainState> trains(Predicate<StoreEvent.TrainState> filter) {
+		var t = catalog.trains();
+		var out = new ArrayList<StoreEvent.TrainState>();
+		for (int k = 0; k < t.size(); k++) {
+			if (t.live(k)) {
+				var st = state(t, k);
+				if (filter.test(st)) {
+					out.add(st);
+				}
+			}
+		}
+		return out;
+	}
+
+	/* ============ Télémétrie relayée ============ */
+
+	/**
+	 * Diffuse la frame de la partition locale et renvoie les snapshots de toute
+	 * la flotte : locaux puis reconstitués pour chaque autre instance.
+	 */
+	public TelemetrySnapshot[] relay(TelemetrySnapshot[] local) {
+		byte[] frame;
+		synchronized (relayEncoder) {
+			if (keyframeWanted) {
+				keyframeWanted = false;
+				relayEncoder.requestKeyframe();
+			}
+			frame = relayEncoder.encode(local);
+		}
+		if (frame != null) {
+			transport.publish(Channel.TELEMETRY, frame);
+		}
+		var v = view;
+		var parts = new ArrayList<TelemetrySnapshot>(local.length + v.size());
+		parts.addAll(List.of(local));
+		synchronized (decoders) {
+			relayedBytes += (frame == null) ? 0 : frame.length;
+			decoders.keySet().removeIf(n -> !v.contains(n));
+			remote.keySet().retainAll(decoders.keySet());
+			for (var e : decoders.entrySet()) {
+				var snap = remote.computeIfAbsent(e.getKey(), n -> new TelemetrySnapshot());
+				snap.clear();
+				e.getValue().copyTo(snap);
+				parts.add(snap);
+			}
+		}
+		return parts.toArray(TelemetrySnapshot[]::new);
+	}
+
+	/** Octets de télémétrie diffusés par cette instance depuis le démarrage */
+	public long relayedBytes() {
+		synchronized (decoders) {
+			return relayedBytes;
+		}
+	}
+
+	private void onTelemetry(String from, byte[] frame) {
+		if (!view.contains(from)) {
+			return;
+		}
+		synchronized (decoders) {
+			decoders.computeIfAbsent(from, n -> new TelemetryDecoder()).apply(frame);
+		}
+	}
+
+	/* ============ Contrôle ============ */
+
+	private synchronized void onControl(String from, byte[] message) {
+		try (var in = new DataInputStream(new ByteArrayInputStream(message))) {
+			byte kind = in.readByte();
+			String target = in.readUTF();
+			if (!target.isEmpty() && !target.equals(self)) {
+				return;
+			}
+			int n = in.readInt();
+			var events = new ArrayList<StoreEvent>(n);
+			for (int k = 0; k < n; k++) {
+				events.add(StoreEvent.read(in));
+			}
+			switch (kind) {
+			case HELLO -> {
+				membership.seen(from, clock);
+				if (ready && !view.contains(from)) {
+					refresh(clock);
+				}
+			}
+			case BYE -> {
+				membership.left(from);
+				refresh(clock);
+			}
+			case SYNC_REQUEST -> {
+				// la plus petite instance de la vue répond
+				if (ready && !view.isEmpty() && self.equals(view.get(0))) {
+					send(SYNC, from, catalogEvents());
+				}
+			}
+			case EVENTS -> {
+				// l'hôte voit le catalogue d'avant (ajout ou mise à jour ?)
+				for (var e : events) {
+					host.apply(e);
+					catalog.apply(e);
+				}
+			}
+			case SYNC -> sync(events);
+			default -> {
+			}
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException("message de cluster illisible", e);
+		}
+	}
+
+	/** Remplace le catalogue par celui du cluster ; ce qui n'y est plus est supprimé localement */
+	private void sync(List<StoreEvent> events) {
+		var old = catalog;
+		catalog = RecoveredState.empty();
+		for (var e : events) {
+			host.apply(e);
+			catalog.apply(e);
+		}
+		var t = old.trains();
+		for (int k = 0; k < t.size(); k++) {
+			if (t.live(k) && !knows(t.id(k))) {
+				host.apply(new StoreEvent.TrainDelete(t.id(k)));
+			}
+		}
+		for (String routeId : old.routes().keySet()) {
+			if (!catalog.routes().containsKey(routeId)) {
+				host.apply(new StoreEvent.RouteDelete(routeId));
+			}
+		}
+	}
+
+	private List<StoreEvent> catalogEvents() {
+		var out = new ArrayList<StoreEvent>();
+		catalog.routes().forEach((id, pts) -> out.add(new StoreEvent.RoutePut(id, pts)));
+		var t = catalog.trains();
+		for (int k = 0; k < t.size(); k++) {
+			if (t.live(k)) {
+				out.add(state(t, k));
+			}
+		}
+		return out;
+	}
+
+	private void refresh(long now) {
+		var before = membership.view();
+		if (!membership.refresh(now)) {
+			return;
+		}
+		var after = membership.view();
+		if (!ready) {
+			return;
+		}
+		view = after;
+		keyframeWanted = true;
+		rebalance(before, after);
+	}
+
+	/**
+	 * Routes perdues : trains retirés et remis (TrainState). Routes gagnées sur
+	 * une instance disparue (ou au premier démarrage) : reprise depuis le
+	 * catalogue. Les autres gains arrivent par le transfert de l'ancienne
+	 * propriétaire.
+	 */
+	private void rebalance(List<String> before, List<String> after) {
+		var lost = new HashSet<String>();
+		var adopted = new HashSet<String>();
+		for (String routeId : catalog.routes().keySet()) {
+			String was = Membership.owner(before, routeId);
+			String is = Membership.owner(after, routeId);
+			if (self.equals(was) && !self.equals(is)) {
+				lost.add(routeId);
+			} else if (!self.equals(was) && self.equals(is) && (was == null || !after.contains(was))) {
+				adopted.add(routeId);
+			}
+		}
+		if (!lost.isEmpty()) {
+			var states = host.release(lost::contains);
+			states.forEach(catalog::apply);
+			send(EVENTS, "", states);
+		}
+		if (!adopted.isEmpty()) {
+			for (var st : trains(s -> adopted.contains(s.routeId()))) {
+				host.apply(st);
+			}
+		}
+	}
+
+	private void send(byte kind, String target, List<? extends StoreEvent> events) {
+		var bytes = new ByteArrayOutputStream(64 + 64 * events.size());
+		try (var out = new DataOutputStream(bytes)) {
+			out.writeByte(kind);
+			out.writeUTF(target);
+			out.writeInt(events.size());
+			for (var e : events) {
+				StoreEvent.write(e, out);
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		transport.publish(Channel.CONTROL, bytes.toByteArray());
+	}
+
+	private static StoreEvent.TrainState state(TrainTable t, int k) {
+		return new StoreEvent.TrainState(t.id(k), t.routeId(k), t.distance(k), t.speed(k), t.vMax(k), t.accel(k),
+				t.decel(k), t.phase(k), t.dir(k), t.dwellUntil(k));
+	}
+}
@@ -0,0 +1,30 @@
+package com.railviz.cluster;
+
+import java.io.Closeable;
+import java.util.function.BiConsumer;
+
+/**
+ * Bus de diffusion entre instances : chaque message publié sur un canal est
+ * livré à toutes les autres instances abonnées (jamais à l'émetteur), dans
+ * l'ordre d'émission pour un même émetteur et un même canal.
+ */
+public interface ClusterTransport extends Closeable {
+
+	enum Channel {
+		/** Présence, synchronisation, mutations et transferts de partition */
+		CONTROL,
+		/** Frames de télémétrie de chaque partition (gros volume) */
+		TELEMETRY
+	}
+
+	/** Identifiant de cette instance */
+	String nodeId();
+
+	void publish(Channel channel, byte[] payload);
+
+	/** handler(émetteur, message), appelé sur le thread du transport */
+	void subscribe(Channel channel, BiConsumer<String, byte[]> handler);
+
+	@Override
+	void close();
+}
@@ -0,0 +1,88 @@
+package com.railviz.cluster;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Vue des instances vivantes (battements de cœur) et attribution des routes
+ * par hachage de rendez-vous : chaque route va à l'instance de plus fort poids
+ * hash(instance, route). Quand une instance arrive ou part, seules les routes
+ * qu'elle gagne ou perd changent de propriétaire.
+ */
+public final class Membership {
+
+	private final String self;
+	private final long timeoutMs;
+	private final Map<String, Long> lastSeen = new HashMap<>();
+	private List<String> view = List.of();
+
+	public Membership(String self, long timeoutMs) {
+		this.self = self;
+		this.timeoutMs = timeoutMs;
+	}
+
+	public String self() {
+		return self;
+	}
+
+	/** Instances vivantes, triées (cette instance comprise une fois prête) */
+	public List<String> view() {
+		return view;
+	}
+
+	/** Battement de cœur reçu (ou émis, pour soi-même) */
+	public void seen(String node, long now) {
+		lastSeen.put(node, now);
+	}
+
+	/** Départ annoncé */
+	public void left(String node) {
+		lastSeen.remove(node);
+	}
+
+	/**
+	 * Écarte les instances muettes depuis plus que le délai et recalcule la vue ;
+	 * renvoie true si elle a changé.
+	 */
+	public boolean refresh(long now) {
+		lastSeen.values().removeIf(t -> now - t > timeoutMs);
+		var next = new ArrayList<>(lastSeen.keySet());
+		next.sort(null);
+		if (next.equals(view)) {
+			return false;
+		}
+		view = List.copyOf(next);
+		return true;
+	}
+
+	/** Instance propriétaire de la route dans la vue donnée ; null si la vue est vide */
+	public static String owner(List<String> view, String routeId) {
+		String best = null;
+		long bestWeight = 0;
+		long r = mix(routeId.hashCode());
+		for (String node : view) {
+			long w = mix(r ^ mix(node.hashCode() + 0x9E3779B97F4A7C15L));
+			if (best == null || Long.compareUnsigned(w, bestWeight) > 0) {
+				best = node;
+				bestWeight = w;
+			}
+		}
+		return best;
+	}
+
+	public boolean owns(String routeId) {
+		return self.equals(owner(view, routeId));
+	}
+
+	/** Finaliseur de MurmurHash3 : bonne dispersion pour des hashCode proches */
+	private static long mix(long h) {
+		h ^= h >>> 33;
+		h *= 0xFF51AFD7ED558CCDL;
+		h ^= h >>> 33;
+		h *= 0xC4CEB9FE1A85EC53L;
+		h ^= h >>> 33;
+		return h;
+	}
+}
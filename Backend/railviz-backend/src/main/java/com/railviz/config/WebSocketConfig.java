@@ -1,26 +1,53 @@
 package com.railviz.config;
 
 import org.springframework.context.annotation.Configuration;
+import org.springframework.messaging.simp.config.ChannelRegistration;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
 import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
 import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
 import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketTransportRegistration;
+
+import com.railviz.service.BackpressureService;
+
+import lombok.RequiredArgsConstructor;
 
 /**
  * Created by rajeevkumarsingh on 24/07/17.
  */
 @Configuration
 @EnableWebSocketMessageBroker
+@RequiredArgsConstructor
 public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
 
+	private final BackpressureService backpressure;
+
 	@Override
 	public void registerStompEndpoints(StompEndpointRegistry registry) {
 		registry.addEndpoint("/ws").setAllowedOriginPatterns("http://localhost:4200");
+		// SUBSCRIBE traité avant le viewport qui suit : la keyframe qu'il déclenche
+		// ne peut pas partir avant que l'abonnement soit enregistré
+		registry.setPreserveReceiveOrder(true);
 	}
 
 	@Override
 	public void configureMessageBroker(MessageBrokerRegistry registry) {
 		registry.setApplicationDestinationPrefixes("/app");
-		registry.enableSimpleBroker("/topic");
+		registry.enableSimpleBroker("/topic", "/queue");
+	}
+
+	@Override
+	public void configureWebSocketTransport(WebSocketTransportRegistration registration) {
+		// une keyframe de télémétrie binaire porte toute la flotte en un seul message ;
+		// limite dure, la télémétrie est régulée bien avant (BackpressureService)
+		registration.setSendBufferSizeLimit(16 * 1024 * 1024);
+		// écriture asynchrone (une socket lente ne bloque aucun thread) et octets réellement écrits par session
+		registration.addDecoratorFactory(backpressure::decorate);
+	}
+
+	@Override
+	public void configureClientOutboundChannel(ChannelRegistration registration) {
+		// file par session bornée, frames de télémétrie jetées ou conflatées au-delà
+		registration.interceptors(backpressure);
 	}
 }
@@ -0,0 +1,40 @@
+package com.railviz.controller;
+
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.railviz.service.HistoryService;
+
+import lombok.RequiredArgsConstructor;
+
+@RestController
+@RequestMapping("/api/history")
+@RequiredArgsConstructor
+public class HistoryController {
+
+	private static final int MAX_POINTS = 100_000;
+
+	private final HistoryService history;
+
+	/** Période enregistrée (204 si l'historique est vide) */
+	@GetMapping
+	public ResponseEntity<?> range() {
+		var range = history.range();
+		return (range == null) ? ResponseEntity.noContent().build() : ResponseEntity.ok(range);
+	}
+
+	/** Trajectoire d'un train, au plus un point toutes les stepMs (défaut : une par seconde) */
+	@GetMapping("/trains/{id}")
+	public ResponseEntity<?> trajectory(@PathVariable String id, @RequestParam long from, @RequestParam long to,
+			@RequestParam(defaultValue = "1000") long stepMs) {
+		if (to < from) {
+			return ResponseEntity.badRequest().body("to doit suivre from");
+		}
+		var points = history.trajectory(id, from, to, stepMs, MAX_POINTS);
+		return points.isEmpty() ? ResponseEntity.notFound().build() : ResponseEntity.ok(points);
+	}
+}
@@ -38,7 +38,7 @@ public class RouteController {
 			return ResponseEntity.badRequest().body("id + >=2 points requis");
 		}
 		routeService.addRoute(route);
-		trainService.onRoutesChangedExternally();
+		trainService.onRouteChanged(route.id());
 		return ResponseEntity.status(HttpStatus.CREATED).build();
 	}
 
@@ -51,7 +51,7 @@ public class RouteController {
 			return ResponseEntity.badRequest().body(">=2 points requis");
 		}
 		routeService.updateRoute(route);
-		trainService.onRoutesChangedExternally();
+		trainService.onRouteChanged(id);
 		return ResponseEntity.ok().build();
 	}
 
@@ -62,7 +62,7 @@ public class RouteController {
 					.body("Impossible : des trains utilisent encore la route " + id);
 		}
 		routeService.deleteRoute(id);
-		trainService.onRoutesChangedExternally();
+		trainService.onRouteChanged(id);
 		return ResponseEntity.noContent().build();
 	}
 }
@@ -0,0 +1,38 @@
+package com.railviz.controller;
+
+import org.springframework.messaging.handler.annotation.MessageMapping;
+import org.springframework.messaging.handler.annotation.Payload;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.stereotype.Controller;
+
+import com.railviz.model.ReplayCommand;
+import com.railviz.model.ViewportCommand;
+import com.railviz.service.ReplayService;
+import com.railviz.service.ViewportTelemetryService;
+
+import lombok.RequiredArgsConstructor;
+
+@Controller
+@RequiredArgsConstructor
+public class TelemetryController {
+
+	private final ViewportTelemetryService viewports;
+	private final ReplayService replays;
+
+	/** Le client annonce ce qu'il affiche ; il reçoit ensuite /user/queue/telemetry.bin filtré */
+	@MessageMapping("/telemetry.viewport")
+	public void viewport(@Payload ViewportCommand cmd, SimpMessageHeaderAccessor headerAccessor) {
+		viewports.setViewport(headerAccessor.getSessionId(), cmd);
+	}
+
+	/** Rejeu de l'historique sur /user/queue/replay.bin (état sur /user/queue/replay) */
+	@MessageMapping("/replay.start")
+	public void startReplay(@Payload ReplayCommand cmd, SimpMessageHeaderAccessor headerAccessor) {
+		replays.start(headerAccessor.getSessionId(), cmd);
+	}
+
+	@MessageMapping("/replay.stop")
+	public void stopReplay(SimpMessageHeaderAccessor headerAccessor) {
+		replays.stop(headerAccessor.getSessionId());
+	}
+}
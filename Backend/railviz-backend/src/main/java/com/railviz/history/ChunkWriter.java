@@ -0,0 +1,154 @@
+package com.railviz.history;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.Deflater;
+
+import com.railviz.telemetry.TelemetryEncoder;
+import com.railviz.telemetry.TelemetrySnapshot;
+
+/**
+ * Accumule les ticks d'un chunk d'historique colonne par colonne, puis les
+ * encode d'un bloc.
+ *
+ * <pre>
+ * tête     = varint ticks ; varint lignes ; varint n ; n × (string id ; string routeId)
+ *            ticks × varint (t - t0) ; ticks × varint lignes du tick
+ * colonnes = lignes × varint idx ; lignes × zz dLat ; lignes × zz dLon ; lignes × zz dSpeed ; lignes × u8 signal
+ * </pre>
+ *
+ * idx renvoie au dictionnaire id/route du chunk ; les deltas (mêmes
+ * quantifications que {@link TelemetryEncoder}) sont relatifs à la ligne
+ * précédente du même train, absolus à sa première apparition. Un train à quai
+ * ne coûte ainsi que des zéros, que Deflate écrase. Tête et colonnes sont
+ * compressées séparément : chercher un train ne décompresse que la tête des
+ * chunks où il n'apparaît pas.
+ *
+ * Non thread-safe ; encode() peut tourner sur un autre thread une fois le
+ * chunk rempli.
+ */
+public final class ChunkWriter {
+
+	private final Map<String, Integer> index = new HashMap<>();
+	private String[] ids = new String[16];
+	private String[] routes = new String[16];
+	private int[] qLat = new int[16];
+	private int[] qLon = new int[16];
+	private int[] qSpeed = new int[16];
+	private int entries;
+
+	private long[] times = new long[64];
+	private int[] counts = new int[64];
+	private int ticks;
+	private int rows;
+
+	private final Varints.Out idx = new Varints.Out(4096);
+	private final Varints.Out lat = new Varints.Out(4096);
+	private final Varints.Out lon = new Varints.Out(4096);
+	private final Varints.Out speed = new Varints.Out(4096);
+	private final Varints.Out signal = new Varints.Out(4096);
+
+	public boolean isEmpty() {
+		return ticks == 0;
+	}
+
+	public int ticks() {
+		return ticks;
+	}
+
+	public int rows() {
+		return rows;
+	}
+
+	/** Ajoute la photo de la flotte à l'instant t (ms, croissant) */
+	public void append(long t, TelemetrySnapshot... parts) {
+		if (ticks == times.length) {
+			times = Arrays.copyOf(times, ticks * 2);
+			counts = Arrays.copyOf(counts, ticks * 2);
+		}
+		int n = 0;
+		for (var p : parts) {
+			for (int i = 0; i < p.size(); i++) {
+				int k = entry(p.id(i), p.routeId(i));
+				int la = (int) Math.round(p.lat(i) * TelemetryEncoder.POS_SCALE);
+				int lo = (int) Math.round(p.lon(i) * TelemetryEncoder.POS_SCALE);
+				int sp = (int) Math.round(p.speedKmh(i) * TelemetryEncoder.SPEED_SCALE);
+				idx.varint(k);
+				lat.zigzag(la - qLat[k]);
+				lon.zigzag(lo - qLon[k]);
+				speed.zigzag(sp - qSpeed[k]);
+				signal.put(p.signal(i));
+				qLat[k] = la;
+				qLon[k] = lo;
+				qSpeed[k] = sp;
+				n++;
+			}
+		}
+		times[ticks] = t;
+		counts[ticks++] = n;
+		rows += n;
+	}
+
+	/** Entrée du dictionnaire ; une nouvelle si le train a changé de route */
+	private int entry(String id, String routeId) {
+		Integer k = index.get(id);
+		if (k != null && routeId.equals(routes[k])) {
+			return k;
+		}
+		if (entries == ids.length) {
+			int cap = entries * 2;
+			ids = Arrays.copyOf(ids, cap);
+			routes = Arrays.copyOf(routes, cap);
+			qLat = Arrays.copyOf(qLat, cap);
+			qLon = Arrays.copyOf(qLon, cap);
+			qSpeed = Arrays.copyOf(qSpeed, cap);
+		}
+		int e = entries++;
+		ids[e] = id;
+		routes[e] = routeId;
+		index.put(id, e);
+		return e;
+	}
+
+	/** Encode et compresse le chunk (non vide) */
+	public EncodedChunk encode() {
+		var head = new Varints.Out(64 + entries * 24 + ticks * 4);
+		head.varint(ticks);
+		head.varint(rows);
+		head.varint(entries);
+		for (int e = 0; e < entries; e++) {
+			head.string(ids[e]);
+			head.string(routes[e]);
+		}
+		for (int k = 0; k < ticks; k++) {
+			head.varint(times[k] - times[0]);
+		}
+		for (int k = 0; k < ticks; k++) {
+			head.varint(counts[k]);
+		}
+		var cols = new Varints.Out(idx.size + lat.size + lon.size + speed.size + signal.size);
+		for (var c : new Varints.Out[] { idx, lat, lon, speed, signal }) {
+			cols.put(c.buf, c.size);
+		}
+		return new EncodedChunk(times[0], times[ticks - 1], ticks, rows, deflate(head), head.size, deflate(cols),
+				cols.size);
+	}
+
+	private static byte[] deflate(Varints.Out raw) {
+		var d = new Deflater();
+		try {
+			d.setInput(raw.buf, 0, raw.size);
+			d.finish();
+			var out = new ByteArrayOutputStream(Math.max(64, raw.size / 4));
+			byte[] block = new byte[64 * 1024];
+			while (!d.finished()) {
+				out.write(block, 0, d.deflate(block));
+			}
+			return out.toByteArray();
+		} finally {
+			d.end();
+		}
+	}
+}
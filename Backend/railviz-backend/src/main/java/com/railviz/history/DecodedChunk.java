@@ -0,0 +1,134 @@
+package com.railviz.history;
+
+import java.nio.ByteBuffer;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import com.railviz.telemetry.TelemetryEncoder;
+import com.railviz.telemetry.TelemetrySnapshot;
+
+/**
+ * Chunk relu (format de {@link ChunkWriter}) : la tête d'abord, les colonnes
+ * à la demande, décompressées directement depuis le fichier mappé. Les deltas
+ * sont remis en valeurs absolues au décodage.
+ */
+final class DecodedChunk {
+
+	private final ByteBuffer cols;
+	private final int colsRaw;
+
+	final int ticks;
+	final int rows;
+	final String[] ids;
+	final String[] routes;
+	final long[] time;
+	/** Première ligne de chaque tick (ticks + 1 bornes) */
+	final int[] start;
+
+	int[] idx;
+	int[] lat;
+	int[] lon;
+	int[] speed;
+	byte[] signal;
+
+	/** head et cols : tranches compressées du fichier de données */
+	DecodedChunk(long t0, ByteBuffer head, int headRaw, ByteBuffer cols, int colsRaw) {
+		this.cols = cols;
+		this.colsRaw = colsRaw;
+		var in = new Varints.In(inflate(head, headRaw));
+		ticks = in.uint();
+		rows = in.uint();
+		int n = in.uint();
+		ids = new String[n];
+		routes = new String[n];
+		for (int e = 0; e < n; e++) {
+			ids[e] = in.string();
+			routes[e] = in.string();
+		}
+		time = new long[ticks];
+		for (int k = 0; k < ticks; k++) {
+			time[k] = t0 + in.varint();
+		}
+		start = new int[ticks + 1];
+		for (int k = 0; k < ticks; k++) {
+			start[k + 1] = start[k] + in.uint();
+		}
+	}
+
+	boolean hasColumns() {
+		return idx != null;
+	}
+
+	void loadColumns() {
+		var in = new Varints.In(inflate(cols, colsRaw));
+		idx = new int[rows];
+		lat = new int[rows];
+		lon = new int[rows];
+		speed = new int[rows];
+		signal = new byte[rows];
+		for (int r = 0; r < rows; r++) {
+			idx[r] = in.uint();
+		}
+		absolute(in, lat);
+		absolute(in, lon);
+		absolute(in, speed);
+		for (int r = 0; r < rows; r++) {
+			signal[r] = in.get();
+		}
+	}
+
+	/** Cumule les deltas de la colonne par entrée du dictionnaire */
+	private void absolute(Varints.In in, int[] col) {
+		int[] last = new int[ids.length];
+		for (int r = 0; r < rows; r++) {
+			int e = idx[r];
+			last[e] += in.zigzag();
+			col[r] = last[e];
+		}
+	}
+
+	/** Remplit snap avec les trains du tick k (colonnes chargées) */
+	void fill(int k, TelemetrySnapshot snap) {
+		snap.clear();
+		for (int r = start[k]; r < start[k + 1]; r++) {
+			int e = idx[r];
+			snap.add(ids[e], routes[e], lat(r), lon(r), speedKmh(r), signal[r]);
+		}
+	}
+
+	double lat(int r) {
+		return lat[r] / TelemetryEncoder.POS_SCALE;
+	}
+
+	double lon(int r) {
+		return lon[r] / TelemetryEncoder.POS_SCALE;
+	}
+
+	double speedKmh(int r) {
+		return speed[r] / TelemetryEncoder.SPEED_SCALE;
+	}
+
+	private static byte[] inflate(ByteBuffer src, int rawSize) {
+		var inf = new Inflater();
+		try {
+			inf.setInput(src);
+			byte[] out = new byte[rawSize];
+			int n = 0;
+			while (n < rawSize) {
+				int got = inf.inflate(out, n, rawSize - n);
+				if (got == 0 && (inf.finished() || inf.needsInput())) {
+					break;
+				}
+				n += got;
+			}
+			if (n != rawSize) {
+				throw new IllegalStateException("chunk d'historique tronqué");
+			}
+			return out;
+		} catch (DataFormatException e) {
+			throw new IllegalStateException("chunk d'historique corrompu", e);
+		} finally {
+			inf.end();
+		}
+	}
+}
@@ -0,0 +1,10 @@
+package com.railviz.history;
+
+/** Chunk compressé prêt à écrire : tête et colonnes (cf. {@link ChunkWriter}) et leurs tailles brutes */
+public record EncodedChunk(long first, long last, int ticks, int rows, byte[] head, int headRaw, byte[] cols,
+		int colsRaw) {
+
+	public int size() {
+		return head.length + cols.length;
+	}
+}
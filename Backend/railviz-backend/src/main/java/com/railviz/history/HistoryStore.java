@@ -0,0 +1,358 @@
+package com.railviz.history;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+
+import com.railviz.model.HistoryRange;
+import com.railviz.model.TrajectoryPoint;
+import com.railviz.telemetry.TelemetrySnapshot;
+
+/**
+ * Historique de télémétrie sur disque, en segments horaires (par défaut) :
+ *
+ * <pre>
+ * seg-&lt;t0&gt;.dat : chunks compressés bout à bout (tête puis colonnes)
+ * seg-&lt;t0&gt;.idx : un enregistrement de 48 octets par chunk, dans l'ordre du temps
+ *                 long first ; long last ; long offset ; int head ; int headRaw ; int cols ; int colsRaw ; int ticks ; int rows
+ * </pre>
+ *
+ * L'enregistrement d'index est écrit après le chunk : un lecteur qui le voit
+ * trouve les données complètes, une fin d'index tronquée est ignorée. Chaque
+ * démarrage ouvre un nouveau segment, on n'écrit jamais derrière un fichier
+ * peut-être abîmé.
+ *
+ * Les lectures mappent index et données à leur taille du moment : l'ouverture
+ * d'un rejeu ne coûte qu'une recherche dichotomique dans l'index et le
+ * décodage du premier chunk, quelle que soit la durée enregistrée. Écriture
+ * sur un seul thread ; lectures concurrentes libres.
+ */
+public final class HistoryStore implements AutoCloseable {
+
+	static final int RECORD = 48;
+	/** Un segment est relu d'un seul mapping : il reste sous 1 Go */
+	private static final long MAX_SEGMENT_BYTES = 1L << 30;
+	private static final String PREFIX = "seg-";
+	private static final String[] SIGNALS = { "GREEN", "YELLOW", "RED" };
+
+	private final Path dir;
+	private final long segmentMs;
+
+	private FileChannel data;
+	private FileChannel index;
+	private long segmentStart;
+	private long dataSize;
+
+	public HistoryStore(Path dir, long segmentMs) throws IOException {
+		this.dir = dir;
+		this.segmentMs = segmentMs;
+		Files.createDirectories(dir);
+	}
+
+	/* ============ Écriture ============ */
+
+	/** Ajoute un chunk ; renvoie true si un nouveau segment a été ouvert */
+	public synchronized boolean append(EncodedChunk c) throws IOException {
+		boolean rolled = false;
+		if (data == null || c.first() >= segmentStart + segmentMs || dataSize + c.size() > MAX_SEGMENT_BYTES) {
+			roll(c.first());
+			rolled = true;
+		}
+		long offset = dataSize;
+		writeFully(data, ByteBuffer.wrap(c.head()));
+		writeFully(data, ByteBuffer.wrap(c.cols()));
+		dataSize += c.size();
+		var rec = ByteBuffer.allocate(RECORD).putLong(c.first()).putLong(c.last()).putLong(offset)
+				.putInt(c.head().length).putInt(c.headRaw()).putInt(c.cols().length).putInt(c.colsRaw())
+				.putInt(c.ticks()).putInt(c.rows()).flip();
+		writeFully(index, rec);
+		return rolled;
+	}
+
+	private void roll(long start) throws IOException {
+		close();
+		String name = PREFIX + start;
+		data = FileChannel.open(dir.resolve(name + ".dat"), StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+		index = FileChannel.open(dir.resolve(name + ".idx"), StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+		segmentStart = start;
+		dataSize = 0;
+	}
+
+	private static void writeFully(FileChannel ch, ByteBuffer b) throws IOException {
+		while (b.hasRemaining()) {
+			ch.write(b);
+		}
+	}
+
+	/** Supprime les segments entièrement antérieurs à before (ms) */
+	public void prune(long before) throws IOException {
+		var starts = segments();
+		for (int s = 0; s + 1 < starts.size(); s++) {
+			// un segment finit avant le début du suivant
+			if (starts.get(s + 1) <= before) {
+				Files.deleteIfExists(dir.resolve(PREFIX + starts.get(s) + ".idx"));
+				Files.deleteIfExists(dir.resolve(PREFIX + starts.get(s) + ".dat"));
+			}
+		}
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		if (data != null) {
+			data.close();
+			index.close();
+			data = null;
+			index = null;
+		}
+	}
+
+	/* ============ Lecture ============ */
+
+	/** Débuts des segments présents, triés */
+	private List<Long> segments() throws IOException {
+		var out = new ArrayList<Long>();
+		try (var files = Files.list(dir)) {
+			files.map(p -> p.getFileName().toString()).filter(n -> n.startsWith(PREFIX) && n.endsWith(".idx"))
+					.forEach(n -> out.add(Long.parseLong(n.substring(PREFIX.length(), n.length() - 4))));
+		}
+		out.sort(null);
+		return out;
+	}
+
+	/** Segment mappé en lecture, à sa taille du moment */
+	private final class Segment {
+		final MappedByteBuffer idx;
+		final MappedByteBuffer dat;
+		final int records;
+
+		Segment(long start) throws IOException {
+			try (var i = FileChannel.open(dir.resolve(PREFIX + start + ".idx"), StandardOpenOption.READ);
+					var d = FileChannel.open(dir.resolve(PREFIX + start + ".dat"), StandardOpenOption.READ)) {
+				// index avant données : tout enregistrement visible a ses données
+				long n = i.size() / RECORD;
+				idx = i.map(FileChannel.MapMode.READ_ONLY, 0, n * RECORD);
+				dat = d.map(FileChannel.MapMode.READ_ONLY, 0, d.size());
+				int ok = 0;
+				while (ok < n && end(ok) <= dat.capacity()) {
+					ok++;
+				}
+				records = ok;
+			}
+		}
+
+		long first(int r) {
+			return idx.getLong(r * RECORD);
+		}
+
+		long last(int r) {
+			return idx.getLong(r * RECORD + 8);
+		}
+
+		private long end(int r) {
+			int at = r * RECORD;
+			return idx.getLong(at + 16) + idx.getInt(at + 24) + idx.getInt(at + 32);
+		}
+
+		/** Premier chunk dont la fin est >= t */
+		int search(long t) {
+			int lo = 0, hi = records;
+			while (lo < hi) {
+				int mid = (lo + hi) >>> 1;
+				if (last(mid) < t) {
+					lo = mid + 1;
+				} else {
+					hi = mid;
+				}
+			}
+			return lo;
+		}
+
+		DecodedChunk chunk(int r) {
+			int at = r * RECORD;
+			int offset = (int) idx.getLong(at + 16);
+			int head = idx.getInt(at + 24), headRaw = idx.getInt(at + 28);
+			int cols = idx.getInt(at + 32), colsRaw = idx.getInt(at + 36);
+			return new DecodedChunk(first(r), dat.slice(offset, head), headRaw, dat.slice(offset + head, cols),
+					colsRaw);
+		}
+	}
+
+	/** Chunks recoupant [from, to] dans l'ordre du temps, têtes seulement */
+	private final class Scan {
+		private final List<Long> starts = new ArrayList<>();
+		private final long from, to;
+		private int s = -1;
+		private Segment seg;
+		private int r;
+
+		Scan(long from, long to) throws IOException {
+			this.from = from;
+			this.to = to;
+			var all = segments();
+			for (int k = 0; k < all.size(); k++) {
+				boolean endsBefore = k + 1 < all.size() && all.get(k + 1) <= from;
+				if (!endsBefore && all.get(k) <= to) {
+					starts.add(all.get(k));
+				}
+			}
+		}
+
+		/** Chunk suivant, null en fin de période */
+		DecodedChunk next() throws IOException {
+			while (true) {
+				if (seg != null && r < seg.records) {
+					if (seg.first(r) > to) {
+						return null;
+					}
+					return seg.chunk(r++);
+				}
+				if (++s >= starts.size()) {
+					return null;
+				}
+				seg = new Segment(starts.get(s));
+				r = (s == 0) ? seg.search(from) : 0;
+			}
+		}
+	}
+
+	/** Lecture tick par tick d'une période, pour le rejeu */
+	public final class Cursor {
+		private final Scan scan;
+		private final long from, to;
+		private final TelemetrySnapshot snap = new TelemetrySnapshot();
+		private DecodedChunk chunk;
+		private int tick;
+		private boolean done;
+		private long time;
+
+		private Cursor(long from, long to) throws IOException {
+			this.scan = new Scan(from, to);
+			this.from = from;
+			this.to = to;
+			seek();
+		}
+
+		/** Instant du prochain tick, Long.MAX_VALUE en fin de période */
+		public long peek() {
+			return done ? Long.MAX_VALUE : chunk.time[tick];
+		}
+
+		/** Avance d'un tick ; false en fin de période */
+		public boolean next() {
+			if (done) {
+				return false;
+			}
+			time = chunk.time[tick];
+			chunk.fill(tick++, snap);
+			try {
+				seek();
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			return true;
+		}
+
+		/** Instant du tick courant */
+		public long time() {
+			return time;
+		}
+
+		/** Flotte au tick courant (réutilisé d'un tick à l'autre) */
+		public TelemetrySnapshot snapshot() {
+			return snap;
+		}
+
+		private void seek() throws IOException {
+			while (true) {
+				if (chunk != null && tick < chunk.ticks) {
+					long t = chunk.time[tick];
+					if (t > to) {
+						break;
+					}
+					if (t >= from) {
+						return;
+					}
+					tick++;
+					continue;
+				}
+				chunk = scan.next();
+				if (chunk == null) {
+					break;
+				}
+				chunk.loadColumns();
+				tick = 0;
+			}
+			chunk = null;
+			done = true;
+		}
+	}
+
+	/** Ouvre un rejeu de [from, to] (ms, bornes incluses) */
+	public Cursor open(long from, long to) throws IOException {
+		return new Cursor(from, to);
+	}
+
+	/**
+	 * Trajectoire d'un train sur [from, to], au plus un point toutes les stepMs
+	 * ; les chunks où il n'apparaît pas ne sont pas décompressés
+	 */
+	public List<TrajectoryPoint> trajectory(String trainId, long from, long to, long stepMs, int maxPoints)
+			throws IOException {
+		var out = new ArrayList<TrajectoryPoint>();
+		var scan = new Scan(from, to);
+		long nextAt = from;
+		var entries = new HashSet<Integer>();
+		DecodedChunk c;
+		while ((c = scan.next()) != null && out.size() < maxPoints) {
+			entries.clear();
+			for (int e = 0; e < c.ids.length; e++) {
+				if (c.ids[e].equals(trainId)) {
+					entries.add(e);
+				}
+			}
+			if (entries.isEmpty()) {
+				continue;
+			}
+			c.loadColumns();
+			for (int k = 0; k < c.ticks && out.size() < maxPoints; k++) {
+				long t = c.time[k];
+				if (t < nextAt || t > to) {
+					continue;
+				}
+				for (int r = c.start[k]; r < c.start[k + 1]; r++) {
+					if (entries.contains(c.idx[r])) {
+						out.add(new TrajectoryPoint(t, c.lat(r), c.lon(r), c.speedKmh(r), SIGNALS[c.signal[r]],
+								c.routes[c.idx[r]]));
+						nextAt = t + Math.max(1, stepMs);
+						break;
+					}
+				}
+			}
+		}
+		return out;
+	}
+
+	/** Période couverte, null si rien n'est encore écrit */
+	public HistoryRange range() throws IOException {
+		Long from = null, to = null;
+		for (long start : segments()) {
+			var seg = new Segment(start);
+			if (seg.records == 0) {
+				continue;
+			}
+			if (from == null) {
+				from = seg.first(0);
+			}
+			to = seg.last(seg.records - 1);
+		}
+		return (from == null) ? null : new HistoryRange(from, to);
+	}
+}
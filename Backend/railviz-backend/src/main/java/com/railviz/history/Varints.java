@@ -0,0 +1,99 @@
+package com.railviz.history;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/** Colonnes d'entiers variables (varint / zigzag), même codage que TelemetryEncoder */
+final class Varints {
+
+	private Varints() {
+	}
+
+	/** Tampon d'écriture extensible */
+	static final class Out {
+		byte[] buf;
+		int size;
+
+		Out(int capacity) {
+			buf = new byte[Math.max(16, capacity)];
+		}
+
+		void varint(long v) {
+			ensure(10);
+			while ((v & ~0x7FL) != 0) {
+				buf[size++] = (byte) ((v & 0x7F) | 0x80);
+				v >>>= 7;
+			}
+			buf[size++] = (byte) v;
+		}
+
+		void zigzag(int v) {
+			varint(Integer.toUnsignedLong((v << 1) ^ (v >> 31)));
+		}
+
+		void put(byte b) {
+			ensure(1);
+			buf[size++] = b;
+		}
+
+		void string(String s) {
+			byte[] b = s.getBytes(StandardCharsets.UTF_8);
+			varint(b.length);
+			put(b, b.length);
+		}
+
+		void put(byte[] b, int len) {
+			ensure(len);
+			System.arraycopy(b, 0, buf, size, len);
+			size += len;
+		}
+
+		private void ensure(int more) {
+			if (size + more > buf.length) {
+				buf = Arrays.copyOf(buf, Math.max(buf.length * 2, size + more));
+			}
+		}
+	}
+
+	/** Lecture séquentielle d'un tableau décompressé */
+	static final class In {
+		private final byte[] buf;
+		private int pos;
+
+		In(byte[] buf) {
+			this.buf = buf;
+		}
+
+		long varint() {
+			long v = 0;
+			int shift = 0;
+			byte b;
+			do {
+				b = buf[pos++];
+				v |= (long) (b & 0x7F) << shift;
+				shift += 7;
+			} while (b < 0);
+			return v;
+		}
+
+		int uint() {
+			return (int) varint();
+		}
+
+		int zigzag() {
+			int v = (int) varint();
+			return (v >>> 1) ^ -(v & 1);
+		}
+
+		byte get() {
+			return buf[pos++];
+		}
+
+		String string() {
+			int len = uint();
+			String s = new String(buf, pos, len, StandardCharsets.UTF_8);
+			pos += len;
+			return s;
+		}
+	}
+}
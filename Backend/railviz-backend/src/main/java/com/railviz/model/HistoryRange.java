@@ -0,0 +1,5 @@
+package com.railviz.model;
+
+/** Période couverte par l'historique (ms epoch, bornes incluses) */
+public record HistoryRange(long from, long to) {
+}
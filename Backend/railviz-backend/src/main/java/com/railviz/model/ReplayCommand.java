@@ -0,0 +1,5 @@
+package com.railviz.model;
+
+/** Demande de rejeu : période (ms epoch, défaut : tout l'historique) et vitesse (1 à 100, défaut 1) */
+public record ReplayCommand(Long from, Long to, Double speed) {
+}
@@ -0,0 +1,5 @@
+package com.railviz.model;
+
+/** État d'un rejeu envoyé sur /user/queue/replay : STARTED, ENDED, STOPPED ou EMPTY */
+public record ReplayStatus(String state, Long from, Long to, double speed) {
+}
@@ -0,0 +1,5 @@
+package com.railviz.model;
+
+/** Position enregistrée d'un train à l'instant t (ms epoch) */
+public record TrajectoryPoint(long t, double lat, double lon, double speedKmh, String signal, String routeId) {
+}
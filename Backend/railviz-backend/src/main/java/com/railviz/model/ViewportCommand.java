@@ -0,0 +1,8 @@
+package com.railviz.model;
+
+import java.util.List;
+
+/** Filtre de télémétrie d'une session : rectangle visible, zoom et/ou routes (tous optionnels) */
+public record ViewportCommand(Double minLat, Double minLon, Double maxLat, Double maxLon, Integer zoom,
+		List<String> routeIds) {
+}
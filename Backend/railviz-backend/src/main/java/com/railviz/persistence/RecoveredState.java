@@ -0,0 +1,103 @@
+package com.railviz.persistence;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * État reconstruit au démarrage : dernier snapshot puis rejeu du journal. Un
+ * train créé ou repositionné par le journal repart à quai (son état dynamique
+ * n'est connu que par les snapshots et les TrainState).
+ *
+ * En mode cluster, la même structure sert de catalogue répliqué de toute la
+ * flotte (cf. ClusterNode).
+ */
+public final class RecoveredState {
+
+	/** Phase "à quai" (même codage que FleetEngine) */
+	private static final byte DWELL = 0;
+
+	private final long lsn;
+	private final Map<String, List<double[]>> routes;
+	private final TrainTable trains;
+	private boolean fresh;
+
+	RecoveredState(long lsn, Map<String, List<double[]>> routes, TrainTable trains) {
+		this.lsn = lsn;
+		this.routes = routes;
+		this.trains = trains;
+	}
+
+	/** Rien sur disque : premier démarrage */
+	public static RecoveredState empty() {
+		var s = new RecoveredState(0, new LinkedHashMap<>(), new TrainTable());
+		s.fresh = true;
+		return s;
+	}
+
+	/** lsn couvert par le snapshot chargé */
+	public long lsn() {
+		return lsn;
+	}
+
+	/** Vrai si ni snapshot ni journal n'ont été trouvés */
+	public boolean isFresh() {
+		return fresh;
+	}
+
+	public Map<String, List<double[]>> routes() {
+		return routes;
+	}
+
+	public TrainTable trains() {
+		return trains;
+	}
+
+	/** Rejoue un événement du journal */
+	public void apply(StoreEvent event) {
+		fresh = false;
+		switch (event) {
+		case StoreEvent.RoutePut r -> routes.put(r.id(), List.copyOf(r.points()));
+		case StoreEvent.RouteUpdate r -> routes.computeIfPresent(r.id(), (id, pts) -> List.copyOf(r.points()));
+		case StoreEvent.RouteDelete r -> routes.remove(r.id());
+		case StoreEvent.TrainPut t -> {
+			int k = trains.row(t.id());
+			if (k < 0) {
+				trains.add(t.id(), t.routeId(), t.distance(), 0, t.vMax(), t.accel(), t.decel(), DWELL, (byte) 1, 0);
+			} else {
+				trains.set(k, t.id(), t.routeId(), t.distance(), 0, t.vMax(), t.accel(), t.decel(), DWELL, (byte) 1,
+						0);
+			}
+		}
+		case StoreEvent.TrainSpeed t -> {
+			int k = trains.row(t.id());
+			if (k >= 0) {
+				trains.vMax[k] = t.vMax();
+			}
+		}
+		case StoreEvent.TrainAccel t -> {
+			int k = trains.row(t.id());
+			if (k >= 0) {
+				trains.acc[k] = t.accel();
+				trains.dec[k] = t.decel();
+			}
+		}
+		case StoreEvent.TrainState t -> {
+			int k = trains.row(t.id());
+			if (k < 0) {
+				trains.add(t.id(), t.routeId(), t.distance(), t.speed(), t.vMax(), t.accel(), t.decel(), t.phase(),
+						t.dir(), t.dwellUntil());
+			} else {
+				trains.set(k, t.id(), t.routeId(), t.distance(), t.speed(), t.vMax(), t.accel(), t.decel(), t.phase(),
+						t.dir(), t.dwellUntil());
+			}
+		}
+		case StoreEvent.TrainDelete t -> {
+			int k = trains.row(t.id());
+			if (k >= 0) {
+				trains.remove(k);
+			}
+		}
+		}
+	}
+}
@@ -0,0 +1,243 @@
+package com.railviz.persistence;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Snapshot binaire des routes et de la flotte, écrit et relu par mapping
+ * mémoire. Les trains sont rangés en colonnes pour que le chargement se fasse
+ * par copies en bloc (un million de trains en quelques centaines de ms).
+ *
+ * <pre>
+ * int magic ; int version ; long lsn ; long crc32(corps) ; int routes ; int trains ; int noms
+ * routes : str id ; int n ; double[n] lat ; double[n] lon
+ * noms   : str (routes référencées par les trains)
+ * ids    : str × trains
+ * colonnes : int route (index dans noms) ; double s, v, vMax, acc, dec ; byte phase, dir ; long dwellUntil
+ * </pre>
+ *
+ * str = u16 longueur + octets UTF-8. Le fichier est écrit à côté puis renommé
+ * atomiquement : un snapshot présent est toujours complet.
+ */
+public final class Snapshot {
+
+	private static final int MAGIC = 0x52565331; // "RVS1"
+	private static final int VERSION = 1;
+	private static final int HEADER = 4 + 4 + 8 + 8 + 4 + 4 + 4;
+	private static final int CRC_AT = 16;
+
+	private Snapshot() {
+	}
+
+	/** Écrit le snapshot couvrant le journal jusqu'à lsn inclus */
+	public static void write(Path path, long lsn, Map<String, List<double[]>> routes, TrainTable trains)
+			throws IOException {
+		// tailles et chaînes encodées d'abord : le fichier est mappé à sa taille finale
+		long size = HEADER;
+		var routeIds = new byte[routes.size()][];
+		int r = 0;
+		for (var e : routes.entrySet()) {
+			routeIds[r] = utf8(e.getKey());
+			size += 2 + routeIds[r].length + 4 + 16L * e.getValue().size();
+			r++;
+		}
+		var names = new HashMap<String, Integer>();
+		var nameBytes = new ArrayList<byte[]>();
+		int n = 0;
+		for (int k = 0; k < trains.size; k++) {
+			if (trains.live(k)) {
+				n++;
+			}
+		}
+		var ids = new byte[n][];
+		int[] routeIdx = new int[n];
+		int j = 0;
+		for (int k = 0; k < trains.size; k++) {
+			if (!trains.live(k)) {
+				continue;
+			}
+			ids[j] = utf8(trains.ids[k]);
+			size += 2 + ids[j].length;
+			Integer idx = names.get(trains.routeIds[k]);
+			if (idx == null) {
+				idx = nameBytes.size();
+				names.put(trains.routeIds[k], idx);
+				nameBytes.add(utf8(trains.routeIds[k]));
+			}
+			routeIdx[j++] = idx;
+		}
+		for (byte[] b : nameBytes) {
+			size += 2 + b.length;
+		}
+		size += (long) n * (4 + 5 * 8 + 2 + 8);
+		if (size > Integer.MAX_VALUE) {
+			throw new IOException("snapshot trop gros pour un seul mapping : " + size + " octets");
+		}
+
+		var tmp = path.resolveSibling(path.getFileName() + ".tmp");
+		try (var ch = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+				StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+			MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_WRITE, 0, size);
+			buf.putInt(MAGIC).putInt(VERSION).putLong(lsn).putLong(0).putInt(routes.size()).putInt(n)
+					.putInt(nameBytes.size());
+			r = 0;
+			for (var e : routes.entrySet()) {
+				putStr(buf, routeIds[r++]);
+				var pts = e.getValue();
+				buf.putInt(pts.size());
+				for (double[] p : pts) {
+					buf.putDouble(p[0]);
+				}
+				for (double[] p : pts) {
+					buf.putDouble(p[1]);
+				}
+			}
+			for (byte[] b : nameBytes) {
+				putStr(buf, b);
+			}
+			for (byte[] b : ids) {
+				putStr(buf, b);
+			}
+			buf.asIntBuffer().put(routeIdx);
+			buf.position(buf.position() + 4 * n);
+			putLive(buf, trains, trains.s, n);
+			putLive(buf, trains, trains.v, n);
+			putLive(buf, trains, trains.vMax, n);
+			putLive(buf, trains, trains.acc, n);
+			putLive(buf, trains, trains.dec, n);
+			putLive(buf, trains, trains.phase, n);
+			putLive(buf, trains, trains.dir, n);
+			long[] dwell = new long[n];
+			for (int k = 0, i = 0; k < trains.size; k++) {
+				if (trains.live(k)) {
+					dwell[i++] = trains.dwellUntil[k];
+				}
+			}
+			buf.asLongBuffer().put(dwell);
+
+			var crc = new CRC32();
+			crc.update(buf.slice(HEADER, (int) size - HEADER));
+			buf.putLong(CRC_AT, crc.getValue());
+			buf.force();
+		}
+		Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/** Relit un snapshot ; l'état rendu est prêt à recevoir le rejeu du journal */
+	public static RecoveredState read(Path path) throws IOException {
+		try (var ch = FileChannel.open(path, StandardOpenOption.READ)) {
+			long size = ch.size();
+			MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, size);
+			if (size < HEADER || buf.getInt() != MAGIC || buf.getInt() != VERSION) {
+				throw new IOException("snapshot illisible : " + path);
+			}
+			long lsn = buf.getLong();
+			long sum = buf.getLong();
+			int routeCount = buf.getInt(), n = buf.getInt(), nameCount = buf.getInt();
+			var crc = new CRC32();
+			crc.update(buf.slice(HEADER, (int) size - HEADER));
+			if (crc.getValue() != sum) {
+				throw new IOException("snapshot corrompu (crc) : " + path);
+			}
+
+			byte[] scratch = new byte[256];
+			var routes = new LinkedHashMap<String, List<double[]>>();
+			for (int r = 0; r < routeCount; r++) {
+				String id = getStr(buf, scratch);
+				int m = buf.getInt();
+				double[] lat = new double[m], lon = new double[m];
+				buf.asDoubleBuffer().get(lat);
+				buf.position(buf.position() + 8 * m);
+				buf.asDoubleBuffer().get(lon);
+				buf.position(buf.position() + 8 * m);
+				var pts = new ArrayList<double[]>(m);
+				for (int k = 0; k < m; k++) {
+					pts.add(new double[] { lat[k], lon[k] });
+				}
+				routes.put(id, List.copyOf(pts));
+			}
+			var names = new String[nameCount];
+			for (int k = 0; k < nameCount; k++) {
+				names[k] = getStr(buf, scratch);
+			}
+			var t = new TrainTable();
+			t.grow(Math.max(16, n));
+			t.size = n;
+			for (int k = 0; k < n; k++) {
+				t.ids[k] = getStr(buf, scratch);
+			}
+			int[] routeIdx = new int[n];
+			buf.asIntBuffer().get(routeIdx);
+			buf.position(buf.position() + 4 * n);
+			for (int k = 0; k < n; k++) {
+				t.routeIds[k] = names[routeIdx[k]];
+			}
+			getDoubles(buf, t.s, n);
+			getDoubles(buf, t.v, n);
+			getDoubles(buf, t.vMax, n);
+			getDoubles(buf, t.acc, n);
+			getDoubles(buf, t.dec, n);
+			buf.get(t.phase, 0, n);
+			buf.get(t.dir, 0, n);
+			buf.asLongBuffer().get(t.dwellUntil, 0, n);
+			return new RecoveredState(lsn, routes, t);
+		}
+	}
+
+	private static byte[] utf8(String s) throws IOException {
+		byte[] b = s.getBytes(StandardCharsets.UTF_8);
+		if (b.length > 0xFFFF) {
+			throw new IOException("identifiant trop long");
+		}
+		return b;
+	}
+
+	private static void putStr(ByteBuffer buf, byte[] b) {
+		buf.putShort((short) b.length);
+		buf.put(b);
+	}
+
+	private static String getStr(ByteBuffer buf, byte[] scratch) {
+		int len = Short.toUnsignedInt(buf.getShort());
+		byte[] b = (len <= scratch.length) ? scratch : new byte[len];
+		buf.get(b, 0, len);
+		return new String(b, 0, len, StandardCharsets.UTF_8);
+	}
+
+	private static void putLive(ByteBuffer buf, TrainTable t, double[] col, int n) {
+		double[] out = new double[n];
+		for (int k = 0, i = 0; k < t.size; k++) {
+			if (t.live(k)) {
+				out[i++] = col[k];
+			}
+		}
+		buf.asDoubleBuffer().put(out);
+		buf.position(buf.position() + 8 * n);
+	}
+
+	private static void putLive(ByteBuffer buf, TrainTable t, byte[] col, int n) {
+		for (int k = 0; k < t.size; k++) {
+			if (t.live(k)) {
+				buf.put(col[k]);
+			}
+		}
+	}
+
+	private static void getDoubles(ByteBuffer buf, double[] col, int n) {
+		buf.asDoubleBuffer().get(col, 0, n);
+		buf.position(buf.position() + 8 * n);
+	}
+}
@@ -0,0 +1,141 @@
+package com.railviz.persistence;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Mutation journalisée dans le WAL. Toutes sont idempotentes (upsert ou
+ * suppression par id) : rejouer un événement déjà présent dans le snapshot ne
+ * change pas le résultat.
+ */
+public sealed interface StoreEvent {
+
+	byte ROUTE_PUT = 1, ROUTE_DELETE = 2, TRAIN_PUT = 3, TRAIN_SPEED = 4, TRAIN_ACCEL = 5, TRAIN_DELETE = 6,
+			TRAIN_STATE = 7, ROUTE_UPDATE = 8;
+
+	/** Création ou remplacement d'une route */
+	record RoutePut(String id, List<double[]> points) implements StoreEvent {
+	}
+
+	/** Remplacement des points d'une route existante, sans effet si elle a été supprimée */
+	record RouteUpdate(String id, List<double[]> points) implements StoreEvent {
+	}
+
+	record RouteDelete(String id) implements StoreEvent {
+	}
+
+	/** Création ou repositionnement d'un train (vitesses en m/s, distance en m) */
+	record TrainPut(String id, String routeId, double distance, double vMax, double accel, double decel)
+			implements StoreEvent {
+	}
+
+	record TrainSpeed(String id, double vMax) implements StoreEvent {
+	}
+
+	record TrainAccel(String id, double accel, double decel) implements StoreEvent {
+	}
+
+	record TrainDelete(String id) implements StoreEvent {
+	}
+
+	/**
+	 * État complet d'un train, mouvement en cours compris (transfert d'une
+	 * partition entre instances du cluster)
+	 */
+	record TrainState(String id, String routeId, double distance, double speed, double vMax, double accel,
+			double decel, byte phase, byte dir, long dwellUntil) implements StoreEvent {
+	}
+
+	static void write(StoreEvent event, DataOutput out) throws IOException {
+		switch (event) {
+		case RoutePut r -> {
+			out.writeByte(ROUTE_PUT);
+			out.writeUTF(r.id());
+			writePoints(r.points(), out);
+		}
+		case RouteUpdate r -> {
+			out.writeByte(ROUTE_UPDATE);
+			out.writeUTF(r.id());
+			writePoints(r.points(), out);
+		}
+		case RouteDelete r -> {
+			out.writeByte(ROUTE_DELETE);
+			out.writeUTF(r.id());
+		}
+		case TrainPut t -> {
+			out.writeByte(TRAIN_PUT);
+			out.writeUTF(t.id());
+			out.writeUTF(t.routeId());
+			out.writeDouble(t.distance());
+			out.writeDouble(t.vMax());
+			out.writeDouble(t.accel());
+			out.writeDouble(t.decel());
+		}
+		case TrainSpeed t -> {
+			out.writeByte(TRAIN_SPEED);
+			out.writeUTF(t.id());
+			out.writeDouble(t.vMax());
+		}
+		case TrainAccel t -> {
+			out.writeByte(TRAIN_ACCEL);
+			out.writeUTF(t.id());
+			out.writeDouble(t.accel());
+			out.writeDouble(t.decel());
+		}
+		case TrainDelete t -> {
+			out.writeByte(TRAIN_DELETE);
+			out.writeUTF(t.id());
+		}
+		case TrainState t -> {
+			out.writeByte(TRAIN_STATE);
+			out.writeUTF(t.id());
+			out.writeUTF(t.routeId());
+			out.writeDouble(t.distance());
+			out.writeDouble(t.speed());
+			out.writeDouble(t.vMax());
+			out.writeDouble(t.accel());
+			out.writeDouble(t.decel());
+			out.writeByte(t.phase());
+			out.writeByte(t.dir());
+			out.writeLong(t.dwellUntil());
+		}
+		}
+	}
+
+	static StoreEvent read(DataInput in) throws IOException {
+		byte type = in.readByte();
+		return switch (type) {
+		case ROUTE_PUT -> new RoutePut(in.readUTF(), readPoints(in));
+		case ROUTE_UPDATE -> new RouteUpdate(in.readUTF(), readPoints(in));
+		case ROUTE_DELETE -> new RouteDelete(in.readUTF());
+		case TRAIN_PUT -> new TrainPut(in.readUTF(), in.readUTF(), in.readDouble(), in.readDouble(), in.readDouble(),
+				in.readDouble());
+		case TRAIN_SPEED -> new TrainSpeed(in.readUTF(), in.readDouble());
+		case TRAIN_ACCEL -> new TrainAccel(in.readUTF(), in.readDouble(), in.readDouble());
+		case TRAIN_DELETE -> new TrainDelete(in.readUTF());
+		case TRAIN_STATE -> new TrainState(in.readUTF(), in.readUTF(), in.readDouble(), in.readDouble(),
+				in.readDouble(), in.readDouble(), in.readDouble(), in.readByte(), in.readByte(), in.readLong());
+		default -> throw new IOException("type d'événement inconnu : " + type);
+		};
+	}
+
+	private static void writePoints(List<double[]> pts, DataOutput out) throws IOException {
+		out.writeInt(pts.size());
+		for (double[] p : pts) {
+			out.writeDouble(p[0]);
+			out.writeDouble(p[1]);
+		}
+	}
+
+	private static List<double[]> readPoints(DataInput in) throws IOException {
+		int n = in.readInt();
+		var pts = new ArrayList<double[]>(n);
+		for (int k = 0; k < n; k++) {
+			pts.add(new double[] { in.readDouble(), in.readDouble() });
+		}
+		return pts;
+	}
+}
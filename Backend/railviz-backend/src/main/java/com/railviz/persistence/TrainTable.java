@@ -0,0 +1,137 @@
+package com.railviz.persistence;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * État complet de la flotte en colonnes (une ligne par train), tel qu'écrit
+ * dans un snapshot ou reconstruit au redémarrage. Une ligne supprimée pendant
+ * le rejeu du journal garde un id null.
+ */
+public final class TrainTable {
+
+	int size;
+	String[] ids = new String[16];
+	String[] routeIds = new String[16];
+	double[] s = new double[16]; // distance (m)
+	double[] v = new double[16]; // vitesse (m/s)
+	double[] vMax = new double[16];
+	double[] acc = new double[16];
+	double[] dec = new double[16];
+	byte[] phase = new byte[16];
+	byte[] dir = new byte[16];
+	long[] dwellUntil = new long[16];
+
+	private Map<String, Integer> rows;
+
+	public int size() {
+		return size;
+	}
+
+	/** Ajoute une ligne ; renvoie son index */
+	public int add(String id, String routeId, double dist, double speed, double vMaxMs, double a, double d, byte ph,
+			byte direction, long dwellEnd) {
+		if (size == ids.length) {
+			grow(size * 2);
+		}
+		int k = size++;
+		set(k, id, routeId, dist, speed, vMaxMs, a, d, ph, direction, dwellEnd);
+		if (rows != null) {
+			rows.put(id, k);
+		}
+		return k;
+	}
+
+	void set(int k, String id, String routeId, double dist, double speed, double vMaxMs, double a, double d,
+			byte ph, byte direction, long dwellEnd) {
+		ids[k] = id;
+		routeIds[k] = routeId;
+		s[k] = dist;
+		v[k] = speed;
+		vMax[k] = vMaxMs;
+		acc[k] = a;
+		dec[k] = d;
+		phase[k] = ph;
+		dir[k] = direction;
+		dwellUntil[k] = dwellEnd;
+	}
+
+	/** Ligne du train, -1 si absent (index construit au premier appel) */
+	public int row(String id) {
+		if (rows == null) {
+			rows = new HashMap<>(size * 2);
+			for (int k = 0; k < size; k++) {
+				if (ids[k] != null) {
+					rows.put(ids[k], k);
+				}
+			}
+		}
+		Integer k = rows.get(id);
+		return (k == null) ? -1 : k;
+	}
+
+	void remove(int k) {
+		rows.remove(ids[k]);
+		ids[k] = null;
+		routeIds[k] = null;
+	}
+
+	void grow(int cap) {
+		ids = Arrays.copyOf(ids, cap);
+		routeIds = Arrays.copyOf(routeIds, cap);
+		s = Arrays.copyOf(s, cap);
+		v = Arrays.copyOf(v, cap);
+		vMax = Arrays.copyOf(vMax, cap);
+		acc = Arrays.copyOf(acc, cap);
+		dec = Arrays.copyOf(dec, cap);
+		phase = Arrays.copyOf(phase, cap);
+		dir = Arrays.copyOf(dir, cap);
+		dwellUntil = Arrays.copyOf(dwellUntil, cap);
+	}
+
+	/** Vrai si la ligne k décrit un train (pas une ligne supprimée) */
+	public boolean live(int k) {
+		return ids[k] != null;
+	}
+
+	public String id(int k) {
+		return ids[k];
+	}
+
+	public String routeId(int k) {
+		return routeIds[k];
+	}
+
+	public double distance(int k) {
+		return s[k];
+	}
+
+	public double speed(int k) {
+		return v[k];
+	}
+
+	public double vMax(int k) {
+		return vMax[k];
+	}
+
+	public double accel(int k) {
+		return acc[k];
+	}
+
+	public double decel(int k) {
+		return dec[k];
+	}
+
+	public byte phase(int k) {
+		return phase[k];
+	}
+
+	public byte dir(int k) {
+		return dir[k];
+	}
+
+	public long dwellUntil(int k) {
+		return dwellUntil[k];
+	}
+}
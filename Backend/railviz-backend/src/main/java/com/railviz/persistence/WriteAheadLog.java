@@ -0,0 +1,196 @@
+package com.railviz.persistence;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Journal d'écriture anticipée, en ajout seul, découpé en segments
+ * wal-&lt;premier lsn&gt;.log. Chaque enregistrement :
+ *
+ * <pre>
+ * int longueur ; int crc32(lsn + événement) ; long lsn ; événement (cf. StoreEvent)
+ * </pre>
+ *
+ * Au redémarrage, les segments sont relus (mappés en mémoire) jusqu'au premier
+ * enregistrement incomplet ou corrompu, qui ne peut être que la fin d'une
+ * écriture interrompue : le segment est tronqué à cet endroit.
+ *
+ * Sans fsync, une écriture est dans le cache de pages du noyau dès le retour
+ * d'append : elle survit à l'arrêt brutal du processus (pod tué), pas à une
+ * coupure de la machine.
+ */
+public final class WriteAheadLog implements Closeable {
+
+	private static final String PREFIX = "wal-";
+	private static final String SUFFIX = ".log";
+	private static final int HEADER = 4 + 4 + 8;
+
+	private final Path dir;
+	private final boolean fsync;
+	private final ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+	private final DataOutputStream out = new DataOutputStream(bytes);
+	private final CRC32 crc = new CRC32();
+
+	private FileChannel channel;
+	private long lastLsn;
+
+	public WriteAheadLog(Path dir, boolean fsync) {
+		this.dir = dir;
+		this.fsync = fsync;
+	}
+
+	/** Dernier lsn écrit (ou relu) */
+	public synchronized long lastLsn() {
+		return lastLsn;
+	}
+
+	/**
+	 * Relit tous les segments et passe à sink les événements de lsn > afterLsn,
+	 * puis ouvre un nouveau segment pour les ajouts. À appeler une fois, avant
+	 * tout append.
+	 */
+	public synchronized void replay(long afterLsn, Consumer<StoreEvent> sink) throws IOException {
+		lastLsn = afterLsn;
+		var segments = segments();
+		for (int k = 0; k < segments.size(); k++) {
+			long end = replaySegment(segments.get(k), afterLsn, sink);
+			if (end >= 0) {
+				if (k < segments.size() - 1) {
+					throw new IOException("segment corrompu au milieu du journal : " + segments.get(k));
+				}
+				// fin d'écriture interrompue
+				try (var ch = FileChannel.open(segments.get(k), StandardOpenOption.WRITE)) {
+					ch.truncate(end);
+				}
+			}
+		}
+		openSegment(lastLsn + 1);
+	}
+
+	/** Rejoue un segment ; renvoie l'offset du premier enregistrement invalide, -1 s'il est complet */
+	private long replaySegment(Path segment, long afterLsn, Consumer<StoreEvent> sink) throws IOException {
+		try (var ch = FileChannel.open(segment, StandardOpenOption.READ)) {
+			long size = ch.size();
+			if (size == 0) {
+				return -1;
+			}
+			MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, size);
+			while (buf.remaining() > 0) {
+				int at = buf.position();
+				if (buf.remaining() < HEADER) {
+					return at;
+				}
+				int len = buf.getInt();
+				int sum = buf.getInt();
+				if (len < 9 || len > buf.remaining()) {
+					return at;
+				}
+				byte[] rec = new byte[len];
+				buf.get(rec);
+				crc.reset();
+				crc.update(rec);
+				if ((int) crc.getValue() != sum) {
+					return at;
+				}
+				long lsn = ByteBuffer.wrap(rec).getLong();
+				if (lsn > afterLsn) {
+					var in = new DataInputStream(new ByteArrayInputStream(rec, 8, len - 8));
+					sink.accept(StoreEvent.read(in));
+				}
+				lastLsn = Math.max(lastLsn, lsn);
+			}
+			return -1;
+		}
+	}
+
+	/** Ajoute un événement ; renvoie son lsn */
+	public synchronized long append(StoreEvent event) {
+		try {
+			long lsn = lastLsn + 1;
+			bytes.reset();
+			out.writeLong(lsn);
+			StoreEvent.write(event, out);
+			out.flush();
+			byte[] rec = bytes.toByteArray();
+			crc.reset();
+			crc.update(rec);
+			var buf = ByteBuffer.allocate(8 + rec.length);
+			buf.putInt(rec.length).putInt((int) crc.getValue()).put(rec).flip();
+			while (buf.hasRemaining()) {
+				channel.write(buf);
+			}
+			if (fsync) {
+				channel.force(false);
+			}
+			lastLsn = lsn;
+			return lsn;
+		} catch (IOException e) {
+			throw new UncheckedIOException("écriture du journal impossible", e);
+		}
+	}
+
+	/**
+	 * Ferme le segment courant et en ouvre un nouveau ; renvoie le dernier lsn
+	 * du segment fermé. Les événements suivants iront dans le nouveau segment.
+	 */
+	public synchronized long roll() throws IOException {
+		channel.force(false);
+		channel.close();
+		openSegment(lastLsn + 1);
+		return lastLsn;
+	}
+
+	/** Supprime les segments dont tous les lsn sont <= lsn (couverts par un snapshot) */
+	public synchronized void deleteUpTo(long lsn) throws IOException {
+		var segments = segments();
+		for (int k = 0; k < segments.size() - 1; k++) {
+			if (firstLsn(segments.get(k + 1)) - 1 <= lsn) {
+				Files.deleteIfExists(segments.get(k));
+			}
+		}
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		if (channel != null && channel.isOpen()) {
+			channel.force(false);
+			channel.close();
+		}
+	}
+
+	private void openSegment(long firstLsn) throws IOException {
+		var path = dir.resolve(String.format("%s%020d%s", PREFIX, firstLsn, SUFFIX));
+		channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.APPEND);
+	}
+
+	private List<Path> segments() throws IOException {
+		try (Stream<Path> files = Files.list(dir)) {
+			return new ArrayList<>(files.filter(p -> {
+				String n = p.getFileName().toString();
+				return n.startsWith(PREFIX) && n.endsWith(SUFFIX);
+			}).sorted().toList());
+		}
+	}
+
+	private static long firstLsn(Path segment) {
+		String n = segment.getFileName().toString();
+		return Long.parseLong(n.substring(PREFIX.length(), n.length() - SUFFIX.length()));
+	}
+}
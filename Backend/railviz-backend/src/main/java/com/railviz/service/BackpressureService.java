@@ -0,0 +1,471 @@
+package com.railviz.service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.stereotype.Service;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.adapter.NativeWebSocketSession;
+import org.springframework.web.socket.handler.WebSocketHandlerDecorator;
+import org.springframework.web.socket.handler.WebSocketSessionDecorator;
+
+import com.railviz.telemetry.TelemetryEncoder;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.websocket.RemoteEndpoint;
+import jakarta.websocket.SendResult;
+import jakarta.websocket.Session;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Contre-pression des sessions WebSocket (branchée par WebSocketConfig) : pour
+ * chaque session, octets confiés au canal sortant mais pas encore écrits sur
+ * la socket. Au-delà de max-pending-bytes la session est "en retard" et la
+ * télémétrie ne lui est plus servie tant qu'elle n'a pas vidé sa file :
+ * <ul>
+ * <li>flux privés (viewport, rejeu) : le tick est sauté, l'encodeur de la
+ * session garde la dernière valeur envoyée, la frame suivante porte la
+ * dernière valeur de chaque train (conflation par train) ;</li>
+ * <li>/topic/telemetry.bin : les frames communes sont jetées et la session
+ * passe sur un flux privé conflaté (cf. TelemetryPublisher), jusqu'à ce
+ * qu'elle ait rattrapé et qu'une keyframe commune permette de la
+ * raccrocher ;</li>
+ * <li>/topic/telemetry (ancien flux JSON) : les messages du tick sont jetés ;
+ * chaque tick renvoyant tous les trains, le premier tick servi porte la
+ * dernière valeur de chacun.</li>
+ * </ul>
+ * En retard plus de downgrade-after-ms : cadence divisée par downgrade-every
+ * (rétablie après recover-after-ms à jour). Plus de close-after-ms : session
+ * fermée. Le tas consommé par session reste ainsi borné par max-pending-bytes
+ * plus une frame ; les autres messages (routes, trains) ne sont jamais jetés,
+ * mais au-delà de max-queued-messages en attente la session est fermée.
+ */
+@Service
+@RequiredArgsConstructor
+public class BackpressureService implements ChannelInterceptor {
+
+	private static final Logger logger = LoggerFactory.getLogger(BackpressureService.class);
+
+	/** En-tête des frames privées de /topic/telemetry.bin (non soumises au filtrage des frames communes) */
+	public static final String PRIVATE_HEADER = "railviz-private";
+
+	/** En-tête des messages de /topic/telemetry : numéro du tick (cadence réduite) */
+	public static final String TICK_HEADER = "railviz-tick";
+
+	private static final byte[] STOMP_MESSAGE = "MESSAGE\n".getBytes(StandardCharsets.US_ASCII);
+
+	private final MeterRegistry meters;
+
+	@Value("${railviz.websocket.outbound.enabled:true}")
+	private boolean enabled;
+
+	@Value("${railviz.websocket.outbound.max-pending-bytes:262144}")
+	private long maxPendingBytes;
+
+	@Value("${railviz.websocket.outbound.downgrade-after-ms:2000}")
+	private long downgradeAfterMs;
+
+	@Value("${railviz.websocket.outbound.downgrade-every:4}")
+	private int downgradeEvery;
+
+	@Value("${railviz.websocket.outbound.recover-after-ms:10000}")
+	private long recoverAfterMs;
+
+	@Value("${railviz.websocket.outbound.close-after-ms:30000}")
+	private long closeAfterMs;
+
+	@Value("${railviz.websocket.outbound.max-queued-messages:16384}")
+	private int maxQueuedMessages;
+
+	/** Profondeur d'envois enchaînés sur le thread courant (complétions immédiates) */
+	private static final ThreadLocal<int[]> CHAIN = ThreadLocal.withInitial(() -> new int[1]);
+
+	/**
+	 * File sortante d'une session et état de la politique. L'écriture sur la
+	 * socket est asynchrone, un message en vol à la fois : une socket lente ne
+	 * bloque aucun thread du canal sortant, ses messages attendent ici et sont
+	 * comptés.
+	 */
+	private final class Outbox {
+		final WebSocketSession session;
+		final RemoteEndpoint.Async remote;
+		final ArrayDeque<WebSocketMessage<?>> queue = new ArrayDeque<>();
+		final ArrayDeque<Integer> sizes = new ArrayDeque<>();
+		final AtomicLong dropped = new AtomicLong();
+		final List<Meter> meters = new ArrayList<>(2);
+		boolean busy;
+		long pending;
+		volatile long behindSince;
+		volatile long caughtUpSince;
+		volatile boolean downgraded;
+		/** Abonnement à /topic/telemetry.bin servi en privé, null si raccroché au flux commun */
+		volatile String detached;
+		volatile boolean closing;
+
+		Outbox(WebSocketSession session) {
+			this.session = session;
+			var nativeSession = (session instanceof NativeWebSocketSession n) ? n.getNativeSession(Session.class) : null;
+			this.remote = (nativeSession == null) ? null : nativeSession.getAsyncRemote();
+		}
+
+		/** Compte un message du canal sortant (taille du contenu) */
+		synchronized void queued(int bytes) {
+			sizes.add(bytes);
+			pending += bytes;
+		}
+
+		synchronized long pending() {
+			return pending;
+		}
+
+		void send(WebSocketMessage<?> message) throws IOException {
+			synchronized (this) {
+				if (closing) {
+					return;
+				}
+				if (busy) {
+					if (queue.size() >= maxQueuedMessages) {
+						closeOverflowing(this);
+						return;
+					}
+					queue.add(message);
+					return;
+				}
+				busy = true;
+			}
+			write(message);
+		}
+
+		private void write(WebSocketMessage<?> m) throws IOException {
+			while (m != null) {
+				// avant l'envoi : l'écriture consomme le tampon du message
+				boolean counted = isStompMessage(m);
+				if (remote != null && m instanceof TextMessage text) {
+					remote.sendText(text.getPayload(), r -> done(counted, r));
+					return;
+				}
+				if (remote != null && m instanceof BinaryMessage bin) {
+					remote.sendBinary(bin.getPayload(), r -> done(counted, r));
+					return;
+				}
+				// ping/pong ou session non standard : écriture directe
+				session.sendMessage(m);
+				written(counted);
+				m = next();
+			}
+		}
+
+		private void done(boolean counted, SendResult result) {
+			if (!result.isOK()) {
+				logger.debug("Écriture vers la session {} en échec", session.getId(), result.getException());
+				close(this);
+				return;
+			}
+			written(counted);
+			var n = next();
+			if (n == null) {
+				return;
+			}
+			// complétion immédiate : on enchaîne, sans empiler indéfiniment la pile
+			int[] depth = CHAIN.get();
+			if (depth[0] > 32) {
+				ForkJoinPool.commonPool().execute(() -> resume(n));
+				return;
+			}
+			depth[0]++;
+			try {
+				resume(n);
+			} finally {
+				depth[0]--;
+			}
+		}
+
+		private void resume(WebSocketMessage<?> m) {
+			try {
+				write(m);
+			} catch (IOException e) {
+				logger.debug("Écriture vers la session {} en échec", session.getId(), e);
+				close(this);
+			}
+		}
+
+		private synchronized WebSocketMessage<?> next() {
+			var n = queue.poll();
+			if (n == null) {
+				busy = false;
+			}
+			return n;
+		}
+
+		private void written(boolean counted) {
+			if (counted) {
+				synchronized (this) {
+					Integer b = sizes.poll();
+					if (b != null) {
+						pending -= b;
+					}
+				}
+			}
+		}
+	}
+
+	/** Abonné de /topic/telemetry.bin servi par un flux privé */
+	public record Detached(String sessionId, String subscriptionId) {
+	}
+
+	private final Map<String, Outbox> outboxes = new ConcurrentHashMap<>();
+	private Counter dropped;
+	private Counter downgrades;
+	private Counter closed;
+
+	@PostConstruct
+	void init() {
+		dropped = Counter.builder("railviz.ws.outbound.dropped")
+				.description("Frames de télémétrie jetées ou sautées (sessions en retard)").register(meters);
+		downgrades = Counter.builder("railviz.ws.sessions.downgrades").description("Sessions passées en cadence réduite")
+				.register(meters);
+		closed = Counter.builder("railviz.ws.sessions.closed.slow").description("Sessions fermées pour retard")
+				.register(meters);
+		Gauge.builder("railviz.ws.sessions.slow", outboxes,
+				m -> m.values().stream().filter(o -> o.behindSince != 0).count())
+				.description("Sessions en retard").register(meters);
+		Gauge.builder("railviz.ws.sessions.downgraded", outboxes,
+				m -> m.values().stream().filter(o -> o.downgraded).count())
+				.description("Sessions en cadence réduite").register(meters);
+		Gauge.builder("railviz.ws.lag.max", outboxes,
+				m -> m.values().stream().mapToLong(Outbox::pending).max().orElse(0)).baseUnit("bytes")
+				.description("Plus grande file sortante").register(meters);
+	}
+
+	/* ============ Branchement (WebSocketConfig) ============ */
+
+	/** Décore le handler WebSocket : écriture asynchrone et comptage des MESSAGE réellement écrits */
+	public WebSocketHandler decorate(WebSocketHandler handler) {
+		return new WebSocketHandlerDecorator(handler) {
+			@Override
+			public void afterConnectionEstablished(WebSocketSession session) throws Exception {
+				var o = open(session);
+				super.afterConnectionEstablished(new WebSocketSessionDecorator(session) {
+					@Override
+					public void sendMessage(WebSocketMessage<?> message) throws IOException {
+						o.send(message);
+					}
+				});
+			}
+
+			@Override
+			public void afterConnectionClosed(WebSocketSession session, CloseStatus status) throws Exception {
+				var o = outboxes.remove(session.getId());
+				if (o != null) {
+					o.meters.forEach(meters::remove);
+				}
+				super.afterConnectionClosed(session, status);
+			}
+		};
+	}
+
+	private Outbox open(WebSocketSession session) {
+		var o = new Outbox(session);
+		String id = session.getId();
+		o.meters.add(Gauge.builder("railviz.ws.session.lag", o, Outbox::pending).tag("session", id).baseUnit("bytes")
+				.description("Octets en attente d'écriture vers la session").register(meters));
+		o.meters.add(FunctionCounter.builder("railviz.ws.session.dropped", o.dropped, AtomicLong::get)
+				.tag("session", id).description("Frames de télémétrie jetées ou sautées pour la session")
+				.register(meters));
+		outboxes.put(id, o);
+		return o;
+	}
+
+	private static boolean isStompMessage(WebSocketMessage<?> message) {
+		if (message instanceof BinaryMessage b) {
+			ByteBuffer p = b.getPayload();
+			return p.remaining() >= STOMP_MESSAGE.length && p.slice(p.position(), STOMP_MESSAGE.length)
+					.equals(ByteBuffer.wrap(STOMP_MESSAGE));
+		}
+		return message instanceof TextMessage t && t.getPayload().startsWith("MESSAGE\n");
+	}
+
+	/**
+	 * Canal sortant (thread de l'émetteur, avant la file du canal) : compte ce qui
+	 * part vers chaque session et filtre les frames communes de télémétrie
+	 */
+	@Override
+	public Message<?> preSend(Message<?> message, MessageChannel channel) {
+		var headers = message.getHeaders();
+		String sessionId = SimpMessageHeaderAccessor.getSessionId(headers);
+		if (SimpMessageHeaderAccessor.getMessageType(headers) != SimpMessageType.MESSAGE || sessionId == null) {
+			return message;
+		}
+		var o = outboxes.get(sessionId);
+		if (o == null) {
+			return message;
+		}
+		if (enabled && headers.get(PRIVATE_HEADER) == null) {
+			String destination = SimpMessageHeaderAccessor.getDestination(headers);
+			if (TelemetryPublisher.BINARY_TOPIC.equals(destination)
+					&& !shared(o, message, SimpMessageHeaderAccessor.getSubscriptionId(headers))) {
+				return null;
+			}
+			if (TelemetryPublisher.JSON_TOPIC.equals(destination) && headers.get(TICK_HEADER) instanceof Long tick
+					&& !admit(o, tick)) {
+				return null;
+			}
+		}
+		o.queued((message.getPayload() instanceof byte[] b) ? b.length : 0);
+		return message;
+	}
+
+	/** Frame commune : passe si la session suit ; sinon jetée et session détachée */
+	private boolean shared(Outbox o, Message<?> message, String subscriptionId) {
+		boolean ok = check(o, System.currentTimeMillis());
+		if (o.detached == null) {
+			if (ok) {
+				return true;
+			}
+			o.detached = subscriptionId;
+		} else if (ok && !o.downgraded && message.getPayload() instanceof byte[] b && b.length > 0
+				&& (b[0] & TelemetryEncoder.FLAG_KEYFRAME) != 0) {
+			// à jour : raccrochée au flux commun sur sa keyframe
+			o.detached = null;
+			return true;
+		}
+		o.dropped.incrementAndGet();
+		dropped.increment();
+		return false;
+	}
+
+	/* ============ Producteurs de télémétrie ============ */
+
+	/**
+	 * Vrai si une frame de télémétrie peut partir vers la session à ce tick ;
+	 * sinon le producteur saute le tick sans toucher à son encodeur
+	 */
+	public boolean admit(String sessionId, long tick) {
+		var o = outboxes.get(sessionId);
+		return !enabled || o == null || admit(o, tick);
+	}
+
+	private boolean admit(Outbox o, long tick) {
+		if (!check(o, System.currentTimeMillis())) {
+			o.dropped.incrementAndGet();
+			dropped.increment();
+			return false;
+		}
+		return !o.downgraded || tick % downgradeEvery == 0;
+	}
+
+	/** Abonnés de /topic/telemetry.bin actuellement servis en privé */
+	public List<Detached> detached() {
+		var out = new ArrayList<Detached>();
+		outboxes.forEach((id, o) -> {
+			String sub = o.detached;
+			if (sub != null) {
+				out.add(new Detached(id, sub));
+			}
+		});
+		return out;
+	}
+
+	public boolean isDetached(String sessionId) {
+		var o = outboxes.get(sessionId);
+		return o != null && o.detached != null;
+	}
+
+	/** Octets en attente vers la session (0 si inconnue) */
+	public long pendingBytes(String sessionId) {
+		var o = outboxes.get(sessionId);
+		return (o == null) ? 0 : o.pending();
+	}
+
+	public boolean isDowngraded(String sessionId) {
+		var o = outboxes.get(sessionId);
+		return o != null && o.downgraded;
+	}
+
+	/** Met à jour l'état de retard ; false si la session ne doit rien recevoir maintenant */
+	private boolean check(Outbox o, long now) {
+		if (o.pending() <= maxPendingBytes) {
+			o.behindSince = 0;
+			if (o.downgraded) {
+				if (o.caughtUpSince == 0) {
+					o.caughtUpSince = now;
+				} else if (now - o.caughtUpSince > recoverAfterMs) {
+					o.downgraded = false;
+				}
+			}
+			return true;
+		}
+		o.caughtUpSince = 0;
+		if (o.behindSince == 0) {
+			o.behindSince = now;
+		}
+		long behind = now - o.behindSince;
+		if (behind > closeAfterMs) {
+			closeSlow(o);
+		} else if (behind > downgradeAfterMs && !o.downgraded) {
+			o.downgraded = true;
+			downgrades.increment();
+		}
+		return false;
+	}
+
+	private void closeSlow(Outbox o) {
+		if (!o.closing) {
+			closed.increment();
+			logger.info("Session {} fermée : {} octets en attente depuis plus de {} ms", o.session.getId(),
+					o.pending(), closeAfterMs);
+			close(o);
+		}
+	}
+
+	private void closeOverflowing(Outbox o) {
+		if (!o.closing) {
+			closed.increment();
+			logger.info("Session {} fermée : plus de {} messages en attente d'écriture", o.session.getId(),
+					maxQueuedMessages);
+			close(o);
+		}
+	}
+
+	/** Fermeture hors du thread appelant (la trame de fermeture attend la fin de l'écriture en cours) */
+	private void close(Outbox o) {
+		if (o.closing) {
+			return;
+		}
+		o.closing = true;
+		CompletableFuture.runAsync(() -> {
+			try {
+				o.session.close(CloseStatus.SESSION_NOT_RELIABLE);
+			} catch (IOException e) {
+				logger.debug("Fermeture de la session {}", o.session.getId(), e);
+			}
+		});
+	}
+}
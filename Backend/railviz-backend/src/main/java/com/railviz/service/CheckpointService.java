@@ -0,0 +1,49 @@
+package com.railviz.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.railviz.persistence.TrainTable;
+
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Snapshots périodiques : bascule du journal, copie des routes et de la flotte,
+ * écriture mappée puis purge des segments couverts. Les événements journalisés
+ * pendant la copie sont rejoués par-dessus au redémarrage (rejeu idempotent).
+ */
+@Service
+@RequiredArgsConstructor
+public class CheckpointService {
+
+	private static final Logger logger = LoggerFactory.getLogger(CheckpointService.class);
+
+	private final PersistenceService persistence;
+	private final RouteService routes;
+	private final TrainService trains;
+
+	@Scheduled(fixedDelayString = "${railviz.persistence.snapshot-interval-ms:30000}", initialDelayString = "${railviz.persistence.snapshot-interval-ms:30000}")
+	public synchronized void checkpoint() {
+		if (!persistence.isEnabled()) {
+			return;
+		}
+		long lsn = persistence.beginCheckpoint();
+		var table = new TrainTable();
+		trains.exportTo(table);
+		persistence.writeCheckpoint(lsn, routes.snapshot(), table);
+		logger.debug("Snapshot écrit : {} trains (lsn {})", table.size(), lsn);
+	}
+
+	/** Dernier snapshot à l'arrêt : le redémarrage n'a presque rien à rejouer */
+	@PreDestroy
+	void onShutdown() {
+		try {
+			checkpoint();
+		} catch (RuntimeException e) {
+			logger.warn("Snapshot d'arrêt impossible, le journal sera rejoué", e);
+		}
+	}
+}
@@ -0,0 +1,128 @@
+package com.railviz.service;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Predicate;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.rabbit.connection.ConnectionFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.railviz.cluster.AmqpClusterTransport;
+import com.railviz.cluster.ClusterNode;
+import com.railviz.persistence.StoreEvent;
+import com.railviz.persistence.TrainTable;
+import com.railviz.telemetry.TelemetrySnapshot;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Mode cluster (railviz.cluster.enabled) : plusieurs instances se partagent la
+ * flotte par route au travers de RabbitMQ (cf. {@link ClusterNode}). Désactivé,
+ * l'instance possède tout et rien ne sort du processus.
+ */
+@Service
+@RequiredArgsConstructor
+public class ClusterService {
+
+	private static final Logger logger = LoggerFactory.getLogger(ClusterService.class);
+
+	private final ObjectProvider<ConnectionFactory> rabbit;
+	private final MeterRegistry meters;
+
+	@Value("${railviz.cluster.enabled:false}")
+	private boolean enabled;
+
+	/** Identifiant de l'instance (nom du pod par défaut) */
+	@Value("${railviz.cluster.node-id:${HOSTNAME:}}")
+	private String nodeId;
+
+	/** Instance considérée partie après ce délai sans battement de cœur */
+	@Value("${railviz.cluster.timeout-ms:3000}")
+	private long timeoutMs;
+
+	@Value("${railviz.telemetry.keyframe-interval:20}")
+	private int keyframeInterval;
+
+	@Value("${railviz.telemetry.position-threshold-m:1.0}")
+	private double positionThresholdM;
+
+	@Value("${railviz.telemetry.speed-threshold-kmh:0.5}")
+	private double speedThresholdKmh;
+
+	private ClusterNode node;
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	/** Rejoint le cluster ; appelé par TrainService une fois les routes chargées */
+	public void start(ClusterNode.Host host, Map<String, List<double[]>> routes, TrainTable trains) {
+		if (!enabled) {
+			return;
+		}
+		String id = nodeId.isBlank() ? UUID.randomUUID().toString() : nodeId;
+		node = new ClusterNode(new AmqpClusterTransport(rabbit.getObject(), id), timeoutMs, keyframeInterval,
+				positionThresholdM, speedThresholdKmh);
+		Gauge.builder("railviz.cluster.members", node, n -> n.view().size()).description("Instances vivantes")
+				.register(meters);
+		FunctionCounter.builder("railviz.cluster.relay.bytes", node, ClusterNode::relayedBytes).baseUnit("bytes")
+				.description("Télémétrie de la partition diffusée aux autres instances").register(meters);
+		node.start(host, routes, trains, System.currentTimeMillis());
+		logger.info("Cluster : instance {} en attente des autres ({} ms)", id, timeoutMs);
+	}
+
+	@Scheduled(fixedRateString = "${railviz.cluster.heartbeat-ms:1000}")
+	public void heartbeat() {
+		if (node != null) {
+			node.heartbeat(System.currentTimeMillis());
+		}
+	}
+
+	@PreDestroy
+	void leave() {
+		if (node != null) {
+			node.leave();
+		}
+	}
+
+	/** Vrai si la route est simulée par cette instance (toujours, hors cluster) */
+	public boolean owns(String routeId) {
+		return node == null || node.owns(routeId);
+	}
+
+	/** Diffuse une mutation déjà appliquée localement */
+	public void publish(StoreEvent event) {
+		if (node != null) {
+			node.publish(event);
+		}
+	}
+
+	/** Snapshots de la partition locale complétés de ceux des autres instances */
+	public TelemetrySnapshot[] relay(TelemetrySnapshot[] local) {
+		return (node == null) ? local : node.relay(local);
+	}
+
+	/* ============ Catalogue (mode cluster seulement) ============ */
+
+	public boolean knows(String trainId) {
+		return node != null && node.knows(trainId);
+	}
+
+	public StoreEvent.TrainState lookup(String trainId) {
+		return (node == null) ? null : node.lookup(trainId);
+	}
+
+	public List<StoreEvent.TrainState> trains(Predicate<StoreEvent.TrainState> filter) {
+		return (node == null) ? List.of() : node.trains(filter);
+	}
+}
@@ -0,0 +1,163 @@
+package com.railviz.service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.railviz.history.ChunkWriter;
+import com.railviz.history.HistoryStore;
+import com.railviz.model.HistoryRange;
+import com.railviz.model.TrajectoryPoint;
+import com.railviz.telemetry.TelemetrySnapshot;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Enregistrement de la télémétrie pour rejeu (cf. {@link HistoryStore}) : le
+ * tick ajoute sa photo de la flotte au chunk courant, un thread dédié
+ * compresse et écrit les chunks pleins. Un chunk n'est relisible qu'une fois
+ * écrit (au plus chunk-ticks de retard sur le direct).
+ */
+@Service
+@RequiredArgsConstructor
+public class HistoryService {
+
+	private static final Logger logger = LoggerFactory.getLogger(HistoryService.class);
+
+	private final MeterRegistry meters;
+
+	@Value("${railviz.history.enabled:true}")
+	private boolean enabled;
+
+	@Value("${railviz.history.dir:data/history}")
+	private Path dir;
+
+	/** Ticks par chunk (240 = une minute à 4 Hz) */
+	@Value("${railviz.history.chunk-ticks:240}")
+	private int chunkTicks;
+
+	/** Borne de lignes par chunk (grosses flottes : la mémoire du chunk en cours) */
+	@Value("${railviz.history.chunk-rows:2000000}")
+	private int chunkRows;
+
+	@Value("${railviz.history.segment-minutes:60}")
+	private long segmentMinutes;
+
+	@Value("${railviz.history.retention-hours:24}")
+	private long retentionHours;
+
+	private HistoryStore store;
+	private ChunkWriter current = new ChunkWriter();
+	private ExecutorService writer;
+	private Counter chunks;
+	private Counter bytes;
+
+	@PostConstruct
+	void open() throws IOException {
+		if (!enabled) {
+			return;
+		}
+		store = new HistoryStore(dir, TimeUnit.MINUTES.toMillis(segmentMinutes));
+		writer = Executors.newSingleThreadExecutor(r -> {
+			var t = new Thread(r, "history-writer");
+			t.setDaemon(true);
+			return t;
+		});
+		chunks = Counter.builder("railviz.history.chunks").description("Chunks d'historique écrits").register(meters);
+		bytes = Counter.builder("railviz.history.bytes").baseUnit("bytes")
+				.description("Octets d'historique écrits (compressés)").register(meters);
+		logger.info("Historique de télémétrie dans {}", dir.toAbsolutePath());
+	}
+
+	@PreDestroy
+	synchronized void close() throws IOException, InterruptedException {
+		if (store == null) {
+			return;
+		}
+		if (!current.isEmpty()) {
+			seal();
+		}
+		writer.shutdown();
+		writer.awaitTermination(30, TimeUnit.SECONDS);
+		store.close();
+		store = null;
+	}
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	/** Appelé par le tick, après la barrière des shards */
+	public synchronized void record(long now, TelemetrySnapshot... parts) {
+		if (store == null) {
+			return;
+		}
+		current.append(now, parts);
+		if (current.ticks() >= chunkTicks || current.rows() >= chunkRows) {
+			seal();
+		}
+	}
+
+	/** Confie le chunk plein au thread d'écriture et en ouvre un neuf */
+	private void seal() {
+		var full = current;
+		current = new ChunkWriter();
+		var target = store;
+		writer.execute(() -> {
+			try {
+				var c = full.encode();
+				if (target.append(c)) {
+					target.prune(c.last() - TimeUnit.HOURS.toMillis(retentionHours));
+				}
+				chunks.increment();
+				bytes.increment(c.size());
+			} catch (IOException | RuntimeException e) {
+				logger.warn("Chunk d'historique perdu", e);
+			}
+		});
+	}
+
+	/** Période enregistrée, null si rien (ou historique désactivé) */
+	public HistoryRange range() {
+		if (store == null) {
+			return null;
+		}
+		try {
+			return store.range();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	public HistoryStore.Cursor open(long from, long to) {
+		try {
+			return store.open(from, to);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	public List<TrajectoryPoint> trajectory(String trainId, long from, long to, long stepMs, int maxPoints) {
+		if (store == null) {
+			return List.of();
+		}
+		try {
+			return store.trajectory(trainId, from, to, stepMs, maxPoints);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+}
@@ -0,0 +1,165 @@
+package com.railviz.service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.railviz.persistence.RecoveredState;
+import com.railviz.persistence.Snapshot;
+import com.railviz.persistence.StoreEvent;
+import com.railviz.persistence.TrainTable;
+import com.railviz.persistence.WriteAheadLog;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Persistance embarquée (sans base externe) : chaque mutation de route ou de
+ * train est ajoutée au journal (WAL) avant d'être visible, et un snapshot
+ * mappé en mémoire de toute la flotte est écrit périodiquement (cf.
+ * CheckpointService). Au démarrage : dernier snapshot, puis rejeu du journal.
+ * Le répertoire est verrouillé : chaque instance (réplica) doit avoir le sien.
+ */
+@Service
+@RequiredArgsConstructor
+public class PersistenceService {
+
+	private static final Logger logger = LoggerFactory.getLogger(PersistenceService.class);
+	private static final String SNAPSHOT = "snapshot.bin";
+	private static final String LOCK = "lock";
+
+	private final MeterRegistry meters;
+
+	@Value("${railviz.persistence.enabled:true}")
+	private boolean enabled;
+
+	@Value("${railviz.persistence.dir:data}")
+	private Path dir;
+
+	/** fsync à chaque écriture (survit à une coupure machine, au prix de la latence) */
+	@Value("${railviz.persistence.fsync:false}")
+	private boolean fsync;
+
+	private FileChannel lockChannel;
+	private WriteAheadLog wal;
+	private RecoveredState recovered;
+	private Counter appends;
+	private Timer checkpoints;
+
+	@PostConstruct
+	void open() throws IOException {
+		appends = Counter.builder("railviz.persistence.wal.appends").description("Événements journalisés")
+				.register(meters);
+		checkpoints = Timer.builder("railviz.persistence.snapshot").description("Écriture d'un snapshot")
+				.register(meters);
+		if (!enabled) {
+			recovered = RecoveredState.empty();
+			return;
+		}
+		long t0 = System.nanoTime();
+		Files.createDirectories(dir);
+		lock();
+		var snap = dir.resolve(SNAPSHOT);
+		recovered = Files.exists(snap) ? Snapshot.read(snap) : RecoveredState.empty();
+		wal = new WriteAheadLog(dir, fsync);
+		wal.replay(recovered.lsn(), recovered::apply);
+		logger.info("Persistance {} : {} routes, {} trains restaurés en {} ms (lsn {})", dir.toAbsolutePath(),
+				recovered.routes().size(), recovered.trains().size(),
+				TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - t0), wal.lastLsn());
+	}
+
+	@PreDestroy
+	void close() throws IOException {
+		if (wal != null) {
+			wal.close();
+		}
+		if (lockChannel != null) {
+			lockChannel.close();
+		}
+	}
+
+	/** Verrou exclusif du répertoire : deux instances sur le même journal le corrompraient */
+	private void lock() throws IOException {
+		lockChannel = FileChannel.open(dir.resolve(LOCK), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+		FileLock lock;
+		try {
+			lock = lockChannel.tryLock();
+		} catch (OverlappingFileLockException e) {
+			// déjà verrouillé dans cette JVM
+			lock = null;
+		} catch (IOException e) {
+			lockChannel.close();
+			throw e;
+		}
+		if (lock == null) {
+			lockChannel.close();
+			lockChannel = null;
+			throw new IllegalStateException("répertoire de persistance " + dir.toAbsolutePath()
+					+ " déjà utilisé par une autre instance (railviz.persistence.dir, un par réplica)");
+		}
+	}
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	/** État relu au démarrage (vide et "fresh" au premier lancement ou si désactivé) */
+	public RecoveredState recovered() {
+		return recovered;
+	}
+
+	/** Libère l'état de démarrage une fois la flotte restaurée */
+	public void releaseRecovered() {
+		recovered = RecoveredState.empty();
+	}
+
+	/** Journalise une mutation ; à appeler avant de la rendre visible aux clients */
+	public void log(StoreEvent event) {
+		if (wal != null) {
+			wal.append(event);
+			appends.increment();
+		}
+	}
+
+	/**
+	 * Début de checkpoint : bascule le journal sur un nouveau segment et renvoie
+	 * le dernier lsn de l'ancien. L'état capturé ensuite contient au moins tout
+	 * ce qui précède ce lsn.
+	 */
+	public long beginCheckpoint() {
+		try {
+			return wal.roll();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/** Écrit le snapshot puis supprime les segments qu'il couvre */
+	public void writeCheckpoint(long lsn, Map<String, List<double[]>> routes, TrainTable trains) {
+		checkpoints.record(() -> {
+			try {
+				Snapshot.write(dir.resolve(SNAPSHOT), lsn, routes, trains);
+				wal.deleteUpTo(lsn);
+			} catch (IOException e) {
+				throw new UncheckedIOException("échec du snapshot", e);
+			}
+		});
+	}
+}
@@ -0,0 +1,222 @@
+package com.railviz.service;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+
+import com.railviz.history.HistoryStore;
+import com.railviz.model.ReplayCommand;
+import com.railviz.model.ReplayStatus;
+import com.railviz.telemetry.TelemetryEncoder;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Rejeu de l'historique, une session STOMP à la fois : les frames sont
+ * envoyées sur /user/queue/replay.bin au même format que le direct (cf.
+ * {@link TelemetryEncoder}, keyframe d'abord), au rythme de l'enregistrement
+ * accéléré 1 à 100 fois. Les ticks qui tomberaient sous l'intervalle minimal
+ * entre frames sont sautés : le delta suivant part de la dernière valeur
+ * envoyée, la position reste exacte. Début, fin et arrêt sont annoncés sur
+ * /user/queue/replay.
+ */
+@Service
+@RequiredArgsConstructor
+public class ReplayService {
+
+	private static final Logger logger = LoggerFactory.getLogger(ReplayService.class);
+
+	public static final String FRAME_QUEUE = "/queue/replay.bin";
+	public static final String STATUS_QUEUE = "/queue/replay";
+
+	private final HistoryService history;
+	private final SimpMessagingTemplate ws;
+	private final MeterRegistry meters;
+	private final BackpressureService backpressure;
+
+	@Value("${railviz.history.replay.max-speed:100}")
+	private double maxSpeed;
+
+	/** Intervalle minimal entre deux frames d'un rejeu (ms) */
+	@Value("${railviz.history.replay.min-frame-ms:50}")
+	private long minFrameMs;
+
+	@Value("${railviz.telemetry.keyframe-interval:20}")
+	private int keyframeInterval;
+
+	@Value("${railviz.telemetry.position-threshold-m:1.0}")
+	private double positionThresholdM;
+
+	@Value("${railviz.telemetry.speed-threshold-kmh:0.5}")
+	private double speedThresholdKmh;
+
+	private final Map<String, Replay> replays = new ConcurrentHashMap<>();
+	private ScheduledExecutorService timer;
+	private Timer startTimer;
+	private Counter frames;
+
+	@PostConstruct
+	void init() {
+		timer = Executors.newScheduledThreadPool(2, r -> {
+			var t = new Thread(r, "replay");
+			t.setDaemon(true);
+			return t;
+		});
+		startTimer = Timer.builder("railviz.history.replay.start")
+				.description("Ouverture d'un rejeu jusqu'à l'envoi de sa première frame").register(meters);
+		frames = Counter.builder("railviz.history.replay.frames").description("Frames de rejeu envoyées")
+				.register(meters);
+		Gauge.builder("railviz.history.replay.sessions", replays, Map::size).register(meters);
+	}
+
+	@PreDestroy
+	void shutdown() {
+		timer.shutdownNow();
+	}
+
+	@EventListener
+	public void onDisconnect(SessionDisconnectEvent event) {
+		var r = replays.remove(event.getSessionId());
+		if (r != null) {
+			r.cancel();
+		}
+	}
+
+	/** Lance (ou relance) le rejeu de la session ; la première frame part avant le retour */
+	public void start(String sessionId, ReplayCommand cmd) {
+		stop(sessionId, false);
+		var range = history.range();
+		double speed = Math.max(1, Math.min(maxSpeed, (cmd.speed() == null) ? 1 : cmd.speed()));
+		if (range == null) {
+			sendStatus(sessionId, new ReplayStatus("EMPTY", null, null, speed));
+			return;
+		}
+		long from = (cmd.from() == null) ? range.from() : cmd.from();
+		long to = (cmd.to() == null) ? range.to() : cmd.to();
+
+		long t0 = System.nanoTime();
+		var r = new Replay(sessionId, history.open(from, to), speed, from, to);
+		if (r.cursor.peek() == Long.MAX_VALUE) {
+			sendStatus(sessionId, new ReplayStatus("EMPTY", from, to, speed));
+			return;
+		}
+		replays.put(sessionId, r);
+		sendStatus(sessionId, new ReplayStatus("STARTED", from, to, speed));
+		r.step();
+		startTimer.record(System.nanoTime() - t0, TimeUnit.NANOSECONDS);
+	}
+
+	public void stop(String sessionId) {
+		stop(sessionId, true);
+	}
+
+	private void stop(String sessionId, boolean notify) {
+		var r = replays.remove(sessionId);
+		if (r != null) {
+			r.cancel();
+			if (notify) {
+				sendStatus(sessionId, new ReplayStatus("STOPPED", r.from, r.to, r.speed));
+			}
+		}
+	}
+
+	/** Un rejeu : horloge virtuelle calée sur son premier tick */
+	private final class Replay {
+		final String sessionId;
+		final HistoryStore.Cursor cursor;
+		final TelemetryEncoder encoder;
+		final double speed;
+		final long from, to;
+		final long origin;
+		final long wallStart = System.nanoTime();
+		ScheduledFuture<?> pending;
+		boolean cancelled;
+		long steps;
+
+		Replay(String sessionId, HistoryStore.Cursor cursor, double speed, long from, long to) {
+			this.sessionId = sessionId;
+			this.cursor = cursor;
+			this.speed = speed;
+			this.from = from;
+			this.to = to;
+			this.origin = cursor.peek();
+			this.encoder = new TelemetryEncoder(keyframeInterval, positionThresholdM, speedThresholdKmh);
+		}
+
+		synchronized void cancel() {
+			cancelled = true;
+			if (pending != null) {
+				pending.cancel(false);
+			}
+		}
+
+		/** Envoie le dernier tick échu puis se replanifie pour le suivant */
+		synchronized void step() {
+			if (cancelled) {
+				return;
+			}
+			try {
+				long virtual = origin + (long) ((System.nanoTime() - wallStart) / 1e6 * speed);
+				boolean moved = false;
+				while (cursor.peek() <= virtual) {
+					cursor.next();
+					moved = true;
+				}
+				// client en retard : la frame suivante part de la dernière valeur envoyée
+				if (moved && backpressure.admit(sessionId, steps++)) {
+					byte[] frame = encoder.encode(cursor.snapshot());
+					if (frame != null) {
+						send(sessionId, frame);
+						frames.increment();
+					}
+				}
+				long next = cursor.peek();
+				if (next == Long.MAX_VALUE) {
+					replays.remove(sessionId, this);
+					sendStatus(sessionId, new ReplayStatus("ENDED", from, to, speed));
+					return;
+				}
+				long delay = Math.max(minFrameMs, (long) Math.ceil((next - virtual) / speed));
+				pending = timer.schedule(this::step, delay, TimeUnit.MILLISECONDS);
+			} catch (RuntimeException e) {
+				logger.warn("Rejeu interrompu pour la session {}", sessionId, e);
+				replays.remove(sessionId, this);
+				sendStatus(sessionId, new ReplayStatus("STOPPED", from, to, speed));
+			}
+		}
+	}
+
+	private void send(String sessionId, byte[] frame) {
+		ws.convertAndSendToUser(sessionId, FRAME_QUEUE, frame, headers(sessionId));
+	}
+
+	private void sendStatus(String sessionId, ReplayStatus status) {
+		ws.convertAndSendToUser(sessionId, STATUS_QUEUE, status, headers(sessionId));
+	}
+
+	private static Map<String, Object> headers(String sessionId) {
+		var h = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+		h.setSessionId(sessionId);
+		h.setLeaveMutable(true);
+		return h.getMessageHeaders();
+	}
+}
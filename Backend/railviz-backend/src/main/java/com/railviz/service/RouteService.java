@@ -1,5 +1,6 @@
 package com.railviz.service;
 
+import java.util.ArrayList;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -9,58 +10,137 @@ import org.springframework.stereotype.Service;
 
 import com.railviz.model.RouteDTO;
 import com.railviz.model.RouteWsEvent;
+import com.railviz.persistence.StoreEvent;
 
 import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 
+/**
+ * Routes en mémoire, journalisées par PersistenceService et diffusées aux
+ * autres instances en mode cluster. Les mutations sont sérialisées sur
+ * l'instance : l'ordre du journal est celui des modifications.
+ */
 @Service
 @RequiredArgsConstructor
 public class RouteService {
 	private final SimpMessagingTemplate ws;
+	private final PersistenceService persistence;
+	private final ClusterService cluster;
 	private final Map<String, List<double[]>> store = new LinkedHashMap<>();
 
 	@PostConstruct
-	void seed() {
+	synchronized void seed() {
 		if (!store.isEmpty()) {
 			return;
 		}
+		var recovered = persistence.recovered();
+		if (!recovered.isFresh()) {
+			store.putAll(recovered.routes());
+			return;
+		}
 		store.put("T1", List.of(new double[] { 48.9000, 2.2900 }, new double[] { 48.8900, 2.3100 },
 				new double[] { 48.8750, 2.3400 }, new double[] { 48.8650, 2.3700 }, new double[] { 48.8550, 2.4000 }));
 		store.put("T2", List.of(new double[] { 48.8829, 2.3335 }, new double[] { 48.8710, 2.3339 },
 				new double[] { 48.8612, 2.3466 }, new double[] { 48.8530, 2.3499 }, new double[] { 48.8403, 2.3606 }));
 		store.put("T3", List.of(new double[] { 48.8700, 2.3700 }, new double[] { 48.8600, 2.3550 },
 				new double[] { 48.8500, 2.3400 }, new double[] { 48.8400, 2.3300 }));
+		store.forEach((id, pts) -> persistence.log(new StoreEvent.RoutePut(id, pts)));
 	}
 
-	public List<RouteDTO> routes() {
-		return store.entrySet().stream().map(e -> new RouteDTO(e.getKey(), e.getValue())).toList();
+	public synchronized List<RouteDTO> routes() {
+		return store.entrySet().stream().map(e -> new RouteDTO(e.getKey(), copy(e.getValue()))).toList();
+	}
+
+	/** Copie cohérente de toutes les routes (snapshot) */
+	public synchronized Map<String, List<double[]>> snapshot() {
+		var out = new LinkedHashMap<String, List<double[]>>();
+		store.forEach((id, pts) -> out.put(id, copy(pts)));
+		return out;
 	}
 
 	public void addRoute(RouteDTO r) {
-		store.put(r.id(), r.points());
-		ws.convertAndSend("/topic/routes", RouteWsEvent.add(r));
+		mutate(new StoreEvent.RoutePut(r.id(), copy(r.points())));
 	}
 
+	/** La route doit exister au moment où la mise à jour est appliquée */
 	public void updateRoute(RouteDTO r) {
-		if (!store.containsKey(r.id())) {
+		if (!mutate(new StoreEvent.RouteUpdate(r.id(), copy(r.points())))) {
 			throw new IllegalArgumentException("route inconnue");
 		}
-		store.put(r.id(), r.points());
-		ws.convertAndSend("/topic/routes", RouteWsEvent.update(r));
 	}
 
 	public void deleteRoute(String id) {
-		if (store.remove(id) != null) {
-			ws.convertAndSend("/topic/routes", RouteWsEvent.delete(id));
+		mutate(new StoreEvent.RouteDelete(id));
+	}
+
+	/**
+	 * Applique puis diffuse aux autres instances (hors verrou : le cluster rappelle
+	 * apply). Faux si la mutation est sans effet : rien n'est diffusé.
+	 */
+	private boolean mutate(StoreEvent event) {
+		if (!applied(event)) {
+			return false;
 		}
+		cluster.publish(event);
+		return true;
 	}
 
-	public List<double[]> get(String id) {
-		return store.get(id);
+	/** Applique une mutation de route, locale ou reçue du cluster : journal, mémoire, WS */
+	public void apply(StoreEvent event) {
+		applied(event);
 	}
 
-	public boolean exists(String id) {
+	/** Comme {@link #apply}, faux si la route à modifier ou supprimer n'existe pas */
+	private synchronized boolean applied(StoreEvent event) {
+		switch (event) {
+		case StoreEvent.RoutePut r -> {
+			boolean known = store.containsKey(r.id());
+			var pts = copy(r.points());
+			persistence.log(r);
+			store.put(r.id(), pts);
+			var dto = new RouteDTO(r.id(), pts);
+			ws.convertAndSend("/topic/routes", known ? RouteWsEvent.update(dto) : RouteWsEvent.add(dto));
+			return true;
+		}
+		case StoreEvent.RouteUpdate r -> {
+			if (!store.containsKey(r.id())) {
+				return false;
+			}
+			var pts = copy(r.points());
+			persistence.log(r);
+			store.put(r.id(), pts);
+			ws.convertAndSend("/topic/routes", RouteWsEvent.update(new RouteDTO(r.id(), pts)));
+			return true;
+		}
+		case StoreEvent.RouteDelete r -> {
+			if (store.remove(r.id()) == null) {
+				return false;
+			}
+			persistence.log(r);
+			ws.convertAndSend("/topic/routes", RouteWsEvent.delete(r.id()));
+			return true;
+		}
+		default -> throw new IllegalArgumentException("pas une mutation de route : " + event);
+		}
+	}
+
+	/** Copie des points : ceux de la mémoire, déjà journalisés, ne sortent pas du service */
+	public synchronized List<double[]> get(String id) {
+		var pts = store.get(id);
+		return pts == null ? null : copy(pts);
+	}
+
+	public synchronized boolean exists(String id) {
 		var r = store.get(id);
 		return r != null && !r.isEmpty();
 	}
+
+	/** Copie profonde (liste immuable, tableaux neufs) des points d'une route */
+	private static List<double[]> copy(List<double[]> pts) {
+		var out = new ArrayList<double[]>(pts.size());
+		for (double[] p : pts) {
+			out.add(new double[] { p[0], p[1] });
+		}
+		return List.copyOf(out);
+	}
 }
@@ -0,0 +1,158 @@
+package com.railviz.service;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Service;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.web.socket.messaging.SessionSubscribeEvent;
+
+import com.railviz.model.TrainDTO;
+import com.railviz.telemetry.TelemetryEncoder;
+import com.railviz.telemetry.TelemetrySnapshot;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Publication de la télémétrie : une frame binaire delta par tick sur
+ * /topic/telemetry.bin (cf. {@link TelemetryEncoder}), plus les flux filtrés
+ * par viewport ({@link ViewportTelemetryService}). L'ancien flux JSON (un
+ * TrainDTO par train sur /topic/telemetry) reste activable pour les vieux
+ * clients. Un abonné trop lent pour le flux commun est servi à part, par son
+ * propre encodeur (cf. {@link BackpressureService}).
+ */
+@Service
+@RequiredArgsConstructor
+public class TelemetryPublisher {
+
+	public static final String BINARY_TOPIC = "/topic/telemetry.bin";
+	public static final String JSON_TOPIC = "/topic/telemetry";
+
+	private static final String[] SIGNALS = { "GREEN", "YELLOW", "RED" };
+
+	private final SimpMessagingTemplate ws;
+	private final MeterRegistry meters;
+	private final ViewportTelemetryService viewports;
+	private final BackpressureService backpressure;
+
+	/** Envoi direct à une session, sans passer par le broker (flux privés) */
+	@Autowired
+	@Qualifier("clientOutboundChannel")
+	private MessageChannel clientOutbound;
+
+	@Value("${railviz.telemetry.keyframe-interval:20}")
+	private int keyframeInterval;
+
+	@Value("${railviz.telemetry.position-threshold-m:1.0}")
+	private double positionThresholdM;
+
+	@Value("${railviz.telemetry.speed-threshold-kmh:0.5}")
+	private double speedThresholdKmh;
+
+	/** Flux JSON historique (un message par train et par tick) */
+	@Value("${railviz.telemetry.json:false}")
+	private boolean json;
+
+	private TelemetryEncoder encoder;
+	private volatile boolean keyframeWanted;
+	private long ticks;
+
+	/** Encodeurs des abonnés détachés du flux commun : conflation par train */
+	private final Map<String, TelemetryEncoder> detached = new ConcurrentHashMap<>();
+
+	private DistributionSummary frameBytes;
+	private Timer encodeTimer;
+
+	@PostConstruct
+	void init() {
+		encoder = new TelemetryEncoder(keyframeInterval, positionThresholdM, speedThresholdKmh);
+		frameBytes = DistributionSummary.builder("railviz.telemetry.frame.bytes").baseUnit("bytes")
+				.description("Taille des frames de télémétrie binaire").register(meters);
+		encodeTimer = Timer.builder("railviz.telemetry.encode").description("Encodage d'une frame de télémétrie")
+				.register(meters);
+	}
+
+	/** Un nouvel abonné reçoit une keyframe dès le tick suivant */
+	@EventListener
+	public void onSubscribe(SessionSubscribeEvent event) {
+		// lecture directe : copier les en-têtes (wrap) croise leur mise à jour par le canal entrant
+		if (BINARY_TOPIC.equals(SimpMessageHeaderAccessor.getDestination(event.getMessage().getHeaders()))) {
+			keyframeWanted = true;
+		}
+	}
+
+	/**
+	 * Abonnés en retard : chacun repart d'une keyframe de son propre encodeur,
+	 * puis reçoit la dernière valeur de chaque train quand il peut suivre
+	 */
+	private void publishDetached(long tick, TelemetrySnapshot... parts) {
+		for (var d : backpressure.detached()) {
+			var enc = detached.computeIfAbsent(d.sessionId(),
+					id -> new TelemetryEncoder(keyframeInterval, positionThresholdM, speedThresholdKmh));
+			if (!backpressure.admit(d.sessionId(), tick)) {
+				continue;
+			}
+			byte[] frame = enc.encode(parts);
+			if (frame != null) {
+				var h = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+				h.setSessionId(d.sessionId());
+				h.setSubscriptionId(d.subscriptionId());
+				h.setDestination(BINARY_TOPIC);
+				h.setContentType(MimeTypeUtils.APPLICATION_OCTET_STREAM);
+				h.setHeader(BackpressureService.PRIVATE_HEADER, true);
+				clientOutbound.send(MessageBuilder.createMessage(frame, h.getMessageHeaders()));
+			}
+		}
+		if (!detached.isEmpty()) {
+			// raccrochées au flux commun (ou déconnectées)
+			detached.keySet().removeIf(id -> !backpressure.isDetached(id));
+		}
+	}
+
+	/** Appelé par le tick (un seul thread), après la barrière des shards */
+	public void publish(TelemetrySnapshot... parts) {
+		if (keyframeWanted) {
+			keyframeWanted = false;
+			encoder.requestKeyframe();
+		}
+		long tick = ticks++;
+		long t0 = System.nanoTime();
+		byte[] frame = encoder.encode(parts);
+		encodeTimer.record(System.nanoTime() - t0, TimeUnit.NANOSECONDS);
+		if (frame != null) {
+			frameBytes.record(frame.length);
+			ws.convertAndSend(BINARY_TOPIC, frame);
+		}
+		publishDetached(tick, parts);
+
+		// abonnés filtrés par viewport
+		viewports.publish(parts);
+
+		if (json) {
+			// le tick permet à la contre-pression de sauter les ticks entiers d'une session en retard
+			for (var p : parts) {
+				for (int i = 0; i < p.size(); i++) {
+					var h = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+					h.setHeader(BackpressureService.TICK_HEADER, tick);
+					h.setLeaveMutable(true);
+					ws.convertAndSend(JSON_TOPIC, new TrainDTO(p.id(i), p.lat(i), p.lon(i), p.speedKmh(i),
+							SIGNALS[p.signal(i)], p.routeId(i)), h.getMessageHeaders());
+				}
+			}
+		}
+	}
+}
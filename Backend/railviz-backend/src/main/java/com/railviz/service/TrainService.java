@@ -1,31 +1,50 @@
 package com.railviz.service;
 
-import java.util.Arrays;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
+import com.railviz.cluster.ClusterNode;
 import com.railviz.model.RouteDTO;
 import com.railviz.model.TrainDTO;
 import com.railviz.model.TrainWsEvent;
-
+import com.railviz.persistence.StoreEvent;
+import com.railviz.persistence.TrainTable;
+import com.railviz.simulation.FleetEngine;
+import com.railviz.simulation.ShardedFleet;
+import com.railviz.telemetry.TelemetrySnapshot;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 
 @Service
 @RequiredArgsConstructor
-public class TrainService {
+public class TrainService implements ClusterNode.Host {
 
 	private final RouteService routeService;
 	private final SimpMessagingTemplate ws;
+	private final MeterRegistry meters;
+	private final TelemetryPublisher telemetry;
+	private final PersistenceService persistence;
+	private final ClusterService cluster;
+	private final HistoryService history;
 
 	/** Tick (s) */
-	private static final double DT = 0.25;
+	private static final double DT = FleetEngine.DT;
 
 	/** Énumérations d’état */
 	public static enum Phase {
@@ -36,278 +55,223 @@ public class TrainService {
 		GREEN, YELLOW, RED
 	}
 
-	/** Cache par route : points + cumul des distances */
-	static final class RouteGeom {
-		final List<double[]> pts;
-		final double[] cum; // cum[i] = distance (m) du point i depuis le début
-		final double length; // longueur totale (m)
-
-		RouteGeom(List<double[]> pts, double[] cum, double length) {
-			this.pts = pts;
-			this.cum = cum;
-			this.length = length;
-		}
-	}
-
-	/** État d’un train (en mètres / m/s / secondes) */
+	/** Vue d’un train (en mètres / m/s), instantané lu depuis le moteur de flotte */
 	public static final class TrainState {
 		String id;
 		String routeId;
 		double s; // distance courante le long de la route [0..L]
-		int dir; // +1 aller, -1 retour
 		double v; // vitesse instantanée (m/s)
-		double vMax; // vitesse de pointe (m/s)
-		double a; // accélération (m/s²)
-		double d; // décélération (m/s²) (positif, on soustrait)
 		Phase phase; // DWELL / ACCEL / CRUISE / DECEL
-		long dwellUntil; // timestamp fin de DWELL, si phase=DWELL
-		double decelStart;
 
-		TrainState(String id, String routeId, double s, int dir, double vMax, double a, double d) {
+		TrainState(String id, String routeId, double s, double v, Phase phase) {
 			this.id = id;
 			this.routeId = routeId;
 			this.s = s;
-			this.dir = dir;
-			this.v = 0.0;
-			this.vMax = vMax;
-			this.a = a;
-			this.d = d;
-			this.phase = Phase.DWELL;
-			this.dwellUntil = System.currentTimeMillis(); // sera ajusté
-			this.decelStart = 0;
+			this.v = v;
+			this.phase = phase;
 		}
 	}
 
-	private final Map<String, TrainState> trains = new ConcurrentHashMap<>();
-	private final Map<String, RouteGeom> routes = new ConcurrentHashMap<>();
+	/** Flotte découpée en shards par route (tableaux primitifs, un verrou par shard) */
+	private ShardedFleet fleet;
+	private ForkJoinPool tickPool;
+	/** Télémétrie du tick, un snapshot réutilisé par shard */
+	private TelemetrySnapshot[] snapshots;
+
+	/** Nombre de shards (0 = nombre de cœurs) */
+	@Value("${railviz.simulation.shards:0}")
+	private int shardCount;
+
+	/** Mode événementiel : seuls les trains dont une transition est échue sont traités */
+	@Value("${railviz.simulation.event-driven:false}")
+	private boolean eventDriven;
+
+	/** Nombre max de ticks en retard fusionnés en un seul pas */
+	@Value("${railviz.simulation.max-coalesced-ticks:4}")
+	private int maxCoalescedTicks;
 
 	/** Paramètres globaux (peuvent être mis par train si tu veux) */
-	private static final long DWELL_MS = 5000; // arrêt à chaque extrémité
+	private static final long DWELL_MS = FleetEngine.DWELL_MS; // arrêt à chaque extrémité
 	private static final double DEFAULT_A = 0.5; // m/s²
 	private static final double DEFAULT_D = 0.9; // m/s² (freine un peu plus fort)
+	private static final long PERIOD_MS = (long) (DT * 1000);
 
-	/** Utilitaires géométrie */
-	private static double hav(double lat1, double lon1, double lat2, double lon2) {
-		double R = 6371e3;
-		double p1 = Math.toRadians(lat1), p2 = Math.toRadians(lat2);
-		double dp = Math.toRadians(lat2 - lat1), dl = Math.toRadians(lon2 - lon1);
-		double a = Math.sin(dp / 2) * Math.sin(dp / 2)
-				+ Math.cos(p1) * Math.cos(p2) * Math.sin(dl / 2) * Math.sin(dl / 2);
-		return 2 * R * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
-	}
-
-	private static RouteGeom buildGeom(List<double[]> pts) {
-		double[] cum = new double[pts.size()];
-		double acc = 0;
-		cum[0] = 0;
-		for (int i = 0; i < pts.size() - 1; i++) {
-			double[] A = pts.get(i), B = pts.get(i + 1);
-			acc += hav(A[0], A[1], B[0], B[1]);
-			cum[i + 1] = acc;
-		}
-		return new RouteGeom(pts, cum, acc);
-	}
+	private static final Phase[] PHASES = Phase.values();
+	private static final Sig[] SIGNALS = { Sig.RED, Sig.YELLOW, Sig.GREEN, Sig.YELLOW };
 
-	/** interpolation : à partir de s (m), retourne lat/lon */
-	private static double[] pointAt(RouteGeom g, double s) {
-		if (s <= 0) {
-			return g.pts.get(0);
-		}
-		if (s >= g.length) {
-			return g.pts.get(g.pts.size() - 1);
-		}
-		// binaire ou linéaire: ici linéaire
-		int i = Arrays.binarySearch(g.cum, s);
-		if (i >= 0) {
-			return g.pts.get(i);
-		}
-		int j = -i - 1; // insertion point
-		int i0 = j - 1;
-		double s0 = g.cum[i0], s1 = g.cum[j];
-		double t = (s - s0) / (s1 - s0 + 1e-9);
-		double[] A = g.pts.get(i0), B = g.pts.get(j);
-		double lat = A[0] + (B[0] - A[0]) * t;
-		double lon = A[1] + (B[1] - A[1]) * t;
-		return new double[] { lat, lon };
-	}
+	/** Métriques du tick (exposées par /actuator/metrics) */
+	private Timer tickTimer;
+	private Counter overruns;
+	private Counter coalesced;
+	/** Début du dernier tick exécuté (ms), 0 avant le premier */
+	private long lastTickAt;
 
 	/** init routes + (facultatif) quelques trains */
 	@PostConstruct
 	void init() {
+		int n = (shardCount > 0) ? shardCount : Runtime.getRuntime().availableProcessors();
+		tickPool = new ForkJoinPool(n);
+		fleet = new ShardedFleet(n, eventDriven, tickPool);
+		snapshots = new TelemetrySnapshot[n];
+		for (int k = 0; k < n; k++) {
+			snapshots[k] = new TelemetrySnapshot();
+		}
+
+		tickTimer = Timer.builder("railviz.tick.duration").description("Durée d'un tick de simulation")
+				.publishPercentiles(0.5, 0.95, 0.99).register(meters);
+		overruns = Counter.builder("railviz.tick.overruns").description("Ticks plus longs que la période")
+				.register(meters);
+		coalesced = Counter.builder("railviz.tick.coalesced").description("Ticks en retard fusionnés")
+				.register(meters);
+		Gauge.builder("railviz.trains", fleet, ShardedFleet::size).register(meters);
+
 		// charger/cacher les routes existantes
 		for (RouteDTO r : routeService.routes()) {
-			routes.put(r.id(), buildGeom(r.points()));
+			fleet.putRoute(r.id(), r.points());
 		}
-		// tu peux supprimer ces trains seed si tu veux
-		if (routes.containsKey("T1")) {
-			trains.put("TGV-001", new TrainState("TGV-001", "T1", 0, +1, 160 / 3.6, DEFAULT_A, DEFAULT_D));
+		// reprise de la flotte persistée, sinon trains seed
+		var recovered = persistence.recovered();
+		TrainTable trains = recovered.isFresh() ? seed() : recovered.trains();
+		persistence.releaseRecovered();
+		if (cluster.isEnabled()) {
+			// la partition locale est décidée avec les autres instances
+			cluster.start(this, routeService.snapshot(), trains);
+			return;
 		}
-		if (routes.containsKey("T2")) {
-			trains.put("TER-021", new TrainState("TER-021", "T2", 0, +1, 100 / 3.6, DEFAULT_A, DEFAULT_D));
-		}
-		if (routes.containsKey("T3")) {
-			trains.put("RER-A7", new TrainState("RER-A7", "T3", 0, +1, 70 / 3.6, DEFAULT_A, DEFAULT_D));
+		restore(trains);
+	}
+
+	/** Trains de démonstration du premier démarrage (à quai) */
+	private TrainTable seed() {
+		// tu peux supprimer ces trains seed si tu veux
+		var out = new TrainTable();
+		long dwellEnd = System.currentTimeMillis() + DWELL_MS;
+		String[][] seeds = { { "TGV-001", "T1", "160" }, { "TER-021", "T2", "100" }, { "RER-A7", "T3", "70" } };
+		for (String[] s : seeds) {
+			if (fleet.hasRoute(s[1])) {
+				double vMaxMs = Double.parseDouble(s[2]) / 3.6;
+				persistence.log(new StoreEvent.TrainPut(s[0], s[1], 0, vMaxMs, DEFAULT_A, DEFAULT_D));
+				out.add(s[0], s[1], 0, 0, vMaxMs, DEFAULT_A, DEFAULT_D, FleetEngine.DWELL, (byte) 1, dwellEnd);
+			}
 		}
+		return out;
+	}
 
-		// démarrer en dwell
-		long now = System.currentTimeMillis();
-		for (var t : trains.values()) {
-			t.dwellUntil = now + DWELL_MS;
+	/** Recharge la flotte depuis l'état persisté (position, vitesse et phase comprises) */
+	private void restore(TrainTable t) {
+		for (int k = 0; k < t.size(); k++) {
+			if (!t.live(k) || !fleet.hasRoute(t.routeId(k))) {
+				continue;
+			}
+			final int row = k;
+			fleet.add(t.id(k), t.routeId(k), t.distance(k), t.vMax(k), t.accel(k), t.decel(k), t.dwellUntil(k),
+					(e, i) -> {
+						e.restore(i, t.distance(row), t.speed(row), t.phase(row), t.dir(row), t.dwellUntil(row));
+						return null;
+					});
 		}
 	}
 
 	/**
-	 * Synchroniser le cache route à chaque modification côté RouteService (si tu
-	 * ajoutes/édites)
+	 * Copie de toute la flotte pour un snapshot (shard par shard, sous verrou) ;
+	 * en mode cluster, complétée du catalogue pour les trains des autres instances
 	 */
-	public void onRoutesChangedExternally() {
-		routes.clear();
-		for (RouteDTO r : routeService.routes()) {
-			routes.put(r.id(), buildGeom(r.points()));
+	public void exportTo(TrainTable out) {
+		fleet.forEach((e, i) -> out.add(e.id(i), e.routeId(i), e.distance(i), e.speed(i), e.vMax(i), e.accel(i),
+				e.decel(i), e.phase(i), e.dir(i), e.dwellUntil(i)));
+		for (var st : cluster.trains(st -> !fleet.exists(st.id()))) {
+			out.add(st.id(), st.routeId(), st.distance(), st.speed(), st.vMax(), st.accel(), st.decel(), st.phase(),
+					st.dir(), st.dwellUntil());
 		}
 	}
 
-	/** Tick de simulation */
-	@Scheduled(fixedRate = (long) (DT * 1000))
-	public void tick() {
-		long now = System.currentTimeMillis();
-
-		trains.replaceAll((id, st) -> advance(now, st));
+	@PreDestroy
+	void shutdown() {
+		tickPool.shutdownNow();
+	}
 
-		// push WS
-		for (var st : trains.values()) {
-			var geom = routes.get(st.routeId);
-			if (geom == null) {
-				continue;
-			}
-			double[] P = pointAt(geom, st.s);
-			Sig sig = switch (st.phase) {
-			case DWELL -> Sig.RED;
-			case ACCEL, DECEL -> Sig.YELLOW;
-			case CRUISE -> Sig.GREEN;
-			};
-			var dto = new TrainDTO(st.id, P[0], P[1], st.v * 3.6, sig.name(), st.routeId);
-			ws.convertAndSend("/topic/telemetry", dto);
+	/** Synchroniser une seule route après son ajout/édition/suppression côté RouteService */
+	public void onRouteChanged(String routeId) {
+		var pts = routeService.get(routeId);
+		if (pts == null) {
+			fleet.removeRoute(routeId);
+		} else {
+			fleet.putRoute(routeId, pts);
 		}
 	}
 
-	private TrainState advance(long now, TrainState t) {
-		var geom = routes.get(t.routeId);
-		if (geom == null || geom.length < 1) {
-			return t;
-		}
-
-		// Déterminer si on est proche d’une extrémité
-		boolean atStart = t.s <= 0.001;
-		boolean atEnd = t.s >= geom.length - 0.001;
-
-		switch (t.phase) {
-		case DWELL -> {
-			t.v = 0;
-			if (now >= t.dwellUntil) {
-				// On repart : si on est à une extrémité, on choisit la bonne direction
-				if (atStart) {
-					t.dir = +1;
-				} else if (atEnd) {
-					t.dir = -1;
-				}
-				t.phase = Phase.ACCEL;
-			}
+	/**
+	 * Synchroniser le cache route à chaque modification côté RouteService (si tu
+	 * ajoutes/édites). Les routes inchangées ne sont pas reconstruites.
+	 */
+	public void onRoutesChangedExternally() {
+		var ids = new HashSet<String>();
+		for (RouteDTO r : routeService.routes()) {
+			fleet.putRoute(r.id(), r.points());
+			ids.add(r.id());
 		}
-		case ACCEL -> {
-			// vitesse cible = vMax, mais on prévoit le freinage pour s'arrêter à
-			// l'extrémité
-			double sToEnd = (t.dir > 0) ? (geom.length - t.s) : t.s;
-			// distance minimale de freinage depuis vitesse v vers 0 : v^2 / (2d)
-			double minBrake = (t.v * t.v) / (2 * t.d);
-
-			// accélère
-			double v0 = t.v;
-			t.v = t.v + t.a * DT;
-			if (t.v > t.vMax) {
-				t.v = t.vMax;
-			}
-
-			// si la place restante ne permet plus de continuer à accélérer -> passer en
-			// DECEL
-			if (sToEnd <= minBrake + 1.5 * t.v * DT) {
-				t.phase = Phase.DECEL;
-			}
-
-			// avancer
-			t.s += t.dir * (v0 * DT + 0.5 * t.a * DT * DT);
-			// clamp
-			if (t.s <= 0) {
-				t.s = 0;
-				t.phase = Phase.DECEL;
-			}
-			if (t.s >= geom.length) {
-				t.s = geom.length;
-				t.phase = Phase.DECEL;
-			}
-
-			// si on a atteint vMax et assez de distance restante -> CRUISE
-			double minBrakeAtVmax = (t.vMax * t.vMax) / (2 * t.d);
-			if (t.v >= t.vMax - 1e-6 && sToEnd > minBrakeAtVmax + 1.5 * t.vMax * DT) {
-				t.phase = Phase.CRUISE;
+		for (String id : fleet.routeIds()) {
+			if (!ids.contains(id)) {
+				fleet.removeRoute(id);
 			}
 		}
-		case CRUISE -> {
-			// Surveille la distance jusqu’au point d’arrêt : quand il ne reste que le
-			// freinage -> DECEL
-			double sToEnd = (t.dir > 0) ? (geom.length - t.s) : t.s;
-			double minBrakeAtV = (t.v * t.v) / (2 * t.d);
-			if (sToEnd <= minBrakeAtV + 1.5 * t.vMax * DT) {
-				t.phase = Phase.DECEL;
-			}
+	}
 
-			// avancer
-			t.s += t.dir * t.v * DT;
-			if (t.s <= 0) {
-				t.s = 0;
-				t.phase = Phase.DECEL;
-			}
-			if (t.s >= geom.length) {
-				t.s = geom.length;
-				t.phase = Phase.DECEL;
-			}
+	/**
+	 * Tick de simulation. Les shards sont avancés en parallèle ; un tick lancé en
+	 * rattrapage (parce que le précédent a débordé) est fusionné dans le suivant,
+	 * qui avance alors d'un pas plus long au lieu d'empiler les exécutions.
+	 */
+	@Scheduled(fixedRate = PERIOD_MS)
+	public void tick() {
+		long now = System.currentTimeMillis();
+		long elapsed = (lastTickAt == 0) ? PERIOD_MS : now - lastTickAt;
+		if (elapsed < PERIOD_MS / 2) {
+			// exécution empilée derrière un tick trop long : on la fusionne
+			coalesced.increment();
+			return;
 		}
-		case DECEL -> {
-			// freiner jusqu’à 0 à l’extrémité
-			double v0 = t.v;
-			t.v = t.v - t.d * DT;
-			if (t.v < 0) {
-				t.v = 0;
-			}
-
-			t.s += t.dir * (v0 * DT - 0.5 * t.d * DT * DT);
-			boolean reachedEnd = (t.dir > 0) ? (t.s >= geom.length - 0.001) : (t.s <= 0.001);
-			if (reachedEnd || t.v <= 1e-3) {
-				// snap
-				if (t.dir > 0) {
-					t.s = geom.length;
-				} else {
-					t.s = 0;
+		long steps = Math.max(1, Math.min(maxCoalescedTicks, Math.round((double) elapsed / PERIOD_MS)));
+		double dt = steps * DT;
+		lastTickAt = now;
+
+		long t0 = System.nanoTime();
+		fleet.tick(now, dt, (shard, engine, pos) -> {
+			var snap = snapshots[shard];
+			snap.clear();
+			for (int i = 0; i < engine.size(); i++) {
+				if (engine.hasGeometry(i)) {
+					snap.add(engine.id(i), engine.routeId(i), pos[2 * i], pos[2 * i + 1], engine.speed(i) * 3.6,
+							(byte) SIGNALS[engine.phase(i)].ordinal());
 				}
-				t.v = 0;
-				t.decelStart = 0;
-				t.phase = Phase.DWELL;
-				t.dwellUntil = now + DWELL_MS;
-				// on inversera la direction au départ de DWELL
 			}
+		});
+		long took = System.nanoTime() - t0;
+		tickTimer.record(took, TimeUnit.NANOSECONDS);
+		if (took > PERIOD_MS * 1_000_000) {
+			overruns.increment();
 		}
-		}
-		return t;
+
+		// push WS (hors verrous, après la barrière), avec les partitions des autres instances
+		var parts = cluster.relay(snapshots);
+		telemetry.publish(parts);
+		history.record(now, parts);
 	}
 
 	/* ============ API “métier” ============ */
 
 	public Collection<TrainState> list() {
-		return trains.values();
+		var out = new ArrayList<TrainState>(fleet.size());
+		fleet.forEach((e, i) -> out.add(snapshot(e, i)));
+		// mode cluster : trains des autres instances, au dernier état transféré
+		for (var st : cluster.trains(st -> !fleet.exists(st.id()))) {
+			out.add(new TrainState(st.id(), st.routeId(), st.distance(), st.speed(), PHASES[st.phase()]));
+		}
+		return out;
 	}
 
 	public boolean exists(String id) {
-		return trains.containsKey(id);
+		return fleet.exists(id) || cluster.knows(id);
 	}
 
 	/** Créer un train sur une route, avec sa vitesse de pointe (km/h). */
@@ -317,39 +281,25 @@ public class TrainService {
 			throw new IllegalArgumentException("routeId inconnu ou trop courte");
 		}
 		// cache route si besoin
-		routes.computeIfAbsent(routeId, k -> buildGeom(pts));
-		var geom = routes.get(routeId);
-
+		if (!fleet.hasRoute(routeId)) {
+			fleet.putRoute(routeId, pts);
+		}
 		// position de départ par seg/prog -> s (distance)
-		double s0 = 0;
-		if (startSeg != null && startProg != null) {
-			int seg = Math.max(0, Math.min(startSeg, geom.pts.size() - 2));
-			double segLen = hav(geom.pts.get(seg)[0], geom.pts.get(seg)[1], geom.pts.get(seg + 1)[0],
-					geom.pts.get(seg + 1)[1]);
-			s0 = geom.cum[seg] + Math.max(0, Math.min(1, startProg)) * segLen;
-		}
-
-		var st = new TrainState(id, routeId, s0, +1, Math.max(1, lineSpeedKmh) / 3.6, DEFAULT_A, DEFAULT_D);
-		st.phase = Phase.DWELL;
-		st.dwellUntil = System.currentTimeMillis() + DWELL_MS;
-		trains.put(id, st);
-		ws.convertAndSend("/topic/trains", TrainWsEvent.add(toDTO(st)));
+		mutate(new StoreEvent.TrainPut(id, routeId, startDistance(routeId, startSeg, startProg),
+				Math.max(1, lineSpeedKmh) / 3.6, DEFAULT_A, DEFAULT_D));
 	}
 
 	/** Modifier la vitesse de pointe (km/h) */
 	public void setSpeed(String id, double lineSpeedKmh) {
-		var s = trains.get(id);
-		if (s != null) {
-			s.vMax = Math.max(1, lineSpeedKmh) / 3.6;
+		if (exists(id)) {
+			mutate(new StoreEvent.TrainSpeed(id, Math.max(1, lineSpeedKmh) / 3.6));
 		}
 	}
 
 	/** Optionnel : régler les accélérations */
 	public void setAccelDecel(String id, double a/* m/s² */, double d/* m/s² */) {
-		var s = trains.get(id);
-		if (s != null) {
-			s.a = Math.max(0.1, a);
-			s.d = Math.max(0.1, d);
+		if (exists(id)) {
+			mutate(new StoreEvent.TrainAccel(id, Math.max(0.1, a), Math.max(0.1, d)));
 		}
 	}
 
@@ -357,45 +307,138 @@ public class TrainService {
 
 		List<double[]> pts = routeService.get(routeId);
 
-		routes.computeIfAbsent(routeId, k -> buildGeom(pts));
-		var geom = routes.get(routeId);
-
+		if (!fleet.hasRoute(routeId)) {
+			fleet.putRoute(routeId, pts);
+		}
+		if (!exists(id)) {
+			throw new IllegalArgumentException("train inconnue");
+		}
 		// position de départ par seg/prog -> s (distance)
-		double s0 = 0;
-		if (startSeg != null && startProg != null) {
-			int seg = Math.max(0, Math.min(startSeg, geom.pts.size() - 2));
-			double segLen = hav(geom.pts.get(seg)[0], geom.pts.get(seg)[1], geom.pts.get(seg + 1)[0],
-					geom.pts.get(seg + 1)[1]);
-			s0 = geom.cum[seg] + Math.max(0, Math.min(1, startProg)) * segLen;
+		mutate(new StoreEvent.TrainPut(id, routeId, startDistance(routeId, startSeg, startProg),
+				Math.max(1, lineSpeedKmh) / 3.6, DEFAULT_A, DEFAULT_D));
+	}
+
+	public void deleteTrain(String id) {
+		if (exists(id)) {
+			mutate(new StoreEvent.TrainDelete(id));
 		}
+	}
 
-		var st = new TrainState(id, routeId, s0, +1, Math.max(1, lineSpeedKmh) / 3.6, DEFAULT_A, DEFAULT_D);
-		st.phase = Phase.DWELL;
-		st.dwellUntil = System.currentTimeMillis() + DWELL_MS;
+	/** Applique localement puis diffuse aux autres instances (mode cluster) */
+	private void mutate(StoreEvent event) {
+		apply(event);
+		cluster.publish(event);
+	}
 
-		TrainDTO t = toDTO(st);
-		if (!trains.containsKey(t.id())) {
-			throw new IllegalArgumentException("train inconnue");
+	/**
+	 * Applique une mutation, locale ou reçue du cluster : journal, simulation si
+	 * la route est dans la partition de l'instance, événement WS.
+	 */
+	@Override
+	public void apply(StoreEvent event) {
+		switch (event) {
+		case StoreEvent.RoutePut r -> {
+			routeService.apply(r);
+			onRouteChanged(r.id());
+		}
+		case StoreEvent.RouteUpdate r -> {
+			routeService.apply(r);
+			onRouteChanged(r.id());
+		}
+		case StoreEvent.RouteDelete r -> {
+			routeService.apply(r);
+			onRouteChanged(r.id());
+		}
+		case StoreEvent.TrainPut t -> put(t, t.id(), t.routeId(), t.distance(), t.vMax(), t.accel(), t.decel(), null);
+		case StoreEvent.TrainState t -> put(t, t.id(), t.routeId(), t.distance(), t.vMax(), t.accel(), t.decel(), t);
+		case StoreEvent.TrainSpeed t -> {
+			persistence.log(t);
+			fleet.read(t.id(), (e, i) -> {
+				e.setVMax(i, t.vMax());
+				return null;
+			});
+		}
+		case StoreEvent.TrainAccel t -> {
+			persistence.log(t);
+			fleet.read(t.id(), (e, i) -> {
+				e.setAccelDecel(i, t.accel(), t.decel());
+				return null;
+			});
+		}
+		case StoreEvent.TrainDelete t -> {
+			persistence.log(t);
+			if (fleet.remove(t.id()) || cluster.isEnabled()) {
+				ws.convertAndSend("/topic/trains", TrainWsEvent.delete(t.id()));
+			}
+		}
 		}
-		trains.put(t.id(), st);
-		ws.convertAndSend("/topic/trains", TrainWsEvent.update(t));
 	}
 
-	public void deleteTrain(String id) {
-		if (trains.remove(id) != null) {
-			ws.convertAndSend("/topic/trains", TrainWsEvent.delete(id));
+	/**
+	 * Création ou repositionnement (à quai), ou reprise d'un état complet
+	 * transféré par une autre instance (state non null, sans événement WS)
+	 */
+	private void put(StoreEvent event, String id, String routeId, double s0, double vMaxMs, double a, double d,
+			StoreEvent.TrainState state) {
+		boolean known = exists(id);
+		persistence.log(event);
+		TrainDTO dto;
+		if (cluster.owns(routeId)) {
+			if (!fleet.hasRoute(routeId)) {
+				fleet.putRoute(routeId, routeService.get(routeId));
+			}
+			long dwellEnd = (state != null) ? state.dwellUntil() : System.currentTimeMillis() + DWELL_MS;
+			ShardedFleet.SlotFunction<TrainDTO> f = (e, i) -> {
+				if (state != null) {
+					e.restore(i, state.distance(), state.speed(), state.phase(), state.dir(), state.dwellUntil());
+				}
+				return toDTO(e, i);
+			};
+			dto = fleet.exists(id) ? fleet.reset(id, routeId, s0, vMaxMs, a, d, dwellEnd, f)
+					: fleet.add(id, routeId, s0, vMaxMs, a, d, dwellEnd, f);
+		} else {
+			// train d'une autre partition : seule sa propriétaire le simule
+			fleet.remove(id);
+			double[] p = new double[2];
+			fleet.positionAt(routeId, s0, p);
+			dto = new TrainDTO(id, p[0], p[1], 0, Sig.RED.name(), routeId);
+		}
+		if (state == null) {
+			ws.convertAndSend("/topic/trains", known ? TrainWsEvent.update(dto) : TrainWsEvent.add(dto));
+		}
+	}
+
+	/** Retire les trains des routes passées à une autre instance et renvoie leur état complet */
+	@Override
+	public List<StoreEvent.TrainState> release(Predicate<String> lostRoute) {
+		var out = new ArrayList<StoreEvent.TrainState>();
+		fleet.forEach((e, i) -> {
+			if (lostRoute.test(e.routeId(i))) {
+				out.add(new StoreEvent.TrainState(e.id(i), e.routeId(i), e.distance(i), e.speed(i), e.vMax(i),
+						e.accel(i), e.decel(i), e.phase(i), e.dir(i), e.dwellUntil(i)));
+			}
+			return null;
+		});
+		for (var st : out) {
+			fleet.remove(st.id());
 		}
+		return out;
 	}
 
-	public TrainDTO toDTO(TrainState st) {
-		var geom = routes.get(st.routeId);
-		double[] P = pointAt(geom, st.s);
-		Sig sig = switch (st.phase) {
-		case DWELL -> Sig.RED;
-		case ACCEL, DECEL -> Sig.YELLOW;
-		case CRUISE -> Sig.GREEN;
-		};
-		return new TrainDTO(st.id, P[0], P[1], st.v * 3.6, sig.name(), st.routeId);
+	/** Distance de départ par segment/progress (optionnels) */
+	private double startDistance(String routeId, Integer startSeg, Double startProg) {
+		return (startSeg != null && startProg != null) ? fleet.distanceAt(routeId, startSeg, startProg) : 0;
+	}
+
+	private static TrainState snapshot(FleetEngine e, int i) {
+		return new TrainState(e.id(i), e.routeId(i), e.distance(i), e.speed(i), PHASES[e.phase(i)]);
+	}
+
+	/** DTO complet (position interpolée) du slot i ; appelé sous le verrou du shard */
+	private static TrainDTO toDTO(FleetEngine e, int i) {
+		double[] p = new double[2];
+		e.position(i, p, 0);
+		return new TrainDTO(e.id(i), p[0], p[1], e.speed(i) * 3.6, SIGNALS[e.phase(i)].name(), e.routeId(i));
 	}
 
 	public static TrainDTO toDto(TrainState st) {
@@ -407,7 +450,10 @@ public class TrainService {
 	}
 
 	public long countTrainsOnRoute(String routeId) {
-		return trains.values().stream().filter(t -> t.routeId.equals(routeId)).count();
+		if (cluster.isEnabled()) {
+			return cluster.trains(st -> st.routeId().equals(routeId)).size();
+		}
+		return fleet.countOnRoute(routeId);
 	}
 
 	public boolean hasTrainsOnRoute(String routeId) {
@@ -415,8 +461,15 @@ public class TrainService {
 	}
 
 	public TrainDTO findDto(String id) {
-		var st = trains.get(id);
-		return (st == null) ? null : toDTO(st);
+		var dto = fleet.read(id, TrainService::toDTO);
+		if (dto == null && cluster.knows(id)) {
+			// train d'une autre instance : dernier état transféré
+			var st = cluster.lookup(id);
+			double[] p = new double[2];
+			fleet.positionAt(st.routeId(), st.distance(), p);
+			dto = new TrainDTO(id, p[0], p[1], st.speed() * 3.6, SIGNALS[st.phase()].name(), st.routeId());
+		}
+		return dto;
 	}
 
 }
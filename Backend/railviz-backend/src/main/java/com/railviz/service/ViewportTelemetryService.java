@@ -0,0 +1,139 @@
+package com.railviz.service;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.stereotype.Service;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+import org.springframework.web.socket.messaging.SessionSubscribeEvent;
+
+import com.railviz.model.ViewportCommand;
+import com.railviz.telemetry.TelemetryEncoder;
+import com.railviz.telemetry.TelemetrySnapshot;
+import com.railviz.telemetry.TrainSpatialIndex;
+import com.railviz.telemetry.ViewportSession;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Télémétrie filtrée par session : chaque client abonné à
+ * /user/queue/telemetry.bin ne reçoit que les trains de son viewport (rectangle,
+ * routes), à une cadence dépendant du zoom. Les requêtes passent par un index
+ * spatial mis à jour une fois par tick, donc le coût de diffusion suit le
+ * nombre de trains visibles et non la taille de la flotte.
+ */
+@Service
+@RequiredArgsConstructor
+public class ViewportTelemetryService {
+
+	public static final String USER_QUEUE = "/queue/telemetry.bin";
+	public static final String SUBSCRIPTION = "/user" + USER_QUEUE;
+
+	private final SimpMessagingTemplate ws;
+	private final MeterRegistry meters;
+	private final BackpressureService backpressure;
+
+	/** Taille d'une cellule de la grille (degrés) */
+	@Value("${railviz.telemetry.viewport.cell-deg:0.01}")
+	private double cellDeg;
+
+	@Value("${railviz.telemetry.keyframe-interval:20}")
+	private int keyframeInterval;
+
+	@Value("${railviz.telemetry.position-threshold-m:1.0}")
+	private double positionThresholdM;
+
+	@Value("${railviz.telemetry.speed-threshold-kmh:0.5}")
+	private double speedThresholdKmh;
+
+	private TrainSpatialIndex index;
+	private final Map<String, ViewportSession> sessions = new ConcurrentHashMap<>();
+	private Counter frames;
+	private long ticks;
+
+	@PostConstruct
+	void init() {
+		index = new TrainSpatialIndex(cellDeg);
+		frames = Counter.builder("railviz.telemetry.viewport.frames").description("Frames filtrées envoyées")
+				.register(meters);
+		Gauge.builder("railviz.telemetry.viewport.sessions", sessions, Map::size).register(meters);
+	}
+
+	public int sessionCount() {
+		return sessions.size();
+	}
+
+	@EventListener
+	public void onSubscribe(SessionSubscribeEvent event) {
+		var h = StompHeaderAccessor.wrap(event.getMessage());
+		if (SUBSCRIPTION.equals(h.getDestination())) {
+			session(h.getSessionId()).requestKeyframe();
+		}
+	}
+
+	@EventListener
+	public void onDisconnect(SessionDisconnectEvent event) {
+		sessions.remove(event.getSessionId());
+	}
+
+	/** Remplace le filtre de la session (message /app/telemetry.viewport) */
+	public void setViewport(String sessionId, ViewportCommand cmd) {
+		boolean box = cmd.minLat() != null && cmd.minLon() != null && cmd.maxLat() != null && cmd.maxLon() != null;
+		var routes = (cmd.routeIds() == null || cmd.routeIds().isEmpty()) ? null : new HashSet<>(cmd.routeIds());
+		var f = new ViewportSession.Filter(box, box ? Math.min(cmd.minLat(), cmd.maxLat()) : 0,
+				box ? Math.min(cmd.minLon(), cmd.maxLon()) : 0, box ? Math.max(cmd.minLat(), cmd.maxLat()) : 0,
+				box ? Math.max(cmd.minLon(), cmd.maxLon()) : 0, routes, everyNTicks(cmd.zoom()));
+		session(sessionId).setFilter(f);
+	}
+
+	/** Vue d'ensemble (petit zoom) : inutile de rafraîchir à 4 Hz */
+	static int everyNTicks(Integer zoom) {
+		if (zoom == null || zoom >= 12) {
+			return 1;
+		}
+		return (zoom >= 9) ? 2 : 4;
+	}
+
+	private ViewportSession session(String sessionId) {
+		return sessions.computeIfAbsent(sessionId, id -> new ViewportSession(id,
+				new TelemetryEncoder(keyframeInterval, positionThresholdM, speedThresholdKmh)));
+	}
+
+	/** Appelé par le tick après la barrière : met l'index à jour puis sert chaque session */
+	public void publish(TelemetrySnapshot... parts) {
+		if (sessions.isEmpty()) {
+			return;
+		}
+		index.update(parts);
+		long tick = ticks++;
+		sessions.values().parallelStream().forEach(s -> {
+			// session en retard : tick sauté, l'encodeur garde la dernière valeur envoyée
+			if (!backpressure.admit(s.sessionId(), tick)) {
+				return;
+			}
+			byte[] frame = s.frame(index);
+			if (frame != null) {
+				send(s.sessionId(), frame);
+				frames.increment();
+			}
+		});
+	}
+
+	private void send(String sessionId, byte[] frame) {
+		var h = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+		h.setSessionId(sessionId);
+		h.setLeaveMutable(true);
+		ws.convertAndSendToUser(sessionId, USER_QUEUE, frame, h.getMessageHeaders());
+	}
+}
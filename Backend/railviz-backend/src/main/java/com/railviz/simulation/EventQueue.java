@@ -0,0 +1,136 @@
+package com.railviz.simulation;
+
+import java.util.Arrays;
+
+/**
+ * File de priorité indexée des prochaines transitions : tas binaire min de
+ * slots, chacun avec sa date d'échéance (ms). Un slot y figure au plus une
+ * fois ; changer sa date le remonte ou le descend en O(log n).
+ *
+ * Non thread-safe (utilisée sous le verrou du moteur de flotte).
+ */
+final class EventQueue {
+
+	private int[] heap; // slots, ordonnés par date
+	private int[] at; // position du slot dans le tas, -1 si absent
+	private double[] time; // date d'échéance par slot
+	private int size;
+
+	EventQueue(int capacity) {
+		heap = new int[capacity];
+		at = new int[capacity];
+		time = new double[capacity];
+		Arrays.fill(at, -1);
+	}
+
+	/** Capacité en slots (suit celle du moteur) */
+	void grow(int capacity) {
+		int old = at.length;
+		heap = Arrays.copyOf(heap, capacity);
+		at = Arrays.copyOf(at, capacity);
+		time = Arrays.copyOf(time, capacity);
+		Arrays.fill(at, old, capacity, -1);
+	}
+
+	int size() {
+		return size;
+	}
+
+	/** Slot de la prochaine échéance (file non vide) */
+	int peek() {
+		return heap[0];
+	}
+
+	/** Prochaine échéance, +inf si la file est vide */
+	double peekTime() {
+		return (size == 0) ? Double.POSITIVE_INFINITY : time[heap[0]];
+	}
+
+	/** Échéance du slot (valeur périmée s'il n'est plus dans la file) */
+	double time(int slot) {
+		return time[slot];
+	}
+
+	/** Insère le slot ou déplace son échéance */
+	void set(int slot, double t) {
+		int k = at[slot];
+		time[slot] = t;
+		if (k < 0) {
+			k = size++;
+			heap[k] = slot;
+			at[slot] = k;
+			up(k);
+		} else if (!up(k)) {
+			down(k);
+		}
+	}
+
+	void remove(int slot) {
+		int k = at[slot];
+		if (k < 0) {
+			return;
+		}
+		at[slot] = -1;
+		int last = heap[--size];
+		if (k < size) {
+			heap[k] = last;
+			at[last] = k;
+			if (!up(k)) {
+				down(k);
+			}
+		}
+	}
+
+	/** Le slot from est renommé en to (compactage du moteur) ; to doit être absent */
+	void move(int from, int to) {
+		int k = at[from];
+		time[to] = time[from];
+		at[from] = -1;
+		at[to] = k;
+		if (k >= 0) {
+			heap[k] = to;
+		}
+	}
+
+	private boolean up(int k) {
+		int slot = heap[k];
+		double t = time[slot];
+		int start = k;
+		while (k > 0) {
+			int parent = (k - 1) >>> 1;
+			int p = heap[parent];
+			if (time[p] <= t) {
+				break;
+			}
+			heap[k] = p;
+			at[p] = k;
+			k = parent;
+		}
+		heap[k] = slot;
+		at[slot] = k;
+		return k != start;
+	}
+
+	private void down(int k) {
+		int slot = heap[k];
+		double t = time[slot];
+		int half = size >>> 1;
+		while (k < half) {
+			int child = 2 * k + 1;
+			int c = heap[child];
+			int right = child + 1;
+			if (right < size && time[heap[right]] < time[c]) {
+				child = right;
+				c = heap[child];
+			}
+			if (t <= time[c]) {
+				break;
+			}
+			heap[k] = c;
+			at[c] = k;
+			k = child;
+		}
+		heap[k] = slot;
+		at[slot] = k;
+	}
+}
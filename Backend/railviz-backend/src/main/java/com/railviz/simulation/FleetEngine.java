@@ -0,0 +1,725 @@
+package com.railviz.simulation;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Moteur de flotte en "structure de tableaux" : l'état de chaque train est
+ * rangé dans des tableaux primitifs parallèles indexés par un slot (0..size-1).
+ * Le tick avance les trains par lots contigus, sans allocation (phases codées
+ * en byte, interpolation écrite dans des buffers fournis par l'appelant).
+ *
+ * Deux modes :
+ * <ul>
+ * <li>pas à pas (défaut) : chaque tick avance tous les trains de dt ;</li>
+ * <li>événementiel : chaque train suit un mouvement uniformément accéléré
+ * jusqu'à sa prochaine transition (fin d'arrêt, vitesse de pointe atteinte,
+ * point de freinage, arrivée), calculée exactement et rangée dans une file de
+ * priorité. Le tick ne traite que les transitions échues ; distance, vitesse
+ * et position sont évaluées en forme close à la lecture. Un train à quai ou en
+ * croisière ne coûte donc rien entre deux transitions.</li>
+ * </ul>
+ *
+ * Non thread-safe : l'appelant sérialise les accès (cf. TrainService).
+ */
+public final class FleetEngine {
+
+	/** Tick (s) */
+	public static final double DT = 0.25;
+	/** Arrêt à chaque extrémité (ms) */
+	public static final long DWELL_MS = 5000;
+
+	/** Phases codées (même ordre que TrainService.Phase) */
+	public static final byte DWELL = 0, ACCEL = 1, CRUISE = 2, DECEL = 3;
+
+	/** Taille d'un lot : assez petit pour que les tableaux du lot tiennent en L1/L2 */
+	static final int BATCH = 1024;
+
+	private static final int INITIAL_CAPACITY = 64;
+
+	/** Tolérance (m) sur la distance restante avant freinage / arrivée */
+	private static final double EPS_M = 1e-3;
+
+	/* ============ Trains (tableaux parallèles) ============ */
+
+	private int size;
+	private String[] ids = new String[INITIAL_CAPACITY];
+	private int[] route = new int[INITIAL_CAPACITY]; // index dans la table des routes
+	private double[] s = new double[INITIAL_CAPACITY]; // distance le long de la route (m)
+	private double[] v = new double[INITIAL_CAPACITY]; // vitesse instantanée (m/s)
+	private double[] vMax = new double[INITIAL_CAPACITY]; // vitesse de pointe (m/s)
+	private double[] acc = new double[INITIAL_CAPACITY]; // accélération (m/s²)
+	private double[] dec = new double[INITIAL_CAPACITY]; // décélération (m/s², positive)
+	private byte[] phase = new byte[INITIAL_CAPACITY];
+	private byte[] dir = new byte[INITIAL_CAPACITY]; // +1 aller, -1 retour
+	private long[] dwellUntil = new long[INITIAL_CAPACITY];
+	private int[] seg = new int[INITIAL_CAPACITY]; // dernier segment interpolé (-1 : inconnu)
+	private final Map<String, Integer> slots = new HashMap<>();
+
+	/* ============ Mode événementiel ============ */
+
+	private final boolean eventDriven;
+	// en mode événementiel, s[i] et v[i] sont l'état à t0[i], début du mouvement courant
+	private double[] t0 = new double[INITIAL_CAPACITY]; // ms
+	private double[] a0 = new double[INITIAL_CAPACITY]; // accélération signée le long de dir (m/s²)
+	private final EventQueue events = new EventQueue(INITIAL_CAPACITY);
+	private long clock; // date du dernier advance (ms)
+	// train immobile dont la position est déjà dans posBuffer (rien à réinterpoler)
+	private boolean[] posCached = new boolean[INITIAL_CAPACITY];
+	private double[] posBuffer;
+
+	/* ============ Routes (géométrie à plat) ============ */
+
+	private RouteGeometry[] geoms = new RouteGeometry[8];
+	private double[] routeLength = new double[8]; // copie compacte pour le tick
+	private String[] routeIds = new String[8];
+	private final Map<String, Integer> routeIndex = new HashMap<>();
+
+	/** Moteur pas à pas */
+	public FleetEngine() {
+		this(false);
+	}
+
+	/** @param eventDriven true pour le mode événementiel (cf. description de la classe) */
+	public FleetEngine(boolean eventDriven) {
+		this.eventDriven = eventDriven;
+		// base des mouvements planifiés avant le premier tick (reprise sur snapshot)
+		this.clock = System.currentTimeMillis();
+	}
+
+	public boolean isEventDriven() {
+		return eventDriven;
+	}
+
+	/* ============ Géométrie ============ */
+
+	/** Distance haversine (m) */
+	public static double hav(double lat1, double lon1, double lat2, double lon2) {
+		double R = 6371e3;
+		double p1 = Math.toRadians(lat1), p2 = Math.toRadians(lat2);
+		double dp = Math.toRadians(lat2 - lat1), dl = Math.toRadians(lon2 - lon1);
+		double a = Math.sin(dp / 2) * Math.sin(dp / 2)
+				+ Math.cos(p1) * Math.cos(p2) * Math.sin(dl / 2) * Math.sin(dl / 2);
+		return 2 * R * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
+	}
+
+	/* ============ Routes ============ */
+
+	/**
+	 * Ajoute ou remplace la géométrie d'une route. Une géométrie identique n'est
+	 * pas reconstruite ; sinon seul le tracé modifié après le préfixe commun est
+	 * recalculé.
+	 */
+	public void putRoute(String routeId, List<double[]> pts) {
+		Integer idx = routeIndex.get(routeId);
+		var previous = (idx == null) ? null : geoms[idx];
+		if (previous != null && previous.sameAs(pts)) {
+			return;
+		}
+		var g = RouteGeometry.of(pts, previous);
+		if (idx != null) {
+			rebaseRoute(idx);
+		}
+		if (idx == null) {
+			idx = routeIndex.size();
+			if (idx == geoms.length) {
+				int cap = geoms.length * 2;
+				geoms = Arrays.copyOf(geoms, cap);
+				routeLength = Arrays.copyOf(routeLength, cap);
+				routeIds = Arrays.copyOf(routeIds, cap);
+			}
+			routeIndex.put(routeId, idx);
+			routeIds[idx] = routeId;
+		}
+		geoms[idx] = g;
+		routeLength[idx] = g.length;
+		// les trains déjà posés restent dans les bornes de la nouvelle géométrie
+		for (int i = 0; i < size; i++) {
+			if (route[i] == idx) {
+				if (s[i] > g.length) {
+					s[i] = g.length;
+				}
+				seg[i] = -1;
+				if (eventDriven) {
+					plan(i, clock);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Retire une route. L'index est conservé (les trains éventuels restent figés,
+	 * comme avec une géométrie absente).
+	 */
+	public void removeRoute(String routeId) {
+		Integer idx = routeIndex.get(routeId);
+		if (idx != null) {
+			rebaseRoute(idx);
+			geoms[idx] = null;
+			routeLength[idx] = 0;
+			if (eventDriven) {
+				for (int i = 0; i < size; i++) {
+					if (route[i] == idx) {
+						plan(i, clock);
+					}
+				}
+			}
+		}
+	}
+
+	public boolean hasRoute(String routeId) {
+		Integer idx = routeIndex.get(routeId);
+		return idx != null && geoms[idx] != null;
+	}
+
+	/** Routes dont la géométrie est connue */
+	public List<String> routeIds() {
+		var out = new ArrayList<String>(routeIndex.size());
+		for (var e : routeIndex.entrySet()) {
+			if (geoms[e.getValue()] != null) {
+				out.add(e.getKey());
+			}
+		}
+		return out;
+	}
+
+	/** Distance (m) du début de route au début du segment seg, progress dans [0..1] */
+	public double distanceAt(String routeId, int seg, double progress) {
+		return geoms[routeIndex.get(routeId)].distanceAt(seg, progress);
+	}
+
+	/* ============ Trains ============ */
+
+	public int size() {
+		return size;
+	}
+
+	/** Slot du train, ou -1 */
+	public int slot(String id) {
+		Integer i = slots.get(id);
+		return i == null ? -1 : i;
+	}
+
+	/** Ajoute un train en DWELL ; la route doit être connue */
+	public int add(String id, String routeId, double s0, double vMaxMs, double a, double d, long dwellEnd) {
+		Integer r = routeIndex.get(routeId);
+		if (r == null) {
+			throw new IllegalArgumentException("routeId inconnu");
+		}
+		if (slots.containsKey(id)) {
+			throw new IllegalArgumentException("train déjà présent");
+		}
+		if (size == ids.length) {
+			grow(size * 2);
+		}
+		int i = size++;
+		ids[i] = id;
+		slots.put(id, i);
+		place(i, r, s0, vMaxMs, a, d, dwellEnd);
+		return i;
+	}
+
+	/** Repositionne un train existant (nouvelle route, remise en DWELL) */
+	public void reset(int i, String routeId, double s0, double vMaxMs, double a, double d, long dwellEnd) {
+		Integer r = routeIndex.get(routeId);
+		if (r == null) {
+			throw new IllegalArgumentException("routeId inconnu");
+		}
+		place(i, r, s0, vMaxMs, a, d, dwellEnd);
+	}
+
+	private void place(int i, int r, double s0, double vMaxMs, double a, double d, long dwellEnd) {
+		route[i] = r;
+		s[i] = s0;
+		v[i] = 0;
+		vMax[i] = vMaxMs;
+		acc[i] = a;
+		dec[i] = d;
+		phase[i] = DWELL;
+		dir[i] = +1;
+		dwellUntil[i] = dwellEnd;
+		seg[i] = -1;
+		if (eventDriven) {
+			plan(i, clock);
+		}
+	}
+
+	/** Supprime un train : le dernier slot vient combler le trou */
+	public boolean remove(String id) {
+		Integer i = slots.remove(id);
+		if (i == null) {
+			return false;
+		}
+		events.remove(i);
+		int last = --size;
+		if (i != last) {
+			ids[i] = ids[last];
+			route[i] = route[last];
+			s[i] = s[last];
+			v[i] = v[last];
+			vMax[i] = vMax[last];
+			acc[i] = acc[last];
+			dec[i] = dec[last];
+			phase[i] = phase[last];
+			dir[i] = dir[last];
+			dwellUntil[i] = dwellUntil[last];
+			seg[i] = seg[last];
+			t0[i] = t0[last];
+			a0[i] = a0[last];
+			posCached[i] = false;
+			events.move(last, i);
+			slots.put(ids[i], i);
+		}
+		ids[last] = null;
+		return true;
+	}
+
+	private void grow(int cap) {
+		ids = Arrays.copyOf(ids, cap);
+		route = Arrays.copyOf(route, cap);
+		s = Arrays.copyOf(s, cap);
+		v = Arrays.copyOf(v, cap);
+		vMax = Arrays.copyOf(vMax, cap);
+		acc = Arrays.copyOf(acc, cap);
+		dec = Arrays.copyOf(dec, cap);
+		phase = Arrays.copyOf(phase, cap);
+		dir = Arrays.copyOf(dir, cap);
+		dwellUntil = Arrays.copyOf(dwellUntil, cap);
+		seg = Arrays.copyOf(seg, cap);
+		t0 = Arrays.copyOf(t0, cap);
+		a0 = Arrays.copyOf(a0, cap);
+		posCached = Arrays.copyOf(posCached, cap);
+		events.grow(cap);
+	}
+
+	public void setDistance(int i, double dist) {
+		s[i] = dist;
+		if (eventDriven) {
+			rebaseSpeed(i);
+			plan(i, clock);
+		}
+	}
+
+	public void setVMax(int i, double vMaxMs) {
+		rebase(i);
+		vMax[i] = vMaxMs;
+		if (eventDriven) {
+			plan(i, clock);
+		}
+	}
+
+	public void setAccelDecel(int i, double a, double d) {
+		rebase(i);
+		acc[i] = a;
+		dec[i] = d;
+		if (eventDriven) {
+			plan(i, clock);
+		}
+	}
+
+	/**
+	 * Rétablit l'état dynamique complet d'un train (reprise sur snapshot). En mode
+	 * événementiel, la suite du mouvement est replanifiée depuis cet état.
+	 */
+	public void restore(int i, double dist, double speed, byte ph, int direction, long dwellEnd) {
+		s[i] = dist;
+		v[i] = speed;
+		phase[i] = ph;
+		dir[i] = (byte) direction;
+		dwellUntil[i] = dwellEnd;
+		seg[i] = -1;
+		if (eventDriven) {
+			plan(i, clock);
+		}
+	}
+
+	public String id(int i) {
+		return ids[i];
+	}
+
+	public String routeId(int i) {
+		return routeIds[route[i]];
+	}
+
+	public int routeIndex(int i) {
+		return route[i];
+	}
+
+	public double distance(int i) {
+		return eventDriven ? distanceAt(i, clock) : s[i];
+	}
+
+	public double speed(int i) {
+		return eventDriven ? speedAt(i, clock) : v[i];
+	}
+
+	public byte phase(int i) {
+		return phase[i];
+	}
+
+	public byte dir(int i) {
+		return dir[i];
+	}
+
+	public long dwellUntil(int i) {
+		return dwellUntil[i];
+	}
+
+	public double vMax(int i) {
+		return vMax[i];
+	}
+
+	public double accel(int i) {
+		return acc[i];
+	}
+
+	public double decel(int i) {
+		return dec[i];
+	}
+
+	public int countOnRoute(String routeId) {
+		Integer r = routeIndex.get(routeId);
+		if (r == null) {
+			return 0;
+		}
+		int n = 0;
+		for (int i = 0; i < size; i++) {
+			if (route[i] == r) {
+				n++;
+			}
+		}
+		return n;
+	}
+
+	/** Vrai si la route du train i a une géométrie (sinon le train est figé) */
+	public boolean hasGeometry(int i) {
+		return geoms[route[i]] != null;
+	}
+
+	/** Écrit lat/lon du train i dans out[off], out[off+1] (position figée si route absente) */
+	public boolean position(int i, double[] out, int off) {
+		var g = geoms[route[i]];
+		if (g == null) {
+			return false;
+		}
+		seg[i] = g.pointAt(distance(i), seg[i], out, off);
+		return true;
+	}
+
+	/** Écrit lat/lon du point à la distance dist de la route ; false si la route est inconnue */
+	public boolean positionAt(String routeId, double dist, double[] out, int off) {
+		Integer r = routeIndex.get(routeId);
+		if (r == null || geoms[r] == null) {
+			return false;
+		}
+		geoms[r].pointAt(dist, -1, out, off);
+		return true;
+	}
+
+	/* ============ Tick ============ */
+
+	/**
+	 * Avance toute la flotte d'un pas puis écrit les positions dans pos
+	 * (pos[2i] = lat, pos[2i+1] = lon, capacité >= 2 * size). Traitement par lots
+	 * : chaque lot est avancé puis interpolé tant qu'il est encore en cache.
+	 */
+	public void tick(long now, double[] pos) {
+		tick(now, DT, pos);
+	}
+
+	/** Comme {@link #tick(long, double[])} avec un pas dt (s) arbitraire (ticks fusionnés) */
+	public void tick(long now, double dt, double[] pos) {
+		if (eventDriven) {
+			advanceEvents(now);
+			interpolateEvents(now, pos);
+			return;
+		}
+		for (int from = 0; from < size; from += BATCH) {
+			int to = Math.min(size, from + BATCH);
+			advance(now, dt, from, to);
+			for (int i = from; i < to; i++) {
+				var g = geoms[route[i]];
+				if (g != null) {
+					seg[i] = g.pointAt(s[i], seg[i], pos, 2 * i);
+				}
+			}
+		}
+	}
+
+	/** Avance toute la flotte d'un pas (sans interpolation) */
+	public void advance(long now) {
+		if (eventDriven) {
+			advanceEvents(now);
+		} else {
+			advance(now, DT, 0, size);
+		}
+	}
+
+	/** Avance les slots [from, to) d'un pas dt ; même machine d'état que la version objet */
+	public void advance(long now, double dt, int from, int to) {
+		for (int i = from; i < to; i++) {
+			double L = routeLength[route[i]];
+			if (L < 1) {
+				continue;
+			}
+			double si = s[i], vi = v[i], vm = vMax[i], ai = acc[i], di = dec[i];
+			int dr = dir[i];
+			byte ph = phase[i];
+
+			switch (ph) {
+			case DWELL -> {
+				vi = 0;
+				if (now >= dwellUntil[i]) {
+					// On repart : si on est à une extrémité, on choisit la bonne direction
+					if (si <= 0.001) {
+						dr = +1;
+					} else if (si >= L - 0.001) {
+						dr = -1;
+					}
+					ph = ACCEL;
+				}
+			}
+			case ACCEL -> {
+				double sToEnd = (dr > 0) ? (L - si) : si;
+				double minBrake = (vi * vi) / (2 * di);
+				double v0 = vi;
+				vi = Math.min(vi + ai * dt, vm);
+				if (sToEnd <= minBrake + 1.5 * vi * dt) {
+					ph = DECEL;
+				}
+				si += dr * (v0 * dt + 0.5 * ai * dt * dt);
+				if (si <= 0) {
+					si = 0;
+					ph = DECEL;
+				}
+				if (si >= L) {
+					si = L;
+					ph = DECEL;
+				}
+				double minBrakeAtVmax = (vm * vm) / (2 * di);
+				if (vi >= vm - 1e-6 && sToEnd > minBrakeAtVmax + 1.5 * vm * dt) {
+					ph = CRUISE;
+				}
+			}
+			case CRUISE -> {
+				double sToEnd = (dr > 0) ? (L - si) : si;
+				double minBrakeAtV = (vi * vi) / (2 * di);
+				if (sToEnd <= minBrakeAtV + 1.5 * vm * dt) {
+					ph = DECEL;
+				}
+				si += dr * vi * dt;
+				if (si <= 0) {
+					si = 0;
+					ph = DECEL;
+				}
+				if (si >= L) {
+					si = L;
+					ph = DECEL;
+				}
+			}
+			default -> { // DECEL
+				double v0 = vi;
+				vi = Math.max(0, vi - di * dt);
+				si += dr * (v0 * dt - 0.5 * di * dt * dt);
+				boolean reachedEnd = (dr > 0) ? (si >= L - 0.001) : (si <= 0.001);
+				if (reachedEnd || vi <= 1e-3) {
+					si = (dr > 0) ? L : 0;
+					vi = 0;
+					ph = DWELL;
+					dwellUntil[i] = now + DWELL_MS;
+				}
+			}
+			}
+
+			s[i] = si;
+			v[i] = vi;
+			dir[i] = (byte) dr;
+			phase[i] = ph;
+		}
+	}
+
+	/* ============ Mode événementiel ============ */
+
+	/** Traite, dans l'ordre chronologique, toutes les transitions échues à now */
+	private void advanceEvents(long now) {
+		while (events.size() > 0 && events.peekTime() <= now) {
+			int i = events.peek();
+			transition(i, events.time(i));
+		}
+		clock = now;
+	}
+
+	/**
+	 * Positions de toute la flotte à now ; forme close de distanceAt dépliée dans
+	 * la boucle. Un train immobile déjà écrit dans ce même buffer n'est pas
+	 * réinterpolé.
+	 */
+	private void interpolateEvents(long now, double[] pos) {
+		if (pos != posBuffer) {
+			Arrays.fill(posCached, false);
+			posBuffer = pos;
+		}
+		for (int i = 0; i < size; i++) {
+			if (posCached[i]) {
+				continue;
+			}
+			var g = geoms[route[i]];
+			if (g == null) {
+				continue;
+			}
+			double d = s[i], vi = v[i], ai = a0[i];
+			if (vi == 0 && ai == 0) {
+				posCached[i] = true;
+			} else {
+				// now >= t0 : toutes les transitions échues ont été traitées
+				double tau = (Math.min(now, events.time(i)) - t0[i]) * 0.001;
+				d += dir[i] * (vi * tau + 0.5 * ai * tau * tau);
+				d = Math.max(0, Math.min(g.length, d));
+			}
+			seg[i] = g.pointAt(d, seg[i], pos, 2 * i);
+		}
+	}
+
+	/** Transition du train i à la date te (ms), puis planification de la suivante */
+	private void transition(int i, double te) {
+		rebase(i, te);
+		double L = routeLength[route[i]];
+		switch (phase[i]) {
+		case DWELL -> {
+			// même choix de direction que le mode pas à pas
+			if (s[i] <= 0.001) {
+				dir[i] = +1;
+			} else if (s[i] >= L - 0.001) {
+				dir[i] = -1;
+			}
+			phase[i] = ACCEL;
+		}
+		case DECEL -> {
+			s[i] = (dir[i] > 0) ? L : 0;
+			v[i] = 0;
+			phase[i] = DWELL;
+			dwellUntil[i] = (long) Math.ceil(te) + DWELL_MS;
+		}
+		default -> {
+			// fin d'accélération ou point de freinage : plan() choisit la suite
+		}
+		}
+		plan(i, te);
+	}
+
+	/**
+	 * Planifie le mouvement du train i à partir de son état (s, v, phase) à la
+	 * date t : phase courante, accélération constante et date de la prochaine
+	 * transition.
+	 */
+	private void plan(int i, double t) {
+		posCached[i] = false;
+		t0[i] = t;
+		a0[i] = 0;
+		double L = routeLength[route[i]];
+		if (L < 1) {
+			// route absente : train figé jusqu'à ce qu'elle revienne
+			v[i] = 0;
+			events.set(i, Double.POSITIVE_INFINITY);
+			return;
+		}
+		if (phase[i] == DWELL) {
+			v[i] = 0;
+			events.set(i, dwellUntil[i]);
+			return;
+		}
+		double vi = Math.min(v[i], vMax[i]), vm = vMax[i], ai = acc[i], di = dec[i];
+		double toEnd = Math.max(0, (dir[i] > 0) ? L - s[i] : s[i]);
+		double brake = vi * vi / (2 * di);
+		double tau; // durée (s) jusqu'à la prochaine transition
+		v[i] = vi;
+		if (toEnd <= brake + EPS_M) {
+			phase[i] = DECEL;
+			tau = brakeTo(i, vi, toEnd);
+		} else {
+			// vitesse de crête si l'on accélère puis freine pile pour l'arrivée
+			double peak = Math.sqrt((toEnd + vi * vi / (2 * ai)) / (1 / (2 * ai) + 1 / (2 * di)));
+			double top = Math.min(vm, peak);
+			if (top - vi > 1e-6) {
+				phase[i] = ACCEL;
+				a0[i] = ai;
+				tau = (top - vi) / ai;
+			} else {
+				// vitesse de croisière (vMax ou crête atteinte) jusqu'au point de freinage
+				phase[i] = CRUISE;
+				tau = (toEnd - brake) / vi;
+			}
+		}
+		events.set(i, t + tau * 1000);
+	}
+
+	/**
+	 * Freinage à la décélération du train depuis vi, jusqu'à l'arrêt ou jusqu'à la
+	 * fin de la route si elle est atteinte avant ; renvoie sa durée (s). Le point de
+	 * freinage est calculé par plan(), l'écart à l'arrêt exact reste sous EPS_M.
+	 */
+	private double brakeTo(int i, double vi, double toEnd) {
+		if (toEnd < EPS_M || vi < 1e-3) {
+			return 0;
+		}
+		double di = dec[i];
+		a0[i] = -di;
+		// toEnd = vi·τ - di·τ²/2 ; sans racine, le train s'arrête avant la fin
+		return (vi - Math.sqrt(Math.max(0, vi * vi - 2 * di * toEnd))) / di;
+	}
+
+	/** Durée (s) écoulée depuis t0, bornée à la prochaine transition */
+	private double elapsed(int i, double t) {
+		double end = Math.min(t, events.time(i));
+		return Math.max(0, (end - t0[i]) / 1000);
+	}
+
+	/** Distance en forme close à la date t (mode événementiel) */
+	private double distanceAt(int i, double t) {
+		if (a0[i] == 0 && v[i] == 0) {
+			return s[i];
+		}
+		double tau = elapsed(i, t);
+		double d = s[i] + dir[i] * (v[i] * tau + 0.5 * a0[i] * tau * tau);
+		return Math.max(0, Math.min(routeLength[route[i]], d));
+	}
+
+	/** Vitesse en forme close à la date t (mode événementiel) */
+	private double speedAt(int i, double t) {
+		return Math.max(0, v[i] + a0[i] * elapsed(i, t));
+	}
+
+	/** Ramène l'état de référence du train i à la date t (mode événementiel) */
+	private void rebase(int i, double t) {
+		double d = distanceAt(i, t), sp = speedAt(i, t);
+		s[i] = d;
+		v[i] = sp;
+		t0[i] = t;
+	}
+
+	private void rebase(int i) {
+		if (eventDriven) {
+			rebase(i, clock);
+		}
+	}
+
+	/** setDistance : la vitesse courante est conservée, la distance imposée */
+	private void rebaseSpeed(int i) {
+		v[i] = speedAt(i, clock);
+	}
+
+	/** Fige l'état des trains de la route idx avant un changement de géométrie */
+	private void rebaseRoute(int idx) {
+		if (!eventDriven) {
+			return;
+		}
+		for (int i = 0; i < size; i++) {
+			if (route[i] == idx) {
+				rebase(i, clock);
+			}
+		}
+	}
+}
@@ -0,0 +1,148 @@
+package com.railviz.simulation;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Géométrie précalculée d'une route : lat/lon/distance cumulée en tableaux
+ * plats. L'interpolation part du segment trouvé au tick précédent (un train ne
+ * franchit que quelques segments par pas) et ne retombe sur la recherche
+ * dichotomique que si l'indice fourni est inconnu ou trop loin : coût amorti
+ * O(1), même sur des routes de plusieurs dizaines de milliers de points.
+ *
+ * Immuable une fois construite ; partageable entre threads.
+ */
+public final class RouteGeometry {
+
+	/** Au-delà de ce nombre de segments parcourus, la dichotomie est plus rentable */
+	static final int MAX_WALK = 8;
+
+	final double[] lat;
+	final double[] lon;
+	final double[] cum; // cum[i] = distance (m) du point i depuis le début
+	final double length; // longueur totale (m)
+
+	private RouteGeometry(double[] lat, double[] lon, double[] cum) {
+		this.lat = lat;
+		this.lon = lon;
+		this.cum = cum;
+		this.length = (cum.length == 0) ? 0 : cum[cum.length - 1];
+	}
+
+	public static RouteGeometry of(List<double[]> pts) {
+		return of(pts, null);
+	}
+
+	/**
+	 * Construit la géométrie de pts en reprenant les distances cumulées de
+	 * previous sur le préfixe de points inchangé (édition en fin de tracé, ajout
+	 * de points) : seuls les segments modifiés repassent par haversine.
+	 */
+	public static RouteGeometry of(List<double[]> pts, RouteGeometry previous) {
+		int n = pts.size();
+		double[] lat = new double[n], lon = new double[n], cum = new double[n];
+		int same = (previous == null) ? 0 : previous.samePrefix(pts);
+		if (same > 0) {
+			System.arraycopy(previous.lat, 0, lat, 0, same);
+			System.arraycopy(previous.lon, 0, lon, 0, same);
+			System.arraycopy(previous.cum, 0, cum, 0, same);
+		}
+		double acc = (same > 0) ? cum[same - 1] : 0;
+		for (int i = same; i < n; i++) {
+			double[] p = pts.get(i);
+			lat[i] = p[0];
+			lon[i] = p[1];
+			if (i > 0) {
+				acc += FleetEngine.hav(lat[i - 1], lon[i - 1], lat[i], lon[i]);
+			}
+			cum[i] = acc;
+		}
+		return new RouteGeometry(lat, lon, cum);
+	}
+
+	/** Nombre de points en tête identiques à ceux de pts */
+	private int samePrefix(List<double[]> pts) {
+		int n = Math.min(pts.size(), lat.length);
+		for (int i = 0; i < n; i++) {
+			double[] p = pts.get(i);
+			if (p[0] != lat[i] || p[1] != lon[i]) {
+				return i;
+			}
+		}
+		return n;
+	}
+
+	/** Vrai si pts décrit exactement cette géométrie (rien à reconstruire) */
+	public boolean sameAs(List<double[]> pts) {
+		return pts.size() == lat.length && samePrefix(pts) == lat.length;
+	}
+
+	public int size() {
+		return lat.length;
+	}
+
+	public double length() {
+		return length;
+	}
+
+	/** Distance (m) du début de route au début du segment seg, progress dans [0..1] */
+	public double distanceAt(int seg, double progress) {
+		seg = Math.max(0, Math.min(seg, cum.length - 2));
+		double segLen = cum[seg + 1] - cum[seg];
+		return cum[seg] + Math.max(0, Math.min(1, progress)) * segLen;
+	}
+
+	/**
+	 * Segment [k, k+1] contenant la distance s, en partant de hint (segment du
+	 * pas précédent, ou -1 si inconnu).
+	 */
+	public int segment(double s, int hint) {
+		int last = cum.length - 2;
+		if (last <= 0) {
+			return 0;
+		}
+		if (hint < 0 || hint > last) {
+			return search(s);
+		}
+		int k = hint;
+		int steps = 0;
+		while (k < last && s >= cum[k + 1]) {
+			if (++steps > MAX_WALK) {
+				return search(s);
+			}
+			k++;
+		}
+		while (k > 0 && s < cum[k]) {
+			if (++steps > MAX_WALK) {
+				return search(s);
+			}
+			k--;
+		}
+		return k;
+	}
+
+	private int search(double s) {
+		int i = Arrays.binarySearch(cum, s);
+		int k = (i >= 0) ? i : -i - 2; // segment dont le début précède s
+		return Math.max(0, Math.min(k, cum.length - 2));
+	}
+
+	/**
+	 * Interpolation : écrit lat/lon à la distance s dans out[off], out[off+1] et
+	 * renvoie le segment utilisé (à repasser en hint au prochain appel).
+	 */
+	public int pointAt(double s, int hint, double[] out, int off) {
+		if (cum.length < 2) {
+			out[off] = lat[0];
+			out[off + 1] = lon[0];
+			return 0;
+		}
+		int k = segment(s, hint);
+		double s0 = cum[k], s1 = cum[k + 1];
+		double t = (s1 > s0) ? (s - s0) / (s1 - s0) : 0;
+		t = Math.max(0, Math.min(1, t));
+		out[off] = lat[k] + (lat[k + 1] - lat[k]) * t;
+		out[off + 1] = lon[k] + (lon[k + 1] - lon[k]) * t;
+		return k;
+	}
+}
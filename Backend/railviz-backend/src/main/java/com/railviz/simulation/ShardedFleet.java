@@ -0,0 +1,238 @@
+package com.railviz.simulation;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Flotte découpée en shards par route : chaque shard est un {@link FleetEngine}
+ * protégé par son propre moniteur. Le tick avance tous les shards en parallèle
+ * sur un ForkJoinPool et attend la fin de tous (barrière) avant de rendre la
+ * main, pour que la publication voie un état cohérent.
+ *
+ * Les opérations structurelles (ajout, suppression, changement de route) sont
+ * sérialisées sur l'instance ; le tick ne prend que les verrous de shard.
+ */
+public final class ShardedFleet {
+
+	/** Lecture sur le slot d'un train, sous le verrou de son shard */
+	@FunctionalInterface
+	public interface SlotFunction<T> {
+		T apply(FleetEngine engine, int slot);
+	}
+
+	/** Appelé pour chaque shard après son avance, sous son verrou, en parallèle */
+	@FunctionalInterface
+	public interface ShardVisitor {
+		void visit(int shard, FleetEngine engine, double[] pos);
+	}
+
+	private final FleetEngine[] shards;
+	private final double[][] positions;
+	private final Map<String, Integer> trainShard = new ConcurrentHashMap<>();
+	private final ForkJoinPool pool;
+
+	public ShardedFleet(int shardCount, ForkJoinPool pool) {
+		this(shardCount, false, pool);
+	}
+
+	/** @param eventDriven shards en mode événementiel (cf. {@link FleetEngine}) */
+	public ShardedFleet(int shardCount, boolean eventDriven, ForkJoinPool pool) {
+		this.shards = new FleetEngine[Math.max(1, shardCount)];
+		this.positions = new double[shards.length][];
+		for (int k = 0; k < shards.length; k++) {
+			shards[k] = new FleetEngine(eventDriven);
+			positions[k] = new double[0];
+		}
+		this.pool = pool;
+	}
+
+	public int shardCount() {
+		return shards.length;
+	}
+
+	/** Shard propriétaire d'une route (et donc de tous ses trains) */
+	public int shardOf(String routeId) {
+		return Math.floorMod(routeId.hashCode(), shards.length);
+	}
+
+	/* ============ Routes ============ */
+
+	public void putRoute(String routeId, List<double[]> pts) {
+		var e = shards[shardOf(routeId)];
+		synchronized (e) {
+			e.putRoute(routeId, pts);
+		}
+	}
+
+	public void removeRoute(String routeId) {
+		var e = shards[shardOf(routeId)];
+		synchronized (e) {
+			e.removeRoute(routeId);
+		}
+	}
+
+	public boolean hasRoute(String routeId) {
+		var e = shards[shardOf(routeId)];
+		synchronized (e) {
+			return e.hasRoute(routeId);
+		}
+	}
+
+	/** Distance (m) du début de route au point seg/progress */
+	public double distanceAt(String routeId, int seg, double progress) {
+		var e = shards[shardOf(routeId)];
+		synchronized (e) {
+			return e.distanceAt(routeId, seg, progress);
+		}
+	}
+
+	/** lat/lon du point à la distance dist de la route (train absent de la flotte locale) */
+	public boolean positionAt(String routeId, double dist, double[] out) {
+		var e = shards[shardOf(routeId)];
+		synchronized (e) {
+			return e.positionAt(routeId, dist, out, 0);
+		}
+	}
+
+	public List<String> routeIds() {
+		var out = new ArrayList<String>();
+		for (var e : shards) {
+			synchronized (e) {
+				out.addAll(e.routeIds());
+			}
+		}
+		return out;
+	}
+
+	/* ============ Trains ============ */
+
+	public int size() {
+		return trainShard.size();
+	}
+
+	public boolean exists(String id) {
+		return trainShard.containsKey(id);
+	}
+
+	/** Ajoute un train dans le shard de sa route et applique f sur son slot */
+	public synchronized <T> T add(String id, String routeId, double s0, double vMaxMs, double a, double d,
+			long dwellEnd, SlotFunction<T> f) {
+		int k = shardOf(routeId);
+		var e = shards[k];
+		synchronized (e) {
+			int i = e.add(id, routeId, s0, vMaxMs, a, d, dwellEnd);
+			trainShard.put(id, k);
+			return f.apply(e, i);
+		}
+	}
+
+	/**
+	 * Repositionne un train, en le déplaçant de shard si sa nouvelle route n'est
+	 * pas dans le même. Renvoie null si le train est inconnu.
+	 */
+	public synchronized <T> T reset(String id, String routeId, double s0, double vMaxMs, double a, double d,
+			long dwellEnd, SlotFunction<T> f) {
+		Integer from = trainShard.get(id);
+		if (from == null) {
+			return null;
+		}
+		int to = shardOf(routeId);
+		if (from != to) {
+			var old = shards[from];
+			synchronized (old) {
+				old.remove(id);
+			}
+			return add(id, routeId, s0, vMaxMs, a, d, dwellEnd, f);
+		}
+		var e = shards[to];
+		synchronized (e) {
+			int i = e.slot(id);
+			e.reset(i, routeId, s0, vMaxMs, a, d, dwellEnd);
+			return f.apply(e, i);
+		}
+	}
+
+	public synchronized boolean remove(String id) {
+		Integer k = trainShard.remove(id);
+		if (k == null) {
+			return false;
+		}
+		var e = shards[k];
+		synchronized (e) {
+			return e.remove(id);
+		}
+	}
+
+	/** Applique f sur le slot du train ; null si le train est inconnu */
+	public <T> T read(String id, SlotFunction<T> f) {
+		Integer k = trainShard.get(id);
+		if (k == null) {
+			return null;
+		}
+		var e = shards[k];
+		synchronized (e) {
+			int i = e.slot(id);
+			return (i < 0) ? null : f.apply(e, i);
+		}
+	}
+
+	/** Parcourt tous les trains, shard par shard */
+	public void forEach(SlotFunction<?> f) {
+		for (var e : shards) {
+			synchronized (e) {
+				for (int i = 0; i < e.size(); i++) {
+					f.apply(e, i);
+				}
+			}
+		}
+	}
+
+	public int countOnRoute(String routeId) {
+		var e = shards[shardOf(routeId)];
+		synchronized (e) {
+			return e.countOnRoute(routeId);
+		}
+	}
+
+	/* ============ Tick ============ */
+
+	/**
+	 * Avance tous les shards d'un pas dt en parallèle puis appelle visitor sur
+	 * chacun (toujours sous son verrou). Ne rend la main que lorsque tous les
+	 * shards ont terminé.
+	 */
+	public void tick(long now, double dt, ShardVisitor visitor) {
+		var tasks = new ArrayList<Callable<Void>>(shards.length);
+		for (int k = 0; k < shards.length; k++) {
+			final int shard = k;
+			tasks.add(() -> {
+				var e = shards[shard];
+				synchronized (e) {
+					int n = e.size();
+					if (positions[shard].length < 2 * n) {
+						positions[shard] = new double[Math.max(2 * n, 2 * positions[shard].length)];
+					}
+					e.tick(now, dt, positions[shard]);
+					visitor.visit(shard, e, positions[shard]);
+				}
+				return null;
+			});
+		}
+		// barrière : invokeAll attend la fin de toutes les tâches
+		for (var f : pool.invokeAll(tasks)) {
+			try {
+				f.get();
+			} catch (InterruptedException ex) {
+				Thread.currentThread().interrupt();
+				return;
+			} catch (ExecutionException ex) {
+				throw new IllegalStateException("échec du tick d'un shard", ex.getCause());
+			}
+		}
+	}
+}
@@ -0,0 +1,145 @@
+package com.railviz.telemetry;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.railviz.model.TrainDTO;
+
+/**
+ * Décodeur du flux produit par {@link TelemetryEncoder} (côté client Java :
+ * tests, outils de charge, relais). Ignore les frames delta tant qu'aucune
+ * keyframe n'a été reçue.
+ */
+public final class TelemetryDecoder {
+
+	private static final String[] SIGNALS = { "GREEN", "YELLOW", "RED" };
+
+	private static final class Entry {
+		String id;
+		String routeId;
+		int lat, lon, speed;
+		byte sig;
+	}
+
+	private final Map<Integer, Entry> entries = new HashMap<>();
+	private boolean synced;
+
+	private byte[] buf;
+	private int pos;
+
+	public boolean synced() {
+		return synced;
+	}
+
+	public int size() {
+		return entries.size();
+	}
+
+	/** Applique une frame ; renvoie les trains mis à jour (vide si pas encore synchronisé) */
+	public List<TrainDTO> decode(byte[] frame) {
+		var out = new ArrayList<TrainDTO>();
+		read(frame, out);
+		return out;
+	}
+
+	/** Applique une frame sans matérialiser les trains mis à jour (relais) */
+	public void apply(byte[] frame) {
+		read(frame, null);
+	}
+
+	private void read(byte[] frame, List<TrainDTO> out) {
+		buf = frame;
+		pos = 0;
+		boolean key = (readByte() & TelemetryEncoder.FLAG_KEYFRAME) != 0;
+		readVarint(); // seq
+		if (key) {
+			entries.clear();
+			synced = true;
+		} else if (!synced) {
+			return;
+		}
+
+		int defs = (int) readVarint();
+		for (int n = 0; n < defs; n++) {
+			int k = (int) readVarint();
+			var e = entries.computeIfAbsent(k, x -> new Entry());
+			e.id = readString();
+			e.routeId = readString();
+		}
+		int gone = (int) readVarint();
+		for (int n = 0; n < gone; n++) {
+			entries.remove((int) readVarint());
+		}
+		int upd = (int) readVarint();
+		for (int n = 0; n < upd; n++) {
+			var e = entries.get((int) readVarint());
+			int mask = readByte();
+			if ((mask & TelemetryEncoder.MASK_POS) != 0) {
+				e.lat += readZigzag();
+				e.lon += readZigzag();
+			}
+			if ((mask & TelemetryEncoder.MASK_SPEED) != 0) {
+				e.speed += readZigzag();
+			}
+			if ((mask & TelemetryEncoder.MASK_SIGNAL) != 0) {
+				e.sig = (byte) readByte();
+			}
+			if (out != null) {
+				out.add(toDto(e));
+			}
+		}
+	}
+
+	/** État courant de tous les trains connus */
+	public List<TrainDTO> trains() {
+		var out = new ArrayList<TrainDTO>(entries.size());
+		for (var e : entries.values()) {
+			out.add(toDto(e));
+		}
+		return out;
+	}
+
+	/** Ajoute l'état courant de tous les trains connus à out */
+	public void copyTo(TelemetrySnapshot out) {
+		for (var e : entries.values()) {
+			out.add(e.id, e.routeId, e.lat / TelemetryEncoder.POS_SCALE, e.lon / TelemetryEncoder.POS_SCALE,
+					e.speed / TelemetryEncoder.SPEED_SCALE, e.sig);
+		}
+	}
+
+	private static TrainDTO toDto(Entry e) {
+		return new TrainDTO(e.id, e.lat / TelemetryEncoder.POS_SCALE, e.lon / TelemetryEncoder.POS_SCALE,
+				e.speed / TelemetryEncoder.SPEED_SCALE, SIGNALS[e.sig], e.routeId);
+	}
+
+	private int readByte() {
+		return buf[pos++] & 0xFF;
+	}
+
+	private long readVarint() {
+		long v = 0;
+		int shift = 0;
+		int b;
+		do {
+			b = readByte();
+			v |= (long) (b & 0x7F) << shift;
+			shift += 7;
+		} while ((b & 0x80) != 0);
+		return v;
+	}
+
+	private int readZigzag() {
+		int v = (int) readVarint();
+		return (v >>> 1) ^ -(v & 1);
+	}
+
+	private String readString() {
+		int len = (int) readVarint();
+		var s = new String(buf, pos, len, StandardCharsets.UTF_8);
+		pos += len;
+		return s;
+	}
+}
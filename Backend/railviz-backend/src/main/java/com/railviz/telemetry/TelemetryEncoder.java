@@ -0,0 +1,276 @@
+package com.railviz.telemetry;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Encodeur binaire delta de la télémétrie : une frame par tick pour toute la
+ * flotte, ne portant que les trains dont la position, la vitesse ou le signal a
+ * bougé au-delà d'un seuil depuis la dernière valeur envoyée.
+ *
+ * <pre>
+ * frame   = u8 flags (bit0 : keyframe) ; varint seq ; defs ; gone ; updates
+ * defs    = varint n ; n × (varint idx ; string id ; string routeId)
+ * gone    = varint n ; n × varint idx
+ * updates = varint n ; n × (varint idx ; u8 mask ; [zz dLat ; zz dLon] ; [zz dSpeed] ; [u8 signal])
+ * string  = varint len ; UTF-8
+ * </pre>
+ *
+ * Les ids texte sont remplacés par de petits index (varint) annoncés une fois
+ * dans "defs". lat/lon sont quantifiés à 1e-6° et la vitesse à 0,1 km/h ; les
+ * deltas sont relatifs à la dernière valeur envoyée, donc sans dérive. Une
+ * keyframe (toutes les K frames, ou sur demande) redéfinit tous les trains avec
+ * des valeurs absolues : un client qui arrive en cours de flux attend la
+ * prochaine keyframe.
+ *
+ * Non thread-safe : un encodeur par flux.
+ */
+public final class TelemetryEncoder {
+
+	public static final int FLAG_KEYFRAME = 1;
+	public static final int MASK_POS = 1, MASK_SPEED = 2, MASK_SIGNAL = 4;
+
+	/** Quantification : 1e-6° ≈ 0,11 m ; 0,1 km/h */
+	public static final double POS_SCALE = 1e6;
+	public static final double SPEED_SCALE = 10;
+
+	private final int keyframeInterval;
+	private final int posThreshold;
+	private final int speedThreshold;
+
+	private final Map<String, Integer> index = new HashMap<>();
+	private String[] ids = new String[16];
+	private String[] routes = new String[16];
+	private int[] qLat = new int[16];
+	private int[] qLon = new int[16];
+	private int[] qSpeed = new int[16];
+	private byte[] sig = new byte[16];
+	private long[] seen = new long[16]; // numéro de la dernière frame où le train était présent
+	private int[] free = new int[16];
+	private int freeCount;
+	private int next;
+
+	private long seq;
+	private boolean keyframeRequested = true;
+
+	private byte[] buf = new byte[1024];
+	private int pos;
+
+	/**
+	 * @param keyframeInterval une keyframe toutes les K frames
+	 * @param posThresholdM    déplacement minimal (m, approx.) avant de renvoyer la
+	 *                         position
+	 * @param speedThresholdKmh écart minimal de vitesse (km/h) avant de la renvoyer
+	 */
+	public TelemetryEncoder(int keyframeInterval, double posThresholdM, double speedThresholdKmh) {
+		this.keyframeInterval = Math.max(1, keyframeInterval);
+		// 1e-6° de latitude ≈ 0,111 m
+		this.posThreshold = (int) Math.max(0, Math.round(posThresholdM / 0.111));
+		this.speedThreshold = (int) Math.max(0, Math.round(speedThresholdKmh * SPEED_SCALE));
+	}
+
+	/** La prochaine frame sera une keyframe (ex. nouvel abonné) */
+	public void requestKeyframe() {
+		keyframeRequested = true;
+	}
+
+	/** Nombre de trains actuellement connus du flux */
+	public int tracked() {
+		return index.size();
+	}
+
+	/** Encode la frame du tick ; null si rien n'a changé (et pas de keyframe) */
+	public byte[] encode(TelemetrySnapshot... parts) {
+		long frame = ++seq;
+		boolean key = keyframeRequested || frame % keyframeInterval == 0;
+		keyframeRequested = false;
+
+		// 1) définitions : trains nouveaux ou qui ont changé de route (toutes en keyframe)
+		pos = 0;
+		writeByte(key ? FLAG_KEYFRAME : 0);
+		writeVarint(frame);
+		int defsAt = reserveCount();
+		int defs = 0;
+		for (var p : parts) {
+			for (int i = 0; i < p.size; i++) {
+				Integer k = index.get(p.ids[i]);
+				boolean fresh = (k == null);
+				if (fresh) {
+					k = allocate(p.ids[i]);
+				}
+				seen[k] = frame;
+				if (fresh || key || !p.routeIds[i].equals(routes[k])) {
+					routes[k] = p.routeIds[i];
+					writeVarint(k);
+					writeString(p.ids[i]);
+					writeString(p.routeIds[i]);
+					defs++;
+					if (fresh) {
+						// force l'envoi complet dans la section updates
+						qLat[k] = qLon[k] = qSpeed[k] = Integer.MIN_VALUE;
+						sig[k] = -1;
+					}
+				}
+			}
+		}
+		patchCount(defsAt, defs);
+
+		// 2) disparus : connus mais absents de ce tick
+		int goneAt = reserveCount();
+		int gone = 0;
+		for (int k = 0; k < next; k++) {
+			if (ids[k] != null && seen[k] != frame) {
+				writeVarint(k);
+				index.remove(ids[k]);
+				ids[k] = null;
+				routes[k] = null;
+				free[freeCount++] = k;
+				gone++;
+			}
+		}
+		patchCount(goneAt, gone);
+
+		// 3) mises à jour au-delà des seuils (absolues en keyframe)
+		int updAt = reserveCount();
+		int upd = 0;
+		for (var p : parts) {
+			for (int i = 0; i < p.size; i++) {
+				int k = index.get(p.ids[i]);
+				int la = (int) Math.round(p.lat[i] * POS_SCALE);
+				int lo = (int) Math.round(p.lon[i] * POS_SCALE);
+				int sp = (int) Math.round(p.speedKmh[i] * SPEED_SCALE);
+				byte sg = p.signal[i];
+				boolean fresh = qLat[k] == Integer.MIN_VALUE;
+				int mask = 0;
+				if (key || fresh || Math.abs(la - qLat[k]) > posThreshold || Math.abs(lo - qLon[k]) > posThreshold) {
+					mask |= MASK_POS;
+				}
+				if (key || fresh || Math.abs(sp - qSpeed[k]) > speedThreshold) {
+					mask |= MASK_SPEED;
+				}
+				if (key || fresh || sg != sig[k]) {
+					mask |= MASK_SIGNAL;
+				}
+				if (mask == 0) {
+					continue;
+				}
+				writeVarint(k);
+				writeByte(mask);
+				boolean absolute = key || fresh;
+				if ((mask & MASK_POS) != 0) {
+					writeZigzag(absolute ? la : la - qLat[k]);
+					writeZigzag(absolute ? lo : lo - qLon[k]);
+					qLat[k] = la;
+					qLon[k] = lo;
+				}
+				if ((mask & MASK_SPEED) != 0) {
+					writeZigzag(absolute ? sp : sp - qSpeed[k]);
+					qSpeed[k] = sp;
+				}
+				if ((mask & MASK_SIGNAL) != 0) {
+					writeByte(sg);
+					sig[k] = sg;
+				}
+				upd++;
+			}
+		}
+		patchCount(updAt, upd);
+
+		if (!key && defs == 0 && gone == 0 && upd == 0) {
+			return null;
+		}
+		return Arrays.copyOf(buf, pos);
+	}
+
+	private int allocate(String id) {
+		int k;
+		if (freeCount > 0) {
+			k = free[--freeCount];
+		} else {
+			k = next++;
+			if (k == ids.length) {
+				int cap = k * 2;
+				ids = Arrays.copyOf(ids, cap);
+				routes = Arrays.copyOf(routes, cap);
+				qLat = Arrays.copyOf(qLat, cap);
+				qLon = Arrays.copyOf(qLon, cap);
+				qSpeed = Arrays.copyOf(qSpeed, cap);
+				sig = Arrays.copyOf(sig, cap);
+				seen = Arrays.copyOf(seen, cap);
+				free = Arrays.copyOf(free, cap);
+			}
+		}
+		ids[k] = id;
+		index.put(id, k);
+		return k;
+	}
+
+	/* ============ Écriture ============ */
+
+	/** Réserve 5 octets pour un compteur varint écrit après coup */
+	private int reserveCount() {
+		ensure(5);
+		int at = pos;
+		pos += 5;
+		return at;
+	}
+
+	/** Écrit le compteur à sa place et resserre le buffer si le varint fait moins de 5 octets */
+	private void patchCount(int at, int n) {
+		int len = varintSize(n);
+		int gap = 5 - len;
+		if (gap > 0) {
+			System.arraycopy(buf, at + 5, buf, at + len, pos - at - 5);
+			pos -= gap;
+		}
+		int p = at;
+		while ((n & ~0x7F) != 0) {
+			buf[p++] = (byte) ((n & 0x7F) | 0x80);
+			n >>>= 7;
+		}
+		buf[p] = (byte) n;
+	}
+
+	private static int varintSize(long v) {
+		int n = 1;
+		while ((v & ~0x7FL) != 0) {
+			v >>>= 7;
+			n++;
+		}
+		return n;
+	}
+
+	private void ensure(int more) {
+		if (pos + more > buf.length) {
+			buf = Arrays.copyOf(buf, Math.max(buf.length * 2, pos + more));
+		}
+	}
+
+	private void writeByte(int b) {
+		ensure(1);
+		buf[pos++] = (byte) b;
+	}
+
+	private void writeVarint(long v) {
+		ensure(10);
+		while ((v & ~0x7FL) != 0) {
+			buf[pos++] = (byte) ((v & 0x7F) | 0x80);
+			v >>>= 7;
+		}
+		buf[pos++] = (byte) v;
+	}
+
+	private void writeZigzag(int v) {
+		writeVarint(Integer.toUnsignedLong((v << 1) ^ (v >> 31)));
+	}
+
+	private void writeString(String s) {
+		byte[] b = s.getBytes(StandardCharsets.UTF_8);
+		writeVarint(b.length);
+		ensure(b.length);
+		System.arraycopy(b, 0, buf, pos, b.length);
+		pos += b.length;
+	}
+}
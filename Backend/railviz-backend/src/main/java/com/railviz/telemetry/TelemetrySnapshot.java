@@ -0,0 +1,73 @@
+package com.railviz.telemetry;
+
+import java.util.Arrays;
+
+/**
+ * Photo de la flotte à la fin d'un tick, en tableaux parallèles réutilisés d'un
+ * tick à l'autre (pas de TrainDTO par train). Un snapshot par shard : chacun
+ * est rempli par le thread qui avance son shard.
+ */
+public final class TelemetrySnapshot {
+
+	/** Signaux codés (ordre de TrainService.Sig) */
+	public static final byte GREEN = 0, YELLOW = 1, RED = 2;
+
+	int size;
+	String[] ids = new String[16];
+	String[] routeIds = new String[16];
+	double[] lat = new double[16];
+	double[] lon = new double[16];
+	double[] speedKmh = new double[16];
+	byte[] signal = new byte[16];
+
+	public void clear() {
+		size = 0;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public void add(String id, String routeId, double la, double lo, double kmh, byte sig) {
+		if (size == ids.length) {
+			int cap = size * 2;
+			ids = Arrays.copyOf(ids, cap);
+			routeIds = Arrays.copyOf(routeIds, cap);
+			lat = Arrays.copyOf(lat, cap);
+			lon = Arrays.copyOf(lon, cap);
+			speedKmh = Arrays.copyOf(speedKmh, cap);
+			signal = Arrays.copyOf(signal, cap);
+		}
+		int i = size++;
+		ids[i] = id;
+		routeIds[i] = routeId;
+		lat[i] = la;
+		lon[i] = lo;
+		speedKmh[i] = kmh;
+		signal[i] = sig;
+	}
+
+	public String id(int i) {
+		return ids[i];
+	}
+
+	public String routeId(int i) {
+		return routeIds[i];
+	}
+
+	public double lat(int i) {
+		return lat[i];
+	}
+
+	public double lon(int i) {
+		return lon[i];
+	}
+
+	public double speedKmh(int i) {
+		return speedKmh[i];
+	}
+
+	public byte signal(int i) {
+		return signal[i];
+	}
+}
@@ -0,0 +1,208 @@
+package com.railviz.telemetry;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Index spatial de la flotte : grille uniforme lat/lon dont chaque cellule
+ * liste les trains qu'elle contient. Mise à jour incrémentale à chaque tick :
+ * seuls les trains qui changent de cellule (ou apparaissent/disparaissent) sont
+ * déplacés, le reste ne coûte qu'une lecture.
+ *
+ * Chaque train reçoit un "handle" stable ; les valeurs du tick (position,
+ * vitesse, signal, route) sont recopiées dans des tableaux indexés par handle
+ * pour que les requêtes par viewport puissent reconstruire un snapshot.
+ *
+ * Mise à jour par un seul thread ; les requêtes peuvent être concurrentes entre
+ * deux mises à jour.
+ */
+public final class TrainSpatialIndex {
+
+	private final double cellDeg;
+
+	/* ============ Table des trains (par handle) ============ */
+
+	private final Map<String, Integer> handles = new HashMap<>();
+	private String[] ids = new String[16];
+	private String[] routeIds = new String[16];
+	private double[] lat = new double[16];
+	private double[] lon = new double[16];
+	private double[] speedKmh = new double[16];
+	private byte[] signal = new byte[16];
+	private long[] cell = new long[16]; // cellule courante
+	private int[] inCell = new int[16]; // position dans la liste de la cellule
+	private long[] seen = new long[16];
+	private int[] free = new int[16];
+	private int freeCount;
+	private int next;
+	private long generation;
+
+	/* ============ Grille ============ */
+
+	/** Liste d'handles d'une cellule (suppression par échange avec le dernier) */
+	private static final class Cell {
+		int[] items = new int[4];
+		int size;
+	}
+
+	private final Map<Long, Cell> cells = new HashMap<>();
+
+	/** @param cellDeg taille d'une cellule en degrés (0,01° ≈ 1,1 km en latitude) */
+	public TrainSpatialIndex(double cellDeg) {
+		this.cellDeg = cellDeg;
+	}
+
+	public int size() {
+		return handles.size();
+	}
+
+	private long cellKey(int cy, int cx) {
+		return ((long) cy << 32) | (cx & 0xFFFFFFFFL);
+	}
+
+	private int cellY(double la) {
+		return (int) Math.floor(la / cellDeg);
+	}
+
+	private int cellX(double lo) {
+		return (int) Math.floor(lo / cellDeg);
+	}
+
+	/** Intègre les valeurs du tick ; les trains absents sont retirés */
+	public void update(TelemetrySnapshot... parts) {
+		long gen = ++generation;
+		for (var p : parts) {
+			for (int i = 0; i < p.size; i++) {
+				Integer h = handles.get(p.ids[i]);
+				boolean fresh = (h == null);
+				if (fresh) {
+					h = allocate(p.ids[i]);
+				}
+				seen[h] = gen;
+				routeIds[h] = p.routeIds[i];
+				lat[h] = p.lat[i];
+				lon[h] = p.lon[i];
+				speedKmh[h] = p.speedKmh[i];
+				signal[h] = p.signal[i];
+				long c = cellKey(cellY(p.lat[i]), cellX(p.lon[i]));
+				if (fresh) {
+					insert(h, c);
+				} else if (c != cell[h]) {
+					detach(h);
+					insert(h, c);
+				}
+			}
+		}
+		for (int h = 0; h < next; h++) {
+			if (ids[h] != null && seen[h] != gen) {
+				detach(h);
+				handles.remove(ids[h]);
+				ids[h] = null;
+				routeIds[h] = null;
+				free[freeCount++] = h;
+			}
+		}
+	}
+
+	/**
+	 * Ajoute à out les trains du rectangle [minLat, maxLat] × [minLon, maxLon]
+	 * (et des routes demandées si routes != null). Ne parcourt que les cellules
+	 * qui recouvrent le rectangle.
+	 */
+	public void query(double minLat, double minLon, double maxLat, double maxLon, Set<String> routes,
+			TelemetrySnapshot out) {
+		int y0 = cellY(minLat), y1 = cellY(maxLat);
+		int x0 = cellX(minLon), x1 = cellX(maxLon);
+		long span = (long) (y1 - y0 + 1) * (x1 - x0 + 1);
+		if (span > cells.size()) {
+			// viewport plus large que la zone occupée : on parcourt les cellules existantes
+			for (var e : cells.entrySet()) {
+				int cy = (int) (e.getKey() >> 32), cx = (int) (long) e.getKey();
+				if (cy >= y0 && cy <= y1 && cx >= x0 && cx <= x1) {
+					collect(e.getValue(), minLat, minLon, maxLat, maxLon, routes, out);
+				}
+			}
+			return;
+		}
+		for (int cy = y0; cy <= y1; cy++) {
+			for (int cx = x0; cx <= x1; cx++) {
+				var c = cells.get(cellKey(cy, cx));
+				if (c != null) {
+					collect(c, minLat, minLon, maxLat, maxLon, routes, out);
+				}
+			}
+		}
+	}
+
+	/** Ajoute à out tous les trains des routes demandées (toute la flotte si routes == null) */
+	public void query(Set<String> routes, TelemetrySnapshot out) {
+		for (int h = 0; h < next; h++) {
+			if (ids[h] != null && (routes == null || routes.contains(routeIds[h]))) {
+				out.add(ids[h], routeIds[h], lat[h], lon[h], speedKmh[h], signal[h]);
+			}
+		}
+	}
+
+	private void collect(Cell c, double minLat, double minLon, double maxLat, double maxLon, Set<String> routes,
+			TelemetrySnapshot out) {
+		for (int k = 0; k < c.size; k++) {
+			int h = c.items[k];
+			double la = lat[h], lo = lon[h];
+			if (la < minLat || la > maxLat || lo < minLon || lo > maxLon) {
+				continue;
+			}
+			if (routes != null && !routes.contains(routeIds[h])) {
+				continue;
+			}
+			out.add(ids[h], routeIds[h], la, lo, speedKmh[h], signal[h]);
+		}
+	}
+
+	private void insert(int h, long c) {
+		var list = cells.computeIfAbsent(c, k -> new Cell());
+		if (list.size == list.items.length) {
+			list.items = Arrays.copyOf(list.items, list.size * 2);
+		}
+		inCell[h] = list.size;
+		list.items[list.size++] = h;
+		cell[h] = c;
+	}
+
+	private void detach(int h) {
+		var list = cells.get(cell[h]);
+		int at = inCell[h];
+		int last = list.items[--list.size];
+		list.items[at] = last;
+		inCell[last] = at;
+		if (list.size == 0) {
+			cells.remove(cell[h]);
+		}
+	}
+
+	private int allocate(String id) {
+		int h;
+		if (freeCount > 0) {
+			h = free[--freeCount];
+		} else {
+			h = next++;
+			if (h == ids.length) {
+				int cap = h * 2;
+				ids = Arrays.copyOf(ids, cap);
+				routeIds = Arrays.copyOf(routeIds, cap);
+				lat = Arrays.copyOf(lat, cap);
+				lon = Arrays.copyOf(lon, cap);
+				speedKmh = Arrays.copyOf(speedKmh, cap);
+				signal = Arrays.copyOf(signal, cap);
+				cell = Arrays.copyOf(cell, cap);
+				inCell = Arrays.copyOf(inCell, cap);
+				seen = Arrays.copyOf(seen, cap);
+				free = Arrays.copyOf(free, cap);
+			}
+		}
+		ids[h] = id;
+		handles.put(id, h);
+		return h;
+	}
+}
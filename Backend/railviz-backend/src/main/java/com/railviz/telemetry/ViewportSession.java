@@ -0,0 +1,70 @@
+package com.railviz.telemetry;
+
+import java.util.Set;
+
+/**
+ * Abonnement filtré d'une session STOMP : rectangle, routes, cadence liée au
+ * zoom, et son propre encodeur delta (l'état "dernière valeur envoyée" est
+ * propre à chaque client).
+ */
+public final class ViewportSession {
+
+	private final String sessionId;
+	private final TelemetryEncoder encoder;
+	private final TelemetrySnapshot visible = new TelemetrySnapshot();
+
+	private volatile Filter filter = Filter.ALL;
+	private volatile boolean keyframeWanted = true;
+	private long ticks;
+
+	/** Filtre immuable, remplacé d'un bloc à chaque message viewport */
+	public record Filter(boolean hasBox, double minLat, double minLon, double maxLat, double maxLon,
+			Set<String> routes, int everyNTicks) {
+		public static final Filter ALL = new Filter(false, 0, 0, 0, 0, null, 1);
+	}
+
+	public ViewportSession(String sessionId, TelemetryEncoder encoder) {
+		this.sessionId = sessionId;
+		this.encoder = encoder;
+	}
+
+	public String sessionId() {
+		return sessionId;
+	}
+
+	public Filter filter() {
+		return filter;
+	}
+
+	/** Nouveau filtre : le client repart d'une keyframe restreinte à sa nouvelle vue */
+	public void setFilter(Filter f) {
+		filter = f;
+		keyframeWanted = true;
+	}
+
+	public void requestKeyframe() {
+		keyframeWanted = true;
+	}
+
+	/**
+	 * Frame du tick pour cette session, ou null si rien à envoyer (cadence réduite
+	 * ou aucun changement visible).
+	 */
+	public byte[] frame(TrainSpatialIndex index) {
+		var f = filter;
+		if (ticks++ % f.everyNTicks() != 0 && !keyframeWanted) {
+			return null;
+		}
+		if (keyframeWanted) {
+			keyframeWanted = false;
+			encoder.requestKeyframe();
+		}
+		visible.clear();
+		if (f.hasBox()) {
+			index.query(f.minLat(), f.minLon(), f.maxLat(), f.maxLon(), f.routes(), visible);
+		} else {
+			index.query(f.routes(), visible);
+		}
+		return encoder.encode(visible);
+	}
+}
@@ -0,0 +1,291 @@
+package com.railviz;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Type;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.boot.web.embedded.tomcat.TomcatServletWebServerFactory;
+import org.springframework.boot.web.server.WebServerFactoryCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.messaging.converter.ByteArrayMessageConverter;
+import org.springframework.messaging.simp.stomp.StompFrameHandler;
+import org.springframework.messaging.simp.stomp.StompHeaders;
+import org.springframework.messaging.simp.stomp.StompSession;
+import org.springframework.messaging.simp.stomp.StompSessionHandlerAdapter;
+import org.springframework.web.socket.client.standard.StandardWebSocketClient;
+import org.springframework.web.socket.messaging.WebSocketStompClient;
+
+import com.railviz.service.TelemetryPublisher;
+import com.railviz.service.TrainService;
+import com.railviz.telemetry.TelemetryDecoder;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.websocket.ContainerProvider;
+
+/**
+ * Charge : 1000 abonnés de /topic/telemetry.bin dont un sur dix lit lentement
+ * (socket brute à petit tampon, lue à 1 Ko/s, comme un onglet sur une liaison
+ * saturée). Le tas doit rester stable, les clients rapides servis à plein
+ * débit et les lents ralentis mais toujours synchronisés. Exclu du build
+ * courant : mvn test -Pload.
+ */
+@Tag("load")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+		"railviz.persistence.enabled=false", "railviz.websocket.outbound.max-pending-bytes=65536",
+		"railviz.websocket.outbound.close-after-ms=600000" })
+public class BackpressureLoadTests {
+
+	private static final int CLIENTS = Integer.getInteger("railviz.load.clients", 1000);
+	private static final int TRAINS = Integer.getInteger("railviz.load.trains", 500);
+	private static final int SLOW_BYTES_PER_S = 1024;
+
+	/** Tampons d'émission modestes, comme derrière un vrai réseau (pas d'autotuning loopback) */
+	@TestConfiguration
+	static class SmallSocketBuffers {
+		@Bean
+		WebServerFactoryCustomizer<TomcatServletWebServerFactory> smallSendBuffers() {
+			return f -> f.addConnectorCustomizers(c -> c.setProperty("socket.txBufSize", "32768"));
+		}
+	}
+
+	@LocalServerPort
+	int port;
+
+	@Autowired
+	TrainService trains;
+
+	@Autowired
+	MeterRegistry meters;
+
+	static final class FastClient {
+		final TelemetryDecoder decoder = new TelemetryDecoder();
+		final AtomicLong frames = new AtomicLong();
+		StompSession session;
+	}
+
+	/** Client lent : WebSocket + STOMP à la main sur une socket lue à débit limité */
+	static final class SlowClient implements Runnable {
+		final TelemetryDecoder decoder = new TelemetryDecoder();
+		final AtomicLong frames = new AtomicLong();
+		final Socket socket = new Socket();
+		volatile boolean stop;
+
+		SlowClient(int port) throws IOException {
+			socket.setReceiveBufferSize(8192);
+			socket.connect(new InetSocketAddress("localhost", port));
+			var out = socket.getOutputStream();
+			out.write(("GET /ws HTTP/1.1\r\nHost: localhost:" + port + "\r\nUpgrade: websocket\r\n"
+					+ "Connection: Upgrade\r\nSec-WebSocket-Key: dGhlIHNhbXBsZSBub25jZQ==\r\n"
+					+ "Sec-WebSocket-Version: 13\r\nSec-WebSocket-Protocol: v12.stomp\r\n\r\n")
+					.getBytes(StandardCharsets.US_ASCII));
+			var in = socket.getInputStream();
+			int matched = 0;
+			while (matched < 4) {
+				int b = in.read();
+				if (b < 0) {
+					throw new IOException("handshake refusé");
+				}
+				matched = (b == "\r\n\r\n".charAt(matched)) ? matched + 1 : (b == '\r' ? 1 : 0);
+			}
+			sendText(out, "CONNECT\naccept-version:1.2\nhost:localhost\n\n\0");
+			sendText(out, "SUBSCRIBE\nid:sub-0\ndestination:" + TelemetryPublisher.BINARY_TOPIC + "\n\n\0");
+		}
+
+		/** Trame texte masquée (clé nulle : le masque ne change rien) */
+		private static void sendText(OutputStream out, String s) throws IOException {
+			byte[] p = s.getBytes(StandardCharsets.UTF_8);
+			out.write(0x81);
+			out.write(0x80 | p.length);
+			out.write(new byte[4]);
+			out.write(p);
+			out.flush();
+		}
+
+		@Override
+		public void run() {
+			try (socket) {
+				var in = new DataInputStream(new Throttled(socket.getInputStream(), SLOW_BYTES_PER_S));
+				while (!stop) {
+					int b0 = in.readUnsignedByte();
+					long len = in.readUnsignedByte() & 0x7F;
+					if (len == 126) {
+						len = in.readUnsignedShort();
+					} else if (len == 127) {
+						len = in.readLong();
+					}
+					byte[] payload = in.readNBytes((int) len);
+					if ((b0 & 0x0F) > 2) {
+						continue; // contrôle
+					}
+					String head = new String(payload, 0, Math.min(payload.length, 8), StandardCharsets.US_ASCII);
+					if (!head.startsWith("MESSAGE\n")) {
+						continue;
+					}
+					int body = 0;
+					while (!(payload[body] == '\n' && payload[body + 1] == '\n')) {
+						body++;
+					}
+					decoder.apply(Arrays.copyOfRange(payload, body + 2, payload.length - 1));
+					frames.incrementAndGet();
+				}
+			} catch (IOException e) {
+				// fermée
+			}
+		}
+	}
+
+	/** Lecture à débit borné, par petites tranches */
+	static final class Throttled extends InputStream {
+		private final InputStream in;
+		private final int bytesPerSecond;
+		private final long start = System.nanoTime();
+		private long read;
+
+		Throttled(InputStream in, int bytesPerSecond) {
+			this.in = in;
+			this.bytesPerSecond = bytesPerSecond;
+		}
+
+		@Override
+		public int read() throws IOException {
+			byte[] b = new byte[1];
+			return (read(b, 0, 1) < 0) ? -1 : b[0] & 0xFF;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			long due = start + read * 1_000_000_000L / bytesPerSecond;
+			long wait = due - System.nanoTime();
+			if (wait > 0) {
+				try {
+					TimeUnit.NANOSECONDS.sleep(wait);
+				} catch (InterruptedException e) {
+					throw new IOException(e);
+				}
+			}
+			int n = in.read(b, off, Math.min(len, 256));
+			read += Math.max(0, n);
+			return n;
+		}
+	}
+
+	private static long usedHeapAfterGc() {
+		var mem = ManagementFactory.getMemoryMXBean();
+		System.gc();
+		System.gc();
+		return mem.getHeapMemoryUsage().getUsed();
+	}
+
+	@Test
+	public void slowConsumersKeepHeapBoundedAndFastOnesAtFullRate() throws Exception {
+		var rnd = new Random(7);
+		for (int i = 0; i < TRAINS; i++) {
+			trains.create("BP-" + i, "T" + (1 + i % 3), 60 + rnd.nextInt(100), rnd.nextInt(4), rnd.nextDouble());
+		}
+
+		var container = ContainerProvider.getWebSocketContainer();
+		container.setDefaultMaxBinaryMessageBufferSize(256 * 1024);
+		var stomp = new WebSocketStompClient(new StandardWebSocketClient(container));
+		stomp.setInboundMessageSizeLimit(1024 * 1024);
+		stomp.setMessageConverter(new ByteArrayMessageConverter());
+		String url = "ws://localhost:" + port + "/ws";
+
+		var fast = new ArrayList<FastClient>();
+		var slow = new ArrayList<SlowClient>();
+		for (int from = 0; from < CLIENTS; from += 100) {
+			var connecting = new ArrayList<CompletableFuture<StompSession>>();
+			var batch = new ArrayList<FastClient>();
+			for (int c = from; c < Math.min(CLIENTS, from + 100); c++) {
+				if (c % 10 == 0) {
+					var s = new SlowClient(port);
+					slow.add(s);
+					Thread.ofPlatform().daemon().start(s);
+				} else {
+					var client = new FastClient();
+					batch.add(client);
+					connecting.add(stomp.connectAsync(url, new StompSessionHandlerAdapter() {
+					}));
+				}
+			}
+			for (int k = 0; k < batch.size(); k++) {
+				var client = batch.get(k);
+				client.session = connecting.get(k).get(30, TimeUnit.SECONDS);
+				client.session.subscribe(TelemetryPublisher.BINARY_TOPIC, new StompFrameHandler() {
+					@Override
+					public Type getPayloadType(StompHeaders headers) {
+						return byte[].class;
+					}
+
+					@Override
+					public void handleFrame(StompHeaders headers, Object payload) {
+						synchronized (client.decoder) {
+							client.decoder.apply((byte[]) payload);
+						}
+						client.frames.incrementAndGet();
+					}
+				});
+			}
+			fast.addAll(batch);
+		}
+
+		// les lents remplissent leurs tampons puis passent en retard
+		Thread.sleep(15_000);
+		long framesBefore = fast.stream().mapToLong(c -> c.frames.get()).sum();
+		var heap = new ArrayList<Long>();
+		long t0 = System.nanoTime();
+		for (int k = 0; k < 6; k++) {
+			heap.add(usedHeapAfterGc());
+			Thread.sleep(5_000);
+		}
+		double seconds = (System.nanoTime() - t0) / 1e9;
+		double fastRate = (fast.stream().mapToLong(c -> c.frames.get()).sum() - framesBefore) / seconds / fast.size();
+
+		double lagMax = meters.get("railviz.ws.lag.max").gauge().value();
+		double downgraded = meters.get("railviz.ws.sessions.downgraded").gauge().value();
+		double dropped = meters.get("railviz.ws.outbound.dropped").counter().count();
+		long slowSynced = slow.stream().filter(s -> s.decoder.synced()).count();
+		long fastSynced = fast.stream().filter(c -> c.decoder.synced()).count();
+		System.out.printf("%d clients (%d lents), %d trains : tas %s Mo, %.2f frames/s par client rapide, "
+				+ "file max %.0f o, %.0f sessions ralenties, %.0f frames jetées, lents synchronisés %d%n", CLIENTS,
+				slow.size(), TRAINS, heap.stream().map(h -> h / (1 << 20)).toList(), fastRate, lagMax, downgraded,
+				dropped, slowSynced);
+
+		slow.forEach(s -> s.stop = true);
+		fast.forEach(c -> c.session.disconnect());
+
+		// tas stable : pas de croissance avec le retard accumulé des lents (sans
+		// contre-pression, ~12 Ko par tick et par lent : plus de 100 Mo en 30 s)
+		double before = heap.subList(0, 3).stream().mapToLong(Long::longValue).average().orElseThrow();
+		double after = heap.subList(3, 6).stream().mapToLong(Long::longValue).average().orElseThrow();
+		assertThat(after - before).isLessThan(32 << 20);
+		// file de chaque session bornée (limite + une frame)
+		assertThat(lagMax).isLessThan(2 * 65536);
+		// les rapides suivent le tick (4 Hz), les lents sont ralentis mais jamais désynchronisés
+		assertThat(fastRate).isGreaterThan(3.0);
+		assertThat(fastSynced).isEqualTo(fast.size());
+		assertThat(downgraded).isGreaterThanOrEqualTo(slow.size() * 0.9);
+		assertThat(dropped).isPositive();
+		assertThat(slowSynced).isEqualTo(slow.size());
+	}
+}
@@ -0,0 +1,153 @@
+package com.railviz;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.messaging.converter.ByteArrayMessageConverter;
+import org.springframework.messaging.converter.CompositeMessageConverter;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.simp.stomp.StompFrameHandler;
+import org.springframework.messaging.simp.stomp.StompHeaders;
+import org.springframework.messaging.simp.stomp.StompSession;
+import org.springframework.messaging.simp.stomp.StompSessionHandlerAdapter;
+import org.springframework.web.socket.client.standard.StandardWebSocketClient;
+import org.springframework.web.socket.messaging.WebSocketStompClient;
+
+import com.railviz.model.ViewportCommand;
+import com.railviz.service.TrainService;
+import com.railviz.service.ViewportTelemetryService;
+import com.railviz.telemetry.TelemetryDecoder;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.websocket.ContainerProvider;
+
+/**
+ * Charge : des milliers de clients STOMP réels, chacun abonné à son viewport.
+ * Vérifie que chaque client est servi et que le volume reçu suit les trains
+ * visibles, pas la flotte. Exclu du build courant : mvn test -Pload
+ * (-Drailviz.load.clients=N pour changer le nombre de clients).
+ */
+@Tag("load")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = "railviz.persistence.enabled=false")
+public class ViewportTelemetryLoadTests {
+
+	private static final int CLIENTS = Integer.getInteger("railviz.load.clients", 1000);
+	private static final int TRAINS = Integer.getInteger("railviz.load.trains", 3000);
+
+	@LocalServerPort
+	int port;
+
+	@Autowired
+	TrainService trains;
+
+	@Autowired
+	ViewportTelemetryService viewports;
+
+	@Autowired
+	MeterRegistry meters;
+
+	/** Client simulé : décode son flux et compte ce qu'il reçoit */
+	static final class Client {
+		final TelemetryDecoder decoder = new TelemetryDecoder();
+		final AtomicLong bytes = new AtomicLong();
+		final AtomicLong frames = new AtomicLong();
+		StompSession session;
+	}
+
+	@Test
+	public void fanOutScalesWithVisibleTrains() throws Exception {
+		var rnd = new Random(42);
+		for (int i = 0; i < TRAINS; i++) {
+			String route = "T" + (1 + i % 3);
+			trains.create("LOAD-" + i, route, 60 + rnd.nextInt(100), rnd.nextInt(4), rnd.nextDouble());
+		}
+
+		var container = ContainerProvider.getWebSocketContainer();
+		// tampon alloué par session : une keyframe complète de la flotte doit y tenir
+		container.setDefaultMaxBinaryMessageBufferSize(256 * 1024);
+		var stomp = new WebSocketStompClient(new StandardWebSocketClient(container));
+		// avant son viewport, un abonné reçoit la keyframe de toute la flotte (> 64 Ko)
+		stomp.setInboundMessageSizeLimit(1024 * 1024);
+		stomp.setMessageConverter(new CompositeMessageConverter(
+				List.of(new ByteArrayMessageConverter(), new MappingJackson2MessageConverter())));
+		String url = "ws://localhost:" + port + "/ws";
+
+		var clients = new ArrayList<Client>(CLIENTS);
+		for (int c = 0; c < CLIENTS; c++) {
+			clients.add(new Client());
+		}
+		// handshakes par paquets pour ne pas saturer le serveur de test
+		for (int from = 0; from < CLIENTS; from += 100) {
+			int to = Math.min(CLIENTS, from + 100);
+			var connecting = new ArrayList<CompletableFuture<StompSession>>(to - from);
+			for (int c = from; c < to; c++) {
+				connecting.add(stomp.connectAsync(url, new StompSessionHandlerAdapter() {
+				}));
+			}
+			for (int c = from; c < to; c++) {
+				clients.get(c).session = connecting.get(c - from).get(30, TimeUnit.SECONDS);
+			}
+		}
+		for (int c = 0; c < CLIENTS; c++) {
+			var client = clients.get(c);
+			client.session.subscribe(ViewportTelemetryService.SUBSCRIPTION, new StompFrameHandler() {
+				@Override
+				public Type getPayloadType(StompHeaders headers) {
+					return byte[].class;
+				}
+
+				@Override
+				public void handleFrame(StompHeaders headers, Object payload) {
+					byte[] frame = (byte[]) payload;
+					client.bytes.addAndGet(frame.length);
+					client.frames.incrementAndGet();
+					synchronized (client.decoder) {
+						client.decoder.decode(frame);
+					}
+				}
+			});
+			// petite fenêtre (~1 km) quelque part sur les lignes T1..T3
+			double lat = 48.84 + rnd.nextDouble() * 0.06, lon = 2.29 + rnd.nextDouble() * 0.11;
+			client.session.send("/app/telemetry.viewport",
+					new ViewportCommand(lat - 0.005, lon - 0.007, lat + 0.005, lon + 0.007, 14, null));
+		}
+
+		Thread.sleep(5000);
+		int sessions = viewports.sessionCount();
+
+		long totalBytes = 0, totalFrames = 0, visible = 0, synced = 0;
+		for (var client : clients) {
+			totalBytes += client.bytes.get();
+			totalFrames += client.frames.get();
+			synchronized (client.decoder) {
+				visible += client.decoder.size();
+				if (client.decoder.synced()) {
+					synced++;
+				}
+			}
+			client.session.disconnect();
+		}
+		var tick = meters.get("railviz.tick.duration").timer();
+		System.out.printf("%d clients, %d trains : %d frames, %.0f octets/client, %.1f trains visibles/client, "
+				+ "tick moyen %.2f ms, max %.2f ms%n", CLIENTS, trains.list().size(), totalFrames,
+				(double) totalBytes / CLIENTS, (double) visible / CLIENTS, tick.mean(TimeUnit.MILLISECONDS),
+				tick.max(TimeUnit.MILLISECONDS));
+
+		assertThat(sessions).isGreaterThanOrEqualTo(CLIENTS);
+		assertThat(synced).isEqualTo(CLIENTS);
+		// chaque client ne voit qu'une petite partie de la flotte
+		assertThat((double) visible / CLIENTS).isLessThan(trains.list().size() / 4.0);
+	}
+}
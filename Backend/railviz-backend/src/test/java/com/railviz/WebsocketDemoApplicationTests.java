@@ -3,7 +3,7 @@ package com.railviz;
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.context.SpringBootTest;
 
-@SpringBootTest
+@SpringBootTest(properties = "railviz.persistence.dir=target/persistence-context")
 public class WebsocketDemoApplicationTests {
 
 	@Test
@@ -0,0 +1,272 @@
+package com.railviz.cluster;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import com.railviz.persistence.StoreEvent;
+import com.railviz.persistence.TrainTable;
+import com.railviz.simulation.FleetEngine;
+import com.railviz.simulation.FleetEngineBenchmark;
+import com.railviz.telemetry.TelemetrySnapshot;
+
+public class ClusterNodeTests {
+
+	private static final long TIMEOUT = 3000, BEAT = 1000;
+
+	/** Instance de test : un FleetEngine qui ne simule que la partition du nœud */
+	static final class Sim implements ClusterNode.Host {
+		final FleetEngine engine = new FleetEngine();
+		final TelemetrySnapshot snap = new TelemetrySnapshot();
+		double[] pos = new double[0];
+		ClusterNode node;
+
+		Sim(Map<String, List<double[]>> routes) {
+			routes.forEach(engine::putRoute);
+		}
+
+		@Override
+		public void apply(StoreEvent event) {
+			switch (event) {
+			case StoreEvent.TrainState t -> put(t);
+			case StoreEvent.TrainPut t -> put(new StoreEvent.TrainState(t.id(), t.routeId(), t.distance(), 0, t.vMax(),
+					t.accel(), t.decel(), FleetEngine.DWELL, (byte) 1, 0));
+			case StoreEvent.TrainDelete t -> engine.remove(t.id());
+			default -> {
+			}
+			}
+		}
+
+		private void put(StoreEvent.TrainState t) {
+			engine.remove(t.id());
+			if (node.owns(t.routeId())) {
+				int i = engine.add(t.id(), t.routeId(), t.distance(), t.vMax(), t.accel(), t.decel(), t.dwellUntil());
+				engine.restore(i, t.distance(), t.speed(), t.phase(), t.dir(), t.dwellUntil());
+			}
+		}
+
+		@Override
+		public List<StoreEvent.TrainState> release(Predicate<String> lostRoute) {
+			var out = new ArrayList<StoreEvent.TrainState>();
+			for (int i = 0; i < engine.size(); i++) {
+				if (lostRoute.test(engine.routeId(i))) {
+					out.add(new StoreEvent.TrainState(engine.id(i), engine.routeId(i), engine.distance(i),
+							engine.speed(i), engine.vMax(i), engine.accel(i), engine.decel(i), engine.phase(i),
+							engine.dir(i), engine.dwellUntil(i)));
+				}
+			}
+			out.forEach(st -> engine.remove(st.id()));
+			return out;
+		}
+
+		/** Un tick de la partition locale, télémétrie comprise (comme TrainService.tick) */
+		TelemetrySnapshot[] tick(long now) {
+			if (pos.length < 2 * engine.size()) {
+				pos = new double[2 * engine.size()];
+			}
+			engine.tick(now, pos);
+			snap.clear();
+			for (int i = 0; i < engine.size(); i++) {
+				snap.add(engine.id(i), engine.routeId(i), pos[2 * i], pos[2 * i + 1], engine.speed(i) * 3.6,
+						TelemetrySnapshot.GREEN);
+			}
+			return node.relay(new TelemetrySnapshot[] { snap });
+		}
+	}
+
+	/** Cluster de test : routes communes, trains connus du premier nœud seulement */
+	static final class Cluster {
+		final LocalClusterBus bus = new LocalClusterBus();
+		final Map<String, List<double[]>> routes = new LinkedHashMap<>();
+		final TrainTable trains = new TrainTable();
+		final Map<String, Sim> sims = new LinkedHashMap<>();
+		long now;
+
+		Cluster(int routeCount, int trainCount) {
+			for (int r = 0; r < routeCount; r++) {
+				routes.put("R" + r, FleetEngineBenchmark.Fleet.route(r, 40));
+			}
+			for (int i = 0; i < trainCount; i++) {
+				trains.add("T" + i, "R" + (i % routeCount), 0, 0, (60 + i % 100) / 3.6, 0.5, 0.9, FleetEngine.DWELL,
+						(byte) 1, (i % 40) * 250L);
+			}
+		}
+
+		Sim join(String id) {
+			var sim = new Sim(routes);
+			sim.node = new ClusterNode(bus.connect(id), TIMEOUT, 20, 1.0, 0.5);
+			sim.node.start(sim, routes, sims.isEmpty() ? trains : new TrainTable(), now);
+			sims.put(id, sim);
+			bus.flush();
+			// délai de garde, puis annonce
+			beats(TIMEOUT / BEAT + 1);
+			return sim;
+		}
+
+		void beats(long n) {
+			for (long k = 0; k < n; k++) {
+				now += BEAT;
+				for (var s : sims.values()) {
+					s.node.heartbeat(now);
+					bus.flush();
+				}
+			}
+		}
+
+		void assertPartitioned() {
+			var seen = new HashSet<String>();
+			for (var s : sims.values()) {
+				for (int i = 0; i < s.engine.size(); i++) {
+					assertThat(s.node.owns(s.engine.routeId(i))).isTrue();
+					assertThat(seen.add(s.engine.id(i))).as("train simulé deux fois").isTrue();
+				}
+			}
+			assertThat(seen).hasSize(trains.size());
+		}
+	}
+
+	@Test
+	public void partitionFollowsMembershipWithStateHandoff() {
+		var c = new Cluster(64, 2000);
+		var a = c.join("a");
+		assertThat(a.engine.size()).isEqualTo(2000);
+
+		var b = c.join("b");
+		var d = c.join("d");
+		c.beats(1);
+		assertThat(a.node.view()).containsExactly("a", "b", "d");
+		c.assertPartitioned();
+		for (var s : c.sims.values()) {
+			assertThat(s.engine.size()).isBetween(2000 / 3 / 2, 2000 * 2 / 3);
+		}
+
+		// les trains roulent, puis b part proprement : son état est repris tel quel
+		for (int k = 0; k < 200; k++) {
+			c.now += 250;
+			c.sims.values().forEach(s -> s.tick(c.now));
+			c.bus.flush();
+		}
+		int i = 0;
+		while (b.engine.speed(i) == 0) {
+			i++;
+		}
+		String moving = b.engine.id(i);
+		double s = b.engine.distance(i), v = b.engine.speed(i);
+		b.node.leave();
+		c.sims.remove("b");
+		c.bus.flush();
+		var owner = a.engine.slot(moving) >= 0 ? a.engine : d.engine;
+		int j = owner.slot(moving);
+		assertThat(owner.distance(j)).isEqualTo(s);
+		assertThat(owner.speed(j)).isEqualTo(v);
+		c.assertPartitioned();
+
+		// d tombe sans prévenir : a reprend tout depuis le catalogue après le délai
+		c.bus.crash("d");
+		c.sims.remove("d");
+		c.beats(TIMEOUT / BEAT + 1);
+		assertThat(a.node.view()).containsExactly("a");
+		assertThat(a.engine.size()).isEqualTo(2000);
+	}
+
+	@Test
+	public void mutationsReachTheOwnerAndTelemetryCoversTheFleet() {
+		var c = new Cluster(32, 600);
+		var a = c.join("a");
+		var b = c.join("b");
+		c.beats(1);
+
+		String route = c.routes.keySet().stream().filter(b.node::owns).findFirst().orElseThrow();
+		var put = new StoreEvent.TrainPut("NEW", route, 10, 30, 0.5, 0.9);
+		a.apply(put);
+		a.node.publish(put);
+		c.bus.flush();
+		assertThat(a.engine.slot("NEW")).isEqualTo(-1);
+		assertThat(b.engine.slot("NEW")).isGreaterThanOrEqualTo(0);
+		assertThat(a.node.knows("NEW")).isTrue();
+
+		// chaque instance voit toute la flotte dès la keyframe suivante des autres
+		TelemetrySnapshot[] parts = null;
+		for (int k = 0; k < 25; k++) {
+			c.now += 250;
+			parts = a.tick(c.now);
+			b.tick(c.now);
+			c.bus.flush();
+		}
+		int seen = 0;
+		for (var p : parts) {
+			seen += p.size();
+		}
+		assertThat(seen).isEqualTo(601);
+	}
+
+	/**
+	 * mvn test -Pload : capacité de simulation du cluster selon le nombre
+	 * d'instances. Une machine par instance est simulée en mesurant chaque nœud
+	 * séparément : le cluster tient fleet / (tick du nœud le plus chargé).
+	 */
+	@Test
+	@Tag("load")
+	public void simulationThroughputScalesWithInstances() {
+		int fleet = 200_000, ticks = 40;
+		int[] sizes = { 1, 2, 4, 8 };
+		var clusters = new ArrayList<Cluster>();
+		for (int n : sizes) {
+			var c = new Cluster(512, fleet);
+			for (int k = 0; k < n; k++) {
+				c.join("n" + k);
+			}
+			c.beats(1);
+			c.assertPartitioned();
+			clusters.add(c);
+		}
+
+		// tous les nœuds de toutes les tailles mesurés en séries entrelacées (un
+		// seul cœur partagé, bruit de la machine) ; meilleure série par nœud
+		var best = new IdentityHashMap<Sim, Long>();
+		var pos = new IdentityHashMap<Sim, double[]>();
+		long t = clusters.get(0).now;
+		for (int round = 0; round < 8; round++) {
+			t += 250L * ticks;
+			for (var c : clusters) {
+				for (var s : c.sims.values()) {
+					var p = pos.computeIfAbsent(s, x -> new double[2 * x.engine.size()]);
+					long at = t, t0 = System.nanoTime();
+					for (int j = 0; j < ticks; j++) {
+						s.engine.tick(at += 250, p);
+					}
+					long took = System.nanoTime() - t0;
+					if (round > 0) {
+						best.merge(s, took, Math::min);
+					}
+				}
+			}
+		}
+
+		double base = 0;
+		for (int k = 0; k < sizes.length; k++) {
+			var c = clusters.get(k);
+			// le cluster tient fleet / tick de son nœud le plus lent
+			long worst = c.sims.values().stream().mapToLong(best::get).max().orElseThrow();
+			double perSec = (double) fleet * ticks / (worst / 1e9);
+			base = (k == 0) ? perSec : base;
+			long t1 = System.nanoTime();
+			c.sims.values().iterator().next().tick(t + 250);
+			System.out.printf("%d instance(s) : %.1f M trains·tick/s (x%.2f), partition max %d, relais %.1f ms%n",
+					sizes[k], perSec / 1e6, perSec / base,
+					c.sims.values().stream().mapToInt(s -> s.engine.size()).max().orElse(0),
+					(System.nanoTime() - t1) / 1e6);
+			// linéaire au déséquilibre des partitions et au bruit de mesure près
+			assertThat(perSec / base).isGreaterThan(0.6 * sizes[k]);
+		}
+	}
+}
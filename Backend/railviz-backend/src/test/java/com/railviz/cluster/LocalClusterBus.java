@@ -0,0 +1,84 @@
+package com.railviz.cluster;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiConsumer;
+
+/**
+ * Remplaçant de RabbitMQ pour les tests : exchanges fanout en mémoire, une
+ * seule file FIFO globale (donc l'ordre par émetteur est garanti), livrée sur
+ * le thread du test par {@link #flush()}. Une instance "crashée" n'émet ni ne
+ * reçoit plus rien, sans message de départ.
+ */
+final class LocalClusterBus {
+
+	private final Map<String, Map<ClusterTransport.Channel, List<BiConsumer<String, byte[]>>>> nodes = new LinkedHashMap<>();
+	private final ArrayDeque<Runnable> pending = new ArrayDeque<>();
+	private final Set<String> down = new HashSet<>();
+	private long bytes;
+
+	ClusterTransport connect(String nodeId) {
+		var subs = new EnumMap<ClusterTransport.Channel, List<BiConsumer<String, byte[]>>>(
+				ClusterTransport.Channel.class);
+		nodes.put(nodeId, subs);
+		return new ClusterTransport() {
+			@Override
+			public String nodeId() {
+				return nodeId;
+			}
+
+			@Override
+			public void publish(Channel channel, byte[] payload) {
+				if (down.contains(nodeId)) {
+					return;
+				}
+				bytes += payload.length;
+				for (var e : nodes.entrySet()) {
+					if (e.getKey().equals(nodeId)) {
+						continue;
+					}
+					for (var h : e.getValue().getOrDefault(channel, List.of())) {
+						String to = e.getKey();
+						pending.add(() -> {
+							if (!down.contains(to)) {
+								h.accept(nodeId, payload);
+							}
+						});
+					}
+				}
+			}
+
+			@Override
+			public void subscribe(Channel channel, BiConsumer<String, byte[]> handler) {
+				subs.computeIfAbsent(channel, c -> new ArrayList<>()).add(handler);
+			}
+
+			@Override
+			public void close() {
+				subs.clear();
+			}
+		};
+	}
+
+	/** Livre tous les messages en attente (et ceux qu'ils provoquent) */
+	void flush() {
+		Runnable r;
+		while ((r = pending.poll()) != null) {
+			r.run();
+		}
+	}
+
+	void crash(String nodeId) {
+		down.add(nodeId);
+	}
+
+	long bytes() {
+		return bytes;
+	}
+}
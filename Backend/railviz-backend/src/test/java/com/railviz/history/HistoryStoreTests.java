@@ -0,0 +1,155 @@
+package com.railviz.history;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.railviz.telemetry.TelemetrySnapshot;
+
+public class HistoryStoreTests {
+
+	private static final long T0 = 1_700_000_000_000L, PERIOD = 250;
+
+	@TempDir
+	Path dir;
+
+	/** Flotte synthétique : le train i avance sur sa route, T0 change de route à mi-parcours, T1 disparaît */
+	private static void fleet(int tick, int trains, TelemetrySnapshot snap) {
+		snap.clear();
+		for (int i = 0; i < trains; i++) {
+			if (i == 1 && tick >= 300) {
+				continue;
+			}
+			String route = (i == 0 && tick >= 500) ? "R-bis" : "R" + (i % 16);
+			double moving = (i % 3 == 0) ? 0 : 1e-5 * tick * (1 + i % 7);
+			snap.add("T" + i, route, 48.8 + i * 1e-3 + moving, 2.3 + moving / 2, (i % 3 == 0) ? 0 : 40 + i % 60,
+					(byte) (tick / 100 % 3));
+		}
+	}
+
+	/** Enregistre ticks ticks, un chunk toutes les chunkTicks */
+	private static void record(HistoryStore store, int ticks, int trains, int chunkTicks) throws IOException {
+		var snap = new TelemetrySnapshot();
+		var w = new ChunkWriter();
+		for (int k = 0; k < ticks; k++) {
+			fleet(k, trains, snap);
+			w.append(T0 + k * PERIOD, snap);
+			if (w.ticks() == chunkTicks) {
+				store.append(w.encode());
+				w = new ChunkWriter();
+			}
+		}
+		if (!w.isEmpty()) {
+			store.append(w.encode());
+		}
+	}
+
+	@Test
+	public void replayReturnsQuantizedTicksOfTheRequestedRange() throws IOException {
+		// segments de 1 min : la période demandée en chevauche plusieurs
+		try (var store = new HistoryStore(dir, 60_000)) {
+			record(store, 1000, 200, 96);
+			assertThat(store.range().from()).isEqualTo(T0);
+			assertThat(store.range().to()).isEqualTo(T0 + 999 * PERIOD);
+
+			var cursor = store.open(T0 + 250 * PERIOD + 1, T0 + 700 * PERIOD);
+			var expected = new TelemetrySnapshot();
+			int tick = 251;
+			while (cursor.next()) {
+				assertThat(cursor.time()).isEqualTo(T0 + tick * PERIOD);
+				fleet(tick, 200, expected);
+				var got = cursor.snapshot();
+				assertThat(got.size()).isEqualTo(expected.size());
+				for (int i = 0; i < got.size(); i++) {
+					assertThat(got.id(i)).isEqualTo(expected.id(i));
+					assertThat(got.routeId(i)).isEqualTo(expected.routeId(i));
+					assertThat(got.lat(i)).isEqualTo(Math.round(expected.lat(i) * 1e6) / 1e6);
+					assertThat(got.lon(i)).isEqualTo(Math.round(expected.lon(i) * 1e6) / 1e6);
+					assertThat(got.speedKmh(i)).isEqualTo(Math.round(expected.speedKmh(i) * 10) / 10.0);
+					assertThat(got.signal(i)).isEqualTo(expected.signal(i));
+				}
+				tick++;
+			}
+			assertThat(tick).isEqualTo(701);
+			assertThat(cursor.peek()).isEqualTo(Long.MAX_VALUE);
+		}
+		try (var files = Files.list(dir)) {
+			assertThat(files.filter(p -> p.toString().endsWith(".dat")).count()).isGreaterThan(2);
+		}
+	}
+
+	@Test
+	public void trajectoryIsSampledAndFollowsRouteChanges() throws IOException {
+		try (var store = new HistoryStore(dir, 3_600_000)) {
+			record(store, 1000, 50, 240);
+			var points = store.trajectory("T0", T0, T0 + 999 * PERIOD, 10_000, 1000);
+			// un point toutes les 40 ticks
+			assertThat(points).hasSize(25);
+			assertThat(points.get(1).t() - points.get(0).t()).isEqualTo(10_000);
+			assertThat(points.get(0).routeId()).isEqualTo("R0");
+			assertThat(points.get(points.size() - 1).routeId()).isEqualTo("R-bis");
+
+			var gone = store.trajectory("T1", T0, T0 + 999 * PERIOD, 0, 10_000);
+			assertThat(gone).hasSize(300);
+			assertThat(store.trajectory("T1", T0 + 300 * PERIOD, T0 + 999 * PERIOD, 0, 10_000)).isEmpty();
+			assertThat(store.trajectory("inconnu", T0, T0 + 999 * PERIOD, 0, 10_000)).isEmpty();
+		}
+	}
+
+	@Test
+	public void truncatedIndexTailIsIgnored() throws IOException {
+		try (var store = new HistoryStore(dir, 3_600_000)) {
+			record(store, 480, 20, 240);
+		}
+		Path idx;
+		try (var files = Files.list(dir)) {
+			idx = files.filter(p -> p.toString().endsWith(".idx")).findFirst().orElseThrow();
+		}
+		byte[] b = Files.readAllBytes(idx);
+		Files.write(idx, java.util.Arrays.copyOf(b, b.length - 5));
+		try (var store = new HistoryStore(dir, 3_600_000)) {
+			assertThat(store.range().to()).isEqualTo(T0 + 239 * PERIOD);
+		}
+	}
+
+	/**
+	 * mvn test -Pload : trois heures de flotte (1000 trains à 4 Hz), rejeu ouvert
+	 * en milieu de période et première frame prête en moins de 100 ms
+	 */
+	@Test
+	@Tag("load")
+	public void multiHourReplayStartsUnder100ms() throws IOException {
+		int trains = 1000, ticks = 3 * 3600 * 4;
+		long t1 = System.nanoTime();
+		try (var store = new HistoryStore(dir, 3_600_000)) {
+			record(store, ticks, trains, 240);
+		}
+		long bytes;
+		try (var files = Files.list(dir)) {
+			bytes = files.mapToLong(p -> p.toFile().length()).sum();
+		}
+		System.out.printf("%d lignes enregistrées en %.1f s : %.1f Mo (%.2f o/ligne)%n", (long) trains * ticks,
+				(System.nanoTime() - t1) / 1e9, bytes / 1e6, (double) bytes / trains / ticks);
+
+		try (var store = new HistoryStore(dir, 3_600_000)) {
+			long best = Long.MAX_VALUE;
+			for (int k = 0; k < 5; k++) {
+				long from = T0 + (ticks / 2 + k * 1000) * PERIOD;
+				long t0 = System.nanoTime();
+				var cursor = store.open(from, from + 3_600_000);
+				assertThat(cursor.next()).isTrue();
+				long took = System.nanoTime() - t0;
+				assertThat(cursor.snapshot().size()).isEqualTo(trains - 1);
+				best = Math.min(best, took);
+				System.out.printf("ouverture du rejeu : %.1f ms%n", took / 1e6);
+			}
+			assertThat(best / 1e6).isLessThan(100);
+		}
+	}
+}
@@ -0,0 +1,154 @@
+package com.railviz.persistence;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class PersistenceTests {
+
+	@TempDir
+	Path dir;
+
+	private static List<double[]> line() {
+		return List.of(new double[] { 48.85, 2.35 }, new double[] { 48.86, 2.36 });
+	}
+
+	private RecoveredState recover() throws IOException {
+		var snap = dir.resolve("snapshot.bin");
+		var state = Files.exists(snap) ? Snapshot.read(snap) : RecoveredState.empty();
+		try (var wal = new WriteAheadLog(dir, false)) {
+			wal.replay(state.lsn(), state::apply);
+		}
+		return state;
+	}
+
+	@Test
+	public void walReplayStopsAtTornTail() throws IOException {
+		try (var wal = new WriteAheadLog(dir, false)) {
+			wal.replay(0, e -> {
+			});
+			wal.append(new StoreEvent.RoutePut("R", line()));
+			wal.append(new StoreEvent.TrainPut("A", "R", 10, 30, 0.5, 0.9));
+			wal.append(new StoreEvent.TrainPut("B", "R", 20, 30, 0.5, 0.9));
+			wal.append(new StoreEvent.TrainSpeed("A", 12));
+			wal.append(new StoreEvent.TrainDelete("B"));
+		}
+		// écriture interrompue : la fin du dernier enregistrement manque
+		Path segment;
+		try (var files = Files.list(dir)) {
+			segment = files.filter(p -> p.getFileName().toString().startsWith("wal-")).findFirst().orElseThrow();
+		}
+		long size = Files.size(segment);
+		try (var ch = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+			ch.truncate(size - 3);
+		}
+
+		var state = recover();
+		assertThat(state.routes()).containsOnlyKeys("R");
+		int a = state.trains().row("A");
+		assertThat(state.trains().vMax(a)).isEqualTo(12);
+		// le TrainDelete tronqué n'a pas eu lieu
+		assertThat(state.trains().row("B")).isGreaterThanOrEqualTo(0);
+		assertThat(Files.size(segment)).isLessThan(size - 3);
+
+		// le journal reste utilisable après la troncature
+		try (var wal = new WriteAheadLog(dir, false)) {
+			wal.replay(0, e -> {
+			});
+			wal.append(new StoreEvent.TrainDelete("B"));
+		}
+		assertThat(recover().trains().row("B")).isEqualTo(-1);
+	}
+
+	@Test
+	public void snapshotRoundTripThenWalOnTop() throws IOException {
+		var trains = new TrainTable();
+		trains.add("A", "R", 100, 20, 30, 0.5, 0.9, (byte) 2, (byte) -1, 0);
+		trains.add("B", "R", 5, 0, 25, 0.4, 0.8, (byte) 0, (byte) 1, 123_456L);
+		trains.add("gone", "R", 0, 0, 25, 0.4, 0.8, (byte) 0, (byte) 1, 0);
+		trains.remove(trains.row("gone"));
+		Map<String, List<double[]>> routes = new LinkedHashMap<>();
+		routes.put("R", line());
+
+		long lsn;
+		try (var wal = new WriteAheadLog(dir, false)) {
+			wal.replay(0, e -> {
+			});
+			wal.append(new StoreEvent.RoutePut("R", line()));
+			lsn = wal.roll();
+			wal.append(new StoreEvent.TrainAccel("B", 0.7, 1.1));
+			Snapshot.write(dir.resolve("snapshot.bin"), lsn, routes, trains);
+			wal.deleteUpTo(lsn);
+		}
+
+		var state = recover();
+		assertThat(state.lsn()).isEqualTo(lsn);
+		assertThat(state.isFresh()).isFalse();
+		assertThat(state.routes().get("R")).hasSize(2);
+		var t = state.trains();
+		assertThat(t.size()).isEqualTo(2);
+		int a = t.row("A");
+		assertThat(t.distance(a)).isEqualTo(100);
+		assertThat(t.speed(a)).isEqualTo(20);
+		assertThat(t.phase(a)).isEqualTo((byte) 2);
+		assertThat(t.dir(a)).isEqualTo((byte) -1);
+		int b = t.row("B");
+		assertThat(t.dwellUntil(b)).isEqualTo(123_456L);
+		assertThat(t.accel(b)).isEqualTo(0.7);
+		assertThat(t.decel(b)).isEqualTo(1.1);
+	}
+
+	@Test
+	public void routeUpdateDoesNotRecreateDeletedRoute() throws IOException {
+		try (var wal = new WriteAheadLog(dir, false)) {
+			wal.replay(0, e -> {
+			});
+			wal.append(new StoreEvent.RoutePut("R", line()));
+			wal.append(new StoreEvent.RoutePut("S", line()));
+			wal.append(new StoreEvent.RouteUpdate("R", List.of(new double[] { 1, 2 }, new double[] { 3, 4 })));
+			wal.append(new StoreEvent.RouteDelete("S"));
+			wal.append(new StoreEvent.RouteUpdate("S", line()));
+		}
+
+		var state = recover();
+		assertThat(state.routes()).containsOnlyKeys("R");
+		assertThat(state.routes().get("R").get(1)).containsExactly(3, 4);
+	}
+
+	/** mvn test -Pload : chargement d'un snapshot d'un million de trains */
+	@Test
+	@Tag("load")
+	public void millionTrainSnapshotLoadsInSeconds() throws IOException {
+		int n = 1_000_000;
+		var trains = new TrainTable();
+		for (int k = 0; k < n; k++) {
+			trains.add("TRN-" + k, "R" + (k % 500), k % 10_000, 20, 30, 0.5, 0.9, (byte) 2, (byte) 1, 0);
+		}
+		Map<String, List<double[]>> routes = new LinkedHashMap<>();
+		for (int r = 0; r < 500; r++) {
+			routes.put("R" + r, new ArrayList<>(line()));
+		}
+		var path = dir.resolve("snapshot.bin");
+		long t0 = System.nanoTime();
+		Snapshot.write(path, 1, routes, trains);
+		long t1 = System.nanoTime();
+		var state = Snapshot.read(path);
+		long t2 = System.nanoTime();
+		System.out.printf("snapshot %d trains : %d Mo, écriture %d ms, lecture %d ms%n", n,
+				Files.size(path) >> 20, (t1 - t0) / 1_000_000, (t2 - t1) / 1_000_000);
+		assertThat(state.trains().size()).isEqualTo(n);
+		assertThat(t2 - t1).isLessThan(5_000_000_000L);
+	}
+}
@@ -0,0 +1,99 @@
+package com.railviz.simulation;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Mode pas à pas vs. événementiel sur une grande flotte dont l'essentiel est à
+ * quai ou en croisière : "advance" ne mesure que l'avance de l'état (ce que le
+ * mode événementiel réduit aux transitions échues), "tick" ajoute
+ * l'interpolation de toutes les positions pour la télémétrie. Le compteur
+ * "trains" donne des trains/ms.
+ *
+ * Lancement : mvn test-compile puis main() depuis l'IDE (classpath de test).
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EventDrivenBenchmark {
+
+	@State(Scope.Thread)
+	@AuxCounters(AuxCounters.Type.OPERATIONS)
+	public static class Counter {
+		public long trains;
+
+		@Setup(Level.Iteration)
+		public void clean() {
+			trains = 0;
+		}
+	}
+
+	@State(Scope.Benchmark)
+	public static class Depot {
+		@Param({ "200000" })
+		int trains;
+
+		@Param({ "false", "true" })
+		boolean eventDriven;
+
+		FleetEngine engine;
+		double[] pos;
+		long now;
+
+		@Setup
+		public void setup() {
+			engine = new FleetEngine(eventDriven);
+			int routes = 64;
+			for (int r = 0; r < routes; r++) {
+				engine.putRoute("R" + r, FleetEngineBenchmark.Fleet.route(r, 40));
+			}
+			for (int i = 0; i < trains; i++) {
+				// un train sur deux reste à quai pour toute la mesure (dépôt)
+				long dwellEnd = (i % 2 == 0) ? Long.MAX_VALUE / 2 : (i % 40) * 250L;
+				engine.add("T" + i, "R" + (i % routes), 0, (60 + i % 100) / 3.6, 0.5, 0.9, dwellEnd);
+			}
+			pos = new double[2 * trains];
+			// les trains en mouvement atteignent leur croisière
+			for (now = 0; now < 120_000; now += 250) {
+				engine.advance(now);
+			}
+		}
+	}
+
+	@Benchmark
+	public void advance(Depot d, Counter c) {
+		d.now += 250;
+		d.engine.advance(d.now);
+		c.trains += d.trains;
+	}
+
+	@Benchmark
+	public void tick(Depot d, Counter c, Blackhole bh) {
+		d.now += 250;
+		d.engine.tick(d.now, d.pos);
+		bh.consume(d.pos);
+		c.trains += d.trains;
+	}
+
+	public static void main(String[] args) throws Exception {
+		new Runner(new OptionsBuilder().include(EventDrivenBenchmark.class.getSimpleName()).build()).run();
+	}
+}
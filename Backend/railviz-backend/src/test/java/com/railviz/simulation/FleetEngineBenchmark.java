@@ -0,0 +1,267 @@
+package com.railviz.simulation;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Tick complet (avance + interpolation) : moteur SoA vs. l'ancienne map
+ * d'objets TrainState. Le compteur "trains" donne des trains/ms.
+ *
+ * Lancement : mvn test-compile puis main() depuis l'IDE (classpath de test).
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FleetEngineBenchmark {
+
+	@State(Scope.Thread)
+	@AuxCounters(AuxCounters.Type.OPERATIONS)
+	public static class Counter {
+		public long trains;
+
+		@Setup(Level.Iteration)
+		public void clean() {
+			trains = 0;
+		}
+	}
+
+	@State(Scope.Benchmark)
+	public static class Fleet {
+		@Param({ "50000", "200000" })
+		int trains;
+
+		@Param({ "64" })
+		int routes;
+
+		FleetEngine engine;
+		double[] pos;
+		long now;
+
+		Map<String, Legacy.TrainState> legacyTrains;
+		Map<String, Legacy.RouteGeom> legacyRoutes;
+
+		@Setup
+		public void setup() {
+			engine = new FleetEngine();
+			legacyTrains = new ConcurrentHashMap<>();
+			legacyRoutes = new ConcurrentHashMap<>();
+			for (int r = 0; r < routes; r++) {
+				var pts = route(r, 40);
+				engine.putRoute("R" + r, pts);
+				legacyRoutes.put("R" + r, Legacy.buildGeom(pts));
+			}
+			now = 0;
+			for (int i = 0; i < trains; i++) {
+				String route = "R" + (i % routes);
+				double vMax = (60 + i % 100) / 3.6;
+				// départs échelonnés pour mélanger les phases
+				long dwellEnd = (i % 40) * 250L;
+				engine.add("T" + i, route, 0, vMax, 0.5, 0.9, dwellEnd);
+				var st = new Legacy.TrainState("T" + i, route, 0, +1, vMax, 0.5, 0.9);
+				st.dwellUntil = dwellEnd;
+				legacyTrains.put(st.id, st);
+			}
+			pos = new double[2 * trains];
+		}
+
+		public static List<double[]> route(int r, int n) {
+			var pts = new ArrayList<double[]>(n);
+			double lat = 48.80 + 0.002 * r, lon = 2.25 + 0.003 * r;
+			for (int k = 0; k < n; k++) {
+				pts.add(new double[] { lat + 0.0015 * k, lon + 0.002 * k * ((k % 2 == 0) ? 1 : 0.8) });
+			}
+			return pts;
+		}
+	}
+
+	@Benchmark
+	public void fleetEngine(Fleet f, Counter c, Blackhole bh) {
+		f.now += 250;
+		f.engine.tick(f.now, f.pos);
+		bh.consume(f.pos);
+		c.trains += f.trains;
+	}
+
+	@Benchmark
+	public void mapOfObjects(Fleet f, Counter c, Blackhole bh) {
+		f.now += 250;
+		long now = f.now;
+		f.legacyTrains.replaceAll((id, st) -> Legacy.advance(f.legacyRoutes, now, st));
+		for (var st : f.legacyTrains.values()) {
+			var geom = f.legacyRoutes.get(st.routeId);
+			bh.consume(Legacy.pointAt(geom, st.s));
+		}
+		c.trains += f.trains;
+	}
+
+	public static void main(String[] args) throws Exception {
+		new Runner(new OptionsBuilder().include(FleetEngineBenchmark.class.getSimpleName()).build()).run();
+	}
+
+	/** Copie de la simulation "map d'objets" d'origine (TrainService avant FleetEngine) */
+	static final class Legacy {
+		static final double DT = FleetEngine.DT;
+
+		static final class RouteGeom {
+			final List<double[]> pts;
+			final double[] cum;
+			final double length;
+
+			RouteGeom(List<double[]> pts, double[] cum, double length) {
+				this.pts = pts;
+				this.cum = cum;
+				this.length = length;
+			}
+		}
+
+		static final class TrainState {
+			String id;
+			String routeId;
+			double s;
+			int dir;
+			double v;
+			double vMax;
+			double a;
+			double d;
+			byte phase;
+			long dwellUntil;
+
+			TrainState(String id, String routeId, double s, int dir, double vMax, double a, double d) {
+				this.id = id;
+				this.routeId = routeId;
+				this.s = s;
+				this.dir = dir;
+				this.vMax = vMax;
+				this.a = a;
+				this.d = d;
+				this.phase = FleetEngine.DWELL;
+			}
+		}
+
+		static RouteGeom buildGeom(List<double[]> pts) {
+			double[] cum = new double[pts.size()];
+			double acc = 0;
+			for (int i = 0; i < pts.size() - 1; i++) {
+				double[] A = pts.get(i), B = pts.get(i + 1);
+				acc += FleetEngine.hav(A[0], A[1], B[0], B[1]);
+				cum[i + 1] = acc;
+			}
+			return new RouteGeom(pts, cum, acc);
+		}
+
+		static double[] pointAt(RouteGeom g, double s) {
+			if (s <= 0) {
+				return g.pts.get(0);
+			}
+			if (s >= g.length) {
+				return g.pts.get(g.pts.size() - 1);
+			}
+			int i = Arrays.binarySearch(g.cum, s);
+			if (i >= 0) {
+				return g.pts.get(i);
+			}
+			int j = -i - 1;
+			int i0 = j - 1;
+			double s0 = g.cum[i0], s1 = g.cum[j];
+			double t = (s - s0) / (s1 - s0 + 1e-9);
+			double[] A = g.pts.get(i0), B = g.pts.get(j);
+			return new double[] { A[0] + (B[0] - A[0]) * t, A[1] + (B[1] - A[1]) * t };
+		}
+
+		static TrainState advance(Map<String, RouteGeom> routes, long now, TrainState t) {
+			var geom = routes.get(t.routeId);
+			if (geom == null || geom.length < 1) {
+				return t;
+			}
+			boolean atStart = t.s <= 0.001;
+			boolean atEnd = t.s >= geom.length - 0.001;
+			switch (t.phase) {
+			case FleetEngine.DWELL -> {
+				t.v = 0;
+				if (now >= t.dwellUntil) {
+					if (atStart) {
+						t.dir = +1;
+					} else if (atEnd) {
+						t.dir = -1;
+					}
+					t.phase = FleetEngine.ACCEL;
+				}
+			}
+			case FleetEngine.ACCEL -> {
+				double sToEnd = (t.dir > 0) ? (geom.length - t.s) : t.s;
+				double minBrake = (t.v * t.v) / (2 * t.d);
+				double v0 = t.v;
+				t.v = Math.min(t.v + t.a * DT, t.vMax);
+				if (sToEnd <= minBrake + 1.5 * t.v * DT) {
+					t.phase = FleetEngine.DECEL;
+				}
+				t.s += t.dir * (v0 * DT + 0.5 * t.a * DT * DT);
+				if (t.s <= 0) {
+					t.s = 0;
+					t.phase = FleetEngine.DECEL;
+				}
+				if (t.s >= geom.length) {
+					t.s = geom.length;
+					t.phase = FleetEngine.DECEL;
+				}
+				double minBrakeAtVmax = (t.vMax * t.vMax) / (2 * t.d);
+				if (t.v >= t.vMax - 1e-6 && sToEnd > minBrakeAtVmax + 1.5 * t.vMax * DT) {
+					t.phase = FleetEngine.CRUISE;
+				}
+			}
+			case FleetEngine.CRUISE -> {
+				double sToEnd = (t.dir > 0) ? (geom.length - t.s) : t.s;
+				double minBrakeAtV = (t.v * t.v) / (2 * t.d);
+				if (sToEnd <= minBrakeAtV + 1.5 * t.vMax * DT) {
+					t.phase = FleetEngine.DECEL;
+				}
+				t.s += t.dir * t.v * DT;
+				if (t.s <= 0) {
+					t.s = 0;
+					t.phase = FleetEngine.DECEL;
+				}
+				if (t.s >= geom.length) {
+					t.s = geom.length;
+					t.phase = FleetEngine.DECEL;
+				}
+			}
+			default -> {
+				double v0 = t.v;
+				t.v = Math.max(0, t.v - t.d * DT);
+				t.s += t.dir * (v0 * DT - 0.5 * t.d * DT * DT);
+				boolean reachedEnd = (t.dir > 0) ? (t.s >= geom.length - 0.001) : (t.s <= 0.001);
+				if (reachedEnd || t.v <= 1e-3) {
+					t.s = (t.dir > 0) ? geom.length : 0;
+					t.v = 0;
+					t.phase = FleetEngine.DWELL;
+					t.dwellUntil = now + FleetEngine.DWELL_MS;
+				}
+			}
+			}
+			return t;
+		}
+	}
+}
@@ -0,0 +1,85 @@
+package com.railviz.simulation;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.data.Offset.offset;
+
+import org.junit.jupiter.api.Test;
+
+public class FleetEngineTests {
+
+	/** Date (ms) de la première arrivée à quai après le départ, et distance à l'arrivée */
+	private static double[] firstArrival(FleetEngine e, long stepMs) {
+		long now = 0;
+		boolean left = false;
+		while (now < 3_600_000) {
+			now += stepMs;
+			e.advance(now);
+			if (e.phase(0) != FleetEngine.DWELL) {
+				left = true;
+			} else if (left) {
+				return new double[] { now, e.distance(0) };
+			}
+		}
+		throw new AssertionError("pas d'arrivée");
+	}
+
+	private static FleetEngine engine(boolean eventDriven) {
+		var e = new FleetEngine(eventDriven);
+		e.putRoute("R", FleetEngineBenchmark.Fleet.route(0, 40));
+		e.add("T", "R", 0, 120 / 3.6, 0.5, 0.9, 1000);
+		return e;
+	}
+
+	@Test
+	public void eventDrivenTripMatchesSteppedTrip() {
+		var stepped = engine(false);
+		var events = engine(true);
+		double[] a = firstArrival(stepped, 250);
+		double[] b = firstArrival(events, 250);
+		double length = events.distance(0);
+
+		assertThat(b[1]).isEqualTo(a[1]);
+		assertThat(length).isGreaterThan(5_000);
+		// même trajet à la discrétisation près (marges de freinage du mode pas à pas)
+		assertThat(b[0]).isCloseTo(a[0], offset(0.02 * a[0]));
+	}
+
+	@Test
+	public void eventDrivenStateIsClosedFormBetweenTransitions() {
+		var e = engine(true);
+		e.advance(1000); // départ
+		assertThat(e.phase(0)).isEqualTo(FleetEngine.ACCEL);
+		e.advance(11_000); // 10 s à 0,5 m/s²
+		assertThat(e.speed(0)).isCloseTo(5.0, offset(1e-9));
+		assertThat(e.distance(0)).isCloseTo(25.0, offset(1e-9));
+
+		// un pas de 30 s ou 120 pas de 250 ms : même état
+		var fine = engine(true);
+		for (long now = 250; now <= 41_000; now += 250) {
+			fine.advance(now);
+		}
+		e.advance(41_000);
+		assertThat(e.distance(0)).isCloseTo(fine.distance(0), offset(1e-6));
+		assertThat(e.phase(0)).isEqualTo(fine.phase(0));
+	}
+
+	@Test
+	public void eventDrivenBrakingUsesTrainDeceleration() {
+		var e = engine(true);
+		long now = 0;
+		while (e.phase(0) != FleetEngine.DECEL) {
+			now += 250;
+			e.advance(now);
+		}
+		double v0 = e.speed(0);
+		e.advance(now + 2000);
+		assertThat(v0 - e.speed(0)).isCloseTo(1.8, offset(1e-9));
+
+		// freins dégradés en cours de freinage : 0,3 m/s², quitte à dépasser le quai
+		e.setAccelDecel(0, 0.5, 0.3);
+		double v1 = e.speed(0);
+		e.advance(now + 4000);
+		assertThat(e.phase(0)).isEqualTo(FleetEngine.DECEL);
+		assertThat(v1 - e.speed(0)).isCloseTo(0.6, offset(1e-9));
+	}
+}
@@ -0,0 +1,116 @@
+package com.railviz.simulation;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Routes longues (10k+ points) : interpolation d'un lot de trains qui avancent
+ * d'un pas (segment mémorisé vs. dichotomie à chaque appel), et coût de
+ * resynchronisation d'une route (inchangée, dernier point déplacé,
+ * reconstruction complète).
+ *
+ * Lancement : mvn test-compile puis main() depuis l'IDE (classpath de test).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RouteGeometryBenchmark {
+
+	/** Trains interpolés par opération */
+	static final int TRAINS = 1024;
+
+	@State(Scope.Thread)
+	public static class Route {
+		@Param({ "10000", "100000" })
+		int vertices;
+
+		List<double[]> pts;
+		List<double[]> edited;
+		RouteGeometry geom;
+		double[] s = new double[TRAINS];
+		int[] seg = new int[TRAINS];
+		double[] pos = new double[2 * TRAINS];
+
+		@Setup
+		public void setup() {
+			// tracé sinueux, un point tous les ~5 m
+			pts = new ArrayList<>(vertices);
+			for (int k = 0; k < vertices; k++) {
+				pts.add(new double[] { 48.80 + k * 4.5e-5, 2.30 + 2e-4 * Math.sin(k * 0.01) });
+			}
+			edited = new ArrayList<>(pts);
+			double[] end = pts.get(vertices - 1);
+			edited.set(vertices - 1, new double[] { end[0] + 1e-5, end[1] });
+			geom = RouteGeometry.of(pts);
+			for (int i = 0; i < TRAINS; i++) {
+				s[i] = geom.length() * i / TRAINS;
+				seg[i] = -1;
+			}
+		}
+
+		/** Un pas de 25 m/s × 0,25 s, en boucle sur la route */
+		void step() {
+			for (int i = 0; i < TRAINS; i++) {
+				double v = s[i] + 6.25;
+				s[i] = (v > geom.length()) ? 0 : v;
+			}
+		}
+	}
+
+	@Benchmark
+	public void interpolateHinted(Route r, Blackhole bh) {
+		r.step();
+		var g = r.geom;
+		for (int i = 0; i < TRAINS; i++) {
+			r.seg[i] = g.pointAt(r.s[i], r.seg[i], r.pos, 2 * i);
+		}
+		bh.consume(r.pos);
+	}
+
+	@Benchmark
+	public void interpolateBinarySearch(Route r, Blackhole bh) {
+		r.step();
+		var g = r.geom;
+		for (int i = 0; i < TRAINS; i++) {
+			g.pointAt(r.s[i], -1, r.pos, 2 * i);
+		}
+		bh.consume(r.pos);
+	}
+
+	@Benchmark
+	public RouteGeometry resyncUnchanged(Route r) {
+		return r.geom.sameAs(r.pts) ? r.geom : RouteGeometry.of(r.pts, r.geom);
+	}
+
+	@Benchmark
+	public RouteGeometry resyncLastVertexMoved(Route r) {
+		return RouteGeometry.of(r.edited, r.geom);
+	}
+
+	@Benchmark
+	public RouteGeometry rebuildFull(Route r) {
+		return RouteGeometry.of(r.edited);
+	}
+
+	public static void main(String[] args) throws Exception {
+		new Runner(new OptionsBuilder().include(RouteGeometryBenchmark.class.getSimpleName()).build()).run();
+	}
+}
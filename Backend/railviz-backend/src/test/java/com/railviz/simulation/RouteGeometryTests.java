@@ -0,0 +1,55 @@
+package com.railviz.simulation;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+public class RouteGeometryTests {
+
+	private static List<double[]> zigzag(int n) {
+		var pts = new ArrayList<double[]>(n);
+		for (int k = 0; k < n; k++) {
+			pts.add(new double[] { 48.8 + k * 1e-4, 2.3 + ((k % 2 == 0) ? 0 : 1e-4) });
+		}
+		return pts;
+	}
+
+	@Test
+	public void hintedWalkMatchesBinarySearchBothWays() {
+		var g = RouteGeometry.of(zigzag(500));
+		double[] hinted = new double[2], searched = new double[2];
+		int seg = -1;
+		// aller puis retour, avec des pas courts et quelques sauts
+		for (double s = 0; s <= g.length(); s += (s > 10_000 && s < 10_200) ? 3_000 : 7.3) {
+			seg = g.pointAt(s, seg, hinted, 0);
+			g.pointAt(s, -1, searched, 0);
+			assertThat(hinted).containsExactly(searched);
+		}
+		for (double s = g.length(); s >= 0; s -= 11.1) {
+			seg = g.pointAt(s, seg, hinted, 0);
+			g.pointAt(s, -1, searched, 0);
+			assertThat(hinted).containsExactly(searched);
+		}
+		g.pointAt(-5, seg, hinted, 0);
+		assertThat(hinted).containsExactly(48.8, 2.3);
+	}
+
+	@Test
+	public void rebuildReusesUnchangedPrefix() {
+		var pts = zigzag(100);
+		var g = RouteGeometry.of(pts);
+		assertThat(g.sameAs(new ArrayList<>(pts))).isTrue();
+
+		var edited = new ArrayList<>(pts);
+		edited.set(60, new double[] { 48.9, 2.4 });
+		edited.add(new double[] { 48.91, 2.41 });
+		var incremental = RouteGeometry.of(edited, g);
+		var full = RouteGeometry.of(edited);
+		assertThat(g.sameAs(edited)).isFalse();
+		assertThat(incremental.cum).containsExactly(full.cum);
+		assertThat(incremental.length()).isEqualTo(full.length());
+	}
+}
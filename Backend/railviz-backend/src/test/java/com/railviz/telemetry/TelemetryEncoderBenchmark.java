@@ -0,0 +1,127 @@
+package com.railviz.telemetry;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.railviz.model.TrainDTO;
+import com.railviz.simulation.FleetEngine;
+import com.railviz.simulation.FleetEngineBenchmark;
+
+/**
+ * Coût CPU et octets par tick : un TrainDTO JSON par train (chemin
+ * convertAndSend d'origine) vs. une frame binaire delta pour toute la flotte.
+ * Les octets par tick sont affichés en fin de run.
+ *
+ * Lancement : mvn test-compile puis main() depuis l'IDE (classpath de test).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class TelemetryEncoderBenchmark {
+
+	private static final String[] SIGNALS = { "GREEN", "YELLOW", "RED" };
+	private static final byte[] PHASE_TO_SIGNAL = { TelemetrySnapshot.RED, TelemetrySnapshot.YELLOW,
+			TelemetrySnapshot.GREEN, TelemetrySnapshot.YELLOW };
+
+	@Param({ "10000", "100000" })
+	int trains;
+
+	FleetEngine engine;
+	double[] pos;
+	long now;
+	TelemetrySnapshot snap;
+	TelemetryEncoder encoder;
+	ObjectMapper mapper;
+
+	long ticks;
+	long bytes;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		engine = new FleetEngine();
+		for (int r = 0; r < 64; r++) {
+			engine.putRoute("R" + r, FleetEngineBenchmark.Fleet.route(r, 40));
+		}
+		for (int i = 0; i < trains; i++) {
+			engine.add("TRAIN-" + i, "R" + (i % 64), 0, (60 + i % 100) / 3.6, 0.5, 0.9, (i % 40) * 250L);
+		}
+		pos = new double[2 * trains];
+		snap = new TelemetrySnapshot();
+		encoder = new TelemetryEncoder(20, 1.0, 0.5);
+		mapper = new ObjectMapper();
+		// régime établi : les trains roulent avant la mesure
+		for (int k = 0; k < 200; k++) {
+			step();
+		}
+	}
+
+	@Setup(Level.Iteration)
+	public void reset() {
+		ticks = 0;
+		bytes = 0;
+	}
+
+	@TearDown(Level.Iteration)
+	public void report() {
+		if (ticks > 0) {
+			System.out.printf("%n  %d trains : %.0f octets/tick%n", trains, (double) bytes / ticks);
+		}
+	}
+
+	private void step() {
+		now += 250;
+		engine.tick(now, pos);
+		snap.clear();
+		for (int i = 0; i < engine.size(); i++) {
+			snap.add(engine.id(i), engine.routeId(i), pos[2 * i], pos[2 * i + 1], engine.speed(i) * 3.6,
+					PHASE_TO_SIGNAL[engine.phase(i)]);
+		}
+	}
+
+	@Benchmark
+	public void jsonPerTrain(Blackhole bh) throws Exception {
+		step();
+		for (int i = 0; i < snap.size(); i++) {
+			byte[] b = mapper.writeValueAsBytes(new TrainDTO(snap.id(i), snap.lat(i), snap.lon(i), snap.speedKmh(i),
+					SIGNALS[snap.signal(i)], snap.routeId(i)));
+			bytes += b.length;
+			bh.consume(b);
+		}
+		ticks++;
+	}
+
+	@Benchmark
+	public void binaryDelta(Blackhole bh) {
+		step();
+		byte[] frame = encoder.encode(snap);
+		if (frame != null) {
+			bytes += frame.length;
+		}
+		ticks++;
+		bh.consume(frame);
+	}
+
+	public static void main(String[] args) throws Exception {
+		new Runner(new OptionsBuilder().include(TelemetryEncoderBenchmark.class.getSimpleName()).build()).run();
+	}
+}
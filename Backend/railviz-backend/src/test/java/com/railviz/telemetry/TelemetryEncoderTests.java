@@ -0,0 +1,57 @@
+package com.railviz.telemetry;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+
+public class TelemetryEncoderTests {
+
+	@Test
+	public void deltasRoundTripAndOnlyCarryChangedTrains() {
+		var enc = new TelemetryEncoder(100, 1.0, 0.5);
+		var dec = new TelemetryDecoder();
+		var snap = new TelemetrySnapshot();
+
+		snap.add("TGV-001", "T1", 48.9, 2.29, 0, TelemetrySnapshot.RED);
+		snap.add("TER-021", "T2", 48.88, 2.33, 0, TelemetrySnapshot.RED);
+		assertThat(dec.decode(enc.encode(snap))).hasSize(2);
+
+		// seul TGV-001 bouge au-delà du seuil
+		snap.clear();
+		snap.add("TGV-001", "T1", 48.9001, 2.2901, 12.3, TelemetrySnapshot.YELLOW);
+		snap.add("TER-021", "T2", 48.880001, 2.33, 0.1, TelemetrySnapshot.RED);
+		var upd = dec.decode(enc.encode(snap));
+		assertThat(upd).hasSize(1);
+		assertThat(upd.get(0).id()).isEqualTo("TGV-001");
+		assertThat(upd.get(0).lat()).isCloseTo(48.9001, org.assertj.core.data.Offset.offset(1e-6));
+		assertThat(upd.get(0).speedKmh()).isEqualTo(12.3);
+		assertThat(upd.get(0).signal()).isEqualTo("YELLOW");
+
+		// disparition
+		snap.clear();
+		snap.add("TGV-001", "T1", 48.9001, 2.2901, 12.3, TelemetrySnapshot.YELLOW);
+		dec.decode(enc.encode(snap));
+		assertThat(dec.size()).isEqualTo(1);
+	}
+
+	@Test
+	public void lateDecoderWaitsForKeyframe() {
+		var enc = new TelemetryEncoder(3, 1.0, 0.5);
+		var snap = new TelemetrySnapshot();
+		snap.add("RER-A7", "T3", 48.87, 2.37, 0, TelemetrySnapshot.RED);
+		enc.encode(snap); // frame 1 (keyframe initiale), manquée
+
+		var late = new TelemetryDecoder();
+		snap.clear();
+		snap.add("RER-A7", "T3", 48.86, 2.36, 40, TelemetrySnapshot.GREEN);
+		late.decode(enc.encode(snap)); // frame 2 : delta
+		assertThat(late.synced()).isFalse();
+
+		late.decode(enc.encode(snap)); // frame 3 : keyframe
+		assertThat(late.synced()).isTrue();
+		assertThat(late.trains()).singleElement().satisfies(t -> {
+			assertThat(t.lat()).isEqualTo(48.86);
+			assertThat(t.signal()).isEqualTo("GREEN");
+		});
+	}
+}
@@ -0,0 +1,93 @@
+import { Sig, TrainDTO } from './models';
+
+const FLAG_KEYFRAME = 1;
+const MASK_POS = 1, MASK_SPEED = 2, MASK_SIGNAL = 4;
+const POS_SCALE = 1e6;
+const SPEED_SCALE = 10;
+const SIGNALS: Sig[] = ['GREEN', 'YELLOW', 'RED'];
+
+type Entry = { id: string; routeId: string; lat: number; lon: number; speed: number; sig: number };
+
+/**
+ * Décodeur du flux binaire /topic/telemetry.bin (cf. TelemetryEncoder côté
+ * backend). Les frames delta sont ignorées tant qu'aucune keyframe n'a été reçue.
+ */
+export class TelemetryDecoder {
+  private entries = new Map<number, Entry>();
+  private synced = false;
+  private buf = new Uint8Array(0);
+  private pos = 0;
+  private utf8 = new TextDecoder();
+
+  /** Applique une frame ; renvoie les trains mis à jour et les ids disparus */
+  decode(frame: Uint8Array): { updated: TrainDTO[]; removed: string[] } {
+    this.buf = frame;
+    this.pos = 0;
+    const key = (this.byte() & FLAG_KEYFRAME) !== 0;
+    this.varint(); // seq
+    const removed: string[] = [];
+    if (key) {
+      this.entries.forEach(e => removed.push(e.id));
+      this.entries.clear();
+      this.synced = true;
+    } else if (!this.synced) {
+      return { updated: [], removed: [] };
+    }
+
+    for (let n = this.varint(); n > 0; n--) {
+      const k = this.varint();
+      const e = this.entries.get(k) ?? { id: '', routeId: '', lat: 0, lon: 0, speed: 0, sig: 0 };
+      e.id = this.string();
+      e.routeId = this.string();
+      this.entries.set(k, e);
+    }
+    for (let n = this.varint(); n > 0; n--) {
+      const k = this.varint();
+      const e = this.entries.get(k);
+      if (e) removed.push(e.id);
+      this.entries.delete(k);
+    }
+    const updated: TrainDTO[] = [];
+    for (let n = this.varint(); n > 0; n--) {
+      const e = this.entries.get(this.varint())!;
+      const mask = this.byte();
+      if (mask & MASK_POS) { e.lat += this.zigzag(); e.lon += this.zigzag(); }
+      if (mask & MASK_SPEED) e.speed += this.zigzag();
+      if (mask & MASK_SIGNAL) e.sig = this.byte();
+      updated.push({
+        id: e.id, routeId: e.routeId,
+        lat: e.lat / POS_SCALE, lon: e.lon / POS_SCALE,
+        speedKmh: e.speed / SPEED_SCALE, signal: SIGNALS[e.sig]
+      });
+    }
+    // un train redéfini par la keyframe n'est pas "disparu"
+    const live = new Set(Array.from(this.entries.values(), e => e.id));
+    return { updated, removed: removed.filter(id => !live.has(id)) };
+  }
+
+  private byte(): number {
+    return this.buf[this.pos++];
+  }
+
+  private varint(): number {
+    let v = 0, mul = 1, b: number;
+    do {
+      b = this.byte();
+      v += (b & 0x7f) * mul;
+      mul *= 128;
+    } while (b & 0x80);
+    return v;
+  }
+
+  private zigzag(): number {
+    const v = this.varint();
+    return v % 2 === 0 ? v / 2 : -(v + 1) / 2;
+  }
+
+  private string(): string {
+    const len = this.varint();
+    const s = this.utf8.decode(this.buf.subarray(this.pos, this.pos + len));
+    this.pos += len;
+    return s;
+  }
+}
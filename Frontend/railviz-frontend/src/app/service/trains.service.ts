@@ -3,6 +3,7 @@ import { HttpClient } from '@angular/common/http';
 import { BehaviorSubject } from 'rxjs';
 import { Client } from '@stomp/stompjs';
 import { TrainDTO, CreateTrainCommand, UpdateTrainCommand, TrainWsEvent } from './models';
+import { TelemetryDecoder } from './telemetry-decoder';
 
 const API = 'http://localhost:8080';
 const WS = `${API}/ws`;
@@ -81,10 +82,13 @@ export class TrainsService {
       reconnectDelay: 3000
     });
     this.clientTelem.onConnect = () => {
-      this.clientTelem!.subscribe('/topic/telemetry', msg => {
-        const t = JSON.parse(msg.body) as TrainDTO;
-        this.upsert(t);
-        onTelem(t);
+      // une frame binaire par tick : seuls les trains qui ont bougé (keyframe à l'abonnement)
+      const decoder = new TelemetryDecoder();
+      this.clientTelem!.subscribe('/topic/telemetry.bin', msg => {
+        const { updated, removed } = decoder.decode(msg.binaryBody);
+        updated.forEach(t => { this.map.set(t.id, t); onTelem(t); });
+        removed.forEach(id => this.map.delete(id));
+        if (updated.length || removed.length) this.emit();
       });
     };
     this.clientTelem.activate();
@@ -0,0 +1,116 @@
+package fr.sncf.osrd.envelope_sim;
+
+import com.google.common.collect.BoundType;
+import com.google.common.collect.RangeMap;
+
+/**
+ * The tractive effort curves of a train along its path, copied into primitive arrays so that the
+ * integrator can look them up without boxing positions nor walking a range map. Curves are indexed
+ * by the order of their position ranges. Instances are immutable, and can be shared between threads.
+ */
+public final class TractiveEffortTable {
+    // the bounds of the position range of each curve, infinite if unbounded
+    private final double[] lowerBounds;
+    private final boolean[] lowerClosed;
+    private final double[] upperBounds;
+    private final boolean[] upperClosed;
+
+    // the points of each curve
+    private final double[][] speeds;
+    private final double[][] efforts;
+
+    /** Compiles the tractive effort curves of a train, by position on its path */
+    public TractiveEffortTable(RangeMap<Double, PhysicsRollingStock.TractiveEffortPoint[]> curveMap) {
+        var curves = curveMap.asMapOfRanges();
+        var size = curves.size();
+        lowerBounds = new double[size];
+        lowerClosed = new boolean[size];
+        upperBounds = new double[size];
+        upperClosed = new boolean[size];
+        speeds = new double[size][];
+        efforts = new double[size][];
+        int i = 0;
+        for (var entry : curves.entrySet()) {
+            var range = entry.getKey();
+            if (range.hasLowerBound()) {
+                lowerBounds[i] = range.lowerEndpoint();
+                lowerClosed[i] = range.lowerBoundType() == BoundType.CLOSED;
+            } else lowerBounds[i] = Double.NEGATIVE_INFINITY;
+            if (range.hasUpperBound()) {
+                upperBounds[i] = range.upperEndpoint();
+                upperClosed[i] = range.upperBoundType() == BoundType.CLOSED;
+            } else upperBounds[i] = Double.POSITIVE_INFINITY;
+            var points = entry.getValue();
+            speeds[i] = new double[points.length];
+            efforts[i] = new double[points.length];
+            for (int j = 0; j < points.length; j++) {
+                speeds[i][j] = points[j].speed();
+                efforts[i][j] = points[j].maxEffort();
+            }
+            i++;
+        }
+    }
+
+    /**
+     * Returns the index of the curve at a position, or -1 if there is none. The search starts from
+     * the given curve, usually the one found for the previous position.
+     */
+    public int findCurve(double position, int hint) {
+        if (hint >= 0 && hint < lowerBounds.length) {
+            if (contains(hint, position)) return hint;
+            if (hint + 1 < lowerBounds.length && contains(hint + 1, position)) return hint + 1;
+            if (hint > 0 && contains(hint - 1, position)) return hint - 1;
+        }
+        // find the last curve starting before the position, then check the one before in case the
+        // position is the open lower bound of this curve
+        int left = 0;
+        int right = lowerBounds.length - 1;
+        int candidate = -1;
+        while (left <= right) {
+            int mid = (left + right) >>> 1;
+            if (lowerBounds[mid] <= position) {
+                candidate = mid;
+                left = mid + 1;
+            } else right = mid - 1;
+        }
+        if (candidate >= 0 && contains(candidate, position)) return candidate;
+        if (candidate > 0 && contains(candidate - 1, position)) return candidate - 1;
+        return -1;
+    }
+
+    private boolean contains(int curve, double position) {
+        var lower = lowerBounds[curve];
+        if (position < lower || (position == lower && !lowerClosed[curve])) return false;
+        var upper = upperBounds[curve];
+        return position < upper || (position == upper && upperClosed[curve]);
+    }
+
+    /**
+     * Get the effort the train can apply at a given speed with the given curve, in newtons. Same as
+     * {@link PhysicsRollingStock#getMaxEffort}.
+     */
+    public double getMaxEffort(int curve, double speed) {
+        var curveSpeeds = speeds[curve];
+        var curveEfforts = efforts[curve];
+        var absSpeed = Math.abs(speed);
+        int index = 0;
+        int left = 0;
+        int right = curveSpeeds.length - 1;
+        while (left <= right) {
+            int mid = (left + right) >>> 1;
+            if (Math.abs(curveSpeeds[mid] - absSpeed) < 0.000001) {
+                index = mid;
+                break;
+            } else if (curveSpeeds[mid] < absSpeed) {
+                left = mid + 1;
+                index = left;
+            } else {
+                right = mid - 1;
+            }
+        }
+        if (index == 0) return curveEfforts[0];
+        if (index == curveSpeeds.length) return curveEfforts[index - 1];
+        double coeff = (curveEfforts[index - 1] - curveEfforts[index]) / (curveSpeeds[index - 1] - curveSpeeds[index]);
+        return curveEfforts[index - 1] + coeff * (absSpeed - curveSpeeds[index - 1]);
+    }
+}
@@ -1,19 +1,18 @@
 package fr.sncf.osrd.envelope_sim;
 
 import static fr.sncf.osrd.envelope_sim.PhysicsRollingStock.getGradientAcceleration;
-import static fr.sncf.osrd.envelope_sim.PhysicsRollingStock.getMaxEffort;
 import static fr.sncf.osrd.utils.UnitEqualityKt.POSITION_EPSILON;
 import static fr.sncf.osrd.utils.UnitEqualityKt.SPEED_EPSILON;
 
-import com.google.common.collect.RangeMap;
 import fr.sncf.osrd.envelope_sim.etcs.BrakingType;
 import fr.sncf.osrd.path.interfaces.PhysicsPath;
 
 /**
- * A utility class to help simulate the train, using numerical integration. It's used when
- * simulating the train, and it is passed to speed controllers so they can take decisions about what
- * action to make. Once speed controllers took a decision, this same class is used to compute the
- * next position and speed of the train.
+ * Simulates the train using numerical integration, with a fourth order Runge-Kutta method.
+ *
+ * <p>An integrator is bound to a simulation context and a direction, and is reused from one step to
+ * the next: steps are computed on primitive values, and their result is read from the integrator
+ * until the next step. Integrators aren't thread safe.
  */
 public final class TrainPhysicsIntegrator {
     // Gravity acceleration, in m/s²
@@ -21,27 +20,37 @@ public final class TrainPhysicsIntegrator {
 
     private final PhysicsRollingStock rollingStock;
     private final PhysicsPath path;
-    private final Action action;
+    private final double pathLength;
+    private final double timeStep;
     private final double directionSign;
-
-    private final RangeMap<Double, PhysicsRollingStock.TractiveEffortPoint[]> tractiveEffortCurveMap;
+    private final TractiveEffortTable tractiveEffortTable;
     private final BrakingType brakingType;
 
-    private TrainPhysicsIntegrator(
-            PhysicsRollingStock rollingStock,
-            PhysicsPath path,
-            Action action,
-            double directionSign,
-            RangeMap<Double, PhysicsRollingStock.TractiveEffortPoint[]> tractiveEffortCurveMap,
-            BrakingType brakingType) {
-        this.rollingStock = rollingStock;
-        this.path = path;
-        this.action = action;
+    // the tractive effort curve of the last lookup, where the next one starts
+    private int tractiveEffortCurve = 0;
+
+    // the result of the last step, or sub-step while integrating
+    private double timeDelta;
+    private double positionDelta;
+    private double endSpeed;
+    private double acceleration;
+
+    /** Creates an integrator for the given context, direction and braking type */
+    public TrainPhysicsIntegrator(EnvelopeSimContext context, double directionSign, BrakingType brakingType) {
+        this.rollingStock = context.rollingStock;
+        this.path = context.path;
+        this.pathLength = path.getLength();
+        this.timeStep = context.timeStep;
         this.directionSign = directionSign;
-        this.tractiveEffortCurveMap = tractiveEffortCurveMap;
+        this.tractiveEffortTable = context.getTractiveEffortTable();
         this.brakingType = brakingType;
     }
 
+    /** Creates an integrator for the given context and direction, with a constant braking */
+    public TrainPhysicsIntegrator(EnvelopeSimContext context, double directionSign) {
+        this(context, directionSign, BrakingType.CONSTANT);
+    }
+
     /** Simulates train movement */
     public static IntegrationStep step(
             EnvelopeSimContext context,
@@ -60,49 +69,104 @@ public final class TrainPhysicsIntegrator {
             Action action,
             double directionSign,
             BrakingType brakingType) {
-        var integrator = new TrainPhysicsIntegrator(
-                context.rollingStock, context.path, action, directionSign, context.tractiveEffortCurveMap, brakingType);
-        return integrator.step(context.timeStep, initialLocation, initialSpeed, directionSign);
+        var integrator = new TrainPhysicsIntegrator(context, directionSign, brakingType);
+        integrator.step(initialLocation, initialSpeed, action);
+        return IntegrationStep.fromNaiveStep(
+                integrator.timeDelta,
+                integrator.positionDelta,
+                initialSpeed,
+                integrator.endSpeed,
+                integrator.acceleration,
+                directionSign);
     }
 
-    /** Simulates train movement */
-    private IntegrationStep step(double timeStep, double initialLocation, double initialSpeed, double directionSign) {
+    /**
+     * Simulates train movement over a time step. The result is read using {@link #getTimeDelta()},
+     * {@link #getPositionDelta()} and {@link #getEndSpeed()}.
+     */
+    public void step(double initialLocation, double initialSpeed, Action action) {
         var halfStep = timeStep / 2;
-        var step1 = step(halfStep, initialLocation, initialSpeed);
-        var step2 = step(halfStep, initialLocation + step1.positionDelta, step1.endSpeed);
-        var step3 = step(timeStep, initialLocation + step2.positionDelta, step2.endSpeed);
-        var step4 = step(timeStep, initialLocation + step3.positionDelta, step3.endSpeed);
+        subStep(action, halfStep, initialLocation, initialSpeed);
+        var acceleration1 = acceleration;
+        subStep(action, halfStep, initialLocation + positionDelta, endSpeed);
+        var acceleration2 = acceleration;
+        subStep(action, timeStep, initialLocation + positionDelta, endSpeed);
+        var acceleration3 = acceleration;
+        subStep(action, timeStep, initialLocation + positionDelta, endSpeed);
+        var acceleration4 = acceleration;
 
-        var meanAcceleration =
-                (step1.acceleration + 2 * step2.acceleration + 2 * step3.acceleration + step4.acceleration) / 6.;
-        return newtonStep(timeStep, initialSpeed, meanAcceleration, directionSign);
+        var meanAcceleration = (acceleration1 + 2 * acceleration2 + 2 * acceleration3 + acceleration4) / 6.;
+        newtonStep(timeStep, initialSpeed, meanAcceleration);
     }
 
-    private IntegrationStep step(double timeStep, double position, double speed) {
-        if (action == Action.BRAKE) return newtonStep(timeStep, speed, getDeceleration(speed, position), directionSign);
+    /** The duration of the last step, in s. It is shorter than the time step if the train stopped */
+    public double getTimeDelta() {
+        return timeDelta;
+    }
+
+    /** The signed distance covered during the last step, in m */
+    public double getPositionDelta() {
+        return positionDelta;
+    }
+
+    /** The speed at the end of the last step, in m/s */
+    public double getEndSpeed() {
+        return endSpeed;
+    }
+
+    private void subStep(Action action, double timeStep, double position, double speed) {
+        newtonStep(timeStep, speed, getAcceleration(action, position, speed));
+    }
+
+    private double getAcceleration(Action action, double position, double speed) {
+        if (action == Action.BRAKE) return getDeceleration(speed, position);
 
         double tractionForce = 0;
-        var tractiveEffortCurve = tractiveEffortCurveMap.get(Math.min(Math.max(0, position), path.getLength()));
-        assert tractiveEffortCurve != null;
-        double maxTractionForce = getMaxEffort(speed, tractiveEffortCurve);
+        double maxTractionForce = 0;
+        if (action != Action.COAST) {
+            var clampedPosition = Math.min(Math.max(0, position), pathLength);
+            tractiveEffortCurve = tractiveEffortTable.findCurve(clampedPosition, tractiveEffortCurve);
+            assert tractiveEffortCurve >= 0;
+            maxTractionForce = tractiveEffortTable.getMaxEffort(tractiveEffortCurve, speed);
+        }
         double rollingResistance = rollingStock.getRollingResistance(speed);
         double averageGrade = getAverageGrade(rollingStock, path, position);
         double weightForce = getWeightForce(rollingStock, averageGrade);
 
         if (action == Action.MAINTAIN) {
             tractionForce = rollingResistance - weightForce;
-            if (tractionForce <= maxTractionForce) return newtonStep(timeStep, speed, 0, directionSign);
+            if (tractionForce <= maxTractionForce) return 0;
             else tractionForce = maxTractionForce;
         }
 
         if (action == Action.ACCELERATE) tractionForce = maxTractionForce;
-        double acceleration =
-                computeAcceleration(rollingStock, rollingResistance, weightForce, speed, tractionForce, directionSign);
-        return newtonStep(timeStep, speed, acceleration, directionSign);
+        return computeAcceleration(rollingStock, rollingResistance, weightForce, speed, tractionForce, directionSign);
+    }
+
+    /** Integrate the Newton movement equations, as {@link #newtonStep(double, double, double, double)} */
+    private void newtonStep(double timeStep, double currentSpeed, double acceleration) {
+        var signedTimeStep = Math.copySign(timeStep, directionSign);
+        var newSpeed = currentSpeed + acceleration * signedTimeStep;
+        if (Math.abs(newSpeed) < SPEED_EPSILON) newSpeed = 0;
+
+        // dx = currentSpeed * dt + 1/2 * acceleration * dt * dt
+        var positionDelta = currentSpeed * signedTimeStep + 0.5 * acceleration * signedTimeStep * signedTimeStep;
+        if (Math.abs(positionDelta) < POSITION_EPSILON) positionDelta = 0;
+
+        // if the end of the step dips below 0, cut the step, as in IntegrationStep.fromNaiveStep
+        if (newSpeed < 0.0) {
+            newSpeed = 0.0;
+            timeStep = -currentSpeed / (directionSign * acceleration);
+            positionDelta = currentSpeed * timeStep + 0.5 * acceleration * timeStep * timeStep;
+            positionDelta = Math.copySign(positionDelta, directionSign);
+        }
+        this.timeDelta = timeStep;
+        this.positionDelta = positionDelta;
+        this.endSpeed = newSpeed;
+        this.acceleration = acceleration;
     }
 
     private double getDeceleration(double speed, double position) {
-        assert (action == Action.BRAKE);
         if (brakingType == BrakingType.CONSTANT) return rollingStock.getDeceleration();
 
         var grade = getMinGrade(rollingStock, path, position);
@@ -131,10 +195,10 @@ public final class TrainPhysicsIntegrator {
 
     /** Compute the weight force of a rolling stock at a given position on a given path */
     public static double getWeightForce(PhysicsRollingStock rollingStock, double grade) {
-        // get an angle from a m/km elevation difference
-        // the curve's radius is taken into account in meanTrainGrade
-        var angle = Math.atan(grade / 1000.0); // from m/km to m/m
-        return -rollingStock.getMass() * GRAVITY_ACCELERATION * Math.sin(angle);
+        // the sine of the angle of a m/km elevation difference, sin(atan(grade / 1000)) without
+        // trigonometric functions. The curve's radius is taken into account in meanTrainGrade
+        var sinAngle = grade / Math.sqrt(1_000_000.0 + grade * grade);
+        return -rollingStock.getMass() * GRAVITY_ACCELERATION * sinAngle;
     }
 
     /** Compute the min grade of a rolling stock at a given position on a given path in m/km */
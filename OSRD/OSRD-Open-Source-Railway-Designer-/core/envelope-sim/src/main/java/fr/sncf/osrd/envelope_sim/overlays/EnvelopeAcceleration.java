@@ -17,12 +17,13 @@ public class EnvelopeAcceleration {
         if (!consumer.initEnvelopePart(startPosition, startSpeed, direction)) return;
         double position = startPosition;
         double speed = startSpeed;
+        var integrator = new TrainPhysicsIntegrator(context, direction);
         while (true) {
-            var step = TrainPhysicsIntegrator.step(context, position, speed, Action.ACCELERATE, direction);
-            position += step.positionDelta;
-            speed = step.endSpeed;
-            if (!consumer.addStep(position, speed, step.timeDelta)) break;
-            assert (step.positionDelta != 0.0);
+            integrator.step(position, speed, Action.ACCELERATE);
+            position += integrator.getPositionDelta();
+            speed = integrator.getEndSpeed();
+            if (!consumer.addStep(position, speed, integrator.getTimeDelta())) break;
+            assert (integrator.getPositionDelta() != 0.0);
         }
     }
 }
@@ -17,11 +17,12 @@ public class EnvelopeCoasting {
         if (!consumer.initEnvelopePart(startPosition, startSpeed, directionSign)) return;
         double position = startPosition;
         double speed = startSpeed;
+        var integrator = new TrainPhysicsIntegrator(context, directionSign);
         while (true) {
-            var step = TrainPhysicsIntegrator.step(context, position, speed, Action.COAST, directionSign);
-            position += step.positionDelta;
-            speed = step.endSpeed;
-            if (!consumer.addStep(position, speed, step.timeDelta)) break;
+            integrator.step(position, speed, Action.COAST);
+            position += integrator.getPositionDelta();
+            speed = integrator.getEndSpeed();
+            if (!consumer.addStep(position, speed, integrator.getTimeDelta())) break;
         }
         assert speed >= 0;
     }
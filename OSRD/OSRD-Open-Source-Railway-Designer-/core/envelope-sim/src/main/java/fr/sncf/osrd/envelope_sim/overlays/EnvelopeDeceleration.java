@@ -19,11 +19,12 @@ public class EnvelopeDeceleration {
         if (!consumer.initEnvelopePart(startPosition, startSpeed, direction)) return;
         double position = startPosition;
         double speed = startSpeed;
+        var integrator = new TrainPhysicsIntegrator(context, direction, brakingType);
         while (true) {
-            var step = TrainPhysicsIntegrator.step(context, position, speed, Action.BRAKE, direction, brakingType);
-            position += step.positionDelta;
-            speed = step.endSpeed;
-            if (!consumer.addStep(position, speed, step.timeDelta)) break;
+            integrator.step(position, speed, Action.BRAKE);
+            position += integrator.getPositionDelta();
+            speed = integrator.getEndSpeed();
+            if (!consumer.addStep(position, speed, integrator.getTimeDelta())) break;
         }
     }
 
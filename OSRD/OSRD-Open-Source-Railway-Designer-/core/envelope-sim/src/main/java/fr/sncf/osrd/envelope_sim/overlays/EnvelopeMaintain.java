@@ -17,13 +17,14 @@ public class EnvelopeMaintain {
         if (!consumer.initEnvelopePart(startPosition, startSpeed, direction)) return;
         double position = startPosition;
         double speed = startSpeed;
+        var integrator = new TrainPhysicsIntegrator(context, direction);
         while (true) {
             var action = Action.MAINTAIN;
             if (speed < startSpeed) action = Action.ACCELERATE;
-            var step = TrainPhysicsIntegrator.step(context, position, speed, action, direction);
-            position += step.positionDelta;
-            speed = step.endSpeed;
-            if (!consumer.addStep(position, speed, step.timeDelta)) break;
+            integrator.step(position, speed, action);
+            position += integrator.getPositionDelta();
+            speed = integrator.getEndSpeed();
+            if (!consumer.addStep(position, speed, integrator.getTimeDelta())) break;
         }
     }
 }
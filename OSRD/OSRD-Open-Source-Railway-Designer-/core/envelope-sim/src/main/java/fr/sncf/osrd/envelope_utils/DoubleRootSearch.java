@@ -0,0 +1,164 @@
+package fr.sncf.osrd.envelope_utils;
+
+/**
+ * Searches the input for which a monotonic function reaches a target output, as {@link DoubleBinarySearch}
+ * does, but usually in fewer evaluations. When the output is known at both bounds, the next input is
+ * interpolated between them (false position, with the Illinois modification: the output of a bound
+ * which stays the same twice in a row is halved). Interpolation steps are only kept while they
+ * shrink the bounds fast enough: the search falls back to bisection when the output at a bound is
+ * unknown (infinite feedback), when the interpolated input isn't strictly between the bounds, and
+ * after two interpolation steps in a row which didn't halve the distance between the bounds. It thus
+ * never needs more than three times the evaluations of a binary search, and works with discontinuous
+ * functions.
+ *
+ * <pre>
+ *     var search = new DoubleRootSearch(0, 10, 4, 0.001, false);
+ *     while (!search.complete()) {
+ *         var input = search.getInput();
+ *         var output = input * input * input;
+ *         search.feedback(output);
+ *     }
+ * </pre>
+ */
+public final class DoubleRootSearch {
+    /** The current low bound estimate */
+    private double lowBound;
+
+    /** The current high bound estimate */
+    private double highBound;
+
+    /**
+     * The distance from the target of the output at each bound, negated if decreasing: negative at
+     * the low bound, positive at the high bound. NaN if unknown.
+     */
+    private double lowBoundError = Double.NaN;
+
+    private double highBoundError = Double.NaN;
+
+    /** The current input */
+    private double input;
+
+    /** The target output value */
+    public final double target;
+
+    /** The acceptable distance to the target */
+    public final double targetErrorMargin;
+
+    /** Positive if increasing, negative if decreasing */
+    private final double direction;
+
+    /** Whether the search is complete */
+    private boolean isComplete;
+
+    /** Whether we have lowered the high bound at least once */
+    private boolean hasLoweredHighBound;
+
+    /** Whether we have raised the low bound at least once */
+    private boolean hasRaisedLowBound;
+
+    /** -1 if the last feedback raised the low bound, 1 if it lowered the high bound, 0 before */
+    private int lastMovedBound = 0;
+
+    /** Whether the current input was interpolated */
+    private boolean isInterpolated = false;
+
+    /** The number of interpolation steps in a row which didn't halve the distance between the bounds */
+    private int slowInterpolationSteps = 0;
+
+    /**
+     * Returns a root search helper.
+     *
+     * @param lowBound The low initial estimate
+     * @param highBound The high initial estimate
+     * @param target The target output value
+     * @param targetErrorMargin The acceptable error for stopping the search
+     * @param decreasing Whether the output decreases when the input increases
+     */
+    public DoubleRootSearch(
+            double lowBound, double highBound, double target, double targetErrorMargin, boolean decreasing) {
+        this.lowBound = lowBound;
+        this.highBound = highBound;
+        this.target = target;
+        this.targetErrorMargin = targetErrorMargin;
+        this.direction = decreasing ? -1 : 1;
+        this.input = (lowBound + highBound) / 2;
+        this.isComplete = false;
+        this.hasLoweredHighBound = false;
+        this.hasRaisedLowBound = false;
+    }
+
+    /** Returns true when the search is complete */
+    public boolean complete() {
+        return isComplete;
+    }
+
+    /** Returns the next input of the search */
+    public double getInput() {
+        assert !isComplete;
+        return input;
+    }
+
+    /** Return the result of the search (the input which satisfied the goal) */
+    public double getResult() {
+        assert isComplete;
+        return input;
+    }
+
+    /**
+     * Feeds back the output of the tested function for the current input. An infinite output only
+     * tells on which side of the target the input is.
+     */
+    public void feedback(double output) {
+        assert !isComplete;
+
+        var delta = output - target;
+        if (Math.abs(delta) <= targetErrorMargin) {
+            isComplete = true;
+            return;
+        }
+
+        var previousWidth = highBound - lowBound;
+        var error = DoubleUtils.conditionalNegate(delta, direction);
+        var knownError = Double.isInfinite(error) ? Double.NaN : error;
+        if (error < 0) {
+            lowBound = input;
+            lowBoundError = knownError;
+            hasRaisedLowBound = true;
+            // Illinois modification: the high bound is kept twice, halve its weight
+            if (lastMovedBound == -1) highBoundError /= 2;
+            lastMovedBound = -1;
+        } else {
+            highBound = input;
+            highBoundError = knownError;
+            hasLoweredHighBound = true;
+            if (lastMovedBound == 1) lowBoundError /= 2;
+            lastMovedBound = 1;
+        }
+
+        var width = highBound - lowBound;
+        if (isInterpolated && width > previousWidth / 2) slowInterpolationSteps++;
+        else slowInterpolationSteps = 0;
+        input = estimateInput(slowInterpolationSteps >= 2);
+    }
+
+    /** Returns the next input, interpolated if possible */
+    private double estimateInput(boolean forceBisection) {
+        var middle = (lowBound + highBound) / 2;
+        isInterpolated = false;
+        if (forceBisection || Double.isNaN(lowBoundError) || Double.isNaN(highBoundError)) return middle;
+        var interpolated = lowBound - lowBoundError * (highBound - lowBound) / (highBoundError - lowBoundError);
+        if (!(interpolated > lowBound && interpolated < highBound)) return middle;
+        isInterpolated = true;
+        return interpolated;
+    }
+
+    /** Returns true if we have lowered the high bound at least once */
+    public boolean hasLoweredHighBound() {
+        return hasLoweredHighBound;
+    }
+
+    /** Returns true if we have raised the low bound at least once */
+    public boolean hasRaisedLowBound() {
+        return hasRaisedLowBound;
+    }
+}
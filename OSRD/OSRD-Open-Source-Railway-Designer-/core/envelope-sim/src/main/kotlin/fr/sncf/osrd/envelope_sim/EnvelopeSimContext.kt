@@ -18,6 +18,8 @@ constructor(
     /** If the train should follow ETCS rules, this contains some extra context */
     val etcsContext: ETCSContext? = null,
 ) {
+    /** The tractive effort curves, compiled for the integrator on first use */
+    val tractiveEffortTable by lazy { TractiveEffortTable(tractiveEffortCurveMap) }
 
     data class ETCSContext(
         /**
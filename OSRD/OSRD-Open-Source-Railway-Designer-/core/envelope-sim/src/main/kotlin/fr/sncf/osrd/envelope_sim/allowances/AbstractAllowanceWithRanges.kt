@@ -18,12 +18,15 @@ import fr.sncf.osrd.envelope_sim.PhysicsRollingStock
 import fr.sncf.osrd.envelope_sim.allowances.AllowanceValue.FixedTime
 import fr.sncf.osrd.envelope_sim.overlays.EnvelopeAcceleration
 import fr.sncf.osrd.envelope_sim.overlays.EnvelopeDeceleration
-import fr.sncf.osrd.envelope_utils.DoubleBinarySearch
+import fr.sncf.osrd.envelope_utils.DoubleRootSearch
 import fr.sncf.osrd.reporting.exceptions.ErrorType
 import fr.sncf.osrd.reporting.exceptions.OSRDError
 import fr.sncf.osrd.utils.SelfTypeHolder
 import fr.sncf.osrd.utils.areSpeedsEqual
 import fr.sncf.osrd.utils.areTimesEqual
+import fr.sncf.osrd.utils.parallelMap
+import java.util.concurrent.ForkJoinPool
+import java.util.concurrent.atomic.AtomicInteger
 import kotlin.math.abs
 import org.slf4j.Logger
 import org.slf4j.LoggerFactory
@@ -34,7 +37,11 @@ protected constructor(
     val endPos: Double, // potential speed limit under which the train would use too much capacity
     val capacitySpeedLimit: Double,
     var ranges: MutableList<AllowanceRange>,
+    // computes independent ranges and sections concurrently, on the current thread if null
+    private val pool: ForkJoinPool? = null,
 ) : Allowance {
+    private val iterations = AtomicInteger()
+
     init {
         for (range in ranges) {
             if (range.beginPos < beginPos || range.endPos > endPos) {
@@ -65,6 +72,10 @@ protected constructor(
         /** Get the total distance the allowance covers */
         get() = endPos - beginPos
 
+    /** The number of envelopes computed to reach the target times, since the allowance was built */
+    val iterationCount: Int
+        get() = iterations.get()
+
     /** Get the total added time of the allowance region */
     fun getAddedTime(base: Envelope): Double {
         var addedTime = 0.0
@@ -164,7 +175,9 @@ protected constructor(
      * asked by the user and independently computed. Ranges are computed in a specific order : from
      * the lowest to the highest allowance value. Once a range is computed, its beginning and end
      * speeds are memorized and imposed to the left and right side ranges respectively. This process
-     * ensures the continuity of the final envelope.
+     * ensures the continuity of the final envelope. Ranges whose neighbors computed first are done
+     * don't depend on each other, and are computed concurrently: the result is the same as when
+     * computing them in order.
      */
     private fun computeAllowanceRegion(
         envelopeRegion: Envelope,
@@ -204,35 +217,79 @@ protected constructor(
         // the order in which the ranges should be computed
         // ranges are computed with increasing baseTime values
         val rangeOrder = ranges.indices.sortedBy { baseTimes[it].baseTime }
+        val rangeRanks = IntArray(ranges.size)
+        for ((rank, rangeIndex) in rangeOrder.withIndex()) rangeRanks[rangeIndex] = rank
 
         val res = arrayOfNulls<Envelope>(ranges.size)
 
-        // compute ranges one by one in the right order
-        for (rangeIndex in rangeOrder) {
-            try {
-                val range = ranges[rangeIndex]
-                val envelopeRange = make(*envelopeRegion.slice(range.beginPos, range.endPos))
-                val imposedBeginSpeed = imposedTransitionSpeeds[rangeIndex]
-                val imposedEndSpeed = imposedTransitionSpeeds[rangeIndex + 1]
-                val rangeRatio = envelopeRange.totalTime / envelopeRegion.totalTime
-                val tolerance = context.timeStep * rangeRatio
-                val allowanceRange =
-                    computeAllowanceRange(
-                        envelopeRange,
-                        context,
-                        range.value,
-                        imposedBeginSpeed,
-                        imposedEndSpeed,
-                        tolerance,
-                    )
+        // a range can be computed once its neighbors which come first in the order are
+        fun isReady(rangeIndex: Int): Boolean {
+            for (neighbor in intArrayOf(rangeIndex - 1, rangeIndex + 1)) {
+                if (neighbor !in ranges.indices) continue
+                if (rangeRanks[neighbor] < rangeRanks[rangeIndex] && res[neighbor] == null)
+                    return false
+            }
+            return true
+        }
+
+        // compute ranges in the right order, all the ready ones at once. When a range fails, the
+        // ranges which come before it in the order are still computed, to report the error of the
+        // first failing range.
+        var firstError: OSRDError? = null
+        var firstErrorRangeIndex = -1
+        var pending = rangeOrder
+        while (pending.isNotEmpty()) {
+            val readyRanges = pending.filter { isReady(it) }
+            val results =
+                readyRanges.parallelMap(pool) { rangeIndex ->
+                    val range = ranges[rangeIndex]
+                    val envelopeRange = make(*envelopeRegion.slice(range.beginPos, range.endPos))
+                    val imposedBeginSpeed = imposedTransitionSpeeds[rangeIndex]
+                    val imposedEndSpeed = imposedTransitionSpeeds[rangeIndex + 1]
+                    val rangeRatio = envelopeRange.totalTime / envelopeRegion.totalTime
+                    val tolerance = context.timeStep * rangeRatio
+                    try {
+                        Result.success(
+                            computeAllowanceRange(
+                                envelopeRange,
+                                context,
+                                range.value,
+                                imposedBeginSpeed,
+                                imposedEndSpeed,
+                                tolerance,
+                            )
+                        )
+                    } catch (e: OSRDError) {
+                        Result.failure(e)
+                    }
+                }
+            for ((rangeIndex, result) in readyRanges.zip(results)) {
+                val error = result.exceptionOrNull()
+                if (error != null) {
+                    if (
+                        firstError == null ||
+                            rangeRanks[rangeIndex] < rangeRanks[firstErrorRangeIndex]
+                    ) {
+                        firstError = error as OSRDError
+                        firstErrorRangeIndex = rangeIndex
+                    }
+                    continue
+                }
+                val allowanceRange = result.getOrThrow()
                 // memorize the beginning and end speeds
                 imposedTransitionSpeeds[rangeIndex] = allowanceRange.beginSpeed
                 imposedTransitionSpeeds[rangeIndex + 1] = allowanceRange.endSpeed
                 res[rangeIndex] = allowanceRange
-            } catch (e: OSRDError) {
-                e.context["allowance_range_index"] = rangeIndex
-                throw e
             }
+            pending =
+                pending.filter {
+                    res[it] == null &&
+                        (firstError == null || rangeRanks[it] < rangeRanks[firstErrorRangeIndex])
+                }
+        }
+        if (firstError != null) {
+            firstError.context["allowance_range_index"] = firstErrorRangeIndex
+            throw firstError
         }
 
         return res.map { it!! }
@@ -289,42 +346,49 @@ protected constructor(
         splitPoints.addAll(findStops(envelopeRange))
         if (splitPoints[splitPoints.size - 1] != rangeEndPos) splitPoints.add(rangeEndPos)
 
+        // apply the allowance on each section of the allowance range, they are independent
+        val sections = (0..<splitPoints.size - 1).toList()
+        val allowanceSections =
+            sections.parallelMap(pool) { i ->
+                val sectionBeginPos = splitPoints[i]
+                val sectionEndPos = splitPoints[i + 1]
+                val section = make(*envelopeRange.slice(sectionBeginPos, sectionEndPos))
+                val sectionTime = section.totalTime
+                val sectionDistance = section.totalDistance
+                val sectionRatio =
+                    value.getSectionRatio(sectionTime, baseTime, sectionDistance, baseDistance)
+                val targetTime = sectionTime + addedTime * sectionRatio
+
+                // the imposed begin and end speeds only apply to the first and last section of the
+                // range respectively
+                val imposedBeginSpeed =
+                    if (sectionBeginPos == rangeBeginPos) imposedRangeBeginSpeed else Double.NaN
+                val imposedEndSpeed =
+                    if (sectionEndPos == rangeEndPos) imposedRangeEndSpeed else Double.NaN
+
+                val distributedTolerance = tolerance * sectionRatio
+                val allowanceSection =
+                    computeAllowanceSection(
+                        section,
+                        context,
+                        targetTime,
+                        imposedBeginSpeed,
+                        imposedEndSpeed,
+                        distributedTolerance,
+                    )
+                assert(abs(allowanceSection!!.totalTime - targetTime) <= context.timeStep)
+                allowanceSection
+            }
         val builder = EnvelopeBuilder()
-        // apply the allowance on each section of the allowance range
-        for (i in 0..<splitPoints.size - 1) {
-            val sectionBeginPos = splitPoints[i]
-            val sectionEndPos = splitPoints[i + 1]
-            val section = make(*envelopeRange.slice(sectionBeginPos, sectionEndPos))
-            val sectionTime = section.totalTime
-            val sectionDistance = section.totalDistance
-            val sectionRatio =
-                value.getSectionRatio(sectionTime, baseTime, sectionDistance, baseDistance)
-            val targetTime = sectionTime + addedTime * sectionRatio
-
-            // the imposed begin and end speeds only apply to the first and last section of the
-            // range respectively
-            val imposedBeginSpeed =
-                if (sectionBeginPos == rangeBeginPos) imposedRangeBeginSpeed else Double.NaN
-            val imposedEndSpeed =
-                if (sectionEndPos == rangeEndPos) imposedRangeEndSpeed else Double.NaN
-
-            val distributedTolerance = tolerance * sectionRatio
-            val allowanceSection =
-                computeAllowanceSection(
-                    section,
-                    context,
-                    targetTime,
-                    imposedBeginSpeed,
-                    imposedEndSpeed,
-                    distributedTolerance,
-                )
-            assert(abs(allowanceSection!!.totalTime - targetTime) <= context.timeStep)
-            builder.addEnvelope(allowanceSection)
-        }
+        for (allowanceSection in allowanceSections) builder.addEnvelope(allowanceSection)
         return builder.build()
     }
 
-    /** Iteratively apply the allowance on the given section, until the target time is reached */
+    /**
+     * Iteratively apply the allowance on the given section, until the target time is reached. The
+     * input is searched with interpolation steps, safeguarded by bisection (see
+     * [DoubleRootSearch]).
+     */
     private fun computeAllowanceSection(
         envelopeSection: Envelope,
         context: EnvelopeSimContext,
@@ -333,7 +397,6 @@ protected constructor(
         imposedEndSpeed: Double,
         tolerance: Double,
     ): Envelope? {
-        // perform a binary search
         val initialLowBound = computeInitialLowBound(envelopeSection)
         val initialHighBound = computeInitialHighBound(envelopeSection, context.rollingStock)
         if (initialLowBound > initialHighBound) {
@@ -345,11 +408,12 @@ protected constructor(
         var res: Envelope? = null
         var lastError: OSRDError? = null
         val search =
-            DoubleBinarySearch(initialLowBound, initialHighBound, targetTime, tolerance, true)
+            DoubleRootSearch(initialLowBound, initialHighBound, targetTime, tolerance, true)
         var lastTime = 0.0
         var i = 1
         while (i < 30 && !search.complete()) {
             val input = search.input
+            iterations.incrementAndGet()
             try {
                 res =
                     computeIteration(
@@ -372,7 +436,7 @@ protected constructor(
                     ErrorType
                         .AllowanceConvergenceNotEnoughTime // Can't go fast enough to even build a
                     // valid envelope: we need to go slower
-                    -> search.feedback(0.0)
+                    -> search.feedback(Double.NEGATIVE_INFINITY)
                     else // Internal error, can't be handled here, rethrown
                     -> throw allowanceError
                 }
@@ -417,12 +481,12 @@ protected constructor(
         return res
     }
 
-    /** Compute one iteration of the binary search */
+    /** Compute one iteration of the search */
     fun computeIteration(base: Envelope, context: EnvelopeSimContext, input: Double): Envelope {
         return computeIteration(base, context, input, Double.NaN, Double.NaN)
     }
 
-    /** Compute one iteration of the binary search, with specified speeds on the edges */
+    /** Compute one iteration of the search, with specified speeds on the edges */
     private fun computeIteration(
         base: Envelope,
         context: EnvelopeSimContext,
@@ -661,7 +725,7 @@ protected constructor(
     companion object {
         val logger: Logger = LoggerFactory.getLogger(Allowance::class.java)
 
-        private fun makeError(search: DoubleBinarySearch): RuntimeException {
+        private fun makeError(search: DoubleRootSearch): RuntimeException {
             if (!search.hasRaisedLowBound())
                 throw OSRDError(ErrorType.AllowanceConvergenceTooMuchTime)
             else if (!search.hasLoweredHighBound())
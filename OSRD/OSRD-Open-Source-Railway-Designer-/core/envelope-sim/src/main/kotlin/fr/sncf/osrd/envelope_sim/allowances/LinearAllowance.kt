@@ -8,13 +8,22 @@ import fr.sncf.osrd.envelope_sim.EnvelopeProfile
 import fr.sncf.osrd.envelope_sim.EnvelopeSimContext
 import fr.sncf.osrd.envelope_sim.PhysicsRollingStock
 import fr.sncf.osrd.utils.SelfTypeHolder
+import java.util.concurrent.ForkJoinPool
 
 class LinearAllowance(
     beginPos: Double,
     endPos: Double,
     capacitySpeedLimit: Double,
     ranges: List<AllowanceRange>,
-) : AbstractAllowanceWithRanges(beginPos, endPos, capacitySpeedLimit, ranges.toMutableList()) {
+    pool: ForkJoinPool? = null,
+) :
+    AbstractAllowanceWithRanges(
+        beginPos,
+        endPos,
+        capacitySpeedLimit,
+        ranges.toMutableList(),
+        pool,
+    ) {
     /** Compute the initial low bound for the binary search */
     override fun computeInitialLowBound(envelopeSection: Envelope): Double {
         return capacitySpeedLimit
@@ -5,11 +5,13 @@ import fr.sncf.osrd.envelope.EnvelopeSpeedCap
 import fr.sncf.osrd.envelope.OverlayEnvelopeBuilder
 import fr.sncf.osrd.envelope_sim.EnvelopeSimContext
 import fr.sncf.osrd.envelope_sim.PhysicsRollingStock
+import fr.sncf.osrd.envelope_sim.allowances.mareco_impl.AcceleratingSlopeCache
 import fr.sncf.osrd.envelope_sim.allowances.mareco_impl.AcceleratingSlopeCoast.Companion.findAll
 import fr.sncf.osrd.envelope_sim.allowances.mareco_impl.BrakingPhaseCoast.Companion.findAll
 import fr.sncf.osrd.envelope_sim.allowances.mareco_impl.CoastingOpportunity
 import fr.sncf.osrd.envelope_sim.pipelines.addAccelerationAndConstantSpeedParts
 import fr.sncf.osrd.utils.SelfTypeHolder
+import java.util.concurrent.ForkJoinPool
 import kotlin.math.max
 
 /**
@@ -21,7 +23,18 @@ class MarecoAllowance(
     endPos: Double,
     capacitySpeedLimit: Double,
     ranges: List<AllowanceRange>,
-) : AbstractAllowanceWithRanges(beginPos, endPos, capacitySpeedLimit, ranges.toMutableList()) {
+    pool: ForkJoinPool? = null,
+) :
+    AbstractAllowanceWithRanges(
+        beginPos,
+        endPos,
+        capacitySpeedLimit,
+        ranges.toMutableList(),
+        pool,
+    ) {
+    /** The accelerating slopes found by previous iterations, for the last context */
+    @Volatile private var slopeCache: AcceleratingSlopeCache? = null
+
     init {
         assert(capacitySpeedLimit >= 1) {
             "capacity speed limit can't be lower than 1m/s for mareco allowances"
@@ -94,7 +107,7 @@ class MarecoAllowance(
 
         // 2) find accelerating slopes on constant speed limit regions
         val coastingOpportunities = mutableListOf<CoastingOpportunity>()
-        coastingOpportunities.addAll(findAll(cappedEnvelope, context, vf))
+        coastingOpportunities.addAll(findAll(cappedEnvelope, context, vf, getSlopeCache(context)))
 
         // 3) find coasting opportunities related to braking
         coastingOpportunities.addAll(findAll(cappedEnvelope, speedCap, vf))
@@ -117,4 +130,10 @@ class MarecoAllowance(
         assert(res.continuous) { "Discontinuity in MARECO core phase" }
         return res
     }
+
+    private fun getSlopeCache(context: EnvelopeSimContext): AcceleratingSlopeCache {
+        val cache = slopeCache
+        if (cache != null && cache.context === context) return cache
+        return AcceleratingSlopeCache(context).also { slopeCache = it }
+    }
 }
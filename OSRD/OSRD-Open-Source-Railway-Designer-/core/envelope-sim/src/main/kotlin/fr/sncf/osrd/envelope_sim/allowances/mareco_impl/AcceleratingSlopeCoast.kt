@@ -12,6 +12,7 @@ import fr.sncf.osrd.envelope_utils.DistanceAverage
 import fr.sncf.osrd.utils.arePositionsEqual
 import fr.sncf.osrd.utils.areSpeedsEqual
 import java.lang.Double.isNaN
+import java.util.concurrent.ConcurrentHashMap
 import kotlin.math.max
 import kotlin.math.min
 
@@ -123,12 +124,17 @@ private constructor(
 
     companion object {
         // TODO: rewrite as a method of the physics path
-        /** Finds all the opportunities for coasting on accelerating slopes */
+        /**
+         * Finds all the opportunities for coasting on accelerating slopes. The slopes of plateaus
+         * scanned before are taken from the cache, if any.
+         */
         fun findAll(
             envelope: Envelope,
             context: EnvelopeSimContext,
             vf: Double,
+            cache: AcceleratingSlopeCache? = null,
         ): ArrayList<AcceleratingSlopeCoast> {
+            assert(cache == null || cache.context === context)
             val res = ArrayList<AcceleratingSlopeCoast>()
             val cursor = EnvelopeCursor.forward(envelope)
             // scan until maintain speed envelope parts
@@ -141,14 +147,25 @@ private constructor(
                     continue
                 }
 
-                var previousPosition = Double.NaN
-                var previousAcceleration = Double.NaN
-                var currentAcceleratingSlope: AcceleratingSlopeCoast? = null
-
                 // constant variables for this plateau
                 val envelopePart = cursor.part
                 val positionStep = context.timeStep * speed
 
+                val plateau =
+                    AcceleratingSlopeCache.Plateau(cursor.position, envelopePart.endPos, speed)
+                val cachedSlopes = cache?.get(plateau)
+                if (cachedSlopes != null) {
+                    res.addAll(cachedSlopes.slopes)
+                    cursor.findPosition(cachedSlopes.nextPosition)
+                    continue
+                }
+
+                val plateauSlopes = ArrayList<AcceleratingSlopeCoast>()
+                var previousPosition = Double.NaN
+                var previousAcceleration = Double.NaN
+                var currentAcceleratingSlope: AcceleratingSlopeCoast? = null
+                var nextPosition = Double.NaN
+
                 while (!cursor.hasReachedEnd() && cursor.position <= envelopePart.endPos) {
                     val position = cursor.position
                     val naturalAcceleration = getNaturalAcceleration(context, position, speed)
@@ -169,16 +186,22 @@ private constructor(
                                 position,
                                 previousPosition,
                             )
-                        res.add(currentAcceleratingSlope.build(endPos, context))
+                        plateauSlopes.add(currentAcceleratingSlope.build(endPos, context))
                         currentAcceleratingSlope = null // reset the accelerating slope
                     }
                     previousAcceleration = naturalAcceleration
                     previousPosition = position
-                    cursor.findPosition(position + positionStep)
+                    nextPosition = position + positionStep
+                    cursor.findPosition(nextPosition)
                 }
                 // if the end of the plateau is an accelerating slope
                 if (currentAcceleratingSlope != null)
-                    res.add(currentAcceleratingSlope.build(previousPosition, context))
+                    plateauSlopes.add(currentAcceleratingSlope.build(previousPosition, context))
+                res.addAll(plateauSlopes)
+                cache?.put(
+                    plateau,
+                    AcceleratingSlopeCache.PlateauSlopes(plateauSlopes, nextPosition),
+                )
             }
             return res
         }
@@ -212,3 +235,29 @@ private constructor(
         }
     }
 }
+
+/**
+ * The accelerating slopes found on the plateaus of the envelopes simulated with a context. They
+ * only depend on the context, on the speed of the plateau, and on where its scan starts and ends.
+ * The iterations of a MARECO allowance find most of them again, on the plateaus under their speed
+ * cap. Caches are thread safe.
+ */
+class AcceleratingSlopeCache(val context: EnvelopeSimContext) {
+    internal data class Plateau(val scanBeginPos: Double, val endPos: Double, val speed: Double)
+
+    /** The slopes of a plateau, and the position the scan moved the cursor to */
+    internal class PlateauSlopes(
+        val slopes: List<AcceleratingSlopeCoast>,
+        val nextPosition: Double,
+    )
+
+    private val plateaus = ConcurrentHashMap<Plateau, PlateauSlopes>()
+
+    internal fun get(plateau: Plateau): PlateauSlopes? {
+        return plateaus[plateau]
+    }
+
+    internal fun put(plateau: Plateau, slopes: PlateauSlopes) {
+        plateaus[plateau] = slopes
+    }
+}
@@ -70,16 +70,17 @@ object CoastingGenerator {
         val initInter = constrainedBuilder.initEnvelopePart(position, speed, -1.0)
         assert(initInter)
         var reachedLowLimit = false
+        val integrator = TrainPhysicsIntegrator(context, -1.0)
         while (true) {
-            val step = TrainPhysicsIntegrator.step(context, position, speed, Action.COAST, -1.0)
-            position += step.positionDelta
-            speed = step.endSpeed
+            integrator.step(position, speed, Action.COAST)
+            position += integrator.positionDelta
+            speed = integrator.endSpeed
             if (!areSpeedsEqual(speed, lowSpeedLimit) && speed < lowSpeedLimit) {
                 speed = lowSpeedLimit
                 reachedLowLimit = true
             }
 
-            if (!constrainedBuilder.addStep(position, speed, step.timeDelta)) break
+            if (!constrainedBuilder.addStep(position, speed, integrator.timeDelta)) break
         }
 
         if (backwardPartBuilder.isEmpty) return null
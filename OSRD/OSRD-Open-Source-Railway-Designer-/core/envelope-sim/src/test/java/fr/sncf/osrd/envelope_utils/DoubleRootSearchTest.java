@@ -0,0 +1,84 @@
+package fr.sncf.osrd.envelope_utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.function.DoubleUnaryOperator;
+import org.junit.jupiter.api.Test;
+
+public class DoubleRootSearchTest {
+    @Test
+    public void increasingTest() {
+        var search = new DoubleRootSearch(0, 10, 4, 0.001, false);
+        var iterations = run(search, input -> input * input * input);
+        assertTrue(search.complete());
+        assertEquals(1.59, search.getResult(), 0.01);
+        assertTrue(iterations < countBinarySearchIterations(0, 10, 4, 0.001, false, input -> input * input * input));
+    }
+
+    @Test
+    public void decreasingTest() {
+        var search = new DoubleRootSearch(0, 10, 0, 0.001, true);
+        var iterations = run(search, input -> 4 - input * input * input);
+        assertTrue(search.complete());
+        assertEquals(1.59, search.getResult(), 0.01);
+        assertTrue(iterations < countBinarySearchIterations(0, 10, 0, 0.001, true, input -> 4 - input * input * input));
+    }
+
+    @Test
+    public void discontinuousTest() {
+        // a step function, which defeats interpolation: the search must fall back to bisection
+        DoubleUnaryOperator function = input -> input < 3.3 ? input : input + 100;
+        var search = new DoubleRootSearch(0, 10, 3.29, 0.001, false);
+        var iterations = run(search, function);
+        assertTrue(search.complete());
+        assertEquals(3.29, search.getResult(), 0.001);
+        assertTrue(iterations <= 3 * countBinarySearchIterations(0, 10, 3.29, 0.001, false, function));
+    }
+
+    @Test
+    public void infiniteFeedbackTest() {
+        // infinite outputs only give the direction of the target
+        var search = new DoubleRootSearch(0, 10, 4, 0.001, false);
+        run(search, input -> input > 5 ? Double.POSITIVE_INFINITY : input * input * input);
+        assertTrue(search.complete());
+        assertEquals(1.59, search.getResult(), 0.01);
+        assertTrue(search.hasLoweredHighBound());
+        assertTrue(search.hasRaisedLowBound());
+    }
+
+    @Test
+    public void unreachableTargetTest() {
+        var search = new DoubleRootSearch(0, 10, 2000, 0.001, false);
+        run(search, input -> input * input * input);
+        assertFalse(search.complete());
+        assertTrue(search.hasRaisedLowBound());
+        assertFalse(search.hasLoweredHighBound());
+    }
+
+    private static int run(DoubleRootSearch search, DoubleUnaryOperator function) {
+        int iterations = 0;
+        while (iterations < 1000 && !search.complete()) {
+            search.feedback(function.applyAsDouble(search.getInput()));
+            iterations++;
+        }
+        return iterations;
+    }
+
+    private static int countBinarySearchIterations(
+            double lowBound,
+            double highBound,
+            double target,
+            double targetErrorMargin,
+            boolean decreasing,
+            DoubleUnaryOperator function) {
+        var search = new DoubleBinarySearch(lowBound, highBound, target, targetErrorMargin, decreasing);
+        int iterations = 0;
+        while (iterations < 1000 && !search.complete()) {
+            search.feedback(function.applyAsDouble(search.getInput()));
+            iterations++;
+        }
+        return iterations;
+    }
+}
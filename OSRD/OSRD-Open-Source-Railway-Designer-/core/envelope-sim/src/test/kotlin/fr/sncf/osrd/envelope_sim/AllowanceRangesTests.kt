@@ -14,6 +14,7 @@ import fr.sncf.osrd.envelope_sim.allowances.MarecoAllowance
 import fr.sncf.osrd.reporting.exceptions.ErrorType
 import fr.sncf.osrd.reporting.exceptions.OSRDError
 import fr.sncf.osrd.utils.areTimesEqual
+import java.util.concurrent.ForkJoinPool
 import java.util.stream.Stream
 import org.junit.jupiter.api.Assertions
 import org.junit.jupiter.api.Test
@@ -457,6 +458,36 @@ class AllowanceRangesTests {
         Assertions.assertEquals(expectedTime, res.totalTime, testContext.timeStep)
     }
 
+    /** Ranges and sections computed concurrently must give the same envelope as in order */
+    @Test
+    fun testRangesComputedConcurrently() {
+        val testContext = SimpleContextBuilder.makeSimpleContext(100000.0, 0.0)
+        val stops = doubleArrayOf(25_000.0, 60_000.0, 100_000.0)
+        val maxEffortEnvelope = makeComplexMaxEffortEnvelope(testContext, stops)
+        val ranges =
+            listOf(5.0, 20.0, 10.0, 15.0, 5.0).mapIndexed { i, value ->
+                AllowanceRange(i * 20_000.0, (i + 1) * 20_000.0, AllowanceValue.Percentage(value))
+            }
+        val pool = ForkJoinPool(4)
+        try {
+            val sequentialMareco =
+                MarecoAllowance(0.0, 100_000.0, 1.0, ranges).apply(maxEffortEnvelope, testContext)
+            val concurrentMareco =
+                MarecoAllowance(0.0, 100_000.0, 1.0, ranges, pool)
+                    .apply(maxEffortEnvelope, testContext)
+            Assertions.assertEquals(sequentialMareco.toList(), concurrentMareco.toList())
+
+            val sequentialLinear =
+                LinearAllowance(0.0, 100_000.0, 0.0, ranges).apply(maxEffortEnvelope, testContext)
+            val concurrentLinear =
+                LinearAllowance(0.0, 100_000.0, 0.0, ranges, pool)
+                    .apply(maxEffortEnvelope, testContext)
+            Assertions.assertEquals(sequentialLinear.toList(), concurrentLinear.toList())
+        } finally {
+            pool.shutdown()
+        }
+    }
+
     /** Applies the allowance to the envelope. Any user error (impossible margin) is ignored */
     private fun applyAllowanceIgnoringUserError(
         allowance: Allowance,
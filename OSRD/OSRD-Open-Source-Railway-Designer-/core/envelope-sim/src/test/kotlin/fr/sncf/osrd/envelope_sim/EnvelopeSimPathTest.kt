@@ -31,6 +31,23 @@ class EnvelopeSimPathTest {
         Assertions.assertEquals(1.0, path.getAverageGrade(2.0, 4.0))
     }
 
+    @Test
+    fun testMinGrade() {
+        val path =
+            EnvelopeSimPathBuilder.buildNonElectrified(
+                10.0,
+                doubleArrayOf(0.0, 3.0, 6.0, 9.0, 10.0),
+                doubleArrayOf(0.0, 2.0, -2.0, 0.0),
+            )
+        Assertions.assertEquals(0.0, path.getMinGrade(0.0, 3.0))
+        Assertions.assertEquals(2.0, path.getMinGrade(3.0, 6.0))
+        Assertions.assertEquals(2.0, path.getMinGrade(4.0, 7.0))
+        Assertions.assertEquals(-2.0, path.getMinGrade(6.5, 6.7))
+        Assertions.assertEquals(-2.0, path.getMinGrade(0.0, 10.0))
+        Assertions.assertEquals(-2.0, path.getMinGrade(3.0, 9.5))
+        Assertions.assertEquals(0.0, path.getMinGrade(10.0, 12.0))
+    }
+
     @Test
     fun findHighGradePosition() {
         val path =
@@ -0,0 +1,164 @@
+package fr.sncf.osrd.envelope_sim
+
+import com.google.common.collect.ImmutableRangeMap
+import com.google.common.collect.Range
+import fr.sncf.osrd.envelope.Envelope
+import fr.sncf.osrd.envelope_sim.MaxEffortEnvelopeBuilder.makeComplexMaxEffortEnvelope
+import fr.sncf.osrd.envelope_sim.SimpleRollingStock.CurveShape
+import fr.sncf.osrd.envelope_sim.allowances.AbstractAllowanceWithRanges
+import fr.sncf.osrd.envelope_sim.allowances.AllowanceRange
+import fr.sncf.osrd.envelope_sim.allowances.AllowanceValue
+import fr.sncf.osrd.envelope_sim.allowances.LinearAllowance
+import fr.sncf.osrd.envelope_sim.allowances.MarecoAllowance
+import fr.sncf.osrd.envelope_sim.pipelines.SimStop
+import fr.sncf.osrd.envelope_sim.pipelines.maxEffortEnvelopeFrom
+import fr.sncf.osrd.envelope_sim.pipelines.maxSpeedEnvelopeFrom
+import fr.sncf.osrd.railjson.schema.schedule.RJSTrainStop.RJSReceptionSignal
+import fr.sncf.osrd.utils.units.Offset
+import fr.sncf.osrd.utils.units.meters
+import java.util.concurrent.ForkJoinPool
+import kotlin.random.Random
+import org.junit.jupiter.api.Disabled
+import org.junit.jupiter.api.Test
+
+@Disabled(
+    "to be enabled when running profilers or benchmarks, not part of the tests to run by default"
+)
+class EnvelopeSimPerformanceTests {
+    @Test
+    fun longHilly() {
+        /*
+        A 500km path with a grade change every 200m, a speed limit change every 5km, a stop every
+        50km, and a different tractive effort curve every 10km, with a 2s time step.
+         */
+        benchmark(generateContext(Random(0), 500_000.0, 2.0), 50_000.0)
+    }
+
+    @Test
+    fun shortTimeStep() {
+        /* The same path with a 0.5s time step, as used to compute reference envelopes */
+        benchmark(generateContext(Random(0), 500_000.0, 0.5), 50_000.0)
+    }
+
+    @Test
+    fun minGrade() {
+        /*
+        The minimum grade queries made by ETCS braking curves on the same path: one per integration
+        step, on a range of about a step's length
+         */
+        val path = generateContext(Random(0), 500_000.0, 2.0).path
+        val random = Random(2)
+        val begins = DoubleArray(1_000_000) { random.nextDouble(0.0, path.length) }
+        var sum = 0.0
+        measure("min grade") {
+            for (begin in begins) sum += path.getMinGrade(begin, minOf(begin + 50.0, path.length))
+        }
+        println("sum: %.3f".format(sum))
+    }
+
+    @Test
+    fun marecoAllowance() {
+        benchmarkAllowance { ranges, pool -> MarecoAllowance(0.0, 100_000.0, 1.0, ranges, pool) }
+    }
+
+    @Test
+    fun linearAllowance() {
+        benchmarkAllowance { ranges, pool -> LinearAllowance(0.0, 100_000.0, 0.0, ranges, pool) }
+    }
+
+    /**
+     * Applies allowances with 5 ranges of 20km on a 100km hilly path, with the complex MRSP of the
+     * allowance tests and a stop every 10km
+     */
+    private fun benchmarkAllowance(
+        makeAllowance: (List<AllowanceRange>, ForkJoinPool?) -> AbstractAllowanceWithRanges
+    ) {
+        val context = generateContext(Random(0), 100_000.0, 2.0)
+        val stops = DoubleArray(10) { (it + 1) * 10_000.0 }
+        val maxEffortEnvelope = makeComplexMaxEffortEnvelope(context, stops)
+        val random = Random(3)
+        val ranges =
+            (0..<5).map {
+                val value = AllowanceValue.Percentage(random.nextInt(5, 20).toDouble())
+                AllowanceRange(it * 20_000.0, (it + 1) * 20_000.0, value)
+            }
+        for ((name, pool) in listOf("sequential" to null, "4 threads" to ForkJoinPool(4))) {
+            var iterations = 0
+            var envelope: Envelope? = null
+            measure("allowance, $name") {
+                val allowance = makeAllowance(ranges, pool)
+                envelope = allowance.apply(maxEffortEnvelope, context)
+                iterations = allowance.iterationCount
+            }
+            println("iterations: $iterations, total time: %.3fs".format(envelope!!.totalTime))
+            pool?.shutdown()
+        }
+    }
+
+    private fun benchmark(context: EnvelopeSimContext, stopInterval: Double) {
+        val length = context.path.length
+        val speedLimits = ImmutableRangeMap.builder<Double, Double>()
+        val random = Random(1)
+        var position = 0.0
+        while (position < length) {
+            val end = minOf(position + 5_000.0, length)
+            speedLimits.put(Range.closedOpen(position, end), random.nextInt(20, 45).toDouble())
+            position = end
+        }
+        val mrsp = TestMRSPBuilder.makeSimpleMRSP(context, speedLimits.build())
+        val stops =
+            generateSequence(stopInterval) { it + stopInterval }
+                .takeWhile { it <= length }
+                .map { SimStop(Offset(it.meters), RJSReceptionSignal.SHORT_SLIP_STOP) }
+                .toList()
+
+        var maxSpeedEnvelope: Envelope? = null
+        measure("max speed envelope") {
+            maxSpeedEnvelope = maxSpeedEnvelopeFrom(context, stops, mrsp)
+        }
+        var maxEffortEnvelope: Envelope? = null
+        measure("max effort envelope") {
+            maxEffortEnvelope = maxEffortEnvelopeFrom(context, 0.0, maxSpeedEnvelope!!)
+        }
+        println("total time: %.3fs".format(maxEffortEnvelope!!.totalTime))
+    }
+
+    private fun measure(name: String, action: () -> Unit) {
+        var best = Double.POSITIVE_INFINITY
+        repeat(10) {
+            val start = System.nanoTime()
+            action()
+            best = minOf(best, (System.nanoTime() - start) / 1e6)
+        }
+        println("$name: %.1fms".format(best))
+    }
+
+    private fun generateContext(
+        random: Random,
+        length: Double,
+        timeStep: Double,
+    ): EnvelopeSimContext {
+        val gradeCount = (length / 200.0).toInt()
+        val gradePositions = DoubleArray(gradeCount + 1) { it * length / gradeCount }
+        val gradeValues = DoubleArray(gradeCount) { random.nextDouble(-15.0, 15.0) }
+        val path = EnvelopeSimPathBuilder.buildNonElectrified(length, gradePositions, gradeValues)
+
+        val curves =
+            ImmutableRangeMap.builder<Double, Array<PhysicsRollingStock.TractiveEffortPoint>>()
+        val shapes = listOf(CurveShape.LINEAR, CurveShape.HYPERBOLIC)
+        var position = 0.0
+        while (position < length) {
+            val end = minOf(position + 10_000.0, length)
+            val curve =
+                SimpleRollingStock.createEffortSpeedCurve(
+                    SimpleRollingStock.STANDARD_TRAIN.maxSpeed,
+                    shapes[random.nextInt(shapes.size)],
+                )
+            val range =
+                if (end == length) Range.closed(position, end) else Range.closedOpen(position, end)
+            curves.put(range, curve)
+            position = end
+        }
+        return EnvelopeSimContext(SimpleRollingStock.STANDARD_TRAIN, path, timeStep, curves.build())
+    }
+}
@@ -1,5 +1,7 @@
 package fr.sncf.osrd.envelope_sim
 
+import com.google.common.collect.ImmutableRangeMap
+import com.google.common.collect.Range
 import fr.sncf.osrd.envelope.Envelope.Companion.make
 import fr.sncf.osrd.envelope.part.ConstrainedEnvelopePartBuilder
 import fr.sncf.osrd.envelope.part.EnvelopePartBuilder
@@ -8,6 +10,7 @@ import fr.sncf.osrd.envelope.part.constraints.PositionConstraint
 import fr.sncf.osrd.envelope.part.constraints.SpeedConstraint
 import fr.sncf.osrd.envelope_sim.allowances.mareco_impl.CoastingGenerator.coastFromBeginning
 import fr.sncf.osrd.envelope_sim.overlays.EnvelopeDeceleration
+import kotlin.random.Random
 import org.junit.jupiter.api.Assertions
 import org.junit.jupiter.api.Test
 
@@ -141,6 +144,55 @@ class TrainPhysicsIntegratorTest {
         Assertions.assertNull(failedCoast)
     }
 
+    @Test
+    fun testTractiveEffortTable() {
+        val linearCurve = SimpleRollingStock.LINEAR_EFFORT_CURVE_MAP.get(0.0)!!
+        val hyperbolicCurve = SimpleRollingStock.HYPERBOLIC_EFFORT_CURVE_MAP.get(0.0)!!
+        val curveMap =
+            ImmutableRangeMap.builder<Double, Array<PhysicsRollingStock.TractiveEffortPoint>>()
+                .put(Range.closedOpen(0.0, 100.0), linearCurve)
+                .put(Range.closed(100.0, 200.0), hyperbolicCurve)
+                .put(Range.openClosed(200.0, 300.0), linearCurve)
+                .put(Range.greaterThan(400.0), hyperbolicCurve)
+                .build()
+        val table = TractiveEffortTable(curveMap)
+        val curves = listOf(linearCurve, hyperbolicCurve, linearCurve, hyperbolicCurve)
+        // look positions up forward, backward and at random, starting from the previous curve
+        var hint = 0
+        val positions = (-10..500).map { it.toDouble() }
+        for (position in positions + positions.reversed() + positions.shuffled(Random(0))) {
+            val expected = curveMap.get(position)
+            hint = table.findCurve(position, hint)
+            if (expected == null) {
+                Assertions.assertEquals(-1, hint)
+                hint = 0
+                continue
+            }
+            Assertions.assertSame(expected, curves[hint])
+            for (speed in listOf(0.0, 0.5, 1.0, 10.3, 42.0, 83.0, 100.0, -12.5)) {
+                Assertions.assertEquals(
+                    PhysicsRollingStock.getMaxEffort(speed, expected),
+                    table.getMaxEffort(hint, speed),
+                )
+            }
+        }
+    }
+
+    @Test
+    fun testWeightForce() {
+        val rollingStock = SimpleRollingStock.STANDARD_TRAIN
+        for (grade in listOf(-40.0, -12.5, -1.0, 0.0, 0.3, 8.0, 35.0)) {
+            val angle = Math.atan(grade / 1000.0)
+            val expected =
+                -rollingStock.mass * TrainPhysicsIntegrator.GRAVITY_ACCELERATION * Math.sin(angle)
+            Assertions.assertEquals(
+                expected,
+                TrainPhysicsIntegrator.getWeightForce(rollingStock, grade),
+                1e-9 * rollingStock.mass,
+            )
+        }
+    }
+
     companion object {
         private const val TIME_STEP = 1.0
     }
@@ -7,6 +7,7 @@ import com.google.common.collect.TreeRangeMap
 import fr.sncf.osrd.path.interfaces.Electrification
 import fr.sncf.osrd.path.interfaces.PhysicsPath
 import fr.sncf.osrd.utils.RangeMapUtils
+import fr.sncf.osrd.utils.RangeMinIndex
 import fr.sncf.osrd.utils.arePositionsEqual
 import fr.sncf.osrd.utils.entries
 import java.util.Arrays
@@ -29,6 +30,9 @@ class EnvelopeSimPath(
     /** The cumulative sum of the gradient at each grade position */
     private val gradeCumSum: DoubleArray
 
+    /** The minimum of any range of grade values, only built for simulations which need it */
+    private val minGradeIndex by lazy { RangeMinIndex(gradeValues) }
+
     /**
      * A mapping describing electrification on this path (without electrical profiles nor
      * restrictions)
@@ -109,7 +113,6 @@ class EnvelopeSimPath(
     }
 
     override fun getMinGrade(begin: Double, end: Double): Double {
-        // TODO: Optimise method by adding in a cache.
         val indexBegin = getIndexBeforePos(begin)
         val indexEnd = getIndexBeforePos(end)
         // TODO: Remove if we extend path properties until last SvL > path.length.
@@ -117,24 +120,17 @@ class EnvelopeSimPath(
             indexBegin == indexEnd && indexBegin == gradePositions.size - 1
         ) // Take last grade value in this case
          return gradeValues[gradeValues.size - 1]
-        var lowestGradient = gradeValues[indexBegin]
-        for (i in indexBegin..<indexEnd) {
-            val grad = gradeValues[i]
-            if (grad < lowestGradient) lowestGradient = grad
-        }
-        return lowestGradient
+        return minGradeIndex.min(indexBegin, maxOf(indexEnd, indexBegin + 1))
     }
 
     /** For a given position, return the index of the position just before in gradePositions */
     private fun getIndexBeforePos(position: Double): Int {
-        // TODO: Optimise method by using binary search.
         if (position <= gradePositions[0]) return 0
         if (position >= gradePositions[gradePositions.size - 1]) return gradePositions.size - 1
-        for (i in gradePositions.indices) {
-            val pos = gradePositions[i]
-            if (pos > position) return i - 1
-        }
-        return gradePositions.size - 1
+        val pointIndex = Arrays.binarySearch(gradePositions, position)
+        if (pointIndex >= 0) return pointIndex
+        // when the position isn't found, binarySearch returns -(insertion point) - 1
+        return -(pointIndex + 1) - 1
     }
 
     private fun getModeAndProfileMap(
@@ -25,6 +25,7 @@ import fr.sncf.osrd.utils.indexing.*
 import fr.sncf.osrd.utils.units.*
 import java.io.IOException
 import java.util.*
+import java.util.concurrent.ForkJoinPool
 import kotlin.collections.set
 import kotlin.math.abs
 import kotlin.time.Duration.Companion.seconds
@@ -231,7 +232,7 @@ private fun buildCompatibleGaugeTypesMap(): Map<RJSLoadingGaugeType, Set<RJSLoad
 val compatibleGaugeTypeMap = buildCompatibleGaugeTypesMap()
 val allLoadingGaugeTypeSet = enumValues<RJSLoadingGaugeType>().toSet()
 
-private fun parseRjsRouteWaypoint(
+internal fun parseRjsRouteWaypoint(
     rjsDetector: RJSRouteWaypoint,
     trackSectionNameToDistanceSortedDetectors:
         MutableMap<String, TreeMap<Offset<TrackSection>, MutableList<String>>>,
@@ -244,7 +245,7 @@ private fun parseRjsRouteWaypoint(
 }
 
 /** Build detection zones on a partially-filled builder (track-sections, nodes and detectors) */
-private fun buildZones(builder: RawInfraBuilder) {
+internal fun buildZones(builder: RawInfraBuilder) {
     // 1. run a union-find to figure out which zone each start and end of track section belongs to
     val uf = UnionFind(builder.getTrackSections().size.toInt() * 2)
 
@@ -315,31 +316,73 @@ private fun buildZones(builder: RawInfraBuilder) {
     }
 }
 
-private fun parseRjsTrackSection(
-    builder: RawInfraBuilder,
-    rjsTrack: RJSTrackSection,
+/**
+ * The properties of a track section which do not depend on other infra objects. They are much
+ * smaller than the railjson track section, as the geometry is stored in primitive arrays.
+ */
+internal class PreparedTrackSection(
+    val id: String,
+    val length: Offset<TrackSection>,
+    val geo: LineString,
+    val slopes: DistanceRangeMap<Double>,
+    val curves: DistanceRangeMap<Double>,
+    val blockedGauges: DistanceRangeMap<LoadingGaugeConstraint>,
+)
+
+internal fun prepareTrackSection(rjsTrack: RJSTrackSection): PreparedTrackSection {
+    return PreparedTrackSection(
+        rjsTrack.id,
+        Offset(rjsTrack.length.meters),
+        parseLineString(rjsTrack.geo)!!,
+        getSlopes(rjsTrack),
+        getCurves(rjsTrack),
+        getBlockedGauge(rjsTrack),
+    )
+}
+
+/** A track chunk, computed before it is added to the builder */
+internal class PreparedTrackChunk(
+    val geo: LineString,
+    val slopes: DirectionalMap<DistanceRangeMap<Double>>,
+    val curves: DirectionalMap<DistanceRangeMap<Double>>,
+    val gradients: DirectionalMap<DistanceRangeMap<Double>>,
+    val length: Length<TrackChunk>,
+    val offset: Offset<TrackSection>,
+    val blockedGauges: DistanceRangeMap<LoadingGaugeConstraint>,
+)
+
+/** A track section split at its detectors, with the names of the detectors at each boundary */
+internal class ChunkedTrackSection(
+    val id: String,
+    val chunks: List<PreparedTrackChunk>,
+    val chunkBoundariesDetectors: List<List<String>?>,
+)
+
+/** Splits a track section into chunks. This doesn't use the builder, and may run on any thread. */
+internal fun splitTrackSection(
+    track: PreparedTrackSection,
     trackSectionNameToDistanceSortedDetectors:
         Map<String, TreeMap<Offset<TrackSection>, MutableList<String>>>,
-) {
-    val trackSectionChunks = mutableStaticIdxArrayListOf<TrackChunk>()
+): ChunkedTrackSection {
+    val trackSectionChunks = mutableListOf<PreparedTrackChunk>()
 
-    val trackSectionLength = Offset<TrackSection>(rjsTrack.length.meters)
-    val trackSectionGeo = parseLineString(rjsTrack.geo)!!
-    val trackSectionSlopes = getSlopes(rjsTrack)
-    val trackSectionCurves = getCurves(rjsTrack)
-    val trackSectionBlockedGauges = getBlockedGauge(rjsTrack)
+    val trackSectionLength = track.length
+    val trackSectionGeo = track.geo
+    val trackSectionSlopes = track.slopes
+    val trackSectionCurves = track.curves
+    val trackSectionBlockedGauges = track.blockedGauges
 
     val chunkBoundariesOffsets = mutableOffsetArrayListOf<TrackSection>(Offset.zero())
     val chunkBoundariesDetectors = mutableListOf<List<String>?>(null)
 
     // add all detectors
-    val trackSectionDetectors = trackSectionNameToDistanceSortedDetectors[rjsTrack.id]
+    val trackSectionDetectors = trackSectionNameToDistanceSortedDetectors[track.id]
     if (trackSectionDetectors != null) {
         for (detector in trackSectionDetectors) {
             val detectorOffset = detector.key
             if (detectorOffset > trackSectionLength || detectorOffset < Offset.zero()) {
                 throw OSRDError.newInfraError(
-                    "Detector out of range at offset $detectorOffset on trackSection ${rjsTrack.id}"
+                    "Detector out of range at offset $detectorOffset on trackSection ${track.id}"
                 )
             }
             if (detectorOffset.distance == Distance.ZERO) {
@@ -371,8 +414,8 @@ private fun parseRjsTrackSection(
 
         val chunkLength = chunkEndOffset - chunkStartOffset
 
-        val chunkIdx =
-            builder.trackChunk(
+        trackSectionChunks.add(
+            PreparedTrackChunk(
                 trackSectionGeo.slice(
                     chunkStartOffset.distance.millimeters.toDouble() /
                         trackSectionLength.distance.millimeters,
@@ -389,16 +432,92 @@ private fun parseRjsTrackSection(
                 chunkStartOffset,
                 chunkBlockedGauges,
             )
-        trackSectionChunks.add(chunkIdx)
+        )
+    }
+    return ChunkedTrackSection(track.id, trackSectionChunks, chunkBoundariesDetectors)
+}
+
+internal fun parseRjsTrackSection(builder: RawInfraBuilder, track: ChunkedTrackSection) {
+    val trackSectionChunks = mutableStaticIdxArrayListOf<TrackChunk>()
+    for (chunk in track.chunks) {
+        trackSectionChunks.add(
+            builder.trackChunk(
+                chunk.geo,
+                chunk.slopes,
+                chunk.curves,
+                chunk.gradients,
+                chunk.length,
+                chunk.offset,
+                chunk.blockedGauges,
+            )
+        )
     }
-    val trackSectionId = builder.trackSection(rjsTrack.id, trackSectionChunks)
-    for (chunkBoundaryIndex in 0 until chunkBoundariesDetectors.size) {
-        val chunkBoundaryDetectorNames = chunkBoundariesDetectors[chunkBoundaryIndex] ?: continue
+    val trackSectionId = builder.trackSection(track.id, trackSectionChunks)
+    for (chunkBoundaryIndex in 0 until track.chunkBoundariesDetectors.size) {
+        val chunkBoundaryDetectorNames =
+            track.chunkBoundariesDetectors[chunkBoundaryIndex] ?: continue
         builder.detector(chunkBoundaryDetectorNames, trackSectionId, chunkBoundaryIndex)
     }
 }
 
-fun parseRjsElectrification(builder: RawInfraBuilder, electrification: RJSElectrification) {
+/** Splits track sections into chunks on the given pool if any, and adds them to the builder */
+internal fun parseRjsTrackSections(
+    builder: RawInfraBuilder,
+    tracks: List<PreparedTrackSection>,
+    trackSectionNameToDistanceSortedDetectors:
+        Map<String, TreeMap<Offset<TrackSection>, MutableList<String>>>,
+    pool: ForkJoinPool?,
+) {
+    val chunkedTracks =
+        tracks.parallelMap(pool) {
+            splitTrackSection(it, trackSectionNameToDistanceSortedDetectors)
+        }
+    for (track in chunkedTracks) parseRjsTrackSection(builder, track)
+}
+
+/** Has the same signature as [RawInfraBuilder.applyFunctionToTrackSectionChunksBetween] */
+typealias TrackRangeFunctionApplier =
+    (
+        trackSectionName: String,
+        lower: Distance,
+        upper: Distance,
+        function: (TrackChunkDescriptor, Distance, Distance) -> Unit,
+    ) -> Unit
+
+/**
+ * Collects functions to apply on track section ranges, to apply them later on the given pool. The
+ * functions of different track sections run in parallel, as they modify different chunks, and the
+ * functions of each track section run in the order they were collected.
+ */
+internal class TrackRangeFunctions(private val builder: RawInfraBuilder) {
+    private val functionsByTrack = LinkedHashMap<String, MutableList<() -> Unit>>()
+
+    val collector: TrackRangeFunctionApplier = { trackSectionName, lower, upper, function ->
+        functionsByTrack
+            .getOrPut(trackSectionName) { mutableListOf() }
+            .add {
+                builder.applyFunctionToTrackSectionChunksBetween(
+                    trackSectionName,
+                    lower,
+                    upper,
+                    function,
+                )
+            }
+    }
+
+    fun apply(pool: ForkJoinPool?) {
+        functionsByTrack.values.toList().parallelMap(pool) { functions ->
+            for (function in functions) function()
+        }
+        functionsByTrack.clear()
+    }
+}
+
+fun parseRjsElectrification(
+    builder: RawInfraBuilder,
+    electrification: RJSElectrification,
+    applyToTrackRange: TrackRangeFunctionApplier = builder::applyFunctionToTrackSectionChunksBetween,
+) {
     if (electrification.voltage == "") return
     for (electrificationRange in electrification.trackRanges) {
         val applyElectrificationForChunkBetween =
@@ -413,7 +532,7 @@ fun parseRjsElectrification(builder: RawInfraBuilder, electrification: RJSElectr
                     )
                 chunk.electrificationVoltage.updateMapIntersection(newMap) { a, b -> a + b }
             }
-        builder.applyFunctionToTrackSectionChunksBetween(
+        applyToTrackRange(
             electrificationRange.trackSectionID,
             electrificationRange.begin.meters,
             electrificationRange.end.meters,
@@ -426,6 +545,7 @@ fun parseNeutralRanges(
     builder: RawInfraBuilder,
     isAnnouncement: Boolean,
     neutralSection: RJSNeutralSection,
+    applyToTrackRange: TrackRangeFunctionApplier = builder::applyFunctionToTrackSectionChunksBetween,
 ) {
     val trackRanges =
         if (isAnnouncement) neutralSection.announcementTrackRanges else neutralSection.trackRanges
@@ -457,7 +577,7 @@ fun parseNeutralRanges(
 
                 chunkDirNeutralSections.put(dirChunkLower, dirChunkUpper, incomingNeutralSection)
             }
-        builder.applyFunctionToTrackSectionChunksBetween(
+        applyToTrackRange(
             trackRange.trackSectionID,
             trackRange.begin.meters,
             trackRange.end.meters,
@@ -503,7 +623,11 @@ fun parseSpeedSection(rjsSpeedSection: RJSSpeedSection): SpeedSection {
     )
 }
 
-fun parseSpeedSection(builder: RawInfraBuilder, speedSection: RJSSpeedSection) {
+fun parseSpeedSection(
+    builder: RawInfraBuilder,
+    speedSection: RJSSpeedSection,
+    applyToTrackRange: TrackRangeFunctionApplier = builder::applyFunctionToTrackSectionChunksBetween,
+) {
     for (speedRange in speedSection.trackRanges) {
         val applySpeedSectionForChunkBetween =
             { chunk: TrackChunkDescriptor, chunkLower: Distance, chunkUpper: Distance ->
@@ -527,7 +651,7 @@ fun parseSpeedSection(builder: RawInfraBuilder, speedSection: RJSSpeedSection) {
                     )
                 }
             }
-        builder.applyFunctionToTrackSectionChunksBetween(
+        applyToTrackRange(
             speedRange.trackSectionID,
             speedRange.begin.meters,
             speedRange.end.meters,
@@ -663,18 +787,68 @@ fun parseSignal(builder: RawInfraBuilder, rjsSignal: RJSSignal) {
                 assert(sigSystem.isNotEmpty())
             }
 
-            val signalParameters =
-                RawSignalParameters(
-                    rjsLogicalSignal.defaultParameters,
-                    rjsLogicalSignal.conditionalParameters.associate {
-                        Pair(builder.getRouteByName(it.onRoute)!!, it.parameters)
-                    },
-                )
             logicalSignal(
                 rjsLogicalSignal.signalingSystem,
                 rjsLogicalSignal.nextSignalingSystems,
                 rjsLogicalSignal.settings,
-                signalParameters,
+                parseSignalParameters(rjsLogicalSignal) { builder.getRouteByName(it)!! },
+            )
+        }
+    }
+}
+
+internal fun parseSignalParameters(
+    rjsLogicalSignal: RJSSignal.LogicalSignal,
+    getRouteByName: (String) -> RouteId,
+): RawSignalParameters {
+    return RawSignalParameters(
+        rjsLogicalSignal.defaultParameters,
+        rjsLogicalSignal.conditionalParameters.associate {
+            Pair(getRouteByName(it.onRoute), it.parameters)
+        },
+    )
+}
+
+fun parseOperationalPoint(builder: RawInfraBuilder, operationalPoint: RJSOperationalPoint) {
+    val distinctParts = mutableSetOf<RJSOperationalPointPart>()
+    for (opPart in operationalPoint.parts) {
+        // ignore duplicates
+        if (distinctParts.contains(opPart)) continue
+        distinctParts.add(opPart)
+
+        val operationalPointId = operationalPoint.id
+        val trackSectionName = opPart.track
+        val trackSectionOffset = Offset<TrackSection>(opPart.position.meters)
+        val props = mutableMapOf<String, String>()
+        if (operationalPoint.extensions?.identifier != null) {
+            val identifier = operationalPoint.extensions!!.identifier!!
+            props["identifier"] = identifier.name
+            props["uic"] = identifier.uic.toString()
+        }
+        if (operationalPoint.extensions?.sncf != null) {
+            val sncf = operationalPoint.extensions!!.sncf!!
+            props["ci"] = sncf.ci.toString()
+            props["ch"] = sncf.ch
+            props["chShortLabel"] = sncf.chShortLabel
+            props["chLongLabel"] = sncf.chLongLabel
+            props["trigram"] = sncf.trigram
+        }
+        val weight = operationalPoint.weight
+        if (weight != null) {
+            props["weight"] = weight
+        }
+        if (opPart.extensions?.sncf != null) props["kp"] = opPart.extensions!!.sncf!!.kp
+        val partId =
+            builder.operationalPointPart(
+                operationalPointId,
+                trackSectionName,
+                trackSectionOffset,
+                props,
+            )
+        if (partId == null) {
+            // TODO: link warning to specific request (through response or tracing)
+            logger.warn(
+                "Invalid Part on track $trackSectionName for Operational Point $operationalPointId"
             )
         }
     }
@@ -711,7 +885,12 @@ fun parseSpeedLimitTags(builder: RawInfraBuilder) {
     }
 }
 
-fun parseRJSInfra(rjsInfra: RJSInfra): RawInfra {
+/**
+ * Builds a RawInfra from a railjson infra. When a pool is given, track sections and the properties
+ * of track ranges are parsed in parallel, and the resulting infra is the same.
+ */
+@JvmOverloads
+fun parseRJSInfra(rjsInfra: RJSInfra, pool: ForkJoinPool? = null): RawInfra {
     val builder = RawInfraBuilder()
 
     // Parse detectors and buffer-stops
@@ -726,71 +905,37 @@ fun parseRJSInfra(rjsInfra: RJSInfra): RawInfra {
     }
 
     // Parse track-sections
-    for (rjsTrack in rjsInfra.trackSections) {
-        parseRjsTrackSection(builder, rjsTrack, trackSectionNameToDistanceSortedDetectors)
-    }
+    parseRjsTrackSections(
+        builder,
+        rjsInfra.trackSections.toList().parallelMap(pool) { prepareTrackSection(it) },
+        trackSectionNameToDistanceSortedDetectors,
+        pool,
+    )
 
     // Parse electrifications
+    val trackRangeFunctions = TrackRangeFunctions(builder)
     for (electrification in rjsInfra.electrifications) {
-        parseRjsElectrification(builder, electrification)
+        parseRjsElectrification(builder, electrification, trackRangeFunctions.collector)
     }
+    trackRangeFunctions.apply(pool)
 
     for (neutralSection in rjsInfra.neutralSections) {
-        parseNeutralRanges(builder, false, neutralSection)
+        parseNeutralRanges(builder, false, neutralSection, trackRangeFunctions.collector)
 
         // FIXME: the current implementation of neutral section announcements breaks
         //  some use cases, see https://github.com/OpenRailAssociation/osrd/issues/7359
         // parseNeutralRanges(builder, true, neutralSection)
     }
+    trackRangeFunctions.apply(pool)
 
     for (speedSection in rjsInfra.speedSections) {
-        parseSpeedSection(builder, speedSection)
+        parseSpeedSection(builder, speedSection, trackRangeFunctions.collector)
     }
+    trackRangeFunctions.apply(pool)
 
     // parse operational points
     for (operationalPoint in rjsInfra.operationalPoints) {
-        val distinctParts = mutableSetOf<RJSOperationalPointPart>()
-        for (opPart in operationalPoint.parts) {
-            // ignore duplicates
-            if (distinctParts.contains(opPart)) continue
-            distinctParts.add(opPart)
-
-            val operationalPointId = operationalPoint.id
-            val trackSectionName = opPart.track
-            val trackSectionOffset = Offset<TrackSection>(opPart.position.meters)
-            val props = mutableMapOf<String, String>()
-            if (operationalPoint.extensions?.identifier != null) {
-                val identifier = operationalPoint.extensions!!.identifier!!
-                props["identifier"] = identifier.name
-                props["uic"] = identifier.uic.toString()
-            }
-            if (operationalPoint.extensions?.sncf != null) {
-                val sncf = operationalPoint.extensions!!.sncf!!
-                props["ci"] = sncf.ci.toString()
-                props["ch"] = sncf.ch
-                props["chShortLabel"] = sncf.chShortLabel
-                props["chLongLabel"] = sncf.chLongLabel
-                props["trigram"] = sncf.trigram
-            }
-            val weight = operationalPoint.weight
-            if (weight != null) {
-                props["weight"] = weight
-            }
-            if (opPart.extensions?.sncf != null) props["kp"] = opPart.extensions!!.sncf!!.kp
-            val partId =
-                builder.operationalPointPart(
-                    operationalPointId,
-                    trackSectionName,
-                    trackSectionOffset,
-                    props,
-                )
-            if (partId == null) {
-                // TODO: link warning to specific request (through response or tracing)
-                logger.warn(
-                    "Invalid Part on track $trackSectionName for Operational Point $operationalPointId"
-                )
-            }
-        }
+        parseOperationalPoint(builder, operationalPoint)
     }
 
     // parse nodes
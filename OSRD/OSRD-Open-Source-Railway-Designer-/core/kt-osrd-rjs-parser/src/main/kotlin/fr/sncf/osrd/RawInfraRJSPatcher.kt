@@ -0,0 +1,101 @@
+package fr.sncf.osrd
+
+import fr.sncf.osrd.railjson.schema.infra.RJSInfra
+import fr.sncf.osrd.railjson.schema.infra.RJSInfraDiff
+import fr.sncf.osrd.railjson.schema.infra.trackobjects.RJSSignal
+import fr.sncf.osrd.sim_infra.api.*
+import fr.sncf.osrd.sim_infra.impl.LogicalSignalDescriptor
+import fr.sncf.osrd.sim_infra.impl.RawInfraImpl
+import fr.sncf.osrd.utils.units.Offset
+import fr.sncf.osrd.utils.units.meters
+
+/** An infra patched by [patchRJSInfra], and the logical signals which changed */
+class RawInfraPatch(val rawInfra: RawInfra, val updatedSignals: List<LogicalSignalId>)
+
+/**
+ * Applies the changes between two versions of an infra without parsing it again, if possible. Only
+ * updates of the logical signals of existing signals are supported: returns null if the diff
+ * changes anything else, in which case the new version of the infra has to be parsed.
+ */
+fun patchRJSInfra(infra: RawInfra, diff: RJSInfraDiff): RawInfraPatch? {
+    if (
+        getSections(diff.created).values.any { !it.isNullOrEmpty() } ||
+            diff.deleted.orEmpty().values.any { it.isNotEmpty() }
+    )
+        return null
+    val updatedSections = getSections(diff.updated)
+    if (updatedSections.any { it.key != "signals" && !it.value.isNullOrEmpty() }) return null
+    return patchRJSSignals(infra as RawInfraImpl, diff.updated?.signals.orEmpty())
+}
+
+/**
+ * Replaces the logical signals of existing signals. Returns null if a signal is new, was moved, or
+ * doesn't have as many logical signals as before: zone paths would change.
+ */
+private fun patchRJSSignals(infra: RawInfraImpl, rjsSignals: List<RJSSignal>): RawInfraPatch? {
+    val signalsByName = mutableMapOf<String, PhysicalSignalId>()
+    for (signal in infra.physicalSignals) {
+        val name = infra.getPhysicalSignalName(signal) ?: continue
+        signalsByName[name] = signal
+    }
+
+    val updates = mutableMapOf<LogicalSignalId, LogicalSignalDescriptor>()
+    for (rjsSignal in rjsSignals) {
+        val signal = signalsByName[rjsSignal.id] ?: return null
+        val trackSection = infra.getTrackSectionFromName(rjsSignal.track) ?: return null
+        val dirTrackSection = DirTrackSectionId(trackSection, rjsSignal.direction!!.toDirection())
+        if (
+            infra.getPhysicalSignalDirTrack(signal) != dirTrackSection ||
+                infra.getPhysicalSignalTrackOffset(signal) !=
+                    Offset<TrackSection>(rjsSignal.position.meters) ||
+                infra.getSignalSightDistance(signal) != rjsSignal.sightDistance.meters
+        )
+            return null
+
+        val logicalSignals = infra.getLogicalSignals(signal)
+        val rjsLogicalSignals = rjsSignal.logicalSignals.orEmpty()
+        if (logicalSignals.size != rjsLogicalSignals.size) return null
+        for ((logicalSignal, rjsLogicalSignal) in logicalSignals.zip(rjsLogicalSignals)) {
+            val descriptor =
+                LogicalSignalDescriptor(
+                    rjsLogicalSignal.signalingSystem,
+                    rjsLogicalSignal.nextSignalingSystems,
+                    rjsLogicalSignal.settings,
+                    parseSignalParameters(rjsLogicalSignal) { infra.getRouteFromName(it) },
+                )
+            if (!isSameLogicalSignal(infra, logicalSignal, descriptor))
+                updates[logicalSignal] = descriptor
+        }
+    }
+    if (updates.isEmpty()) return RawInfraPatch(infra, listOf())
+    return RawInfraPatch(infra.withLogicalSignals(updates), updates.keys.sortedBy { it.index })
+}
+
+private fun isSameLogicalSignal(
+    infra: RawInfra,
+    signal: LogicalSignalId,
+    descriptor: LogicalSignalDescriptor,
+): Boolean {
+    return infra.getSignalingSystemId(signal) == descriptor.signalingSystemId &&
+        infra.getNextSignalingSystemIds(signal) == descriptor.nextSignalingSystemIds &&
+        infra.getRawSettings(signal) == descriptor.rawSettings &&
+        infra.getRawParameters(signal) == descriptor.rawParameters
+}
+
+/** The sections of a railjson infra, by their name in the railjson document */
+private fun getSections(rjsInfra: RJSInfra?): Map<String, Collection<*>?> {
+    if (rjsInfra == null) return mapOf()
+    return mapOf(
+        "track_sections" to rjsInfra.trackSections,
+        "switches" to rjsInfra.switches,
+        "operational_points" to rjsInfra.operationalPoints,
+        "routes" to rjsInfra.routes,
+        "extended_switch_types" to rjsInfra.switchTypes,
+        "signals" to rjsInfra.signals,
+        "buffer_stops" to rjsInfra.bufferStops,
+        "detectors" to rjsInfra.detectors,
+        "speed_sections" to rjsInfra.speedSections,
+        "electrifications" to rjsInfra.electrifications,
+        "neutral_sections" to rjsInfra.neutralSections,
+    )
+}
@@ -0,0 +1,218 @@
+package fr.sncf.osrd
+
+import com.squareup.moshi.JsonAdapter
+import com.squareup.moshi.JsonReader
+import fr.sncf.osrd.railjson.schema.infra.*
+import fr.sncf.osrd.railjson.schema.infra.trackobjects.RJSBufferStop
+import fr.sncf.osrd.railjson.schema.infra.trackobjects.RJSRouteWaypoint
+import fr.sncf.osrd.railjson.schema.infra.trackobjects.RJSSignal
+import fr.sncf.osrd.railjson.schema.infra.trackobjects.RJSTrainDetector
+import fr.sncf.osrd.railjson.schema.infra.trackranges.RJSElectrification
+import fr.sncf.osrd.railjson.schema.infra.trackranges.RJSNeutralSection
+import fr.sncf.osrd.railjson.schema.infra.trackranges.RJSSpeedSection
+import fr.sncf.osrd.sim_infra.api.RawInfra
+import fr.sncf.osrd.sim_infra.api.TrackSection
+import fr.sncf.osrd.sim_infra.impl.RawInfraBuilder
+import fr.sncf.osrd.utils.units.Offset
+import java.util.*
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.CompletionException
+import java.util.concurrent.ForkJoinPool
+import okio.BufferedSource
+
+/**
+ * The sections of a railjson infra, in the order they are parsed in: records may only reference
+ * objects from the sections before theirs.
+ */
+private enum class RJSInfraSection(val jsonName: String, val adapter: JsonAdapter<*>) {
+    DETECTORS("detectors", RJSInfra.moshi.adapter(RJSTrainDetector::class.java)),
+    BUFFER_STOPS("buffer_stops", RJSInfra.moshi.adapter(RJSBufferStop::class.java)),
+    TRACK_SECTIONS("track_sections", RJSInfra.moshi.adapter(RJSTrackSection::class.java)),
+    ELECTRIFICATIONS("electrifications", RJSInfra.moshi.adapter(RJSElectrification::class.java)),
+    NEUTRAL_SECTIONS("neutral_sections", RJSInfra.moshi.adapter(RJSNeutralSection::class.java)),
+    SPEED_SECTIONS("speed_sections", RJSInfra.moshi.adapter(RJSSpeedSection::class.java)),
+    OPERATIONAL_POINTS(
+        "operational_points",
+        RJSInfra.moshi.adapter(RJSOperationalPoint::class.java),
+    ),
+    SWITCH_TYPES("extended_switch_types", RJSInfra.moshi.adapter(RJSSwitchType::class.java)),
+    SWITCHES("switches", RJSInfra.moshi.adapter(RJSSwitch::class.java)),
+    ROUTES("routes", RJSInfra.moshi.adapter(RJSRoute::class.java)),
+    SIGNALS("signals", RJSInfra.moshi.adapter(RJSSignal::class.java));
+
+    companion object {
+        val byJsonName = entries.associateBy { it.jsonName }
+    }
+}
+
+/**
+ * Builds a RawInfra while reading a railjson document, one record at a time, instead of
+ * deserializing the whole RJSInfra first. Records are parsed as soon as the sections they depend on
+ * are complete, and kept until then. The infra is the same as the one built by [parseRJSInfra],
+ * whatever the order of the sections in the document.
+ *
+ * Editoast sends track sections before detectors, which are needed to split them into chunks: track
+ * sections are kept in the meantime as [PreparedTrackSection], which are much smaller.
+ *
+ * When a pool is given, track sections are prepared on it while the document is read, then split
+ * into chunks in parallel. The properties of track ranges are also applied in parallel.
+ */
+class RawInfraRJSStreamParser(private val pool: ForkJoinPool? = null) {
+    private val builder = RawInfraBuilder()
+    private val trackSectionNameToDistanceSortedDetectors =
+        mutableMapOf<String, TreeMap<Offset<TrackSection>, MutableList<String>>>()
+    private val switchTypes = mutableListOf<RJSSwitchType>()
+    private lateinit var switchTypeMap: Map<String, RJSSwitchType>
+    private val preparedTracks = mutableListOf<CompletableFuture<PreparedTrackSection>>()
+    private val trackRangeFunctions = TrackRangeFunctions(builder)
+    private val applyToTrackRange: TrackRangeFunctionApplier =
+        if (pool == null) builder::applyFunctionToTrackSectionChunksBetween
+        else trackRangeFunctions.collector
+
+    private val readSections = EnumSet.noneOf(RJSInfraSection::class.java)
+    private val pendingRecords = RJSInfraSection.entries.map { ArrayDeque<() -> Unit>() }
+    // the ordinal of the first section which isn't fully parsed yet
+    private var currentSection = 0
+
+    /** Reads a railjson document, parsing all the records whose dependencies are available */
+    fun read(source: BufferedSource) {
+        val reader = JsonReader.of(source)
+        reader.beginObject()
+        while (reader.hasNext()) {
+            val section = RJSInfraSection.byJsonName[reader.nextName()]
+            if (section == null) {
+                reader.skipValue()
+                continue
+            }
+            if (reader.peek() == JsonReader.Token.NULL) {
+                reader.nextNull<Any>()
+            } else {
+                reader.beginArray()
+                while (reader.hasNext()) readRecord(section, reader)
+                reader.endArray()
+            }
+            readSections.add(section)
+            parsePendingRecords()
+        }
+        reader.endObject()
+    }
+
+    /** Parses the records which were kept until now, and builds the infra */
+    fun build(): RawInfra {
+        // missing sections are considered empty
+        readSections.addAll(RJSInfraSection.entries)
+        parsePendingRecords()
+        parseSpeedLimitTags(builder)
+        return builder.build()
+    }
+
+    private fun readRecord(section: RJSInfraSection, reader: JsonReader) {
+        val record = section.adapter.fromJson(reader)!!
+        when (section) {
+            RJSInfraSection.DETECTORS,
+            RJSInfraSection.BUFFER_STOPS ->
+                parse(section) {
+                    parseRjsRouteWaypoint(
+                        record as RJSRouteWaypoint,
+                        trackSectionNameToDistanceSortedDetectors,
+                    )
+                }
+            RJSInfraSection.TRACK_SECTIONS -> {
+                val rjsTrack = record as RJSTrackSection
+                if (pool != null) {
+                    // split into chunks when the section is complete, see parsePendingRecords
+                    preparedTracks.add(
+                        CompletableFuture.supplyAsync({ prepareTrackSection(rjsTrack) }, pool)
+                    )
+                    return
+                }
+                val track = prepareTrackSection(rjsTrack)
+                parse(section) {
+                    parseRjsTrackSection(
+                        builder,
+                        splitTrackSection(track, trackSectionNameToDistanceSortedDetectors),
+                    )
+                }
+            }
+            RJSInfraSection.ELECTRIFICATIONS ->
+                parse(section) {
+                    parseRjsElectrification(
+                        builder,
+                        record as RJSElectrification,
+                        applyToTrackRange,
+                    )
+                }
+            // FIXME: neutral section announcements are not parsed, see parseRJSInfra
+            RJSInfraSection.NEUTRAL_SECTIONS ->
+                parse(section) {
+                    parseNeutralRanges(
+                        builder,
+                        false,
+                        record as RJSNeutralSection,
+                        applyToTrackRange,
+                    )
+                }
+            RJSInfraSection.SPEED_SECTIONS ->
+                parse(section) {
+                    parseSpeedSection(builder, record as RJSSpeedSection, applyToTrackRange)
+                }
+            RJSInfraSection.OPERATIONAL_POINTS ->
+                parse(section) { parseOperationalPoint(builder, record as RJSOperationalPoint) }
+            RJSInfraSection.SWITCH_TYPES -> switchTypes.add(record as RJSSwitchType)
+            RJSInfraSection.SWITCHES ->
+                parse(section) { parseTrackNode(builder, switchTypeMap, record as RJSSwitch) }
+            RJSInfraSection.ROUTES -> parse(section) { parseRoute(builder, record as RJSRoute) }
+            RJSInfraSection.SIGNALS -> parse(section) { parseSignal(builder, record as RJSSignal) }
+        }
+    }
+
+    private fun parse(section: RJSInfraSection, parseRecord: () -> Unit) {
+        if (section.ordinal <= currentSection) parseRecord()
+        else pendingRecords[section.ordinal].addLast(parseRecord)
+    }
+
+    /** Moves on to the next sections while they are fully read, parsing their pending records */
+    private fun parsePendingRecords() {
+        while (currentSection < RJSInfraSection.entries.size) {
+            val section = RJSInfraSection.entries[currentSection]
+            val pending = pendingRecords[currentSection]
+            while (pending.isNotEmpty()) pending.removeFirst()()
+            if (section !in readSections) return
+            when (section) {
+                RJSInfraSection.TRACK_SECTIONS -> {
+                    parseRjsTrackSections(
+                        builder,
+                        preparedTracks.map { joinUnwrapped(it) },
+                        trackSectionNameToDistanceSortedDetectors,
+                        pool,
+                    )
+                    preparedTracks.clear()
+                }
+                RJSInfraSection.ELECTRIFICATIONS,
+                RJSInfraSection.NEUTRAL_SECTIONS,
+                RJSInfraSection.SPEED_SECTIONS -> trackRangeFunctions.apply(pool)
+                RJSInfraSection.SWITCH_TYPES ->
+                    switchTypeMap =
+                        (switchTypes + RJSSwitchType.BUILTIN_NODE_TYPES_LIST).associateBy { it.id }
+                RJSInfraSection.SWITCHES -> buildZones(builder)
+                else -> {}
+            }
+            currentSection++
+        }
+    }
+
+    private fun <T> joinUnwrapped(future: CompletableFuture<T>): T {
+        try {
+            return future.join()
+        } catch (e: CompletionException) {
+            throw e.cause ?: e
+        }
+    }
+}
+
+/** Builds a RawInfra from a railjson document, see [RawInfraRJSStreamParser] */
+fun parseRJSInfra(source: BufferedSource, pool: ForkJoinPool? = null): RawInfra {
+    val parser = RawInfraRJSStreamParser(pool)
+    parser.read(source)
+    return parser.build()
+}
@@ -2,6 +2,7 @@ package fr.sncf.osrd.signaling
 
 import fr.sncf.osrd.path.interfaces.TrainPath
 import fr.sncf.osrd.sim_infra.api.*
+import java.util.concurrent.ForkJoinPool
 
 /*
  * val signalingModuleManager = SignalingModuleManager()
@@ -55,11 +56,55 @@ interface SigSystemManager : InfraSigSystemManager {
 interface SignalingSimulator {
     val sigModuleManager: SigSystemManager
 
-    fun loadSignals(unloadedSignalInfra: RawSignalingInfra): LoadedSignalInfra
+    fun loadSignals(unloadedSignalInfra: RawSignalingInfra): LoadedSignalInfra {
+        return loadSignals(unloadedSignalInfra, null)
+    }
 
+    /**
+     * Loads the signals, evaluating their settings and parameters on the pool if there is one. The
+     * result does not depend on the pool.
+     */
+    fun loadSignals(unloadedSignalInfra: RawSignalingInfra, pool: ForkJoinPool?): LoadedSignalInfra
+
+    fun buildBlocks(
+        rawSignalingInfra: RawSignalingInfra,
+        loadedSignalInfra: LoadedSignalInfra,
+    ): BlockInfra {
+        return buildBlocks(rawSignalingInfra, loadedSignalInfra, null)
+    }
+
+    /**
+     * Builds and checks the blocks, enumerating them route by route on the pool if there is one.
+     * The result does not depend on the pool.
+     */
     fun buildBlocks(
         rawSignalingInfra: RawSignalingInfra,
         loadedSignalInfra: LoadedSignalInfra,
+        pool: ForkJoinPool?,
+    ): BlockInfra
+
+    /**
+     * Loads some logical signals again, after they were updated in the raw infra. The other signals
+     * are taken from the given loaded infra, which stays valid.
+     */
+    fun reloadSignals(
+        unloadedSignalInfra: RawSignalingInfra,
+        loadedSignalInfra: LoadedSignalInfra,
+        signals: Collection<LogicalSignalId>,
+    ): LoadedSignalInfra
+
+    /**
+     * Updates the blocks after some signals were reloaded. If the signals keep their signaling
+     * system and still delimit the same blocks, the blocks are kept and only the ones going through
+     * these signals are checked again. Otherwise, the blocks are built again.
+     */
+    fun updateBlocks(
+        rawSignalingInfra: RawSignalingInfra,
+        oldLoadedSignalInfra: LoadedSignalInfra,
+        loadedSignalInfra: LoadedSignalInfra,
+        blockInfra: BlockInfra,
+        signals: Collection<LogicalSignalId>,
+        pool: ForkJoinPool?,
     ): BlockInfra
 
     fun evaluate(
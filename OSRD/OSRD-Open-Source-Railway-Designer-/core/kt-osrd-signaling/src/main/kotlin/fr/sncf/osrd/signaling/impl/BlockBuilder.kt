@@ -1,121 +1,170 @@
 package fr.sncf.osrd.signaling.impl
 
 import fr.sncf.osrd.sim_infra.api.*
-import fr.sncf.osrd.sim_infra.impl.BlockInfraBuilder
 import fr.sncf.osrd.sim_infra.impl.blockInfraBuilder
 import fr.sncf.osrd.utils.LogAggregator
 import fr.sncf.osrd.utils.indexing.IdxMap
 import fr.sncf.osrd.utils.indexing.MutableStaticIdxArrayList
+import fr.sncf.osrd.utils.parallelMap
 import fr.sncf.osrd.utils.units.*
+import java.util.concurrent.ForkJoinPool
 import mu.KotlinLogging
 
 private val logger = KotlinLogging.logger {}
 
+/**
+ * Builds the blocks of the infra. When a pool is given, the blocks of each route are enumerated on
+ * it, then registered in the order of the routes: block ids are the same as in a sequential build.
+ */
 internal fun internalBuildBlocks(
     sigModuleManager: InfraSigSystemManager,
     rawSignalingInfra: RawSignalingInfra,
     loadedSignalInfra: LoadedSignalInfra,
+    pool: ForkJoinPool? = null,
 ): BlockInfra {
     // Step 1) associate DirDetectorIds to a list of delimiting logical signals
     val signalDelimiters = findSignalDelimiters(rawSignalingInfra, loadedSignalInfra)
     val detectorEntrySignals = makeDetectorEntrySignals(loadedSignalInfra, signalDelimiters)
     val missingSignalLogAggregator = LogAggregator({ logger.debug(it) })
     val nonRouteDelimitingSignalLogAggregator = LogAggregator({ logger.debug(it) })
+    // Step 2) find the blocks along each route
+    val routeBlocks =
+        rawSignalingInfra.routes.toList().parallelMap(pool) { route ->
+            findRouteBlocks(
+                sigModuleManager,
+                rawSignalingInfra,
+                loadedSignalInfra,
+                detectorEntrySignals,
+                route,
+            )
+        }
+    // Step 3) register the blocks, which deduplicates them
     val result =
         blockInfraBuilder(loadedSignalInfra, rawSignalingInfra) {
-            // Step 2) iterate on zone paths along the route path.
-            //   - maintain a list of currently active blocks
-            //   - At each signal, add it to compatible current blocks.
-            //   - if the signal is delimiting, stop and create the block (deduplicate it too)
-            for (route in rawSignalingInfra.routes) {
-                val routeEntryDet = rawSignalingInfra.getRouteEntry(route)
-                val routeExitDet = rawSignalingInfra.getRouteExit(route)
-                val entrySignals = detectorEntrySignals[routeEntryDet]
-                var currentBlocks =
-                    getInitPartialBlocks(
-                        sigModuleManager,
-                        rawSignalingInfra,
-                        loadedSignalInfra,
-                        entrySignals,
-                        routeEntryDet,
-                        missingSignalLogAggregator,
+            for (blocks in routeBlocks) {
+                for (error in blocks.missingSignalErrors) missingSignalLogAggregator.registerError(
+                    error
+                )
+                for (foundBlock in blocks.blocks) {
+                    val partialBlock = foundBlock.partialBlock
+                    block(
+                        partialBlock.startAtBufferStop,
+                        foundBlock.stopsAtBufferStop,
+                        partialBlock.zonePaths,
+                        partialBlock.signals,
+                        partialBlock.signalPositions,
                     )
-                // While inside the route, we maintain a list of currently active blocks. Each block
-                // either expect any signaling system (when starting from a buffer stop or wildcard
-                // signal), or expects a given signaling system. Blocks can therefore tell whether a
-                // signal belongs there.
-                // If a signal is not part of a block, it is ignored. If a signal delimits a block,
-                // it ends the block and starts a new ones, one per driver. If a signal does not
-                // delimit a block and has a single driver, it continues the block. If a signal does
-                // not delimit a block and has multiple drivers, it duplicates the block.
+                }
+                for (error in
+                    blocks.nonRouteDelimitingSignalErrors) nonRouteDelimitingSignalLogAggregator
+                    .registerError(error)
+            }
+        }
+    missingSignalLogAggregator.logAggregatedSummary()
+    nonRouteDelimitingSignalLogAggregator.logAggregatedSummary()
+    return result
+}
 
-                for (zonePath in rawSignalingInfra.getRoutePath(route)) {
-                    val zonePathLength = rawSignalingInfra.getZonePathLength(zonePath)
-                    for (block in currentBlocks) block.addZonePath(zonePath, zonePathLength)
+private class FoundBlock(val partialBlock: PartialBlock, val stopsAtBufferStop: Boolean)
 
-                    // iterate over signals which are between the block entry and the block exit
-                    val signals = rawSignalingInfra.getSignals(zonePath)
-                    val signalsPositions = rawSignalingInfra.getSignalPositions(zonePath)
-                    for ((physicalSignal, position) in signals.zip(signalsPositions)) {
-                        val distanceToZonePathEnd = zonePathLength - position
-                        assert(distanceToZonePathEnd >= Distance.ZERO)
-                        assert(distanceToZonePathEnd <= zonePathLength.distance)
-                        for (signal in loadedSignalInfra.getLogicalSignals(physicalSignal)) {
-                            currentBlocks =
-                                updatePartialBlocks(
-                                    sigModuleManager,
-                                    currentBlocks,
-                                    loadedSignalInfra,
-                                    signal,
-                                    distanceToZonePathEnd,
-                                )
-                        }
-                    }
-                }
+/** The blocks found along a route, in order, and the errors met while looking for them */
+private class RouteBlocks {
+    val blocks = mutableListOf<FoundBlock>()
+    val missingSignalErrors = mutableListOf<String>()
+    val nonRouteDelimitingSignalErrors = mutableListOf<String>()
+}
 
-                // when a route ends at a buffer stop, unterminated blocks are expected,
-                // as the buffer stop sort of acts as a closed signal. when a route does not
-                // end with a buffer stop, blocks are expected to end with the route.
-                // such blocks are not valid, and can be fixed by adding a delimiter signal
-                // right before the end of the route.
-                val routeEndsAtBufferStop = rawSignalingInfra.isBufferStop(routeExitDet.value)
-                for (curBlock in currentBlocks) {
-                    if (curBlock.zonePaths.size == 0) continue
-                    if (curBlock.signals.size == 0) continue
+private fun findRouteBlocks(
+    sigModuleManager: InfraSigSystemManager,
+    rawSignalingInfra: RawSignalingInfra,
+    loadedSignalInfra: LoadedSignalInfra,
+    detectorEntrySignals: IdxMap<DirDetectorId, IdxMap<SignalingSystemId, AssociatedSignal>>,
+    route: RouteId,
+): RouteBlocks {
+    // iterate on zone paths along the route path.
+    //   - maintain a list of currently active blocks
+    //   - At each signal, add it to compatible current blocks.
+    //   - if the signal is delimiting, stop and create the block
+    val res = RouteBlocks()
+    val routeEntryDet = rawSignalingInfra.getRouteEntry(route)
+    val routeExitDet = rawSignalingInfra.getRouteExit(route)
+    val entrySignals = detectorEntrySignals[routeEntryDet]
+    var currentBlocks =
+        getInitPartialBlocks(
+            sigModuleManager,
+            rawSignalingInfra,
+            loadedSignalInfra,
+            entrySignals,
+            routeEntryDet,
+            res.missingSignalErrors,
+        )
+    // While inside the route, we maintain a list of currently active blocks. Each block
+    // either expect any signaling system (when starting from a buffer stop or wildcard
+    // signal), or expects a given signaling system. Blocks can therefore tell whether a
+    // signal belongs there.
+    // If a signal is not part of a block, it is ignored. If a signal delimits a block,
+    // it ends the block and starts a new ones, one per driver. If a signal does not
+    // delimit a block and has a single driver, it continues the block. If a signal does
+    // not delimit a block and has multiple drivers, it duplicates the block.
 
-                    val lastZonePath = curBlock.zonePaths[curBlock.zonePaths.size - 1]
-                    assert(routeExitDet == rawSignalingInfra.getZonePathExit(lastZonePath))
-                    if (!routeEndsAtBufferStop)
-                        logger.debug {
-                            "unterminated block at end of route ${rawSignalingInfra.getRouteName(route)}"
-                        }
-                    block(
-                        curBlock.startAtBufferStop,
-                        true,
-                        curBlock.zonePaths,
-                        curBlock.signals,
-                        curBlock.signalPositions,
-                    )
-                }
+    for (zonePath in rawSignalingInfra.getRoutePath(route)) {
+        val zonePathLength = rawSignalingInfra.getZonePathLength(zonePath)
+        for (block in currentBlocks) block.addZonePath(zonePath, zonePathLength)
 
-                // Finally we want to emit a warning if the route ends on a non route delimiting
-                // signal
-                if (!routeEndsAtBufferStop) {
-                    warnOnRouteEndingOnNonRouteDelimitingSignal(
-                        route,
-                        routeExitDet,
-                        detectorEntrySignals,
+        // iterate over signals which are between the block entry and the block exit
+        val signals = rawSignalingInfra.getSignals(zonePath)
+        val signalsPositions = rawSignalingInfra.getSignalPositions(zonePath)
+        for ((physicalSignal, position) in signals.zip(signalsPositions)) {
+            val distanceToZonePathEnd = zonePathLength - position
+            assert(distanceToZonePathEnd >= Distance.ZERO)
+            assert(distanceToZonePathEnd <= zonePathLength.distance)
+            for (signal in loadedSignalInfra.getLogicalSignals(physicalSignal)) {
+                currentBlocks =
+                    updatePartialBlocks(
                         sigModuleManager,
-                        rawSignalingInfra,
+                        currentBlocks,
                         loadedSignalInfra,
-                        nonRouteDelimitingSignalLogAggregator,
+                        signal,
+                        distanceToZonePathEnd,
+                        res.blocks,
                     )
-                }
             }
         }
-    missingSignalLogAggregator.logAggregatedSummary()
-    nonRouteDelimitingSignalLogAggregator.logAggregatedSummary()
-    return result
+    }
+
+    // when a route ends at a buffer stop, unterminated blocks are expected,
+    // as the buffer stop sort of acts as a closed signal. when a route does not
+    // end with a buffer stop, blocks are expected to end with the route.
+    // such blocks are not valid, and can be fixed by adding a delimiter signal
+    // right before the end of the route.
+    val routeEndsAtBufferStop = rawSignalingInfra.isBufferStop(routeExitDet.value)
+    for (curBlock in currentBlocks) {
+        if (curBlock.zonePaths.size == 0) continue
+        if (curBlock.signals.size == 0) continue
+
+        val lastZonePath = curBlock.zonePaths[curBlock.zonePaths.size - 1]
+        assert(routeExitDet == rawSignalingInfra.getZonePathExit(lastZonePath))
+        if (!routeEndsAtBufferStop)
+            logger.debug {
+                "unterminated block at end of route ${rawSignalingInfra.getRouteName(route)}"
+            }
+        res.blocks.add(FoundBlock(curBlock, true))
+    }
+
+    // Finally we want to emit a warning if the route ends on a non route delimiting
+    // signal
+    if (!routeEndsAtBufferStop) {
+        warnOnRouteEndingOnNonRouteDelimitingSignal(
+            route,
+            routeExitDet,
+            detectorEntrySignals,
+            sigModuleManager,
+            rawSignalingInfra,
+            loadedSignalInfra,
+            res.nonRouteDelimitingSignalErrors,
+        )
+    }
+    return res
 }
 
 data class AssociatedDetector(val detector: DirDetectorId, val distance: Distance)
@@ -228,13 +277,13 @@ private fun getInitPartialBlocks(
     loadedSignalInfra: LoadedSignalInfra,
     entrySignals: IdxMap<SignalingSystemId, AssociatedSignal>?,
     entryDet: DirDetectorId,
-    missingSignalLogAggregator: LogAggregator,
+    missingSignalErrors: MutableList<String>,
 ): MutableList<PartialBlock> {
     val initialBlocks = mutableListOf<PartialBlock>()
     val isBufferStop = rawSignalingInfra.isBufferStop(entryDet.value)
     if (entrySignals == null) {
         if (!isBufferStop)
-            missingSignalLogAggregator.registerError(
+            missingSignalErrors.add(
                 "no signal at non buffer stop ${rawSignalingInfra.getDetectorName(entryDet.value)}:${entryDet.direction}"
             )
         initialBlocks.add(
@@ -293,12 +342,13 @@ private fun evalSignalBlockRel(
     return SignalBlockRel.END_OF
 }
 
-private fun BlockInfraBuilder.updatePartialBlocks(
+private fun updatePartialBlocks(
     sigModuleManager: InfraSigSystemManager,
     currentBlocks: MutableList<PartialBlock>,
     loadedSignalInfra: LoadedSignalInfra,
     signal: LogicalSignalId,
     distanceToZonePathEnd: Distance,
+    foundBlocks: MutableList<FoundBlock>,
 ): MutableList<PartialBlock> {
     val nextBlocks = mutableListOf<PartialBlock>()
     // for each currently active block, evaluate the relationship between this signal and this block
@@ -324,13 +374,7 @@ private fun BlockInfraBuilder.updatePartialBlocks(
             }
             SignalBlockRel.END_OF -> {
                 curBlock.addSignal(signal, blockPosition)
-                block(
-                    curBlock.startAtBufferStop,
-                    false,
-                    curBlock.zonePaths,
-                    curBlock.signals,
-                    curBlock.signalPositions,
-                )
+                foundBlocks.add(FoundBlock(curBlock, false))
                 val drivers = loadedSignalInfra.getDrivers(signal)
                 if (drivers.size == 0) {
                     val newBlock =
@@ -358,7 +402,7 @@ private fun warnOnRouteEndingOnNonRouteDelimitingSignal(
     sigModuleManager: InfraSigSystemManager,
     rawSignalingInfra: RawSignalingInfra,
     loadedSignalInfra: LoadedSignalInfra,
-    logAggregator: LogAggregator,
+    errors: MutableList<String>,
 ) {
     val endSignals = detectorSignals[routeExitDet] ?: return
     for (associatedSignal in endSignals.values()) {
@@ -368,7 +412,7 @@ private fun warnOnRouteEndingOnNonRouteDelimitingSignal(
         val routeEndsWithRouteEndingSignal =
             sigModuleManager.isRouteDelimiter(signalingSystem, sigSettings)
         if (!routeEndsWithRouteEndingSignal) {
-            logAggregator.registerError(
+            errors.add(
                 "Route ${rawSignalingInfra.getRouteName(route)} ends with non-route delimiting signal on signaling system ${signalingSystem}"
             )
         }
@@ -5,10 +5,15 @@ import fr.sncf.osrd.path.interfaces.getLegacyBlockPath
 import fr.sncf.osrd.path.interfaces.getLegacyRoutePath
 import fr.sncf.osrd.signaling.*
 import fr.sncf.osrd.sim_infra.api.*
+import fr.sncf.osrd.sim_infra.impl.BlockInfraImpl
+import fr.sncf.osrd.sim_infra.impl.LoadedSignalingInfraImpl
 import fr.sncf.osrd.sim_infra.impl.SignalParameters
 import fr.sncf.osrd.sim_infra.impl.loadedSignalInfra
 import fr.sncf.osrd.utils.LogAggregator
+import fr.sncf.osrd.utils.indexing.mutableStaticIdxArrayListOf
+import fr.sncf.osrd.utils.parallelMap
 import fr.sncf.osrd.utils.units.Distance
+import java.util.concurrent.ForkJoinPool
 import mu.KotlinLogging
 
 private val logger = KotlinLogging.logger {}
@@ -45,35 +50,61 @@ class SignalingSimulatorImpl(override val sigModuleManager: SigSystemManager) :
         return SignalParameters(default, conditional)
     }
 
-    override fun loadSignals(unloadedSignalInfra: RawSignalingInfra): LoadedSignalInfra {
+    /** The signaling system, settings, parameters and drivers of a logical signal */
+    private class LoadedLogicalSignal(
+        val signalingSystemId: SignalingSystemId,
+        val settings: SigSettings,
+        val parameters: SignalParameters,
+        val drivers: List<SignalDriverId>,
+    )
+
+    private fun loadLogicalSignal(
+        unloadedSignalInfra: RawSignalingInfra,
+        oldLogicalSignal: LogicalSignalId,
+    ): LoadedLogicalSignal {
+        val oldSignalingSystemId = unloadedSignalInfra.getSignalingSystemId(oldLogicalSignal)
+        val signalingSystemId = sigModuleManager.findSignalingSystemOrThrow(oldSignalingSystemId)
+
+        val settingsSchema = sigModuleManager.getSettingsSchema(signalingSystemId)
+        val rawSettings = unloadedSignalInfra.getRawSettings(oldLogicalSignal)
+        val parametersSchema = sigModuleManager.getParametersSchema(signalingSystemId)
+        val rawParameters = unloadedSignalInfra.getRawParameters(oldLogicalSignal)
+
+        val drivers =
+            unloadedSignalInfra.getNextSignalingSystemIds(oldLogicalSignal).map { oldNextSS ->
+                val oldNextSSId = sigModuleManager.findSignalingSystemOrThrow(oldNextSS)
+                sigModuleManager.findDriver(signalingSystemId, oldNextSSId)
+            }
+        return LoadedLogicalSignal(
+            signalingSystemId,
+            loadSignalSetting(rawSettings, settingsSchema),
+            loadSignalParameters(rawParameters, parametersSchema),
+            drivers,
+        )
+    }
+
+    override fun loadSignals(
+        unloadedSignalInfra: RawSignalingInfra,
+        pool: ForkJoinPool?,
+    ): LoadedSignalInfra {
+        val oldLogicalSignals =
+            unloadedSignalInfra.physicalSignals.flatMap {
+                unloadedSignalInfra.getLogicalSignals(it)
+            }
+        val loadedLogicalSignals =
+            oldLogicalSignals.parallelMap(pool) { loadLogicalSignal(unloadedSignalInfra, it) }
+        var logicalSignalIndex = 0
         return loadedSignalInfra(sigModuleManager) {
             for (oldPhysicalSignal in unloadedSignalInfra.physicalSignals) {
                 physicalSignal {
                     for (oldLogicalSignal in
                         unloadedSignalInfra.getLogicalSignals(oldPhysicalSignal)) {
+                        val loaded = loadedLogicalSignals[logicalSignalIndex++]
                         logicalSignal {
-                            val oldSignalingSystemId =
-                                unloadedSignalInfra.getSignalingSystemId(oldLogicalSignal)
-                            val signalingSystemId =
-                                sigModuleManager.findSignalingSystemOrThrow(oldSignalingSystemId)
-                            signalingSystemId(signalingSystemId)
-
-                            val settingsSchema =
-                                sigModuleManager.getSettingsSchema(signalingSystemId)
-                            val rawSettings = unloadedSignalInfra.getRawSettings(oldLogicalSignal)
-                            sigSettings(loadSignalSetting(rawSettings, settingsSchema))
-                            val parametersSchema =
-                                sigModuleManager.getParametersSchema(signalingSystemId)
-                            val rawParameters =
-                                unloadedSignalInfra.getRawParameters(oldLogicalSignal)
-                            sigParameters(loadSignalParameters(rawParameters, parametersSchema))
-
-                            for (oldNextSS in
-                                unloadedSignalInfra.getNextSignalingSystemIds(oldLogicalSignal)) {
-                                val oldNextSSId =
-                                    sigModuleManager.findSignalingSystemOrThrow(oldNextSS)
-                                driver(sigModuleManager.findDriver(signalingSystemId, oldNextSSId))
-                            }
+                            signalingSystemId(loaded.signalingSystemId)
+                            sigSettings(loaded.settings)
+                            sigParameters(loaded.parameters)
+                            for (driver in loaded.drivers) driver(driver)
                         }
                     }
                 }
@@ -81,82 +112,183 @@ class SignalingSimulatorImpl(override val sigModuleManager: SigSystemManager) :
         }
     }
 
+    /** The errors found by the checks of a block, see [buildBlocks] */
+    private class BlockCheckErrors {
+        val blockErrors = mutableListOf<String>()
+        val signalErrors = mutableListOf<String>()
+    }
+
     override fun buildBlocks(
         rawSignalingInfra: RawSignalingInfra,
         loadedSignalInfra: LoadedSignalInfra,
+        pool: ForkJoinPool?,
     ): BlockInfra {
-        val blockInfra = internalBuildBlocks(sigModuleManager, rawSignalingInfra, loadedSignalInfra)
+        val blockInfra =
+            internalBuildBlocks(sigModuleManager, rawSignalingInfra, loadedSignalInfra, pool)
+        checkBlocks(
+            rawSignalingInfra,
+            loadedSignalInfra,
+            blockInfra,
+            blockInfra.blocks.toList(),
+            pool,
+        )
+        return blockInfra
+    }
+
+    override fun reloadSignals(
+        unloadedSignalInfra: RawSignalingInfra,
+        loadedSignalInfra: LoadedSignalInfra,
+        signals: Collection<LogicalSignalId>,
+    ): LoadedSignalInfra {
+        val oldInfra = loadedSignalInfra as LoadedSignalingInfraImpl
+        val settingsMap = oldInfra.signalSettingsMap.map { it }
+        val parametersMap = oldInfra.signalParametersMap.map { it }
+        val signalingSystemMap = oldInfra.signalingSystemMap.map { it }
+        val driverMap = oldInfra.driverMap.map { it }
+        val blockDelimiterMap = oldInfra.blockDelimiterMap.map { it }
+        for (signal in signals) {
+            val loaded = loadLogicalSignal(unloadedSignalInfra, signal)
+            settingsMap[signal] = loaded.settings
+            parametersMap[signal] = loaded.parameters
+            signalingSystemMap[signal] = loaded.signalingSystemId
+            // same list type as signals loaded by the builder
+            val drivers = mutableStaticIdxArrayListOf<fr.sncf.osrd.sim_infra.api.SignalDriver>()
+            for (driver in loaded.drivers) drivers.add(driver)
+            driverMap[signal] = drivers
+            blockDelimiterMap[signal] =
+                sigModuleManager.isBlockDelimiter(loaded.signalingSystemId, loaded.settings)
+        }
+        return LoadedSignalingInfraImpl(
+            oldInfra.logicalSignalSpace,
+            oldInfra.physicalSignalPool,
+            settingsMap,
+            parametersMap,
+            signalingSystemMap,
+            driverMap,
+            blockDelimiterMap,
+        )
+    }
+
+    override fun updateBlocks(
+        rawSignalingInfra: RawSignalingInfra,
+        oldLoadedSignalInfra: LoadedSignalInfra,
+        loadedSignalInfra: LoadedSignalInfra,
+        blockInfra: BlockInfra,
+        signals: Collection<LogicalSignalId>,
+        pool: ForkJoinPool?,
+    ): BlockInfra {
+        val sameBlocks =
+            signals.all {
+                oldLoadedSignalInfra.getSignalingSystem(it) ==
+                    loadedSignalInfra.getSignalingSystem(it) &&
+                    oldLoadedSignalInfra.isBlockDelimiter(it) ==
+                        loadedSignalInfra.isBlockDelimiter(it)
+            }
+        if (!sameBlocks) return buildBlocks(rawSignalingInfra, loadedSignalInfra, pool)
+        val newBlockInfra =
+            (blockInfra as BlockInfraImpl).withSignals(loadedSignalInfra, rawSignalingInfra)
+        val signalSet = signals.toSet()
+        val updatedBlocks =
+            newBlockInfra.blocks.toList().filter { block ->
+                newBlockInfra.getBlockSignals(block).any { it in signalSet }
+            }
+        checkBlocks(rawSignalingInfra, loadedSignalInfra, newBlockInfra, updatedBlocks, pool)
+        return newBlockInfra
+    }
+
+    /** Checks blocks on the pool if there is one, logging errors in the order of the blocks */
+    private fun checkBlocks(
+        rawSignalingInfra: RawSignalingInfra,
+        loadedSignalInfra: LoadedSignalInfra,
+        blockInfra: BlockInfra,
+        blocks: List<BlockId>,
+        pool: ForkJoinPool?,
+    ) {
         val blockLogAggregator = LogAggregator({ logger.debug(it) })
         val signalLogAggregator = LogAggregator({ logger.debug(it) })
-        for (block in blockInfra.blocks) {
-            val sigSystem = blockInfra.getBlockSignalingSystem(block)
-            val path = blockInfra.getBlockZonePaths(block)
-            val length =
-                Distance(
-                    path
-                        .map { rawSignalingInfra.getZonePathLength(it) }
-                        .sumOf { it.distance.millimeters }
-                )
-            val startAtBufferStop = blockInfra.blockStartAtBufferStop(block)
-            val stopAtBufferStop = blockInfra.blockStopAtBufferStop(block)
-            val signals = blockInfra.getBlockSignals(block)
-            val signalTypes = signals.map { rawSignalingInfra.getSignalingSystemId(it) }
-            val signalSettings = signals.map { loadedSignalInfra.getSettings(it) }
-            val signalsPositions = blockInfra.getSignalsPositions(block)
-            val sigBlock =
-                SigBlock(
-                    startAtBufferStop,
-                    stopAtBufferStop,
-                    signalTypes,
-                    signalSettings,
-                    signalsPositions,
-                    length,
-                )
-            val reporter =
-                object : BlockDiagReporter {
-                    override fun reportBlock(errorType: String) {
-                        val entrySignal = rawSignalingInfra.getLogicalSignalName(signals[0])
-                        val exitSignal =
-                            rawSignalingInfra.getLogicalSignalName(signals[signals.size - 1])
-                        blockLogAggregator.registerError(
-                            "error in block from $entrySignal to $exitSignal: $errorType"
-                        )
-                    }
+        val checkErrors =
+            blocks.parallelMap(pool) {
+                checkBlock(rawSignalingInfra, loadedSignalInfra, blockInfra, it)
+            }
+        for (errors in checkErrors) {
+            for (error in errors.blockErrors) blockLogAggregator.registerError(error)
+            for (error in errors.signalErrors) signalLogAggregator.registerError(error)
+        }
+        blockLogAggregator.logAggregatedSummary()
+        signalLogAggregator.logAggregatedSummary()
+    }
 
-                    override fun reportSignal(sigIndex: Int, errorType: String) {
-                        val signal = rawSignalingInfra.getLogicalSignalName(signals[sigIndex])
-                        signalLogAggregator.registerError("error at signal $signal: $errorType")
-                    }
+    private fun checkBlock(
+        rawSignalingInfra: RawSignalingInfra,
+        loadedSignalInfra: LoadedSignalInfra,
+        blockInfra: BlockInfra,
+        block: BlockId,
+    ): BlockCheckErrors {
+        val errors = BlockCheckErrors()
+        val sigSystem = blockInfra.getBlockSignalingSystem(block)
+        val path = blockInfra.getBlockZonePaths(block)
+        val length =
+            Distance(
+                path
+                    .map { rawSignalingInfra.getZonePathLength(it) }
+                    .sumOf { it.distance.millimeters }
+            )
+        val startAtBufferStop = blockInfra.blockStartAtBufferStop(block)
+        val stopAtBufferStop = blockInfra.blockStopAtBufferStop(block)
+        val signals = blockInfra.getBlockSignals(block)
+        val signalTypes = signals.map { rawSignalingInfra.getSignalingSystemId(it) }
+        val signalSettings = signals.map { loadedSignalInfra.getSettings(it) }
+        val signalsPositions = blockInfra.getSignalsPositions(block)
+        val sigBlock =
+            SigBlock(
+                startAtBufferStop,
+                stopAtBufferStop,
+                signalTypes,
+                signalSettings,
+                signalsPositions,
+                length,
+            )
+        val reporter =
+            object : BlockDiagReporter {
+                override fun reportBlock(errorType: String) {
+                    val entrySignal = rawSignalingInfra.getLogicalSignalName(signals[0])
+                    val exitSignal =
+                        rawSignalingInfra.getLogicalSignalName(signals[signals.size - 1])
+                    errors.blockErrors.add(
+                        "error in block from $entrySignal to $exitSignal: $errorType"
+                    )
+                }
+
+                override fun reportSignal(sigIndex: Int, errorType: String) {
+                    val signal = rawSignalingInfra.getLogicalSignalName(signals[sigIndex])
+                    errors.signalErrors.add("error at signal $signal: $errorType")
                 }
-            sigModuleManager.checkSignalingSystemBlock(reporter, sigSystem, sigBlock)
-            for ((signal, nextSignal) in signals.windowed(2)) {
-                val signalReporter =
-                    object : SignalDiagReporter {
-                        override fun report(errorType: String) {
-                            logger.debug {
-                                val signalName = rawSignalingInfra.getLogicalSignalName(signal)
-                                val nextSignalName =
-                                    rawSignalingInfra.getLogicalSignalName(nextSignal)
-                                "error at signal $signalName to $nextSignalName: $errorType"
-                            }
+            }
+        sigModuleManager.checkSignalingSystemBlock(reporter, sigSystem, sigBlock)
+        for ((signal, nextSignal) in signals.windowed(2)) {
+            val signalReporter =
+                object : SignalDiagReporter {
+                    override fun report(errorType: String) {
+                        logger.debug {
+                            val signalName = rawSignalingInfra.getLogicalSignalName(signal)
+                            val nextSignalName = rawSignalingInfra.getLogicalSignalName(nextSignal)
+                            "error at signal $signalName to $nextSignalName: $errorType"
                         }
                     }
-                val driver =
-                    sigModuleManager.findDriver(
-                        loadedSignalInfra.getSignalingSystem(signal),
-                        loadedSignalInfra.getSignalingSystem(nextSignal),
-                    )
-                sigModuleManager.checkSignal(
-                    signalReporter,
-                    driver,
-                    loadedSignalInfra.getSettings(signal),
-                    sigBlock,
+                }
+            val driver =
+                sigModuleManager.findDriver(
+                    loadedSignalInfra.getSignalingSystem(signal),
+                    loadedSignalInfra.getSignalingSystem(nextSignal),
                 )
-            }
+            sigModuleManager.checkSignal(
+                signalReporter,
+                driver,
+                loadedSignalInfra.getSettings(signal),
+                sigBlock,
+            )
         }
-        blockLogAggregator.logAggregatedSummary()
-        signalLogAggregator.logAggregatedSummary()
-        return blockInfra
+        return errors
     }
 
     override fun evaluate(
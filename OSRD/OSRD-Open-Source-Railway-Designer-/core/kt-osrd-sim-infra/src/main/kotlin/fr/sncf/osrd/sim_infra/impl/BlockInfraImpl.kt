@@ -37,7 +37,7 @@ class BlockDescriptor(
 }
 
 class BlockInfraImpl(
-    private val blockPool: StaticPool<Block, BlockDescriptor>,
+    internal val blockPool: StaticPool<Block, BlockDescriptor>,
     private val loadedSignalInfra: LoadedSignalInfra,
     rawInfra: RawInfra,
 ) : BlockInfra {
@@ -168,6 +168,14 @@ class BlockInfraImpl(
     override fun getBlockFromName(name: String): BlockId? {
         return nameToBlockMap[name]
     }
+
+    /**
+     * Returns the same blocks, on an infra whose signals were reloaded without changing their
+     * signaling system nor whether they delimit blocks.
+     */
+    fun withSignals(loadedSignalInfra: LoadedSignalInfra, rawInfra: RawInfra): BlockInfraImpl {
+        return BlockInfraImpl(blockPool, loadedSignalInfra, rawInfra)
+    }
 }
 
 /**
@@ -0,0 +1,806 @@
+package fr.sncf.osrd.sim_infra.impl
+
+import fr.sncf.osrd.geom.LineString
+import fr.sncf.osrd.sim_infra.api.*
+import fr.sncf.osrd.utils.Direction
+import fr.sncf.osrd.utils.DirectionalMap
+import fr.sncf.osrd.utils.DistanceRangeMap
+import fr.sncf.osrd.utils.DistanceRangeMapImpl
+import fr.sncf.osrd.utils.Endpoint
+import fr.sncf.osrd.utils.indexing.*
+import fr.sncf.osrd.utils.units.*
+import java.io.BufferedOutputStream
+import java.io.DataOutputStream
+import java.nio.ByteBuffer
+import java.nio.channels.FileChannel
+import java.nio.file.Files
+import java.nio.file.Path
+import java.nio.file.StandardCopyOption
+import java.nio.file.StandardOpenOption
+import kotlin.time.Duration.Companion.nanoseconds
+
+/*
+ * On-disk snapshots of fully built infrastructures (raw infra, loaded signals and blocks), which
+ * allow skipping the download, parsing and building of an infra which didn't change since it was
+ * last loaded.
+ *
+ * A snapshot starts with a header identifying it (format version, infra id and infra version),
+ * followed by all object descriptors, then by track chunk geometries. Snapshots are read through a
+ * memory map: descriptors are decoded right away, as the indexes derived from them have to be
+ * rebuilt anyway, but geometries are only decoded on first access. Signaling systems and drivers
+ * are stored by name, and looked up again in the signaling system manager when reading.
+ */
+
+/** Must be incremented whenever the layout of snapshots or of the serialized descriptors changes */
+const val INFRA_SNAPSHOT_FORMAT_VERSION = 1
+
+private const val INFRA_SNAPSHOT_MAGIC = 0x4f535244534e4150L // "OSRDSNAP"
+
+data class InfraSnapshotHeader(val infraId: String, val infraVersion: Int)
+
+class InfraSnapshot(
+    val header: InfraSnapshotHeader,
+    val rawInfra: RawInfra,
+    val loadedSignalInfra: LoadedSignalInfra,
+    val blockInfra: BlockInfra,
+)
+
+/** Atomically write a snapshot of the given infra to the given path */
+fun writeInfraSnapshot(
+    path: Path,
+    header: InfraSnapshotHeader,
+    rawInfra: RawInfra,
+    loadedSignalInfra: LoadedSignalInfra,
+    blockInfra: BlockInfra,
+    sigSystemManager: InfraSigSystemManager,
+) {
+    require(rawInfra is RawInfraImpl) { "only built infras can be snapshotted" }
+    require(loadedSignalInfra is LoadedSignalingInfraImpl) {
+        "only loaded signals can be snapshotted"
+    }
+    require(blockInfra is BlockInfraImpl) { "only built blocks can be snapshotted" }
+    val tmpPath = Files.createTempFile(path.toAbsolutePath().parent, "${path.fileName}", ".tmp")
+    try {
+        DataOutputStream(BufferedOutputStream(Files.newOutputStream(tmpPath), 1 shl 16)).use {
+            val writer = SnapshotWriter(it)
+            it.writeLong(INFRA_SNAPSHOT_MAGIC)
+            it.writeInt(INFRA_SNAPSHOT_FORMAT_VERSION)
+            writer.writeString(header.infraId)
+            it.writeInt(header.infraVersion)
+            writer.writeRawInfra(rawInfra)
+            writer.writeLoadedSignals(loadedSignalInfra, sigSystemManager)
+            writer.writeBlocks(blockInfra)
+            writer.writeGeometries(rawInfra)
+        }
+        Files.move(
+            tmpPath,
+            path,
+            StandardCopyOption.REPLACE_EXISTING,
+            StandardCopyOption.ATOMIC_MOVE,
+        )
+    } finally {
+        Files.deleteIfExists(tmpPath)
+    }
+}
+
+/** Read the header of a snapshot, or null if the file isn't a snapshot of the current format */
+fun readInfraSnapshotHeader(path: Path): InfraSnapshotHeader? {
+    return readHeader(SnapshotReader(mapSnapshot(path)))
+}
+
+/**
+ * Read a snapshot, or return null if the file isn't a snapshot of the current format. Track chunk
+ * geometries keep a reference to the memory mapped file, and are decoded when first accessed.
+ */
+fun readInfraSnapshot(path: Path, sigSystemManager: InfraSigSystemManager): InfraSnapshot? {
+    val reader = SnapshotReader(mapSnapshot(path))
+    val header = readHeader(reader) ?: return null
+    val rawInfra = reader.readRawInfra()
+    val loadedSignalInfra = reader.readLoadedSignals(sigSystemManager)
+    val blockInfra = BlockInfraImpl(reader.readBlocks(), loadedSignalInfra, rawInfra)
+    reader.readGeometries()
+    return InfraSnapshot(header, rawInfra, loadedSignalInfra, blockInfra)
+}
+
+private fun mapSnapshot(path: Path): ByteBuffer {
+    FileChannel.open(path, StandardOpenOption.READ).use {
+        return it.map(FileChannel.MapMode.READ_ONLY, 0, it.size())
+    }
+}
+
+private fun readHeader(reader: SnapshotReader): InfraSnapshotHeader? {
+    if (reader.buf.remaining() < 12) return null
+    if (reader.buf.getLong() != INFRA_SNAPSHOT_MAGIC) return null
+    if (reader.buf.getInt() != INFRA_SNAPSHOT_FORMAT_VERSION) return null
+    val infraId = reader.readString()
+    return InfraSnapshotHeader(infraId, reader.buf.getInt())
+}
+
+/** The number of bytes taken by a geometry: its point count, then coordinates and lengths */
+private fun geometrySize(geo: LineString): Long {
+    return 4L + 8L * (3 * geo.bufferLat.size - 1)
+}
+
+/** The value of all fields of some signal settings or parameters, by name */
+private fun sigDataValues(data: SigData<*>): Map<String, String> {
+    val res = LinkedHashMap<String, String>()
+    for (field in data.schema.sortedFields) {
+        res[field.name] =
+            when (field) {
+                is SigFlagField -> data.getFlag(field.name).toString()
+                is SigEnumField -> data.getEnum(field.name)
+            }
+    }
+    return res
+}
+
+private class SnapshotWriter(private val out: DataOutputStream) {
+    /** Strings are written once, then referred to by index */
+    private val stringIndexes = HashMap<String, Int>()
+
+    fun writeString(value: String) {
+        val index = stringIndexes[value]
+        if (index != null) {
+            out.writeInt(index)
+            return
+        }
+        stringIndexes[value] = stringIndexes.size
+        val bytes = value.toByteArray()
+        out.writeInt(-1)
+        out.writeInt(bytes.size)
+        out.write(bytes)
+    }
+
+    fun writeStrings(values: Collection<String>) {
+        out.writeInt(values.size)
+        for (value in values) writeString(value)
+    }
+
+    fun writeStringMap(values: Map<String, String>) {
+        out.writeInt(values.size)
+        for ((key, value) in values) {
+            writeString(key)
+            writeString(value)
+        }
+    }
+
+    fun writeIdx(value: StaticIdx<*>?) {
+        out.writeInt(value?.index?.toInt() ?: -1)
+    }
+
+    fun writeIdxs(values: Iterable<StaticIdx<*>>, size: Int) {
+        out.writeInt(size)
+        for (value in values) writeIdx(value)
+    }
+
+    fun writeIdxs(values: List<StaticIdx<*>>) {
+        writeIdxs(values, values.size)
+    }
+
+    fun writeDirIdxs(values: List<DirStaticIdx<*>>) {
+        out.writeInt(values.size)
+        for (value in values) out.writeInt(value.data.toInt())
+    }
+
+    fun writeOffsets(values: List<Offset<*>>) {
+        out.writeInt(values.size)
+        for (value in values) out.writeLong(value.distance.millimeters)
+    }
+
+    fun <T> writeRangeMap(map: DistanceRangeMap<T>, writeValue: (T) -> Unit) {
+        val entries = map.asList()
+        out.writeInt(entries.size)
+        for (entry in entries) {
+            out.writeLong(entry.lower.millimeters)
+            out.writeLong(entry.upper.millimeters)
+            writeValue(entry.value)
+        }
+    }
+
+    fun <T> writeDirRangeMap(map: DirectionalMap<DistanceRangeMap<T>>, writeValue: (T) -> Unit) {
+        writeRangeMap(map.get(Direction.INCREASING), writeValue)
+        writeRangeMap(map.get(Direction.DECREASING), writeValue)
+    }
+
+    fun writeSpeedMap(values: Map<String, Speed>) {
+        out.writeInt(values.size)
+        for ((key, value) in values) {
+            writeString(key)
+            out.writeLong(value.millimetersPerSecond.toLong())
+        }
+    }
+
+    fun writeRawInfra(infra: RawInfraImpl) {
+        out.writeInt(infra.trackNodePool.size.toInt())
+        for (nodeId in infra.trackNodePool) {
+            val node = infra.trackNodePool[nodeId]
+            writeString(node.name)
+            out.writeLong(node.delay.inWholeNanoseconds)
+            out.writeInt(node.ports.size.toInt())
+            for (port in node.ports) out.writeInt(node.ports[port].data.toInt())
+            out.writeInt(node.configs.size.toInt())
+            for (configId in node.configs) {
+                val config = node.configs[configId]
+                writeString(config.name)
+                out.writeInt(config.portLinks.size)
+                for (link in config.portLinks) {
+                    writeIdx(link.first)
+                    writeIdx(link.second)
+                }
+            }
+        }
+
+        out.writeInt(infra.trackSectionPool.size.toInt())
+        for (trackId in infra.trackSectionPool) {
+            val track = infra.trackSectionPool[trackId]
+            writeString(track.name)
+            writeIdxs(track.chunks)
+            writeIdxs(track.detectors)
+        }
+
+        // geometries are stored after all descriptors, each chunk only stores where its own starts
+        var geoOffset = 0L
+        out.writeInt(infra.trackChunkPool.size.toInt())
+        for (chunkId in infra.trackChunkPool) {
+            val chunk = infra.trackChunkPool[chunkId]
+            writeIdx(chunk.track)
+            out.writeLong(chunk.offset.distance.millimeters)
+            out.writeLong(chunk.length.distance.millimeters)
+            out.writeLong(geoOffset)
+            geoOffset += geometrySize(chunk.geo)
+            writeDirRangeMap(chunk.slopes) { out.writeDouble(it) }
+            writeDirRangeMap(chunk.curves) { out.writeDouble(it) }
+            writeDirRangeMap(chunk.gradients) { out.writeDouble(it) }
+            writeIdxs(chunk.routes.get(Direction.INCREASING))
+            writeIdxs(chunk.routes.get(Direction.DECREASING))
+            writeIdxs(chunk.operationalPointParts)
+            writeRangeMap(chunk.loadingGaugeConstraints) {
+                writeIdxs(it.blockedTypes, it.blockedTypes.size)
+            }
+            writeRangeMap(chunk.electrificationVoltage) { writeStrings(it) }
+            writeDirRangeMap(chunk.neutralSections) {
+                out.writeBoolean(it.lowerPantograph)
+                out.writeBoolean(it.isAnnouncement)
+            }
+            writeDirRangeMap(chunk.speedSections) {
+                out.writeLong(it.default.millimetersPerSecond.toLong())
+                writeSpeedMap(it.speedByTrainTag)
+                writeSpeedMap(it.speedByRoute)
+            }
+        }
+
+        for (trackId in infra.trackSectionPool) {
+            writeIdx(infra.nodeAtEndpoint[EndpointStaticIdx(trackId, Endpoint.START)])
+            writeIdx(infra.nodeAtEndpoint[EndpointStaticIdx(trackId, Endpoint.END)])
+        }
+
+        out.writeInt(infra.zonePool.size.toInt())
+        for (zoneId in infra.zonePool) {
+            val movableElements = infra.zonePool[zoneId].movableElements
+            writeIdxs(movableElements, movableElements.size)
+        }
+
+        out.writeInt(infra.detectorPool.size.toInt())
+        for (detectorId in infra.detectorPool) {
+            val detector = infra.detectorPool[detectorId]
+            writeIdx(detector.trackSection)
+            out.writeInt(detector.chunkBoundaryIndex)
+            writeStrings(detector.names)
+        }
+        for (detectorId in infra.detectorPool) {
+            writeIdx(infra.nextZones[detectorId.increasing])
+            writeIdx(infra.nextZones[detectorId.decreasing])
+        }
+
+        out.writeInt(infra.routePool.size.toInt())
+        for (routeId in infra.routePool) {
+            val route = infra.routePool[routeId]
+            writeString(route.name)
+            out.writeLong(route.length.distance.millimeters)
+            writeIdxs(route.path)
+            out.writeInt(route.releaseZones.size)
+            for (releaseZone in route.releaseZones) out.writeInt(releaseZone)
+            writeIdxs(route.speedLimits)
+            writeOffsets(route.speedLimitStarts)
+            writeOffsets(route.speedLimitEnds)
+            writeDirIdxs(route.chunks)
+        }
+
+        out.writeInt(infra.logicalSignalPool.size.toInt())
+        for (signalId in infra.logicalSignalPool) {
+            val signal = infra.logicalSignalPool[signalId]
+            writeString(signal.signalingSystemId)
+            writeStrings(signal.nextSignalingSystemIds)
+            writeStringMap(signal.rawSettings)
+            writeStringMap(signal.rawParameters.default)
+            out.writeInt(signal.rawParameters.conditional.size)
+            for ((route, parameters) in signal.rawParameters.conditional) {
+                writeIdx(route)
+                writeStringMap(parameters)
+            }
+        }
+
+        out.writeInt(infra.physicalSignalPool.size.toInt())
+        for (signalId in infra.physicalSignalPool) {
+            val signal = infra.physicalSignalPool[signalId]
+            out.writeBoolean(signal.name != null)
+            if (signal.name != null) writeString(signal.name)
+            out.writeInt(signal.dirTrackSectionId.data.toInt())
+            out.writeLong(signal.undirectedTrackOffset.distance.millimeters)
+            writeIdxs(signal.logicalSignals)
+            out.writeLong(signal.sightDistance.millimeters)
+        }
+
+        out.writeInt(infra.zonePathPool.size.toInt())
+        for (zonePathId in infra.zonePathPool) {
+            val zonePath = infra.zonePathPool[zonePathId]
+            out.writeInt(zonePath.entry.data.toInt())
+            out.writeInt(zonePath.exit.data.toInt())
+            writeIdxs(zonePath.movableElements)
+            writeIdxs(zonePath.movableElementsConfigs)
+            writeOffsets(zonePath.movableElementsPositions)
+            writeDirIdxs(zonePath.chunks)
+        }
+
+        out.writeInt(infra.operationalPointPartPool.size.toInt())
+        for (partId in infra.operationalPointPartPool) {
+            val part = infra.operationalPointPartPool[partId]
+            writeString(part.operationalPointId)
+            out.writeLong(part.chunkOffset.distance.millimeters)
+            writeIdx(part.chunk)
+            writeStringMap(part.props)
+        }
+
+        out.writeInt(infra.speedLimitTagPool.size)
+        for ((tag, descriptor) in infra.speedLimitTagPool) {
+            writeString(tag)
+            writeStrings(descriptor.fallbackList)
+        }
+    }
+
+    fun writeLoadedSignals(
+        infra: LoadedSignalingInfraImpl,
+        sigSystemManager: InfraSigSystemManager,
+    ) {
+        out.writeInt(infra.physicalSignalPool.size.toInt())
+        for (signalId in infra.physicalSignalPool) writeIdxs(infra.physicalSignalPool[signalId])
+
+        out.writeInt(infra.logicalSignalSpace.size.toInt())
+        for (signalId in infra.logicalSignalSpace) {
+            writeString(sigSystemManager.getName(infra.signalingSystemMap[signalId]!!))
+            writeStringMap(sigDataValues(infra.signalSettingsMap[signalId]!!))
+            val parameters = infra.signalParametersMap[signalId]!!
+            writeStringMap(sigDataValues(parameters.default))
+            out.writeInt(parameters.conditional.size)
+            for ((route, routeParameters) in parameters.conditional) {
+                writeIdx(route)
+                writeStringMap(sigDataValues(routeParameters))
+            }
+            val drivers = infra.driverMap[signalId]!!
+            out.writeInt(drivers.size)
+            for (driver in drivers) {
+                writeString(
+                    sigSystemManager.getName(sigSystemManager.getOutputSignalingSystem(driver))
+                )
+                writeString(
+                    sigSystemManager.getName(sigSystemManager.getInputSignalingSystem(driver))
+                )
+            }
+        }
+    }
+
+    fun writeBlocks(infra: BlockInfraImpl) {
+        out.writeInt(infra.blockPool.size.toInt())
+        for (blockId in infra.blockPool) {
+            val block = infra.blockPool[blockId]
+            out.writeLong(block.length.distance.millimeters)
+            out.writeBoolean(block.startAtBufferStop)
+            out.writeBoolean(block.stopsAtBufferStop)
+            writeIdxs(block.path)
+            writeIdxs(block.signals)
+            writeOffsets(block.signalsPositions)
+        }
+    }
+
+    fun writeGeometries(infra: RawInfraImpl) {
+        out.writeInt(infra.trackChunkPool.size.toInt())
+        var totalSize = 0L
+        for (chunkId in infra.trackChunkPool) totalSize +=
+            geometrySize(infra.trackChunkPool[chunkId].geo)
+        out.writeLong(totalSize)
+        for (chunkId in infra.trackChunkPool) {
+            val geo = infra.trackChunkPool[chunkId].geo
+            out.writeInt(geo.bufferLat.size)
+            for (lat in geo.bufferLat) out.writeDouble(lat)
+            for (lon in geo.bufferLon) out.writeDouble(lon)
+            for (length in geo.cumulativeLengths) out.writeDouble(length)
+        }
+    }
+}
+
+private class SnapshotReader(val buf: ByteBuffer) {
+    private val strings = ArrayList<String>()
+
+    /** Geometries are decoded lazily, and need to know where the geometry section starts */
+    private var geometriesStart = -1
+
+    fun readString(): String {
+        val index = buf.getInt()
+        if (index >= 0) return strings[index]
+        val bytes = ByteArray(buf.getInt())
+        buf.get(bytes)
+        val value = String(bytes)
+        strings.add(value)
+        return value
+    }
+
+    fun readStrings(): List<String> {
+        val size = buf.getInt()
+        val res = ArrayList<String>(size)
+        for (i in 0 until size) res.add(readString())
+        return res
+    }
+
+    fun readStringSet(): Set<String> {
+        val size = buf.getInt()
+        val res = LinkedHashSet<String>(size)
+        for (i in 0 until size) res.add(readString())
+        return res
+    }
+
+    fun readStringMap(): Map<String, String> {
+        val size = buf.getInt()
+        val res = LinkedHashMap<String, String>(size)
+        for (i in 0 until size) res[readString()] = readString()
+        return res
+    }
+
+    fun <T> readIdx(): StaticIdx<T> {
+        return StaticIdx(buf.getInt().toUInt())
+    }
+
+    fun <T> readOptIdx(): StaticIdx<T>? {
+        val index = buf.getInt()
+        if (index == -1) return null
+        return StaticIdx(index.toUInt())
+    }
+
+    fun <T> readDirIdx(): DirStaticIdx<T> {
+        return DirStaticIdx(buf.getInt().toUInt())
+    }
+
+    fun <T> readIdxs(): MutableStaticIdxArrayList<T> {
+        val size = buf.getInt()
+        val res = MutableStaticIdxArrayList<T>(size)
+        for (i in 0 until size) res.add(readIdx())
+        return res
+    }
+
+    fun <T> readDirIdxs(): MutableDirStaticIdxArrayList<T> {
+        val size = buf.getInt()
+        val res = MutableDirStaticIdxArrayList<T>(size)
+        for (i in 0 until size) res.add(readDirIdx())
+        return res
+    }
+
+    fun <T> readOffset(): Offset<T> {
+        return Offset(Distance(buf.getLong()))
+    }
+
+    fun <T> readOffsets(): MutableOffsetArrayList<T> {
+        val size = buf.getInt()
+        val res = MutableOffsetArrayList<T>(size)
+        for (i in 0 until size) res.add(readOffset())
+        return res
+    }
+
+    /** Rebuilds the internal layout of the range map, with null values in gaps between entries */
+    fun <T> readRangeMap(readValue: () -> T): DistanceRangeMap<T> {
+        val size = buf.getInt()
+        val bounds = MutableDistanceArrayList(size + 1)
+        val values = ArrayList<T?>(size)
+        for (i in 0 until size) {
+            val lower = Distance(buf.getLong())
+            val upper = Distance(buf.getLong())
+            if (bounds.size == 0) {
+                bounds.add(lower)
+            } else if (bounds[bounds.size - 1] != lower) {
+                values.add(null)
+                bounds.add(lower)
+            }
+            values.add(readValue())
+            bounds.add(upper)
+        }
+        return DistanceRangeMapImpl(bounds, values)
+    }
+
+    fun <T> readDirRangeMap(readValue: () -> T): DirectionalMap<DistanceRangeMap<T>> {
+        val forwards = readRangeMap(readValue)
+        val backwards = readRangeMap(readValue)
+        return DirectionalMap(forwards, backwards)
+    }
+
+    fun readSpeedMap(): Map<String, Speed> {
+        val size = buf.getInt()
+        val res = LinkedHashMap<String, Speed>(size)
+        for (i in 0 until size) res[readString()] = Speed(buf.getLong().toULong())
+        return res
+    }
+
+    fun readRawInfra(): RawInfraImpl {
+        val trackNodePool = StaticPool<TrackNode, TrackNodeDescriptor>()
+        repeat(buf.getInt()) {
+            val name = readString()
+            val delay = buf.getLong().nanoseconds
+            val ports = StaticPool<TrackNodePort, EndpointTrackSectionId>()
+            repeat(buf.getInt()) { ports.add(EndpointStaticIdx(buf.getInt().toUInt())) }
+            val configs = StaticPool<TrackNodeConfig, TrackNodeConfigDescriptor>()
+            repeat(buf.getInt()) {
+                val configName = readString()
+                val portLinks = ArrayList<Pair<TrackNodePortId, TrackNodePortId>>()
+                repeat(buf.getInt()) { portLinks.add(Pair(readIdx(), readIdx())) }
+                configs.add(TrackNodeConfigDescriptor(configName, portLinks))
+            }
+            trackNodePool.add(TrackNodeDescriptor(name, delay, ports, configs))
+        }
+
+        val trackSectionPool = StaticPool<TrackSection, TrackSectionDescriptor>()
+        repeat(buf.getInt()) {
+            trackSectionPool.add(TrackSectionDescriptor(readString(), readIdxs(), readIdxs()))
+        }
+
+        val trackChunkPool = StaticPool<TrackChunk, TrackChunkDescriptor>()
+        repeat(buf.getInt()) {
+            val track = readIdx<TrackSection>()
+            val offset = readOffset<TrackSection>()
+            val length = readOffset<TrackChunk>()
+            val geoOffset = buf.getLong()
+            trackChunkPool.add(
+                TrackChunkDescriptor(
+                    track,
+                    offset,
+                    length,
+                    lazy { readGeometry(geoOffset) },
+                    readDirRangeMap { buf.getDouble() },
+                    readDirRangeMap { buf.getDouble() },
+                    readDirRangeMap { buf.getDouble() },
+                    DirectionalMap(readIdxs(), readIdxs()),
+                    readIdxs(),
+                    readRangeMap {
+                        val blockedTypes = MutableStaticIdxArraySet<LoadingGaugeType>()
+                        repeat(buf.getInt()) { blockedTypes.add(readIdx()) }
+                        LoadingGaugeConstraint(blockedTypes)
+                    },
+                    readRangeMap { readStringSet() },
+                    readDirRangeMap {
+                        NeutralSection(buf.get() != 0.toByte(), buf.get() != 0.toByte())
+                    },
+                    readDirRangeMap {
+                        SpeedSection(Speed(buf.getLong().toULong()), readSpeedMap(), readSpeedMap())
+                    },
+                )
+            )
+        }
+
+        val nodeAtEndpoint = IdxMap<EndpointTrackSectionId, TrackNodeId>()
+        for (trackId in trackSectionPool) {
+            for (endpoint in listOf(Endpoint.START, Endpoint.END)) {
+                val node = readOptIdx<TrackNode>()
+                if (node != null) nodeAtEndpoint[EndpointStaticIdx(trackId, endpoint)] = node
+            }
+        }
+
+        val zonePool = StaticPool<Zone, ZoneDescriptor>()
+        repeat(buf.getInt()) {
+            val movableElements = MutableStaticIdxArraySet<TrackNode>()
+            repeat(buf.getInt()) { movableElements.add(readIdx()) }
+            zonePool.add(ZoneDescriptor(movableElements))
+        }
+
+        val detectorPool = StaticPool<Detector, DetectorDescriptor>()
+        repeat(buf.getInt()) {
+            detectorPool.add(DetectorDescriptor(readIdx(), buf.getInt(), readStrings()))
+        }
+        val nextZones = IdxMap<DirDetectorId, ZoneId>()
+        for (detectorId in detectorPool) {
+            for (dirDetector in listOf(detectorId.increasing, detectorId.decreasing)) {
+                val zone = readOptIdx<Zone>()
+                if (zone != null) nextZones[dirDetector] = zone
+            }
+        }
+
+        val routePool = StaticPool<Route, RouteDescriptor>()
+        repeat(buf.getInt()) {
+            val name = readString()
+            val length = readOffset<Route>()
+            val path = readIdxs<ZonePath>()
+            val releaseZones = IntArray(buf.getInt()) { buf.getInt() }
+            routePool.add(
+                RouteDescriptor(
+                    name,
+                    length,
+                    path,
+                    releaseZones,
+                    readIdxs(),
+                    readOffsets(),
+                    readOffsets(),
+                    readDirIdxs(),
+                )
+            )
+        }
+
+        val logicalSignalPool = StaticPool<LogicalSignal, LogicalSignalDescriptor>()
+        repeat(buf.getInt()) {
+            val signalingSystemId = readString()
+            val nextSignalingSystemIds = readStrings()
+            val rawSettings = readStringMap()
+            val defaultParameters = readStringMap()
+            val conditionalParameters = LinkedHashMap<RouteId, Map<String, String>>()
+            repeat(buf.getInt()) { conditionalParameters[readIdx()] = readStringMap() }
+            logicalSignalPool.add(
+                LogicalSignalDescriptor(
+                    signalingSystemId,
+                    nextSignalingSystemIds,
+                    rawSettings,
+                    RawSignalParameters(defaultParameters, conditionalParameters),
+                )
+            )
+        }
+
+        val physicalSignalPool = StaticPool<PhysicalSignal, PhysicalSignalDescriptor>()
+        repeat(buf.getInt()) {
+            val name = if (buf.get() != 0.toByte()) readString() else null
+            physicalSignalPool.add(
+                PhysicalSignalDescriptor(
+                    name,
+                    readDirIdx(),
+                    readOffset(),
+                    readIdxs(),
+                    Distance(buf.getLong()),
+                )
+            )
+        }
+
+        val zonePathPool = StaticPool<ZonePath, ZonePathDescriptor>()
+        val zonePathMap = HashMap<ZonePathSpec, ZonePathId>()
+        repeat(buf.getInt()) {
+            val zonePath =
+                ZonePathDescriptor(
+                    readDirIdx(),
+                    readDirIdx(),
+                    readIdxs(),
+                    readIdxs(),
+                    readOffsets(),
+                    readDirIdxs(),
+                )
+            zonePathMap[zonePath] = zonePathPool.add(zonePath)
+        }
+
+        val operationalPointPartPool =
+            StaticPool<OperationalPointPart, OperationalPointPartDescriptor>()
+        repeat(buf.getInt()) {
+            operationalPointPartPool.add(
+                OperationalPointPartDescriptor(
+                    readString(),
+                    readOffset(),
+                    readIdx(),
+                    readStringMap(),
+                )
+            )
+        }
+
+        val speedLimitTagPool = LinkedHashMap<String, SpeedLimitTagDescriptor>()
+        repeat(buf.getInt()) {
+            speedLimitTagPool[readString()] = SpeedLimitTagDescriptor(readStrings())
+        }
+
+        return RawInfraImpl(
+            trackNodePool,
+            trackSectionPool,
+            trackChunkPool,
+            nodeAtEndpoint,
+            zonePool,
+            detectorPool,
+            nextZones,
+            routePool,
+            logicalSignalPool,
+            physicalSignalPool,
+            zonePathPool,
+            zonePathMap,
+            operationalPointPartPool,
+            speedLimitTagPool,
+            makeTrackNameMap(trackSectionPool),
+            makeRouteNameMap(routePool),
+            makeDetEntryToRouteMap(routePool, zonePathPool),
+            makeDetExitToRouteMap(routePool, zonePathPool),
+        )
+    }
+
+    fun readLoadedSignals(sigSystemManager: InfraSigSystemManager): LoadedSignalingInfraImpl {
+        fun findSignalingSystem(name: String): SignalingSystemId {
+            return checkNotNull(sigSystemManager.findSignalingSystem(name)) {
+                "unknown signaling system $name in infra snapshot"
+            }
+        }
+
+        val physicalSignalPool = StaticPool<PhysicalSignal, List<LogicalSignalId>>()
+        repeat(buf.getInt()) { physicalSignalPool.add(readIdxs()) }
+
+        val logicalSignalSpace = StaticIdxSpace<LogicalSignal>(buf.getInt().toUInt())
+        val signalSettingsMap = IdxMap<LogicalSignalId, SigSettings>()
+        val signalParametersMap = IdxMap<LogicalSignalId, SignalParameters>()
+        val signalingSystemMap = IdxMap<LogicalSignalId, SignalingSystemId>()
+        val driverMap = IdxMap<LogicalSignalId, List<SignalDriverId>>()
+        val blockDelimiterMap = IdxMap<LogicalSignalId, Boolean>()
+        for (signalId in logicalSignalSpace) {
+            val sigSystem = findSignalingSystem(readString())
+            val settings = sigSystemManager.getSettingsSchema(sigSystem)(readStringMap())
+            val parametersSchema = sigSystemManager.getParametersSchema(sigSystem)
+            val defaultParameters = parametersSchema(readStringMap())
+            val conditionalParameters = LinkedHashMap<RouteId, SigParameters>()
+            repeat(buf.getInt()) {
+                conditionalParameters[readIdx()] = parametersSchema(readStringMap())
+            }
+            val drivers = mutableStaticIdxArrayListOf<SignalDriver>()
+            repeat(buf.getInt()) {
+                val outputSigSystem = findSignalingSystem(readString())
+                val inputSigSystem = findSignalingSystem(readString())
+                drivers.add(sigSystemManager.findDriver(outputSigSystem, inputSigSystem))
+            }
+            signalingSystemMap[signalId] = sigSystem
+            signalSettingsMap[signalId] = settings
+            signalParametersMap[signalId] =
+                SignalParameters(defaultParameters, conditionalParameters)
+            driverMap[signalId] = drivers
+            blockDelimiterMap[signalId] = sigSystemManager.isBlockDelimiter(sigSystem, settings)
+        }
+        return LoadedSignalingInfraImpl(
+            logicalSignalSpace,
+            physicalSignalPool,
+            signalSettingsMap,
+            signalParametersMap,
+            signalingSystemMap,
+            driverMap,
+            blockDelimiterMap,
+        )
+    }
+
+    fun readBlocks(): StaticPool<Block, BlockDescriptor> {
+        val blockPool = StaticPool<Block, BlockDescriptor>()
+        repeat(buf.getInt()) {
+            blockPool.add(
+                BlockDescriptor(
+                    readOffset(),
+                    buf.get() != 0.toByte(),
+                    buf.get() != 0.toByte(),
+                    readIdxs(),
+                    readIdxs(),
+                    readOffsets(),
+                )
+            )
+        }
+        return blockPool
+    }
+
+    /** Skips over the geometry section, which is decoded lazily */
+    fun readGeometries() {
+        buf.getInt()
+        val totalSize = buf.getLong()
+        check(buf.remaining().toLong() == totalSize) { "truncated infra snapshot" }
+        geometriesStart = buf.position()
+    }
+
+    /** Decode a geometry using absolute reads, which may happen concurrently */
+    private fun readGeometry(offset: Long): LineString {
+        assert(geometriesStart != -1)
+        var position = geometriesStart + offset.toInt()
+        val size = buf.getInt(position)
+        position += 4
+        val lat = DoubleArray(size) { buf.getDouble(position + 8 * it) }
+        position += 8 * size
+        val lon = DoubleArray(size) { buf.getDouble(position + 8 * it) }
+        position += 8 * size
+        val cumulativeLengths = DoubleArray(size - 1) { buf.getDouble(position + 8 * it) }
+        return LineString(lat, lon, cumulativeLengths)
+    }
+}
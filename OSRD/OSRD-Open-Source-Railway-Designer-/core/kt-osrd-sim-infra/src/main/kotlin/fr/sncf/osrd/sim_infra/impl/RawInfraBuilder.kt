@@ -555,9 +555,10 @@ class RawInfraBuilder {
 
     fun build(): RawInfra {
         resolveReferences()
+        val trackSections = trackSectionPool.map { it.build() }
         return RawInfraImpl(
             trackNodePool,
-            trackSectionPool.map { it.build() },
+            trackSections,
             trackChunkPool,
             nodeAtEndpoint,
             zonePool.map { ZoneDescriptor(it.movableElements) },
@@ -570,54 +571,13 @@ class RawInfraBuilder {
             zonePathMap,
             operationalPointPartPool,
             speedLimitTagPool,
-            makeTrackNameMap(),
-            makeRouteNameMap(),
-            makeDetEntryToRouteMap(),
-            makeDetExitToRouteMap(),
+            makeTrackNameMap(trackSections),
+            makeRouteNameMap(routePool),
+            makeDetEntryToRouteMap(routePool, zonePathPool),
+            makeDetExitToRouteMap(routePool, zonePathPool),
         )
     }
 
-    /** Create the mapping from each dir detector to routes that start there */
-    private fun makeDetEntryToRouteMap(): Map<DirStaticIdx<Detector>, List<RouteId>> {
-        val res = HashMap<DirStaticIdx<Detector>, MutableStaticIdxArrayList<Route>>()
-        for (routeId in routePool) {
-            val firstZonePath = routePool[routeId].path.first()
-            val entry = zonePathPool[firstZonePath].entry
-            res.computeIfAbsent(entry) { mutableStaticIdxArrayListOf() }.add(routeId)
-        }
-        return res
-    }
-
-    /** Create the mapping from each dir detector to routes that end there */
-    private fun makeDetExitToRouteMap(): Map<DirStaticIdx<Detector>, List<RouteId>> {
-        val res = HashMap<DirStaticIdx<Detector>, MutableStaticIdxArrayList<Route>>()
-        for (routeId in routePool) {
-            val lastZonePath = routePool[routeId].path.last()
-            val exit = zonePathPool[lastZonePath].exit
-            res.computeIfAbsent(exit) { mutableStaticIdxArrayListOf() }.add(routeId)
-        }
-        return res
-    }
-
-    /** Create the mapping from track name to id */
-    private fun makeTrackNameMap(): Map<String, TrackSectionId> {
-        val res = HashMap<String, TrackSectionId>()
-        for (trackId in trackSectionPool) res[trackSectionPool[trackId].name] = trackId
-        return res
-    }
-
-    /** Create the mapping from route name to id */
-    private fun makeRouteNameMap(): Map<String, RouteId> {
-        val res = HashMap<String, RouteId>()
-        for (routeId in routePool) {
-            val routeName = routePool[routeId].name
-            if (res[routePool[routeId].name] != null)
-                throw OSRDError.newDuplicateRouteError(routeName)
-            res[routePool[routeId].name] = routeId
-        }
-        return res
-    }
-
     /**
      * Some objects have cross-reference (such as routes and chunks, or track sections and chunks).
      * This method needs to be called to set the references that couldn't be set during
@@ -816,3 +776,51 @@ class RouteZonePathBuilder(
         }
     }
 }
+
+/** Create the mapping from each dir detector to routes that start there */
+internal fun makeDetEntryToRouteMap(
+    routePool: StaticPool<Route, RouteDescriptor>,
+    zonePathPool: StaticPool<ZonePath, ZonePathDescriptor>,
+): Map<DirStaticIdx<Detector>, List<RouteId>> {
+    val res = HashMap<DirStaticIdx<Detector>, MutableStaticIdxArrayList<Route>>()
+    for (routeId in routePool) {
+        val firstZonePath = routePool[routeId].path.first()
+        val entry = zonePathPool[firstZonePath].entry
+        res.computeIfAbsent(entry) { mutableStaticIdxArrayListOf() }.add(routeId)
+    }
+    return res
+}
+
+/** Create the mapping from each dir detector to routes that end there */
+internal fun makeDetExitToRouteMap(
+    routePool: StaticPool<Route, RouteDescriptor>,
+    zonePathPool: StaticPool<ZonePath, ZonePathDescriptor>,
+): Map<DirStaticIdx<Detector>, List<RouteId>> {
+    val res = HashMap<DirStaticIdx<Detector>, MutableStaticIdxArrayList<Route>>()
+    for (routeId in routePool) {
+        val lastZonePath = routePool[routeId].path.last()
+        val exit = zonePathPool[lastZonePath].exit
+        res.computeIfAbsent(exit) { mutableStaticIdxArrayListOf() }.add(routeId)
+    }
+    return res
+}
+
+/** Create the mapping from track name to id */
+internal fun makeTrackNameMap(
+    trackSectionPool: StaticPool<TrackSection, TrackSectionDescriptor>
+): Map<String, TrackSectionId> {
+    val res = HashMap<String, TrackSectionId>()
+    for (trackId in trackSectionPool) res[trackSectionPool[trackId].name] = trackId
+    return res
+}
+
+/** Create the mapping from route name to id */
+internal fun makeRouteNameMap(routePool: StaticPool<Route, RouteDescriptor>): Map<String, RouteId> {
+    val res = HashMap<String, RouteId>()
+    for (routeId in routePool) {
+        val routeName = routePool[routeId].name
+        if (res[routePool[routeId].name] != null) throw OSRDError.newDuplicateRouteError(routeName)
+        res[routePool[routeId].name] = routeId
+    }
+    return res
+}
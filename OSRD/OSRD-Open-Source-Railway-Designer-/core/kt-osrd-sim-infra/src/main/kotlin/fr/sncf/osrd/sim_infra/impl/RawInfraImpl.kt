@@ -94,7 +94,8 @@ class TrackChunkDescriptor(
     var track: StaticIdx<TrackSection>,
     val offset: Offset<TrackSection>,
     val length: Length<TrackChunk>,
-    val geo: LineString,
+    /** The geometry may be decoded on first access, see [readInfraSnapshot] */
+    private val lazyGeo: Lazy<LineString>,
     val slopes: DirectionalMap<DistanceRangeMap<Double>>,
     val curves: DirectionalMap<DistanceRangeMap<Double>>,
     val gradients: DirectionalMap<DistanceRangeMap<Double>>,
@@ -104,7 +105,39 @@ class TrackChunkDescriptor(
     val electrificationVoltage: DistanceRangeMap<Set<String>>,
     val neutralSections: DirectionalMap<DistanceRangeMap<NeutralSection>>,
     val speedSections: DirectionalMap<DistanceRangeMap<SpeedSection>>,
-)
+) {
+    constructor(
+        track: StaticIdx<TrackSection>,
+        offset: Offset<TrackSection>,
+        length: Length<TrackChunk>,
+        geo: LineString,
+        slopes: DirectionalMap<DistanceRangeMap<Double>>,
+        curves: DirectionalMap<DistanceRangeMap<Double>>,
+        gradients: DirectionalMap<DistanceRangeMap<Double>>,
+        routes: DirectionalMap<List<RouteId>>,
+        operationalPointParts: List<OperationalPointPartId>,
+        loadingGaugeConstraints: DistanceRangeMap<LoadingGaugeConstraint>,
+        electrificationVoltage: DistanceRangeMap<Set<String>>,
+        neutralSections: DirectionalMap<DistanceRangeMap<NeutralSection>>,
+        speedSections: DirectionalMap<DistanceRangeMap<SpeedSection>>,
+    ) : this(
+        track,
+        offset,
+        length,
+        lazyOf(geo),
+        slopes,
+        curves,
+        gradients,
+        routes,
+        operationalPointParts,
+        loadingGaugeConstraints,
+        electrificationVoltage,
+        neutralSections,
+        speedSections,
+    )
+
+    val geo: LineString by lazyGeo
+}
 
 class ZoneDescriptor(val movableElements: StaticIdxSortedSet<TrackNode>, var name: String = "")
 
@@ -192,21 +225,21 @@ class DetectorDescriptor(
 )
 
 class RawInfraImpl(
-    private val trackNodePool: StaticPool<TrackNode, TrackNodeDescriptor>,
-    private val trackSectionPool: StaticPool<TrackSection, TrackSectionDescriptor>,
-    private val trackChunkPool: StaticPool<TrackChunk, TrackChunkDescriptor>,
-    private val nodeAtEndpoint: IdxMap<EndpointTrackSectionId, TrackNodeId>,
-    private val zonePool: StaticPool<Zone, ZoneDescriptor>,
-    private val detectorPool: StaticPool<Detector, DetectorDescriptor>,
-    private val nextZones: IdxMap<DirDetectorId, ZoneId>,
-    private val routePool: StaticPool<Route, RouteDescriptor>,
-    private val logicalSignalPool: StaticPool<LogicalSignal, LogicalSignalDescriptor>,
-    private val physicalSignalPool: StaticPool<PhysicalSignal, PhysicalSignalDescriptor>,
-    private val zonePathPool: StaticPool<ZonePath, ZonePathDescriptor>,
+    internal val trackNodePool: StaticPool<TrackNode, TrackNodeDescriptor>,
+    internal val trackSectionPool: StaticPool<TrackSection, TrackSectionDescriptor>,
+    internal val trackChunkPool: StaticPool<TrackChunk, TrackChunkDescriptor>,
+    internal val nodeAtEndpoint: IdxMap<EndpointTrackSectionId, TrackNodeId>,
+    internal val zonePool: StaticPool<Zone, ZoneDescriptor>,
+    internal val detectorPool: StaticPool<Detector, DetectorDescriptor>,
+    internal val nextZones: IdxMap<DirDetectorId, ZoneId>,
+    internal val routePool: StaticPool<Route, RouteDescriptor>,
+    internal val logicalSignalPool: StaticPool<LogicalSignal, LogicalSignalDescriptor>,
+    internal val physicalSignalPool: StaticPool<PhysicalSignal, PhysicalSignalDescriptor>,
+    internal val zonePathPool: StaticPool<ZonePath, ZonePathDescriptor>,
     private val zonePathMap: Map<ZonePathSpec, ZonePathId>,
-    private val operationalPointPartPool:
+    internal val operationalPointPartPool:
         StaticPool<OperationalPointPart, OperationalPointPartDescriptor>,
-    private val speedLimitTagPool: Map<String, SpeedLimitTagDescriptor>,
+    internal val speedLimitTagPool: Map<String, SpeedLimitTagDescriptor>,
     private val trackSectionNameMap: Map<String, TrackSectionId>,
     private val routeNameMap: Map<String, RouteId>,
     private val dirDetEntryToRouteMap: Map<DirDetectorId, List<RouteId>>,
@@ -755,6 +788,10 @@ class RawInfraImpl(
         return physicalSignalPool[signal].undirectedTrackOffset
     }
 
+    fun getPhysicalSignalDirTrack(signal: PhysicalSignalId): DirTrackSectionId {
+        return physicalSignalPool[signal].dirTrackSectionId
+    }
+
     override fun getPhysicalSignalName(signal: PhysicalSignalId): String? {
         return physicalSignalPool[signal].name
     }
@@ -845,4 +882,36 @@ class RawInfraImpl(
     override fun getChunksOnRoute(route: RouteId): List<DirTrackChunkId> {
         return routePool[route].chunks
     }
+
+    /**
+     * Returns a copy of this infra where some logical signals are replaced. Everything else is
+     * shared with this infra, which stays valid: the positions of signals are unchanged, so zone
+     * paths and routes don't need to be built again.
+     */
+    fun withLogicalSignals(updates: Map<LogicalSignalId, LogicalSignalDescriptor>): RawInfraImpl {
+        val newLogicalSignalPool = StaticPool<LogicalSignal, LogicalSignalDescriptor>()
+        for (signal in logicalSignalPool) newLogicalSignalPool.add(
+            updates[signal] ?: logicalSignalPool[signal]
+        )
+        return RawInfraImpl(
+            trackNodePool,
+            trackSectionPool,
+            trackChunkPool,
+            nodeAtEndpoint,
+            zonePool,
+            detectorPool,
+            nextZones,
+            routePool,
+            newLogicalSignalPool,
+            physicalSignalPool,
+            zonePathPool,
+            zonePathMap,
+            operationalPointPartPool,
+            speedLimitTagPool,
+            trackSectionNameMap,
+            routeNameMap,
+            dirDetEntryToRouteMap,
+            dirDetExitToRouteMap,
+        )
+    }
 }
@@ -0,0 +1,31 @@
+package fr.sncf.osrd.utils
+
+import java.util.concurrent.ForkJoinPool
+import java.util.stream.IntStream
+
+/**
+ * Maps the elements of a list on the given pool, or on the current thread if there is none. The
+ * results are in the order of the list. If some calls throw, the error of the first failing element
+ * is thrown, as it would be by a sequential map. Elements run with the [TaskContext] of the calling
+ * thread.
+ */
+fun <T, R> List<T>.parallelMap(pool: ForkJoinPool?, transform: (T) -> R): List<R> {
+    if (pool == null || size <= 1) return map(transform)
+    val results = arrayOfNulls<Any?>(size)
+    val errors = arrayOfNulls<Throwable>(size)
+    val inContext = TaskContext.captureAll()
+    pool
+        .submit {
+            IntStream.range(0, size).parallel().forEach { i ->
+                try {
+                    inContext { results[i] = transform(this[i]) }
+                } catch (e: Throwable) {
+                    errors[i] = e
+                }
+            }
+        }
+        .join()
+    for (error in errors) if (error != null) throw error
+    @Suppress("UNCHECKED_CAST")
+    return results.asList() as List<R>
+}
@@ -0,0 +1,39 @@
+package fr.sncf.osrd.utils
+
+/**
+ * Answers minimum queries over index ranges of a fixed array in constant time. This is a sparse
+ * table: level `k` holds the minimum of each range of `2^k` values, and any range is covered by two
+ * possibly overlapping ranges of the same level. It takes `O(n log n)` to build and to store.
+ */
+class RangeMinIndex(values: DoubleArray) {
+    private val levels: Array<DoubleArray>
+
+    init {
+        val levelCount = if (values.isEmpty()) 1 else 32 - Integer.numberOfLeadingZeros(values.size)
+        val levels = ArrayList<DoubleArray>(levelCount)
+        levels.add(values.copyOf())
+        for (level in 1..<levelCount) {
+            val previous = levels[level - 1]
+            val half = 1 shl (level - 1)
+            levels.add(
+                DoubleArray(values.size - (1 shl level) + 1) {
+                    minOf(previous[it], previous[it + half])
+                }
+            )
+        }
+        this.levels = levels.toTypedArray()
+    }
+
+    /** The number of indexed values */
+    val size: Int
+        get() = levels[0].size
+
+    /** Returns the minimum of the values from `fromIndex` (inclusive) to `toIndex` (exclusive) */
+    fun min(fromIndex: Int, toIndex: Int): Double {
+        if (fromIndex < 0 || toIndex > size || fromIndex >= toIndex)
+            throw IndexOutOfBoundsException("invalid range [$fromIndex, $toIndex) of $size values")
+        val level = 31 - Integer.numberOfLeadingZeros(toIndex - fromIndex)
+        val mins = levels[level]
+        return minOf(mins[fromIndex], mins[toIndex - (1 shl level)])
+    }
+}
@@ -0,0 +1,34 @@
+package fr.sncf.osrd.utils
+
+import java.util.concurrent.CopyOnWriteArrayList
+
+/**
+ * Thread-bound state which follows the tasks a thread hands over to a pool, such as the cache
+ * entries held by the request the thread is handling. [capture] is called on the submitting thread,
+ * and returns a function running a task with the captured state on any thread.
+ */
+fun interface TaskContext {
+    fun capture(): (task: () -> Unit) -> Unit
+
+    companion object {
+        private val contexts = CopyOnWriteArrayList<TaskContext>()
+
+        /** Propagates some thread-bound state to the tasks of [parallelMap] */
+        @JvmStatic
+        fun register(context: TaskContext) {
+            contexts.addIfAbsent(context)
+        }
+
+        /** Captures all the registered state of the current thread */
+        @JvmStatic
+        fun captureAll(): (task: () -> Unit) -> Unit {
+            if (contexts.isEmpty()) return { task -> task() }
+            val runners = contexts.map { it.capture() }
+            return { task -> runWith(runners, 0, task) }
+        }
+
+        private fun runWith(runners: List<(() -> Unit) -> Unit>, i: Int, task: () -> Unit) {
+            if (i == runners.size) task() else runners[i] { runWith(runners, i + 1, task) }
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package fr.sncf.osrd.utils
+
+import java.util.concurrent.ForkJoinPool
+import kotlin.test.Test
+import kotlin.test.assertEquals
+import kotlin.test.assertFailsWith
+
+internal class ParallelMapTest {
+    @Test
+    fun keepsOrder() {
+        val values = (0 until 1000).toList()
+        assertEquals(values.map { it * 2 }, values.parallelMap(pool) { it * 2 })
+        assertEquals(values.map { it * 2 }, values.parallelMap(null) { it * 2 })
+    }
+
+    @Test
+    fun throwsFirstError() {
+        val values = (0 until 1000).toList()
+        val error =
+            assertFailsWith<IllegalStateException> {
+                values.parallelMap(pool) { if (it % 100 == 99) error("failed at $it") else it }
+            }
+        assertEquals("failed at 99", error.message)
+    }
+
+    @Test
+    fun propagatesTaskContext() {
+        val values = (0 until 1000).toList()
+        contextValue.set("request")
+        try {
+            assertEquals(values.map { "request" }, values.parallelMap(pool) { contextValue.get() })
+        } finally {
+            contextValue.remove()
+        }
+        // pool threads don't keep the state once done
+        assertEquals(values.map { null }, values.parallelMap(pool) { contextValue.get() })
+    }
+
+    companion object {
+        private val contextValue = ThreadLocal<String>()
+
+        init {
+            TaskContext.register {
+                val value = contextValue.get()
+                return@register { task ->
+                    val outer = contextValue.get()
+                    contextValue.set(value)
+                    try {
+                        task()
+                    } finally {
+                        contextValue.set(outer)
+                    }
+                }
+            }
+        }
+
+        private val pool = ForkJoinPool(4)
+    }
+}
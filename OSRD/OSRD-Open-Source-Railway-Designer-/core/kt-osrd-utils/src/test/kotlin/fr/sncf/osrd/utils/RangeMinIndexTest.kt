@@ -0,0 +1,31 @@
+package fr.sncf.osrd.utils
+
+import kotlin.random.Random
+import kotlin.test.Test
+import kotlin.test.assertEquals
+import kotlin.test.assertFailsWith
+
+internal class RangeMinIndexTest {
+    @Test
+    fun matchesLinearMin() {
+        val random = Random(42)
+        for (size in listOf(1, 2, 3, 7, 8, 9, 100)) {
+            val values = DoubleArray(size) { random.nextDouble(-10.0, 10.0) }
+            val index = RangeMinIndex(values)
+            for (from in 0..<size) {
+                for (to in from + 1..size) {
+                    assertEquals(values.copyOfRange(from, to).min(), index.min(from, to))
+                }
+            }
+        }
+    }
+
+    @Test
+    fun rejectsInvalidRanges() {
+        val index = RangeMinIndex(doubleArrayOf(1.0, 2.0))
+        assertFailsWith<IndexOutOfBoundsException> { index.min(1, 1) }
+        assertFailsWith<IndexOutOfBoundsException> { index.min(-1, 1) }
+        assertFailsWith<IndexOutOfBoundsException> { index.min(0, 3) }
+        assertFailsWith<IndexOutOfBoundsException> { RangeMinIndex(doubleArrayOf()).min(0, 1) }
+    }
+}
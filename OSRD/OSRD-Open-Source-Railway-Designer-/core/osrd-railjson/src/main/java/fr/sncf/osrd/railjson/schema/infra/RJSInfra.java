@@ -14,9 +14,11 @@ import java.util.Collection;
 import java.util.List;
 
 public class RJSInfra {
+    /** Moshi instance able to serialize and deserialize RJSInfra and the objects it contains */
+    public static final Moshi moshi = new Moshi.Builder().add(ID.Adapter.FACTORY).build();
+
     /** Moshi adapter used to serialize and deserialize RJSInfra */
-    public static final JsonAdapter<RJSInfra> adapter =
-            new Moshi.Builder().add(ID.Adapter.FACTORY).build().adapter(RJSInfra.class);
+    public static final JsonAdapter<RJSInfra> adapter = moshi.adapter(RJSInfra.class);
 
     public static final transient String CURRENT_VERSION = "3.4.13";
 
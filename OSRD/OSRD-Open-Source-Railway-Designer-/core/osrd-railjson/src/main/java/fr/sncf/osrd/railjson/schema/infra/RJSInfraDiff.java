@@ -0,0 +1,31 @@
+package fr.sncf.osrd.railjson.schema.infra;
+
+import com.squareup.moshi.Json;
+import com.squareup.moshi.JsonAdapter;
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The changes between two versions of an infra. Created and updated objects are given in full, in
+ * the sections of an RJSInfra, where sections which didn't change may be missing. Deleted objects
+ * are given by id, for each section name.
+ */
+@SuppressFBWarnings({"UWF_UNWRITTEN_PUBLIC_OR_PROTECTED_FIELD"})
+public class RJSInfraDiff {
+    /** Moshi adapter used to serialize and deserialize RJSInfraDiff */
+    public static final JsonAdapter<RJSInfraDiff> adapter =
+            RJSInfra.moshi.adapter(RJSInfraDiff.class);
+
+    @Json(name = "from_version")
+    public int fromVersion;
+
+    @Json(name = "to_version")
+    public int toVersion;
+
+    public RJSInfra created;
+
+    public RJSInfra updated;
+
+    public Map<String, List<String>> deleted;
+}
@@ -0,0 +1,117 @@
+package fr.sncf.osrd.api
+
+import fr.sncf.osrd.railjson.schema.rollingstock.Comfort
+import fr.sncf.osrd.stdcm.graph.BlockEnvelopeCache
+import io.opentelemetry.api.GlobalOpenTelemetry
+import java.time.Duration
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.LongAdder
+
+/**
+ * The parameters block envelopes depend on, besides the block. The rolling stock is identified by a
+ * digest of its physical properties.
+ */
+data class BlockEnvelopeCacheKey(
+    val infraId: String,
+    val infraVersion: Int,
+    val rollingStockFingerprint: String,
+    val comfort: Comfort,
+    val tag: String?,
+    val timeStep: Double,
+)
+
+/**
+ * Shares the block envelopes simulated by STDCM requests between requests, so that repeated
+ * searches on the same corridor don't simulate the same blocks again. Envelopes are grouped by
+ * [BlockEnvelopeCacheKey]. Each envelope added to a group is charged to the cache budget, which
+ * evicts other groups when it is exceeded. When the other groups are in use, the growing group
+ * drops its least recently used envelopes instead.
+ */
+class BlockEnvelopeCacheManager(private val cacheBudget: CacheBudget) {
+    private val caches = ConcurrentHashMap<BlockEnvelopeCacheKey, BlockEnvelopeCache>()
+
+    // lookups of evicted groups
+    private val evictedHits = LongAdder()
+    private val evictedMisses = LongAdder()
+
+    /** Counters of block envelope lookups, since the worker started */
+    data class Metrics(val hits: Long, val misses: Long) {
+        val hitRate: Double
+            get() = if (hits + misses == 0L) 0.0 else hits.toDouble() / (hits + misses)
+    }
+
+    init {
+        val meter = GlobalOpenTelemetry.getMeter("fr.sncf.osrd.api.BlockEnvelopeCacheManager")
+        meter.counterBuilder("osrd.stdcm.block_envelope.hits").buildWithCallback {
+            it.record(getMetrics().hits)
+        }
+        meter.counterBuilder("osrd.stdcm.block_envelope.misses").buildWithCallback {
+            it.record(getMetrics().misses)
+        }
+    }
+
+    /** Returns the block envelopes matching the given key, which may be empty */
+    fun get(key: BlockEnvelopeCacheKey): BlockEnvelopeCache {
+        val budgetKey = budgetKey(key)
+        // if the envelopes are evicted in the meantime, they are still returned
+        val cached = caches[key]
+        if (cached != null) {
+            cacheBudget.recordHit(budgetKey)
+            return cached
+        }
+        val cache =
+            BlockEnvelopeCache(cacheBudget.maxBytes) { footprint -> charge(key, this, footprint) }
+        val concurrent = caches.putIfAbsent(key, cache)
+        if (concurrent != null) {
+            cacheBudget.recordHit(budgetKey)
+            return concurrent
+        }
+        // envelopes are added by the requests using them, see charge
+        cacheBudget.recordLoad(budgetKey, 0, Duration.ZERO) { evict(key, cache) }
+        return cache
+    }
+
+    /** Returns the block envelope lookup counters of all the groups */
+    fun getMetrics(): Metrics {
+        var hits = evictedHits.sum()
+        var misses = evictedMisses.sum()
+        for (cache in caches.values) {
+            hits += cache.hitCount
+            misses += cache.missCount
+        }
+        return Metrics(hits, misses)
+    }
+
+    /** Returns true if there are block envelopes for the given key */
+    fun isCached(key: BlockEnvelopeCacheKey): Boolean {
+        return caches.containsKey(key)
+    }
+
+    /**
+     * Charges the new footprint of a group to the cache budget, and returns how many bytes the
+     * group must release, or null if the group was evicted
+     */
+    private fun charge(
+        key: BlockEnvelopeCacheKey,
+        cache: BlockEnvelopeCache,
+        footprint: Long,
+    ): Long? {
+        if (caches[key] !== cache) return null
+        return cacheBudget.updateFootprint(budgetKey(key), footprint)
+    }
+
+    private fun evict(key: BlockEnvelopeCacheKey, cache: BlockEnvelopeCache) {
+        if (!caches.remove(key, cache)) return
+        evictedHits.add(cache.hitCount)
+        evictedMisses.add(cache.missCount)
+    }
+
+    private fun budgetKey(key: BlockEnvelopeCacheKey): CacheBudget.Key {
+        return CacheBudget.Key(BUDGET_CACHE_NAME, key.toString())
+    }
+
+    companion object {
+        /** The name of block envelopes in the cache budget and its metrics */
+        const val BUDGET_CACHE_NAME = "stdcm_block_envelopes"
+    }
+}
@@ -0,0 +1,271 @@
+package fr.sncf.osrd.api
+
+import fr.sncf.osrd.utils.TaskContext
+import io.opentelemetry.api.GlobalOpenTelemetry
+import io.opentelemetry.api.common.AttributeKey
+import io.opentelemetry.api.common.Attributes
+import java.time.Duration
+import kotlin.math.max
+import kotlinx.coroutines.ThreadContextElement
+import kotlinx.coroutines.asContextElement
+import org.slf4j.LoggerFactory
+
+enum class EvictionPolicy {
+    /** Evict the entry which was used the longest time ago */
+    LRU,
+
+    /** Evict the entry which was used the least often, or the longest time ago if tied */
+    LFU,
+}
+
+/**
+ * Keeps the estimated heap footprint of cached entries under a budget, by evicting the least
+ * recently or least frequently used ones. It can be shared by several caches, which are told to
+ * drop an entry through the callback given when the entry is loaded.
+ *
+ * Entries in use by in-flight requests are never evicted: caches acquire the entries they hand out
+ * to a request, see [RequestCacheLeases], and the budget may be exceeded until they are released.
+ */
+class CacheBudget(val maxBytes: Long, val policy: EvictionPolicy = EvictionPolicy.LRU) {
+    data class Key(val cache: String, val id: String)
+
+    private class Entry(var footprint: Long, val evict: Runnable) {
+        var lastUse = 0L
+        var uses = 0L
+        var inUse = 0
+    }
+
+    /** Counters of a cache, since the worker started */
+    data class Metrics(
+        var hits: Long = 0,
+        var misses: Long = 0,
+        var evictions: Long = 0,
+        /** Misses on entries which were evicted before */
+        var reloads: Long = 0,
+        var reloadTime: Duration = Duration.ZERO,
+    )
+
+    private val entries = HashMap<Key, Entry>()
+    private val evictedKeys = HashSet<Key>()
+    private val metrics = HashMap<String, Metrics>()
+    private var usedBytes = 0L
+    private var clock = 0L
+
+    private val meter = GlobalOpenTelemetry.getMeter("fr.sncf.osrd.api.CacheBudget")
+    private val hitCounter = meter.counterBuilder("osrd.cache.hits").build()
+    private val missCounter = meter.counterBuilder("osrd.cache.misses").build()
+    private val evictionCounter = meter.counterBuilder("osrd.cache.evictions").build()
+    private val loadTimeHistogram =
+        meter.histogramBuilder("osrd.cache.load.duration").setUnit("s").build()
+
+    init {
+        meter.gaugeBuilder("osrd.cache.used_bytes").ofLongs().buildWithCallback {
+            it.record(usedBytes())
+        }
+    }
+
+    /** Records a use of a cached entry. Returns false if the entry is not cached anymore. */
+    @Synchronized
+    fun recordHit(key: Key): Boolean {
+        val entry = entries[key] ?: return false
+        metricsOf(key.cache).hits++
+        hitCounter.add(1, attributes(key.cache))
+        use(entry)
+        return true
+    }
+
+    /**
+     * Registers an entry which was just loaded, then evicts other entries if the budget is
+     * exceeded. The new entry is acquired by the current request, if any, and is not evicted before
+     * its next release anyway.
+     */
+    @Synchronized
+    fun recordLoad(key: Key, footprint: Long, loadTime: Duration, evict: Runnable) {
+        val metrics = metricsOf(key.cache)
+        metrics.misses++
+        missCounter.add(1, attributes(key.cache))
+        val isReload = evictedKeys.remove(key)
+        if (isReload) {
+            metrics.reloads++
+            metrics.reloadTime += loadTime
+        }
+        loadTimeHistogram.record(
+            loadTime.toNanos() / 1e9,
+            attributes(key.cache).toBuilder().put(RELOAD_KEY, isReload).build(),
+        )
+
+        entries.remove(key)?.let { usedBytes -= it.footprint }
+        val entry = Entry(footprint, evict)
+        entries[key] = entry
+        usedBytes += footprint
+        use(entry)
+        evictOverBudget(key)
+    }
+
+    /**
+     * Updates the footprint of an entry which was modified in place, then evicts other entries if
+     * the budget is exceeded. Returns how many bytes the entry should release when other entries
+     * are in use, or null if the entry is not cached.
+     */
+    @Synchronized
+    fun updateFootprint(key: Key, footprint: Long): Long? {
+        val entry = entries[key] ?: return null
+        usedBytes += footprint - entry.footprint
+        entry.footprint = footprint
+        evictOverBudget(key, warn = false)
+        return max(0, usedBytes - maxBytes)
+    }
+
+    /** Forgets an entry which was removed from its cache */
+    @Synchronized
+    fun remove(key: Key) {
+        val entry = entries.remove(key) ?: return
+        usedBytes -= entry.footprint
+    }
+
+    @Synchronized
+    fun usedBytes(): Long {
+        return usedBytes
+    }
+
+    /** Returns a copy of the current metrics of a cache */
+    @Synchronized
+    fun getMetrics(cache: String): Metrics {
+        return metricsOf(cache).copy()
+    }
+
+    private fun metricsOf(cache: String): Metrics {
+        return metrics.getOrPut(cache) { Metrics() }
+    }
+
+    @Synchronized
+    fun isCached(key: Key): Boolean {
+        return entries.containsKey(key)
+    }
+
+    private fun use(entry: Entry) {
+        entry.lastUse = ++clock
+        entry.uses++
+        if (!RequestCacheLeases.register { release(entry) }) return
+        entry.inUse++
+    }
+
+    @Synchronized
+    private fun release(entry: Entry) {
+        entry.inUse--
+        if (entry.inUse == 0 && usedBytes > maxBytes) evictOverBudget()
+    }
+
+    private fun evictOverBudget(loadedKey: Key? = null, warn: Boolean = true) {
+        while (usedBytes > maxBytes) {
+            val candidates = entries.entries.filter { it.value.inUse == 0 && it.key != loadedKey }
+            val victim =
+                when (policy) {
+                    EvictionPolicy.LRU -> candidates.minByOrNull { it.value.lastUse }
+                    EvictionPolicy.LFU ->
+                        candidates.minWithOrNull(compareBy({ it.value.uses }, { it.value.lastUse }))
+                }
+            if (victim == null) {
+                if (!warn) return
+                logger.warn(
+                    "cache budget exceeded ({} MB for {} MB), but all entries are in use",
+                    usedBytes / 1_000_000,
+                    maxBytes / 1_000_000,
+                )
+                return
+            }
+            val key = victim.key
+            logger.info(
+                "evicting {} {} ({} MB) from the cache",
+                key.cache,
+                key.id,
+                victim.value.footprint / 1_000_000,
+            )
+            entries.remove(key)
+            usedBytes -= victim.value.footprint
+            evictedKeys.add(key)
+            metricsOf(key.cache).evictions++
+            evictionCounter.add(1, attributes(key.cache))
+            victim.value.evict.run()
+        }
+    }
+
+    private fun attributes(cache: String): Attributes {
+        return Attributes.of(CACHE_KEY, cache)
+    }
+
+    companion object {
+        private val logger = LoggerFactory.getLogger(CacheBudget::class.java)
+        private val CACHE_KEY = AttributeKey.stringKey("cache")
+        private val RELOAD_KEY = AttributeKey.booleanKey("reload")
+    }
+}
+
+/**
+ * The cache entries used by the request handled by the current thread. Entries acquired while the
+ * request runs are released when it's done, so that they are not evicted in the meantime. Outside
+ * of a request, entries are not held.
+ *
+ * The request's leases follow its work on other threads: tasks of [fr.sncf.osrd.utils.parallelMap]
+ * get them through [TaskContext], and coroutines through [asContextElement]. Entries acquired after
+ * the request is done are not held.
+ */
+object RequestCacheLeases : TaskContext {
+    private class Leases {
+        val releases = mutableListOf<() -> Unit>()
+        var done = false
+    }
+
+    private val leases = ThreadLocal<Leases>()
+
+    init {
+        TaskContext.register(this)
+    }
+
+    /** Runs a request, then releases the cache entries it acquired */
+    @JvmStatic
+    fun <T> run(request: () -> T): T {
+        val requestLeases = Leases()
+        try {
+            return withLeases(requestLeases, request)
+        } finally {
+            val releases =
+                synchronized(requestLeases) {
+                    requestLeases.done = true
+                    requestLeases.releases.toList()
+                }
+            for (release in releases) release()
+        }
+    }
+
+    /** Returns a coroutine context element giving the leases of the current thread to coroutines */
+    @JvmStatic
+    fun asContextElement(): ThreadContextElement<*> {
+        return leases.asContextElement()
+    }
+
+    override fun capture(): (task: () -> Unit) -> Unit {
+        val captured = leases.get()
+        return { task -> withLeases(captured, task) }
+    }
+
+    private fun <T> withLeases(requestLeases: Leases?, block: () -> T): T {
+        val outerLeases = leases.get()
+        leases.set(requestLeases)
+        try {
+            return block()
+        } finally {
+            leases.set(outerLeases)
+        }
+    }
+
+    /** Registers the release of an entry, if there is a request running. */
+    internal fun register(release: () -> Unit): Boolean {
+        val requestLeases = leases.get() ?: return false
+        synchronized(requestLeases) {
+            if (requestLeases.done) return false
+            requestLeases.releases.add(release)
+        }
+        return true
+    }
+}
@@ -0,0 +1,99 @@
+package fr.sncf.osrd.api
+
+import fr.sncf.osrd.conflicts.ConflictChanges
+import fr.sncf.osrd.conflicts.ConflictSession
+import fr.sncf.osrd.conflicts.RequirementId
+import fr.sncf.osrd.conflicts.Requirements
+import java.time.Duration
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.ForkJoinPool
+import org.slf4j.LoggerFactory
+
+/**
+ * Keeps a conflict session per timetable, so that requests only send the trains and work schedules
+ * which changed. A session is bound to the infra version it was started on.
+ *
+ * Sessions are evicted when their estimated footprint exceeds the cache budget. Requests on an
+ * evicted session have to start a new one.
+ */
+class ConflictSessionManager(
+    private val cacheBudget: CacheBudget,
+    private val pool: ForkJoinPool? = null,
+) {
+    private class Entry(val infraId: String, val infraVersion: Int, val session: ConflictSession)
+
+    private val sessions = ConcurrentHashMap<TimetableId, Entry>()
+
+    private val logger = LoggerFactory.getLogger(ConflictSessionManager::class.java)
+
+    /**
+     * Applies changes to the session of a timetable, and returns the conflicts which changed. If
+     * `reset` is set, a new session is started from the given requirements. Otherwise, returns null
+     * if there is no session for this timetable and infra version.
+     */
+    fun update(
+        infraId: String,
+        infraVersion: Int,
+        timetableId: TimetableId,
+        reset: Boolean,
+        updated: Collection<Requirements>,
+        deleted: Collection<RequirementId>,
+    ): ConflictChanges? {
+        val startTime = System.nanoTime()
+        val entry: Entry
+        if (reset) {
+            entry = Entry(infraId, infraVersion, ConflictSession(pool))
+            sessions[timetableId] = entry
+        } else {
+            val cached = sessions[timetableId]
+            if (
+                cached == null || cached.infraId != infraId || cached.infraVersion != infraVersion
+            ) {
+                logger.info(
+                    "No conflict session for timetable {} on infra {}",
+                    timetableId,
+                    infraId,
+                )
+                return null
+            }
+            entry = cached
+        }
+
+        synchronized(entry.session) {
+            val changes = entry.session.update(updated, deleted)
+            logger.info(
+                "Conflict session of timetable {}: {} updated and {} deleted, {} new and {} solved conflicts",
+                timetableId,
+                updated.size,
+                deleted.size,
+                changes.addedConflicts.size,
+                changes.removedConflicts.size,
+            )
+            val key = budgetKey(timetableId)
+            val footprint = entry.session.estimateHeapFootprint()
+            if (reset) {
+                val loadTime = Duration.ofNanos(System.nanoTime() - startTime)
+                cacheBudget.recordLoad(key, footprint, loadTime) {
+                    sessions.remove(timetableId, entry)
+                }
+            } else if (cacheBudget.recordHit(key)) {
+                cacheBudget.updateFootprint(key, footprint)
+            }
+            return changes
+        }
+    }
+
+    /** Returns true if there is a session for the given timetable */
+    fun hasSession(timetableId: TimetableId): Boolean {
+        return sessions.containsKey(timetableId)
+    }
+
+    private fun budgetKey(timetableId: TimetableId): CacheBudget.Key {
+        return CacheBudget.Key(BUDGET_CACHE_NAME, timetableId.toString())
+    }
+
+    companion object {
+        /** The name of conflict sessions in the cache budget and its metrics */
+        const val BUDGET_CACHE_NAME = "conflict_session"
+    }
+}
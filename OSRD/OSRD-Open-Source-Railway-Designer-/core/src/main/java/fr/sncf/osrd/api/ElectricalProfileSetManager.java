@@ -7,18 +7,32 @@ import fr.sncf.osrd.railjson.schema.external_generated_inputs.RJSElectricalProfi
 import fr.sncf.osrd.reporting.exceptions.ErrorType;
 import fr.sncf.osrd.reporting.exceptions.OSRDError;
 import java.io.IOException;
+import java.time.Duration;
 import java.util.concurrent.ConcurrentHashMap;
 import okhttp3.OkHttpClient;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-/** Manager that fetches and stores the different electrical profile sets used. */
+/**
+ * Manager that fetches and stores the different electrical profile sets used. If a cache budget is
+ * set, profile sets are evicted when their estimated footprint exceeds it.
+ */
 public class ElectricalProfileSetManager extends APIClient {
+    /** The name of electrical profile sets in the cache budget and its metrics */
+    public static final String BUDGET_CACHE_NAME = "electrical_profile_set";
+
     protected final ConcurrentHashMap<String, CacheEntry> cache = new ConcurrentHashMap<>();
     private static final Logger logger = LoggerFactory.getLogger(ElectricalProfileSetManager.class);
+    private final CacheBudget cacheBudget;
 
     public ElectricalProfileSetManager(String baseUrl, String authorizationToken, OkHttpClient client) {
+        this(baseUrl, authorizationToken, client, null);
+    }
+
+    public ElectricalProfileSetManager(
+            String baseUrl, String authorizationToken, OkHttpClient client, CacheBudget cacheBudget) {
         super(baseUrl, authorizationToken, client);
+        this.cacheBudget = cacheBudget;
     }
 
     /** Get the electrical profile set with the given ID and store it in the cacheEntry. */
@@ -71,20 +85,41 @@ public class ElectricalProfileSetManager extends APIClient {
         var cacheEntry = cache.get(profileSetId);
 
         synchronized (cacheEntry) {
-            if (cacheEntry.status == CacheStatus.CACHED) return cacheEntry.mapping;
-            else if (cacheEntry.status == CacheStatus.ERROR)
+            if (cacheEntry.status == CacheStatus.CACHED) {
+                if (cacheBudget != null) cacheBudget.recordHit(budgetKey(profileSetId));
+                return cacheEntry.mapping;
+            } else if (cacheEntry.status == CacheStatus.ERROR)
                 throw OSRDError.newEPSetLoadingError(ErrorType.EPSetLoadingCacheException, null, profileSetId);
             else {
+                var loadStart = System.nanoTime();
                 downloadSet(cacheEntry, profileSetId);
                 if (cacheEntry.status != CacheStatus.CACHED)
                     // We should have raised exceptions before this point if the status is not
                     // CACHED
                     throw OSRDError.newEPSetLoadingError(ErrorType.EPSetInvalidStatusAfterLoading, null, profileSetId);
+                if (cacheBudget != null)
+                    cacheBudget.recordLoad(
+                            budgetKey(profileSetId),
+                            estimateHeapFootprint(cacheEntry.mapping),
+                            Duration.ofNanos(System.nanoTime() - loadStart),
+                            () -> cache.remove(profileSetId, cacheEntry));
                 return cacheEntry.mapping;
             }
         }
     }
 
+    private static CacheBudget.Key budgetKey(String profileSetId) {
+        return new CacheBudget.Key(BUDGET_CACHE_NAME, profileSetId);
+    }
+
+    /** Estimates the heap used by a profile set, from its number of ranges */
+    private static long estimateHeapFootprint(ElectricalProfileMapping mapping) {
+        long ranges = 0;
+        for (var byTrack : mapping.getMapping().values())
+            for (var trackRanges : byTrack.values()) ranges += trackRanges.asList().size();
+        return ranges * 200;
+    }
+
     @SuppressFBWarnings("UWF_FIELD_NOT_INITIALIZED_IN_CONSTRUCTOR")
     protected static class CacheEntry {
         protected CacheStatus status;
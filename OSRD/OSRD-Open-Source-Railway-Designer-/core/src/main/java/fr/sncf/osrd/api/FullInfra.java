@@ -2,6 +2,7 @@ package fr.sncf.osrd.api;
 
 import static fr.sncf.osrd.RawInfraRJSParserKt.parseRJSInfra;
 
+import fr.sncf.osrd.conflicts.SignalRequirementCache;
 import fr.sncf.osrd.railjson.schema.infra.RJSInfra;
 import fr.sncf.osrd.signaling.SignalingSimulator;
 import fr.sncf.osrd.sim_infra.api.BlockInfra;
@@ -14,10 +15,20 @@ public record FullInfra(
         RawSignalingInfra rawInfra,
         LoadedSignalInfra loadedSignalInfra,
         BlockInfra blockInfra,
-        SignalingSimulator signalingSimulator) {
+        SignalingSimulator signalingSimulator,
+        SignalRequirementCache signalRequirementCache) {
 
     static final Logger logger = LoggerFactory.getLogger(FullInfra.class);
 
+    /** Builds a full infra with an empty signal requirement cache */
+    public FullInfra(
+            RawSignalingInfra rawInfra,
+            LoadedSignalInfra loadedSignalInfra,
+            BlockInfra blockInfra,
+            SignalingSimulator signalingSimulator) {
+        this(rawInfra, loadedSignalInfra, blockInfra, signalingSimulator, new SignalRequirementCache());
+    }
+
     /** Builds a full infra from a railjson infra */
     public static FullInfra fromRJSInfra(RJSInfra rjsInfra, SignalingSimulator signalingSimulator) {
         // Parse railjson into a proper infra
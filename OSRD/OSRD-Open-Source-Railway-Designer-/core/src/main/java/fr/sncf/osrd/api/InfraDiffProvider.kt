@@ -0,0 +1,55 @@
+package fr.sncf.osrd.api
+
+import fr.sncf.osrd.railjson.schema.infra.RJSInfraDiff
+import kotlin.io.path.Path
+import kotlin.io.path.exists
+import okhttp3.OkHttpClient
+import okio.buffer
+import okio.source
+import org.slf4j.LoggerFactory
+
+private val logger = LoggerFactory.getLogger(InfraDiffProvider::class.java)
+
+/** Provides the changes between two versions of an infra, see [InfraManager] */
+interface InfraDiffProvider {
+    /**
+     * Returns the changes from a version of an infra to another, or null if they are unavailable
+     */
+    fun getInfraDiff(infraId: String, fromVersion: Int, toVersion: Int): RJSInfraDiff?
+}
+
+/**
+ * Downloads the diffs of an infra from editoast's `infra/<id>/railjson_diff/` endpoint. Editoast
+ * doesn't provide this endpoint yet, so this provider is only enabled by
+ * `INCREMENTAL_INFRA_RELOAD`, which is off by default. Until then, missing diffs are reported as
+ * unavailable.
+ */
+class InfraDiffDownloader(
+    baseUrl: String,
+    authenticationHeader: String?,
+    httpClient: OkHttpClient,
+) : APIClient(baseUrl, authenticationHeader, httpClient), InfraDiffProvider {
+    override fun getInfraDiff(infraId: String, fromVersion: Int, toVersion: Int): RJSInfraDiff? {
+        val request =
+            buildRequest(
+                "infra/$infraId/railjson_diff/",
+                "from_version=$fromVersion&to_version=$toVersion",
+            )
+        httpClient.newCall(request).execute().use { response ->
+            // the history of the infra may not be available anymore, or the endpoint not exist
+            if (response.code == 404) return null
+            if (!response.isSuccessful) throw UnexpectedHttpResponse(response)
+            return RJSInfraDiff.adapter.fromJson(response.body.source())
+        }
+    }
+}
+
+/** Reads the diffs of an infra from `<infra id>/<from version>-<to version>.json` files */
+class JsonInfraDiffProvider(val diffDirectory: String) : InfraDiffProvider {
+    override fun getInfraDiff(infraId: String, fromVersion: Int, toVersion: Int): RJSInfraDiff? {
+        val filePath = Path(diffDirectory, infraId, "$fromVersion-$toVersion.json")
+        if (!filePath.exists()) return null
+        logger.info("Fetching infra diff at json file $filePath")
+        return filePath.source().buffer().use { RJSInfraDiff.adapter.fromJson(it) }
+    }
+}
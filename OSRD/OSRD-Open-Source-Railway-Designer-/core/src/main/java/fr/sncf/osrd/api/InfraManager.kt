@@ -1,19 +1,56 @@
 package fr.sncf.osrd.api
 
-import fr.sncf.osrd.parseRJSInfra
-import fr.sncf.osrd.railjson.schema.infra.RJSInfra
+import fr.sncf.osrd.RawInfraRJSStreamParser
+import fr.sncf.osrd.conflicts.SignalRequirementCache
+import fr.sncf.osrd.patchRJSInfra
 import fr.sncf.osrd.reporting.exceptions.ErrorType
 import fr.sncf.osrd.reporting.exceptions.OSRDError
+import fr.sncf.osrd.sim_infra.api.BlockInfra
+import fr.sncf.osrd.sim_infra.api.LoadedSignalInfra
+import fr.sncf.osrd.sim_infra.api.RawInfra
+import fr.sncf.osrd.sim_infra.impl.InfraSnapshotHeader
+import fr.sncf.osrd.sim_infra.impl.readInfraSnapshot
+import fr.sncf.osrd.sim_infra.impl.readInfraSnapshotHeader
+import fr.sncf.osrd.sim_infra.impl.writeInfraSnapshot
 import fr.sncf.osrd.utils.jacoco.ExcludeFromGeneratedCodeCoverage
 import java.io.IOException
+import java.nio.file.Files
+import java.nio.file.Path
+import java.time.Duration
+import java.util.EnumMap
 import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.ForkJoinPool
 import java.util.function.BiConsumer
 import okhttp3.OkHttpClient
 import org.slf4j.Logger
 import org.slf4j.LoggerFactory
 
-class InfraManager(baseUrl: String, authorizationToken: String?, httpClient: OkHttpClient) :
-    APIClient(baseUrl, authorizationToken, httpClient), InfraProvider {
+/**
+ * Downloads, builds and caches infras. If a local cache location is set, a snapshot of each built
+ * infra is stored there, which is loaded instead of downloading the infra again after a restart. If
+ * a build pool is set, infras are built in parallel on it, which gives the same infra as a
+ * sequential build. If a cache budget is set, infras are evicted when their estimated footprint
+ * exceeds it.
+ *
+ * If a diff provider is set, a cached infra is updated to a new version by applying the changes
+ * between both versions when possible, instead of building the new version from scratch. Requests
+ * on the previous version are served until the new one replaces it.
+ *
+ * If `prewarmSignalRequirements` is set, the signal states used to generate spacing requirements
+ * are evaluated for the whole infra once it is loaded, see [SignalRequirementCache.prewarm].
+ */
+class InfraManager
+@JvmOverloads
+constructor(
+    baseUrl: String,
+    authorizationToken: String?,
+    httpClient: OkHttpClient,
+    private val localCacheLocation: String? = null,
+    private val buildPool: ForkJoinPool? = null,
+    private val cacheBudget: CacheBudget? = null,
+    private val diffProvider: InfraDiffProvider? = null,
+    private val prewarmSignalRequirements: Boolean = false,
+) : APIClient(baseUrl, authorizationToken, httpClient), InfraProvider {
     private val infraCache = ConcurrentHashMap<String, InfraCacheEntry>()
     private val signalingSimulator = makeSignalingSimulator()
 
@@ -23,6 +60,7 @@ class InfraManager(baseUrl: String, authorizationToken: String?, httpClient: OkH
 
     enum class InfraStatus(val isStable: Boolean) {
         INITIALIZING(false),
+        LOADING_SNAPSHOT(false),
         DOWNLOADING(false),
         PARSING_JSON(false),
         PARSING_INFRA(false),
@@ -36,6 +74,10 @@ class InfraManager(baseUrl: String, authorizationToken: String?, httpClient: OkH
 
         private var transitions = arrayOf<InfraStatus>()
 
+        /** Whether the infra is being loaded, see [InfraCacheEntry.stageDurations] */
+        val isLoadingStage
+            get() = !isStable && this != INITIALIZING && this != TRANSIENT_ERROR
+
         fun canTransitionTo(newStatus: InfraStatus): Boolean {
             for (status in transitions) if (status == newStatus) return true
             return false
@@ -43,7 +85,9 @@ class InfraManager(baseUrl: String, authorizationToken: String?, httpClient: OkH
 
         companion object {
             init {
-                INITIALIZING.transitions = arrayOf<InfraStatus>(DOWNLOADING)
+                INITIALIZING.transitions = arrayOf<InfraStatus>(LOADING_SNAPSHOT, DOWNLOADING)
+                // if the snapshot is unusable, the infra is downloaded instead
+                LOADING_SNAPSHOT.transitions = arrayOf<InfraStatus>(CACHED, DOWNLOADING)
                 DOWNLOADING.transitions = arrayOf<InfraStatus>(PARSING_JSON, ERROR, TRANSIENT_ERROR)
                 PARSING_JSON.transitions =
                     arrayOf<InfraStatus>(PARSING_INFRA, ERROR, TRANSIENT_ERROR)
@@ -62,17 +106,45 @@ class InfraManager(baseUrl: String, authorizationToken: String?, httpClient: OkH
         }
     }
 
+    /** A built infra and its version, which are replaced together when the infra is updated */
+    class CachedInfra(val infra: FullInfra, val version: Int)
+
     class InfraCacheEntry {
         var status: InfraStatus = InfraStatus.INITIALIZING
         var lastStatus: InfraStatus? = null
         var lastError: Throwable? = null
-        var infra: FullInfra? = null
+
+        /** The infra served to requests, which read it without holding the entry lock */
+        @Volatile var cached: CachedInfra? = null
+        val infra: FullInfra?
+            get() = cached?.infra
+
+        /** The version being loaded, or the version of the cached infra */
         var version: Int? = null
 
+        /** The time spent in each status since the last download, or snapshot loading */
+        val stageDurations: MutableMap<InfraStatus, Duration> = EnumMap(InfraStatus::class.java)
+        private var statusStart = System.nanoTime()
+
         fun transitionTo(newStatus: InfraStatus, error: Throwable? = null) {
             assert(status.canTransitionTo(newStatus)) {
                 String.format("cannot switch from %s to %s", status, newStatus)
             }
+            val now = System.nanoTime()
+            if (!status.isLoadingStage) {
+                stageDurations.clear()
+            } else {
+                val duration = Duration.ofNanos(now - statusStart)
+                stageDurations[status] = duration
+                logger.info("{} took {} ms", status, duration.toMillis())
+            }
+            if (newStatus == InfraStatus.CACHED)
+                logger.info(
+                    "infra cached in {} ms ({})",
+                    stageDurations.values.sumOf { it.toMillis() },
+                    stageDurations.entries.joinToString { "${it.key}: ${it.value.toMillis()} ms" },
+                )
+            this.statusStart = now
             this.lastStatus = this.status
             this.lastError = error
             this.status = newStatus
@@ -90,7 +162,7 @@ class InfraManager(baseUrl: String, authorizationToken: String?, httpClient: OkH
             logger.info("starting to download {}", request.url)
             cacheEntry.transitionTo(InfraStatus.DOWNLOADING)
 
-            val rjsInfra: RJSInfra
+            val rjsParser = RawInfraRJSStreamParser(buildPool)
             val version: Int
             httpClient.newCall(request).execute().use { response ->
                 if (!response.isSuccessful) {
@@ -104,7 +176,7 @@ class InfraManager(baseUrl: String, authorizationToken: String?, httpClient: OkH
                         )
                     }
                 }
-                // Parse the response
+                // Parse the response while it is being downloaded
                 logger.info("parsing the JSON of {}", request.url)
                 cacheEntry.transitionTo(InfraStatus.PARSING_JSON)
                 val versionHeader =
@@ -114,26 +186,27 @@ class InfraManager(baseUrl: String, authorizationToken: String?, httpClient: OkH
                 version = versionHeader.toInt()
                 cacheEntry.version = version
                 checkNotNull(response.body) { "missing body in railjson response" }
-                rjsInfra = RJSInfra.adapter.fromJson(response.body.source())!!
+                rjsParser.read(response.body.source())
             }
 
-            // Parse railjson into a proper infra
+            // Parse the records which could not be parsed while streaming, and build the infra
             logger.info("parsing the infra of {}", request.url)
             cacheEntry.transitionTo(InfraStatus.PARSING_INFRA)
-            val rawInfra = parseRJSInfra(rjsInfra)
+            val rawInfra = rjsParser.build()
             logger.info("loading signals of {}", request.url)
             cacheEntry.transitionTo(InfraStatus.LOADING_SIGNALS)
-            val loadedSignalInfra = signalingSimulator.loadSignals(rawInfra)
+            val loadedSignalInfra = signalingSimulator.loadSignals(rawInfra, buildPool)
             logger.info("building blocks of {}", request.url)
             cacheEntry.transitionTo(InfraStatus.BUILDING_BLOCKS)
-            val blockInfra = signalingSimulator.buildBlocks(rawInfra, loadedSignalInfra)
+            val blockInfra = signalingSimulator.buildBlocks(rawInfra, loadedSignalInfra, buildPool)
 
             // Cache the infra
             logger.info("successfully cached {}", request.url)
-            cacheEntry.infra =
-                FullInfra(rawInfra, loadedSignalInfra, blockInfra, signalingSimulator)
+            val infra = FullInfra(rawInfra, loadedSignalInfra, blockInfra, signalingSimulator)
+            cacheEntry.cached = CachedInfra(infra, version)
             cacheEntry.transitionTo(InfraStatus.CACHED)
-            return cacheEntry.infra!!
+            writeSnapshot(infraId, version, rawInfra, loadedSignalInfra, blockInfra)
+            return infra
         } catch (e: IOException) {
             cacheEntry.transitionTo(InfraStatus.TRANSIENT_ERROR, e)
             // TODO: retry with an exponential backoff and jitter (use a concurrent Thread.sleep)
@@ -166,6 +239,139 @@ class InfraManager(baseUrl: String, authorizationToken: String?, httpClient: OkH
         }
     }
 
+    private fun snapshotPath(infraId: String): Path? {
+        if (localCacheLocation == null) return null
+        // infra ids are checked against the snapshot header, collisions only cause cache misses
+        return Path.of(localCacheLocation, infraId.replace(Regex("[^\\w.-]"), "_") + ".snapshot")
+    }
+
+    /**
+     * Load the infra from its local snapshot, if there is one for the expected version (or for any
+     * version if none is expected). Returns null if the infra has to be downloaded instead.
+     */
+    private fun loadSnapshot(
+        cacheEntry: InfraCacheEntry,
+        infraId: String,
+        expectedVersion: Int?,
+    ): FullInfra? {
+        val path = snapshotPath(infraId) ?: return null
+        if (!Files.exists(path)) return null
+        try {
+            val header = readInfraSnapshotHeader(path)
+            if (
+                header == null ||
+                    header.infraId != infraId ||
+                    (expectedVersion != null && expectedVersion != header.infraVersion)
+            ) {
+                logger.info("ignoring outdated infra snapshot {}", path)
+                return null
+            }
+            logger.info("loading infra {} from snapshot {}", infraId, path)
+            cacheEntry.transitionTo(InfraStatus.LOADING_SNAPSHOT)
+            val snapshot = readInfraSnapshot(path, signalingSimulator.sigModuleManager)!!
+            val infra =
+                FullInfra(
+                    snapshot.rawInfra,
+                    snapshot.loadedSignalInfra,
+                    snapshot.blockInfra,
+                    signalingSimulator,
+                )
+            cacheEntry.cached = CachedInfra(infra, header.infraVersion)
+            cacheEntry.version = header.infraVersion
+            logger.info("successfully loaded infra {} from snapshot", infraId)
+            cacheEntry.transitionTo(InfraStatus.CACHED)
+            return infra
+        } catch (e: Exception) {
+            logger.warn("failed to load infra snapshot {}, downloading the infra instead", path, e)
+            return null
+        }
+    }
+
+    /**
+     * Update the cached infra to a new version by applying the changes between both versions, if
+     * they are available and only update signals. The cached infra keeps being served until the
+     * updated one replaces it. Returns null if the new version has to be downloaded instead.
+     */
+    private fun updateInfra(
+        cacheEntry: InfraCacheEntry,
+        infraId: String,
+        version: Int,
+    ): FullInfra? {
+        val provider = diffProvider ?: return null
+        val cached = cacheEntry.cached ?: return null
+        try {
+            val diff = provider.getInfraDiff(infraId, cached.version, version)
+            if (diff == null || diff.fromVersion != cached.version || diff.toVersion != version) {
+                logger.info("no diff of infra {} from version {}", infraId, cached.version)
+                return null
+            }
+            val patch = patchRJSInfra(cached.infra.rawInfra, diff)
+            if (patch == null) {
+                logger.info("the diff of infra {} can't be applied, downloading it", infraId)
+                return null
+            }
+            val oldInfra = cached.infra
+            val loadedSignalInfra =
+                signalingSimulator.reloadSignals(
+                    patch.rawInfra,
+                    oldInfra.loadedSignalInfra,
+                    patch.updatedSignals,
+                )
+            val blockInfra =
+                signalingSimulator.updateBlocks(
+                    patch.rawInfra,
+                    oldInfra.loadedSignalInfra,
+                    loadedSignalInfra,
+                    oldInfra.blockInfra,
+                    patch.updatedSignals,
+                    buildPool,
+                )
+            val infra = FullInfra(patch.rawInfra, loadedSignalInfra, blockInfra, signalingSimulator)
+            // swap the infra, then let requests on the new version through
+            cacheEntry.cached = CachedInfra(infra, version)
+            cacheEntry.version = version
+            logger.info(
+                "updated infra {} from version {} to {} ({} logical signals changed)",
+                infraId,
+                cached.version,
+                version,
+                patch.updatedSignals.size,
+            )
+            writeSnapshot(infraId, version, patch.rawInfra, loadedSignalInfra, blockInfra)
+            return infra
+        } catch (e: Exception) {
+            logger.warn("failed to update infra {}, downloading it instead", infraId, e)
+            return null
+        }
+    }
+
+    /**
+     * Store a snapshot of a freshly built infra. Failing to do so doesn't fail loading the infra
+     */
+    private fun writeSnapshot(
+        infraId: String,
+        version: Int,
+        rawInfra: RawInfra,
+        loadedSignalInfra: LoadedSignalInfra,
+        blockInfra: BlockInfra,
+    ) {
+        val path = snapshotPath(infraId) ?: return
+        try {
+            logger.info("writing snapshot of infra {} to {}", infraId, path)
+            Files.createDirectories(path.parent)
+            writeInfraSnapshot(
+                path,
+                InfraSnapshotHeader(infraId, version),
+                rawInfra,
+                loadedSignalInfra,
+                blockInfra,
+                signalingSimulator.sigModuleManager,
+            )
+        } catch (e: Exception) {
+            logger.warn("failed to write infra snapshot {}", path, e)
+        }
+    }
+
     /** Load an infra given an id. Cache infra for optimized future call */
     @ExcludeFromGeneratedCodeCoverage
     @Throws(OSRDError::class, InterruptedException::class)
@@ -182,11 +388,23 @@ class InfraManager(baseUrl: String, authorizationToken: String?, httpClient: OkH
                 val obsoleteVersion =
                     expectedVersion != null &&
                         (cacheEntry.version == null || expectedVersion > cacheEntry.version!!)
-                if (!cacheEntry.status.isStable || obsoleteVersion)
-                    return downloadInfra(cacheEntry, infraId)
+                if (!cacheEntry.status.isStable || obsoleteVersion) {
+                    if (cacheEntry.status == InfraStatus.INITIALIZING) {
+                        val infra = loadSnapshot(cacheEntry, infraId, expectedVersion)
+                        if (infra != null) return recordLoad(infraId, cacheEntry, infra)
+                    }
+                    if (cacheEntry.status == InfraStatus.CACHED) {
+                        val start = System.nanoTime()
+                        val infra = updateInfra(cacheEntry, infraId, expectedVersion!!)
+                        val updateTime = Duration.ofNanos(System.nanoTime() - start)
+                        if (infra != null) return recordLoad(infraId, cacheEntry, infra, updateTime)
+                    }
+                    return recordLoad(infraId, cacheEntry, downloadInfra(cacheEntry, infraId))
+                }
 
                 // otherwise, wait for the infra to reach a stable state
-                if (cacheEntry.status == InfraStatus.CACHED) return cacheEntry.infra!!
+                if (cacheEntry.status == InfraStatus.CACHED)
+                    return recordHit(infraId, cacheEntry.infra!!)
                 if (cacheEntry.status == InfraStatus.ERROR)
                     throw OSRDError.newInfraLoadingError(
                         ErrorType.InfraLoadingCacheException,
@@ -205,23 +423,78 @@ class InfraManager(baseUrl: String, authorizationToken: String?, httpClient: OkH
     }
 
     fun deleteFromInfraCache(infraId: String): InfraCacheEntry? {
+        cacheBudget?.remove(budgetKey(infraId))
         return infraCache.remove(infraId)
     }
 
+    /**
+     * Registers a freshly loaded infra in the cache budget, which may evict other infras. Its
+     * signal requirement cache is prewarmed first, if enabled.
+     */
+    private fun recordLoad(
+        infraId: String,
+        cacheEntry: InfraCacheEntry,
+        infra: FullInfra,
+        loadTime: Duration = cacheEntry.stageDurations.values.fold(Duration.ZERO, Duration::plus),
+    ): FullInfra {
+        if (prewarmSignalRequirements) prewarmSignalRequirements(infraId, infra)
+        val budget = cacheBudget ?: return infra
+        budget.recordLoad(budgetKey(infraId), estimateHeapFootprint(infra), loadTime) {
+            infraCache.remove(infraId, cacheEntry)
+        }
+        return infra
+    }
+
+    private fun prewarmSignalRequirements(infraId: String, infra: FullInfra) {
+        val start = System.nanoTime()
+        val cache = infra.signalRequirementCache
+        cache.prewarm(
+            infra.rawInfra,
+            infra.loadedSignalInfra,
+            infra.blockInfra,
+            infra.signalingSimulator,
+            buildPool,
+        )
+        logger.info(
+            "prewarmed {} signal states of infra {} in {} ms",
+            cache.size,
+            infraId,
+            Duration.ofNanos(System.nanoTime() - start).toMillis(),
+        )
+    }
+
+    private fun recordHit(infraId: String, infra: FullInfra): FullInfra {
+        // if the infra was evicted in the meantime, it is still returned, and freed once unused
+        cacheBudget?.recordHit(budgetKey(infraId))
+        return infra
+    }
+
+    private fun budgetKey(infraId: String): CacheBudget.Key {
+        return CacheBudget.Key(BUDGET_CACHE_NAME, infraId)
+    }
+
     @Throws(OSRDError::class, InterruptedException::class)
     override fun getInfra(infraId: String, expectedVersion: Int?): FullInfra {
         try {
             val cacheEntry = infraCache.get(infraId)
+            // the cached version is served while a newer one is being loaded
+            val cached = cacheEntry?.cached
+            if (cached != null && expectedVersion == cached.version)
+                return recordHit(infraId, cached.infra)
             if (cacheEntry == null || !cacheEntry.status.isStable) {
                 // download the infra
                 return load(infraId, expectedVersion)
             }
             val obsoleteVersion = expectedVersion != null && expectedVersion != cacheEntry.version
             if (obsoleteVersion) {
+                // update the infra to the expected version
+                if (diffProvider != null && cached != null && expectedVersion!! > cached.version)
+                    return load(infraId, expectedVersion)
                 deleteFromInfraCache(infraId)
                 throw OSRDError(ErrorType.InfraInvalidVersionException)
             }
-            if (cacheEntry.status == InfraStatus.CACHED) return cacheEntry.infra!!
+            if (cacheEntry.status == InfraStatus.CACHED)
+                return recordHit(infraId, cacheEntry.infra!!)
             throw OSRDError.newInfraLoadingError(
                 ErrorType.InfraLoadingInvalidStatusException,
                 cacheEntry.status,
@@ -236,5 +509,26 @@ class InfraManager(baseUrl: String, authorizationToken: String?, httpClient: OkH
 
     companion object {
         val logger: Logger = LoggerFactory.getLogger(InfraManager::class.java)
+
+        /** The name of infras in the cache budget and its metrics */
+        const val BUDGET_CACHE_NAME = "infra"
     }
 }
+
+/**
+ * Estimates the heap used by an infra. Track chunks take about 6kB each with their geometry and
+ * range maps, other objects about 400B, as measured on infras generated from small_infra.
+ */
+fun estimateHeapFootprint(infra: FullInfra): Long {
+    val rawInfra = infra.rawInfra
+    var trackChunks = 0L
+    for (trackSection in rawInfra.trackSections) trackChunks +=
+        rawInfra.getTrackSectionChunks(trackSection).size
+    val otherObjects =
+        rawInfra.detectors.size.toLong() +
+            rawInfra.zonePaths.size.toLong() +
+            rawInfra.routes.size.toLong() +
+            rawInfra.logicalSignals.size.toLong() +
+            infra.blockInfra.blocks.size.toLong()
+    return trackChunks * 6_000 + otherObjects * 400
+}
@@ -1,13 +1,12 @@
 package fr.sncf.osrd.api
 
-import com.google.common.collect.ImmutableRangeSet
-import com.google.common.collect.Range
-import com.google.common.collect.RangeSet
+import fr.sncf.osrd.conflicts.SpacingRequirementIndex
 import fr.sncf.osrd.sim_infra.api.RawInfra
 import fr.sncf.osrd.sim_infra.api.ZoneId
 import io.opentelemetry.api.trace.SpanKind
 import io.opentelemetry.instrumentation.annotations.WithSpan
 import java.nio.file.Files
+import java.time.Duration
 import java.util.concurrent.ConcurrentHashMap
 import kotlin.io.path.Path
 import kotlin.io.path.exists
@@ -18,60 +17,78 @@ import kotlinx.coroutines.sync.Mutex
 import kotlinx.coroutines.sync.withLock
 import kotlinx.serialization.ExperimentalSerializationApi
 import kotlinx.serialization.Serializable
+import kotlinx.serialization.SerializationException
+import kotlinx.serialization.Transient
 import kotlinx.serialization.cbor.Cbor
 import org.slf4j.LoggerFactory
 
 typealias TimetableId = Int
 
-@JvmInline
-value class STDCMRequirements(val map: Map<ZoneId, RangeSet<Double>>) :
-    Map<ZoneId, RangeSet<Double>> by map {
+/** Spacing requirements of the trains of a timetable, relative to EPOCH */
+typealias STDCMRequirements = SpacingRequirementIndex
 
-    fun toSerializable(): SerializableMap {
-        return SerializableMap(
-            map.entries.associate { (key, value) ->
-                key.index to value.asRanges().map { SerializableRange.fromRange(it) }
-            }
-        )
-    }
+/**
+ * A version of a timetable. The requirements of each train are kept along with their union, so that
+ * the timetable can be updated when some trains change. Cached timetables are never modified,
+ * requests using one are unaffected by updates.
+ */
+@Serializable
+class CachedTimetable(
+    /** The version of the timetable, if known */
+    val version: Int?,
+    val trains: Map<String, TrainSpacingRequirements>,
+) {
+    @Transient val requirements: STDCMRequirements = buildRequirements(trains.values)
 
-    @Serializable
-    data class SerializableMap(val map: Map<UInt, List<SerializableRange>>) {
-        fun toSTDCMRequirements(): STDCMRequirements {
-            val converted =
-                map.entries.associate { (key, value) ->
-                    ZoneId(key) to SerializableRange.rangesToRangeSet(value)
-                }
-            return STDCMRequirements(converted)
-        }
+    /** Returns the given version of the timetable, from the trains which changed since this one */
+    fun applyDelta(delta: TimetableDelta, version: Int?): CachedTimetable {
+        val newTrains = HashMap(trains)
+        for (trainId in delta.deleted) newTrains.remove(trainId)
+        newTrains.putAll(delta.updated)
+        return CachedTimetable(version, newTrains)
     }
 
-    @Serializable
-    data class SerializableRange(val from: Double, val to: Double) {
-        companion object {
-            fun fromRange(range: Range<Double>): SerializableRange {
-                return SerializableRange(range.lowerEndpoint(), range.upperEndpoint())
-            }
+    /**
+     * Estimates the heap used by the timetable: 20B per spacing requirement of each train, 16B per
+     * merged requirement, and about 200B per train for its id and arrays
+     */
+    fun estimateHeapFootprint(): Long {
+        var trainRequirements = 0L
+        for (train in trains.values) trainRequirements += train.zones.size
+        return trainRequirements * 20 +
+            requirements.size * 16L +
+            requirements.zoneCount * 4L +
+            trains.size * 200L
+    }
+}
 
-            fun rangesToRangeSet(ranges: List<SerializableRange>): RangeSet<Double> {
-                val builder = ImmutableRangeSet.Builder<Double>()
-                for (range in ranges) builder.add(Range.closed(range.from, range.to))
-                return builder.build()
-            }
-        }
+private fun buildRequirements(trains: Collection<TrainSpacingRequirements>): STDCMRequirements {
+    val builder = SpacingRequirementIndex.Builder()
+    for (train in trains) {
+        for (i in train.zones.indices) builder.add(
+            ZoneId(train.zones[i].toUInt()),
+            train.beginTimes[i],
+            train.endTimes[i],
+        )
     }
+    return builder.build()
 }
 
 /**
  * Caches train spacing requirements for STDCM. The spacing requirements times are relative to
  * EPOCH.
+ *
+ * When a request expects a newer version of a cached timetable, only the trains which changed are
+ * fetched if the provider has them. Timetables are evicted when their estimated footprint exceeds
+ * the cache budget.
  */
 class TimetableCacheManager(
     val timetableProvider: TimetableProvider,
+    private val cacheBudget: CacheBudget,
     val localCacheLocation: String? = null,
     val disableAllCaching: Boolean = false,
 ) {
-    private val cache = ConcurrentHashMap<TimetableId, STDCMRequirements>()
+    private val cache = ConcurrentHashMap<TimetableId, CachedTimetable>()
     private val mutexes = ConcurrentHashMap<TimetableId, Mutex>()
 
     private val fetchDispatcher = Dispatchers.IO
@@ -80,64 +97,152 @@ class TimetableCacheManager(
 
     /**
      * Returns the parsed requirements for a timetable, fetching it from editoast if not already
-     * cached.
+     * cached. If a version is given, older cached versions are updated. The entry is held by the
+     * request of the coroutine, see [RequestCacheLeases.asContextElement].
      */
     @WithSpan(value = "Accessing timetable content", kind = SpanKind.SERVER)
-    suspend fun get(infraId: String, infra: RawInfra, timetableId: TimetableId): STDCMRequirements =
-        coroutineScope {
-            if (disableAllCaching) {
-                logger.info("Cache disabled")
-                return@coroutineScope withContext(fetchDispatcher) {
-                    return@withContext fetchTimetableRequirements(infraId, infra, timetableId)
-                }
+    suspend fun get(
+        infraId: String,
+        infra: RawInfra,
+        timetableId: TimetableId,
+        version: Int? = null,
+    ): STDCMRequirements = coroutineScope {
+        if (disableAllCaching) {
+            logger.info("Cache disabled")
+            return@coroutineScope withContext(fetchDispatcher) {
+                return@withContext fetchTimetable(infraId, infra, timetableId, version).requirements
             }
-            logger.info("Start computing timetable requirements")
-            cache[timetableId]?.let {
+        }
+        logger.info("Start computing timetable requirements")
+        cache[timetableId]?.let {
+            if (isUpToDate(it, version)) {
                 logger.info("Timetable cache hit for ID $timetableId")
-                return@coroutineScope it
+                return@coroutineScope recordHit(timetableId, it)
             }
+        }
 
-            val mutex = mutexes.computeIfAbsent(timetableId) { Mutex() }
-            mutex.withLock {
-                try {
-                    cache[timetableId]?.let {
-                        return@coroutineScope it
+        val mutex = mutexes.computeIfAbsent(timetableId) { Mutex() }
+        mutex.withLock {
+            try {
+                val cached = cache[timetableId]
+                if (cached != null && isUpToDate(cached, version))
+                    return@coroutineScope recordHit(timetableId, cached)
+                val startTime = System.nanoTime()
+                val timetable =
+                    withContext(fetchDispatcher) {
+                        cached?.let { updateTimetable(infraId, infra, timetableId, it, version) }
+                            ?: fetchTimetable(infraId, infra, timetableId, version)
                     }
-                    val requirements =
-                        withContext(fetchDispatcher) {
-                            fetchTimetableRequirements(infraId, infra, timetableId)
-                        }
-                    cache[timetableId] = requirements
-                    logger.info("End of computing of timetable requirements")
-                    return@coroutineScope requirements
-                } finally {
-                    mutexes.remove(timetableId)
-                }
+                cache[timetableId] = timetable
+                recordLoad(timetableId, timetable, Duration.ofNanos(System.nanoTime() - startTime))
+                logger.info("End of computing of timetable requirements")
+                return@coroutineScope timetable.requirements
+            } finally {
+                mutexes.remove(timetableId)
             }
         }
+    }
 
     /** Load given timetable ID. */
     @WithSpan(value = "Preloading timetable content", kind = SpanKind.SERVER)
-    fun load(infraId: String, infra: RawInfra, timetableId: TimetableId) {
-        if (!disableAllCaching) runBlocking { get(infraId, infra, timetableId) }
+    fun load(infraId: String, infra: RawInfra, timetableId: TimetableId, version: Int?) {
+        if (!disableAllCaching)
+            runBlocking(RequestCacheLeases.asContextElement()) {
+                get(infraId, infra, timetableId, version)
+            }
+    }
+
+    /** Returns the cached timetable, if any */
+    fun getCachedTimetable(timetableId: TimetableId): CachedTimetable? {
+        return cache[timetableId]
+    }
+
+    /** Returns true if the cached timetable can be used for a request on the given version */
+    private fun isUpToDate(cached: CachedTimetable, version: Int?): Boolean {
+        if (version == null) return true
+        // a request on an older version is served the cached one, which is more accurate
+        return cached.version != null && cached.version >= version
+    }
+
+    /**
+     * Builds a newer version of a cached timetable from the trains which changed. Returns null if
+     * the changes are not available.
+     */
+    @WithSpan(value = "Updating timetable content", kind = SpanKind.SERVER)
+    private fun updateTimetable(
+        infraId: String,
+        infra: RawInfra,
+        timetableId: TimetableId,
+        cached: CachedTimetable,
+        version: Int?,
+    ): CachedTimetable? {
+        val fromVersion = cached.version ?: return null
+        val toVersion = version ?: return null
+        val delta =
+            timetableProvider.getTimetableDelta(infraId, infra, timetableId, fromVersion, toVersion)
+        if (delta == null) {
+            logger.info("Changes of timetable $timetableId since $fromVersion are unavailable")
+            return null
+        }
+        logger.info(
+            "Updating timetable {} from version {} to {}: {} updated and {} deleted trains",
+            timetableId,
+            fromVersion,
+            toVersion,
+            delta.updated.size,
+            delta.deleted.size,
+        )
+        return cached.applyDelta(delta, version)
     }
 
     @WithSpan(value = "Fetching timetable content", kind = SpanKind.SERVER)
-    private fun fetchTimetableRequirements(
+    private fun fetchTimetable(
         infraId: String,
         infra: RawInfra,
         timetableId: TimetableId,
-    ): STDCMRequirements {
+        version: Int?,
+    ): CachedTimetable {
         logger.info("Fetching timetable requirements for $timetableId")
 
-        val cacheFile = if (disableAllCaching) null else "$timetableId.cbor"
-        val requirements =
+        // the version is part of the file name, so that files of older versions aren't used
+        val cacheFile =
+            if (disableAllCaching) null
+            else if (version == null) "$timetableId.cbor" else "$timetableId-$version.cbor"
+        val timetable =
             withLocalCache(localCacheLocation, cacheFile) {
-                timetableProvider.getTimetableRequirements(infraId, infra, timetableId)
+                CachedTimetable(
+                    version,
+                    timetableProvider.getTimetableRequirements(infraId, infra, timetableId),
+                )
             }
 
         logger.info("Saved timetable requirements for $timetableId")
-        return requirements
+        return timetable
+    }
+
+    /** Registers a freshly loaded timetable in the cache budget, which may evict other entries */
+    private fun recordLoad(
+        timetableId: TimetableId,
+        timetable: CachedTimetable,
+        loadTime: Duration,
+    ) {
+        cacheBudget.recordLoad(
+            budgetKey(timetableId),
+            timetable.estimateHeapFootprint(),
+            loadTime,
+        ) {
+            cache.remove(timetableId, timetable)
+        }
+    }
+
+    private fun recordHit(timetableId: TimetableId, timetable: CachedTimetable): STDCMRequirements {
+        // if the timetable was evicted in the meantime, it is still returned, and freed once unused
+        cacheBudget.recordHit(budgetKey(timetableId))
+        return timetable.requirements
+    }
+
+    private fun budgetKey(timetableId: TimetableId): CacheBudget.Key {
+        return CacheBudget.Key(BUDGET_CACHE_NAME, timetableId.toString())
     }
 
     /**
@@ -148,27 +253,33 @@ class TimetableCacheManager(
     private fun withLocalCache(
         cacheFolder: String?,
         filename: String?,
-        generateData: () -> STDCMRequirements,
-    ): STDCMRequirements {
+        generateData: () -> CachedTimetable,
+    ): CachedTimetable {
         if (cacheFolder == null || filename == null) return generateData()
         val folder = Path(cacheFolder)
         Files.createDirectories(folder)
         val file = folder.resolve(filename)
         val cbor = Cbor {}
-        val serializer = STDCMRequirements.SerializableMap.serializer()
+        val serializer = CachedTimetable.serializer()
 
         if (file.exists()) {
-            val bytes = file.readBytes()
-            val serializableMap = cbor.decodeFromByteArray(serializer, bytes)
-            logger.info("local timetable file cache hit at $file")
-            return serializableMap.toSTDCMRequirements()
-        } else {
-            val map = generateData.invoke()
-            logger.info("writing timetable to local file cache at $file")
-            val serializableMap = map.toSerializable()
-            val bytes = cbor.encodeToByteArray(serializer, serializableMap)
-            file.writeBytes(bytes)
-            return map
+            try {
+                val timetable = cbor.decodeFromByteArray(serializer, file.readBytes())
+                logger.info("local timetable file cache hit at $file")
+                return timetable
+            } catch (e: SerializationException) {
+                // files written by older versions of core have another format
+                logger.warn("ignoring unreadable local timetable cache at $file: $e")
+            }
         }
+        val timetable = generateData.invoke()
+        logger.info("writing timetable to local file cache at $file")
+        file.writeBytes(cbor.encodeToByteArray(serializer, timetable))
+        return timetable
+    }
+
+    companion object {
+        /** The name of timetables in the cache budget and its metrics */
+        const val BUDGET_CACHE_NAME = "timetable"
     }
 }
@@ -1,14 +1,12 @@
 package fr.sncf.osrd.api
 
-import com.google.common.collect.Range
-import com.google.common.collect.RangeSet
-import com.google.common.collect.TreeRangeSet
 import com.squareup.moshi.Json
 import com.squareup.moshi.JsonAdapter
 import com.squareup.moshi.JsonReader
 import com.squareup.moshi.Moshi
 import com.squareup.moshi.kotlin.reflect.KotlinJsonAdapterFactory
 import fr.sncf.osrd.api.conflicts.TrainRequirementsById
+import fr.sncf.osrd.api.conflicts.TrainRequirementsRequest
 import fr.sncf.osrd.conflicts.SpacingRequirement
 import fr.sncf.osrd.sim_infra.api.RawInfra
 import fr.sncf.osrd.sim_infra.api.ZoneId
@@ -17,6 +15,7 @@ import java.time.Duration
 import java.time.Instant
 import java.time.ZonedDateTime
 import kotlin.io.path.Path
+import kotlin.io.path.exists
 import kotlin.math.pow
 import kotlinx.coroutines.Dispatchers
 import kotlinx.coroutines.ExperimentalCoroutinesApi
@@ -27,6 +26,7 @@ import kotlinx.coroutines.flow.flatMapMerge
 import kotlinx.coroutines.flow.flow
 import kotlinx.coroutines.flow.flowOn
 import kotlinx.coroutines.runBlocking
+import kotlinx.serialization.Serializable
 import okhttp3.OkHttpClient
 import okhttp3.Request
 import okhttp3.Response
@@ -41,18 +41,87 @@ private const val N_RETRIES = 5
 private val logger = LoggerFactory.getLogger(TimetableProvider::class.java)
 
 interface TimetableProvider {
+    /** Returns the spacing requirements of each train of the timetable, by train id */
     fun getTimetableRequirements(
         infraId: String,
         infra: RawInfra,
         timetableId: TimetableId,
-    ): STDCMRequirements
+    ): Map<String, TrainSpacingRequirements>
+
+    /**
+     * Returns the trains which changed from a version of the timetable to another, or null if the
+     * changes are unavailable, in which case the whole timetable has to be fetched again
+     */
+    fun getTimetableDelta(
+        infraId: String,
+        infra: RawInfra,
+        timetableId: TimetableId,
+        fromVersion: Int,
+        toVersion: Int,
+    ): TimetableDelta? {
+        return null
+    }
+}
+
+/** Spacing requirements of a train, relative to EPOCH */
+@Serializable
+class TrainSpacingRequirements(
+    val zones: IntArray,
+    val beginTimes: DoubleArray,
+    val endTimes: DoubleArray,
+) {
+    companion object {
+        fun fromRJS(train: TrainRequirementsRequest, infra: RawInfra): TrainSpacingRequirements {
+            val startTime = train.startTime.durationSinceEpoch()
+            val size = train.spacingRequirements.size
+            val res = TrainSpacingRequirements(IntArray(size), DoubleArray(size), DoubleArray(size))
+            for ((i, rjsRequirement) in train.spacingRequirements.withIndex()) {
+                val requirement =
+                    SpacingRequirement.fromRJSWithAddedTime(rjsRequirement, infra, startTime)
+                res.zones[i] = requirement.zone.index.toInt()
+                res.beginTimes[i] = requirement.beginTime
+                res.endTimes[i] = requirement.endTime
+            }
+            return res
+        }
+    }
+}
+
+/** Trains added, replaced or deleted between two versions of a timetable */
+class TimetableDelta(
+    /** Trains which were added or replaced */
+    val updated: Map<String, TrainSpacingRequirements>,
+    val deleted: Collection<String>,
+)
+
+/** The changes between two versions of a timetable, as sent by editoast */
+private class RJSTimetableDelta(
+    val updated: List<TrainRequirementsById>,
+    val deleted: List<String>,
+) {
+    fun parse(infra: RawInfra): TimetableDelta {
+        return TimetableDelta(
+            updated.associate { it.trainId to TrainSpacingRequirements.fromRJS(it, infra) },
+            deleted,
+        )
+    }
 }
 
+private val moshi =
+    Moshi.Builder().addLast(UnitAdapterFactory()).addLast(KotlinJsonAdapterFactory()).build()
+private val timetableDeltaAdapter = moshi.adapter(RJSTimetableDelta::class.java)
+
+/**
+ * Downloads timetables from editoast. The changes between two versions are fetched from a
+ * `timetable/<id>/requirements_diff/` endpoint only if `fetchDeltas` is set: editoast doesn't
+ * provide it yet, so whole timetables are downloaded again by default.
+ */
 class TimetableDownloader(
     baseUrl: String,
     authenticationHeader: String,
     httpClient: OkHttpClient,
     maxParallelism: Int = 5,
+    private val fetchDeltas: Boolean = false,
 ) : APIClient(baseUrl, authenticationHeader, httpClient), TimetableProvider {
 
     val httpDispatcher = Dispatchers.IO.limitedParallelism(maxParallelism)
@@ -123,71 +192,84 @@ class TimetableDownloader(
     )
 
     private val paginatedRequirementsAdapter: JsonAdapter<PaginatedRequirements> =
-        Moshi.Builder()
-            .addLast(UnitAdapterFactory())
-            .addLast(KotlinJsonAdapterFactory())
-            .build()
-            .adapter(PaginatedRequirements::class.java)
+        moshi.adapter(PaginatedRequirements::class.java)
 
     override fun getTimetableRequirements(
         infraId: String,
         infra: RawInfra,
         timetableId: TimetableId,
-    ): STDCMRequirements {
+    ): Map<String, TrainSpacingRequirements> {
         return runBlocking {
-            val res = mutableMapOf<ZoneId, RangeSet<Double>>()
+            val res = mutableMapOf<String, TrainSpacingRequirements>()
             val trainRequirementsById = fetchTrainRequirements(infraId, timetableId)
             trainRequirementsById.collect { trainRequirementById ->
-                for (rjsRequirement in trainRequirementById.spacingRequirements) {
-                    val requirement =
-                        SpacingRequirement.fromRJSWithAddedTime(
-                            rjsRequirement,
-                            infra,
-                            trainRequirementById.startTime.durationSinceEpoch(),
-                        )
-                    val set = res.computeIfAbsent(requirement.zone) { TreeRangeSet.create() }
-                    set.add(Range.closedOpen(requirement.beginTime, requirement.endTime))
-                }
+                res[trainRequirementById.trainId] =
+                    TrainSpacingRequirements.fromRJS(trainRequirementById, infra)
             }
-            STDCMRequirements(res)
+            res
+        }
+    }
+
+    override fun getTimetableDelta(
+        infraId: String,
+        infra: RawInfra,
+        timetableId: TimetableId,
+        fromVersion: Int,
+        toVersion: Int,
+    ): TimetableDelta? {
+        if (!fetchDeltas) return null
+        val request =
+            buildRequest(
+                "timetable/$timetableId/requirements_diff/",
+                "infra_id=$infraId&from_version=$fromVersion&to_version=$toVersion",
+            )
+        httpClient.newCall(request).execute().use { response ->
+            // the history of the timetable may not be available anymore
+            if (response.code == 404) return null
+            if (!response.isSuccessful) throw UnexpectedHttpResponse(response)
+            return timetableDeltaAdapter.fromJson(response.body.source())!!.parse(infra)
         }
     }
 }
 
+/**
+ * Reads timetables from `<timetable id>.json` files, and the changes between two versions from
+ * `<timetable id>-<from version>-<to version>.json` files
+ */
 class JsonTimetableProvider(val timetableDirectory: String) : TimetableProvider {
     override fun getTimetableRequirements(
         infraId: String,
         infra: RawInfra,
         timetableId: TimetableId,
-    ): STDCMRequirements {
+    ): Map<String, TrainSpacingRequirements> {
         val adapter: JsonAdapter<TrainRequirementsById> =
-            Moshi.Builder()
-                .addLast(UnitAdapterFactory())
-                .addLast(KotlinJsonAdapterFactory())
-                .build()
-                .adapter(TrainRequirementsById::class.java)
+            moshi.adapter(TrainRequirementsById::class.java)
         val filePath = Path("$timetableDirectory/$timetableId.json")
         logger.info("Fetching timetable requirements at json file $filePath")
 
         val source = filePath.source().buffer()
         val jsonReader = JsonReader.of(source)
         jsonReader.beginArray()
-        val res = mutableMapOf<ZoneId, RangeSet<Double>>()
+        val res = mutableMapOf<String, TrainSpacingRequirements>()
         while (jsonReader.hasNext()) {
             val train = adapter.fromJson(jsonReader)!!
-            for (rjsSpacingReq in train.spacingRequirements) {
-                val spacingReq =
-                    SpacingRequirement.fromRJSWithAddedTime(
-                        rjsSpacingReq,
-                        infra,
-                        train.startTime.durationSinceEpoch(),
-                    )
-                val set = res.computeIfAbsent(spacingReq.zone) { TreeRangeSet.create() }
-                set.add(Range.closedOpen(spacingReq.beginTime, spacingReq.endTime))
-            }
+            res[train.trainId] = TrainSpacingRequirements.fromRJS(train, infra)
         }
 
-        return STDCMRequirements(res)
+        return res
+    }
+
+    override fun getTimetableDelta(
+        infraId: String,
+        infra: RawInfra,
+        timetableId: TimetableId,
+        fromVersion: Int,
+        toVersion: Int,
+    ): TimetableDelta? {
+        val filePath = Path("$timetableDirectory/$timetableId-$fromVersion-$toVersion.json")
+        if (!filePath.exists()) return null
+        logger.info("Fetching timetable changes at json file $filePath")
+        return filePath.source().buffer().use { timetableDeltaAdapter.fromJson(it)!!.parse(infra) }
     }
 }
 
@@ -31,7 +31,9 @@ public class WorkerLoadEndpoint implements Take {
 
             // load infra and timetable
             var infra = infraManager.load(request.infra, request.expectedVersion);
-            if (request.timetable != null) timetableManager.load(request.infra, infra.rawInfra(), request.timetable);
+            if (request.timetable != null)
+                timetableManager.load(
+                        request.infra, infra.rawInfra(), request.timetable, request.timetableVersion);
 
             return new RsWithStatus(204);
         } catch (Throwable ex) {
@@ -51,6 +53,10 @@ public class WorkerLoadEndpoint implements Take {
         /** Timetable ID */
         public Integer timetable;
 
+        /** Timetable version, unknown if null */
+        @Json(name = "timetable_version")
+        public Integer timetableVersion;
+
         /** Create InfraLoadRequest */
         public WorkerLoadRequest(String infra, int expectedVersion, Integer timetable) {
             this.infra = infra;
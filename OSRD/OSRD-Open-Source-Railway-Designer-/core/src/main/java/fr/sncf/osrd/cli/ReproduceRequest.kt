@@ -79,7 +79,13 @@ class ReproduceRequest : CliCommand {
             val timetableProvider =
                 if (timetableDirectory != null) JsonTimetableProvider(timetableDirectory!!)
                 else TimetableDownloader(editoastUrl, editoastAuthorization, httpClient)
-            val cacheManager = TimetableCacheManager(timetableProvider, timetableDirectory)
+            // a single request is run, there is nothing to evict
+            val cacheManager =
+                TimetableCacheManager(
+                    timetableProvider,
+                    CacheBudget(Long.MAX_VALUE),
+                    timetableDirectory,
+                )
 
             fun <T> loadRequest(path: String, adapter: JsonAdapter<T>): T {
                 val fileSource = Path.of(path).source()
@@ -5,6 +5,7 @@ import com.beust.jcommander.Parameters
 import com.rabbitmq.client.*
 import fr.sncf.osrd.api.*
 import fr.sncf.osrd.api.conflicts.ConflictDetectionEndpoint
+import fr.sncf.osrd.api.conflicts.ConflictSessionEndpoint
 import fr.sncf.osrd.api.etcs.ETCSBrakingCurvesEndpoint
 import fr.sncf.osrd.api.path_properties.PathPropEndpoint
 import fr.sncf.osrd.api.pathfinding.PathfindingBlocksEndpoint
@@ -17,6 +18,7 @@ import io.opentelemetry.api.GlobalOpenTelemetry
 import io.opentelemetry.context.Context
 import io.opentelemetry.context.propagation.TextMapGetter
 import java.io.InputStream
+import java.util.concurrent.ForkJoinPool
 import java.util.concurrent.LinkedBlockingQueue
 import java.util.concurrent.ThreadPoolExecutor
 import java.util.concurrent.TimeUnit
@@ -42,6 +44,7 @@ class WorkerCommand : CliCommand {
     private var editoastAuthorization: String = "x-osrd-skip-authz"
 
     val LOCAL_TIMETABLE_CACHE: String?
+    val LOCAL_INFRA_CACHE: String?
     val WORKER_ID: String?
     val WORKER_ID_USE_HOSTNAME: Boolean
     val WORKER_KEY: String?
@@ -52,11 +55,20 @@ class WorkerCommand : CliCommand {
     val WORKER_ACTIVITY_EXCHANGE: String
     val ALL_INFRA: Boolean
     val WORKER_THREADS: Int
+    val INFRA_BUILD_THREADS: Int
+    val CACHE_MAX_HEAP_MB: Long
+    val CACHE_EVICTION_POLICY: EvictionPolicy
+    val INCREMENTAL_INFRA_RELOAD: Boolean
+    val LOCAL_INFRA_DIFFS: String?
     val MAX_CONCURRENT_TIMETABLE_REQUESTS: Int
     val DISABLE_ALL_TIMETABLE_CACHE: Boolean
+    val TIMETABLE_DELTAS: Boolean
+    val PREWARM_SIGNAL_REQUIREMENTS: Boolean
+    val STDCM_BLOCK_ENVELOPE_CACHE_MB: Long
 
     init {
         LOCAL_TIMETABLE_CACHE = System.getenv("LOCAL_TIMETABLE_CACHE")
+        LOCAL_INFRA_CACHE = System.getenv("LOCAL_INFRA_CACHE")
         WORKER_ID_USE_HOSTNAME = getBooleanEnvvar("WORKER_ID_USE_HOSTNAME")
         ALL_INFRA = getBooleanEnvvar("ALL_INFRA")
         WORKER_KEY = if (ALL_INFRA) "all" else System.getenv("WORKER_KEY")
@@ -71,10 +83,24 @@ class WorkerCommand : CliCommand {
         WORKER_THREADS =
             System.getenv("WORKER_THREADS")?.toIntOrNull()
                 ?: Runtime.getRuntime().availableProcessors()
+        INFRA_BUILD_THREADS =
+            getIntEnvvar("INFRA_BUILD_THREADS") ?: Runtime.getRuntime().availableProcessors()
+        CACHE_MAX_HEAP_MB =
+            System.getenv("CACHE_MAX_HEAP_MB")?.toLongOrNull()
+                ?: (Runtime.getRuntime().maxMemory() / 2 / 1_000_000)
+        CACHE_EVICTION_POLICY =
+            EvictionPolicy.valueOf((System.getenv("CACHE_EVICTION_POLICY") ?: "lru").uppercase())
+        INCREMENTAL_INFRA_RELOAD = getBooleanEnvvar("INCREMENTAL_INFRA_RELOAD")
+        LOCAL_INFRA_DIFFS = System.getenv("LOCAL_INFRA_DIFFS")
         MAX_CONCURRENT_TIMETABLE_REQUESTS =
             System.getenv("MAX_CONCURRENT_TIMETABLE_REQUESTS")?.toIntOrNull() ?: 10
         DISABLE_ALL_TIMETABLE_CACHE =
             System.getenv("DISABLE_ALL_TIMETABLE_CACHE")?.lowercase() == "true"
+        TIMETABLE_DELTAS = getBooleanEnvvar("TIMETABLE_DELTAS")
+        PREWARM_SIGNAL_REQUIREMENTS = getBooleanEnvvar("PREWARM_SIGNAL_REQUIREMENTS")
+        STDCM_BLOCK_ENVELOPE_CACHE_MB =
+            System.getenv("STDCM_BLOCK_ENVELOPE_CACHE_MB")?.toLongOrNull()
+                ?: (Runtime.getRuntime().maxMemory() / 8 / 1_000_000)
 
         WORKER_ID =
             if (WORKER_ID_USE_HOSTNAME) {
@@ -113,7 +139,33 @@ class WorkerCommand : CliCommand {
 
         val infraId = WORKER_KEY.split("-").first()
         val timetableId = WORKER_KEY.split("-").getOrNull(1)?.toInt()
-        val infraManager = InfraManager(editoastUrl!!, editoastAuthorization, httpClient)
+        logger.info(
+            "caching infras, electrical profile sets, timetables and conflict sessions in {} MB ({})",
+            CACHE_MAX_HEAP_MB,
+            CACHE_EVICTION_POLICY,
+        )
+        val cacheBudget = CacheBudget(CACHE_MAX_HEAP_MB * 1_000_000, CACHE_EVICTION_POLICY)
+        // requests wait for infras to be built, for conflicts to be detected and for allowances
+        // to be applied, so all of them can use all the cores
+        val infraBuildPool =
+            if (INFRA_BUILD_THREADS > 1) ForkJoinPool(INFRA_BUILD_THREADS) else null
+        // the editoast endpoint providing infra diffs doesn't exist yet, see the README
+        val infraDiffProvider =
+            if (LOCAL_INFRA_DIFFS != null) JsonInfraDiffProvider(LOCAL_INFRA_DIFFS)
+            else if (INCREMENTAL_INFRA_RELOAD)
+                InfraDiffDownloader(editoastUrl!!, editoastAuthorization, httpClient)
+            else null
+        val infraManager =
+            InfraManager(
+                editoastUrl!!,
+                editoastAuthorization,
+                httpClient,
+                LOCAL_INFRA_CACHE,
+                infraBuildPool,
+                cacheBudget,
+                infraDiffProvider,
+                PREWARM_SIGNAL_REQUIREMENTS,
+            )
         val timetableCache =
             TimetableCacheManager(
                 TimetableDownloader(
@@ -121,12 +173,27 @@ class WorkerCommand : CliCommand {
                     editoastAuthorization,
                     httpClient,
                     MAX_CONCURRENT_TIMETABLE_REQUESTS,
+                    TIMETABLE_DELTAS,
                 ),
+                cacheBudget,
                 LOCAL_TIMETABLE_CACHE,
                 DISABLE_ALL_TIMETABLE_CACHE,
             )
+        val conflictSessionManager = ConflictSessionManager(cacheBudget, infraBuildPool)
         val electricalProfileSetManager =
-            ElectricalProfileSetManager(editoastUrl, editoastAuthorization, httpClient)
+            ElectricalProfileSetManager(editoastUrl, editoastAuthorization, httpClient, cacheBudget)
+        val blockEnvelopeCacheManager =
+            if (STDCM_BLOCK_ENVELOPE_CACHE_MB <= 0) null
+            else {
+                logger.info(
+                    "caching STDCM block envelopes in {} MB ({})",
+                    STDCM_BLOCK_ENVELOPE_CACHE_MB,
+                    CACHE_EVICTION_POLICY,
+                )
+                BlockEnvelopeCacheManager(
+                    CacheBudget(STDCM_BLOCK_ENVELOPE_CACHE_MB * 1_000_000, CACHE_EVICTION_POLICY)
+                )
+            }
 
         val monitoringType = System.getenv("CORE_MONITOR_TYPE")
         if (monitoringType != null) {
@@ -141,13 +208,15 @@ class WorkerCommand : CliCommand {
                 "/pathfinding/blocks" to PathfindingBlocksEndpoint(infraManager),
                 "/path_properties" to PathPropEndpoint(infraManager),
                 "/standalone_simulation" to
-                    SimulationEndpoint(infraManager, electricalProfileSetManager),
+                    SimulationEndpoint(infraManager, electricalProfileSetManager, infraBuildPool),
                 "/signal_projection" to SignalProjectionEndpoint(infraManager),
-                "/conflict_detection" to ConflictDetectionEndpoint(infraManager),
+                "/conflict_detection" to ConflictDetectionEndpoint(infraManager, infraBuildPool),
+                "/conflict_detection/session" to
+                    ConflictSessionEndpoint(infraManager, conflictSessionManager),
                 "/etcs_braking_curves" to
                     ETCSBrakingCurvesEndpoint(infraManager, electricalProfileSetManager),
                 "/version" to VersionEndpoint(),
-                "/stdcm" to STDCMEndpoint(infraManager, timetableCache),
+                "/stdcm" to STDCMEndpoint(infraManager, timetableCache, blockEnvelopeCacheManager),
                 "/worker_load" to WorkerLoadEndpoint(infraManager, timetableCache),
             )
 
@@ -172,7 +241,7 @@ class WorkerCommand : CliCommand {
                 try {
                     val infra = infraManager.load(infraId, null)
                     if (timetableId != null)
-                        timetableCache.load(infraId, infra.rawInfra, timetableId)
+                        timetableCache.load(infraId, infra.rawInfra, timetableId, null)
                 } catch (e: OSRDError) {
                     val isInfraLoadError =
                         setOf(ErrorType.InfraHardLoadingError, ErrorType.InfraSoftLoadingError)
@@ -281,7 +350,9 @@ class WorkerCommand : CliCommand {
                     var status: ByteArray
                     try {
                         span.makeCurrent().use { scope ->
-                            val response = endpoint.act(MQRequest(path, body))
+                            // cached infras used by the request are not evicted until it's done
+                            val response =
+                                RequestCacheLeases.run { endpoint.act(MQRequest(path, body)) }
                             payload =
                                 response
                                     .body()
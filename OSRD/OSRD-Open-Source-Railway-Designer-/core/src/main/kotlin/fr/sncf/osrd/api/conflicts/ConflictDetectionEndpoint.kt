@@ -10,6 +10,7 @@ import fr.sncf.osrd.conflicts.detectConflicts
 import fr.sncf.osrd.sim_infra.api.RawSignalingInfra
 import java.time.Duration
 import java.time.ZonedDateTime
+import java.util.concurrent.ForkJoinPool
 import org.takes.Request
 import org.takes.Response
 import org.takes.Take
@@ -19,7 +20,10 @@ import org.takes.rs.RsText
 import org.takes.rs.RsWithBody
 import org.takes.rs.RsWithStatus
 
-class ConflictDetectionEndpoint(private val infraManager: InfraProvider) : Take {
+class ConflictDetectionEndpoint(
+    private val infraManager: InfraProvider,
+    private val pool: ForkJoinPool? = null,
+) : Take {
     override fun act(req: Request?): Response {
         return try {
             val body = RqPrint(req).printBody()
@@ -46,8 +50,11 @@ class ConflictDetectionEndpoint(private val infraManager: InfraProvider) : Take
             val trainRequirements =
                 parseTrainsRequirements(infra.rawInfra, request.trainsRequirements, minStartTime)
             requirements.addAll(trainRequirements)
-            val conflicts = detectConflicts(requirements)
-            val res = makeConflictDetectionResponse(infra.rawInfra, conflicts, minStartTime)
+            val conflicts = detectConflicts(requirements, pool)
+            val res =
+                ConflictDetectionResponse(
+                    makeConflictResponses(infra.rawInfra, conflicts, minStartTime)
+                )
 
             RsJson(RsWithBody(conflictResponseAdapter.toJson(res)))
         } catch (ex: Throwable) {
@@ -56,27 +63,26 @@ class ConflictDetectionEndpoint(private val infraManager: InfraProvider) : Take
     }
 }
 
-private fun makeConflictDetectionResponse(
+/** Converts conflicts whose times are relative to the given start time */
+internal fun makeConflictResponses(
     infra: RawSignalingInfra,
     conflicts: Collection<Conflict>,
     startTime: ZonedDateTime,
-): ConflictDetectionResponse {
-    return ConflictDetectionResponse(
-        conflicts.map {
-            ConflictResponse(
-                it.trainIds,
-                it.workScheduleIds,
-                startTime.plus(Duration.ofMillis((it.startTime * 1000).toLong())),
-                startTime.plus(Duration.ofMillis((it.endTime * 1000).toLong())),
-                it.conflictType,
-                it.requirements.map { requirement ->
-                    ConflictRequirement(
-                        infra.getZoneName(requirement.zone),
-                        startTime.plus(Duration.ofMillis((requirement.startTime * 1000).toLong())),
-                        startTime.plus(Duration.ofMillis((requirement.endTime * 1000).toLong())),
-                    )
-                },
-            )
-        }
-    )
+): List<ConflictResponse> {
+    return conflicts.map {
+        ConflictResponse(
+            it.trainIds,
+            it.workScheduleIds,
+            startTime.plus(Duration.ofMillis((it.startTime * 1000).toLong())),
+            startTime.plus(Duration.ofMillis((it.endTime * 1000).toLong())),
+            it.conflictType,
+            it.requirements.map { requirement ->
+                ConflictRequirement(
+                    infra.getZoneName(requirement.zone),
+                    startTime.plus(Duration.ofMillis((requirement.startTime * 1000).toLong())),
+                    startTime.plus(Duration.ofMillis((requirement.endTime * 1000).toLong())),
+                )
+            },
+        )
+    }
 }
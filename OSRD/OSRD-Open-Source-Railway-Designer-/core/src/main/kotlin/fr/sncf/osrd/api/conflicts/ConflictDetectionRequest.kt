@@ -25,6 +25,34 @@ class ConflictDetectionRequest(
     @Json(name = "work_schedules") val workSchedules: WorkSchedulesRequest? = null,
 )
 
+/**
+ * Changes to the trains and work schedules of a timetable, whose conflicts are kept by a session
+ * between requests.
+ */
+class ConflictSessionRequest(
+    /** Infra ID. */
+    var infra: String,
+    /** Expected infra version, used for cache invalidation. */
+    @Json(name = "expected_version") var expectedVersion: Int,
+    /** Timetable ID, which identifies the session. */
+    @Json(name = "timetable_id") val timetableId: Int,
+    /**
+     * If true, a new session is started from the trains and work schedules of this request only.
+     * Must be set if the session wasn't found by a previous request.
+     */
+    val reset: Boolean = false,
+    /** Map of train id -> train requirements, for trains which were added or modified. */
+    @Json(name = "trains_requirements")
+    val trainsRequirements: Map<String, TrainRequirementsRequest> = mapOf(),
+    /** Trains which were removed from the timetable. */
+    @Json(name = "deleted_train_ids") val deletedTrainIds: Collection<String> = listOf(),
+    /** Work schedules which were added or modified, if any. */
+    @Json(name = "work_schedules") val workSchedules: WorkSchedulesRequest? = null,
+    /** Work schedules which were removed. */
+    @Json(name = "deleted_work_schedule_ids")
+    val deletedWorkScheduleIds: Collection<String> = listOf(),
+)
+
 /** Describes the requirements needed for a given train to run without any delay. */
 open class TrainRequirementsRequest(
     /**
@@ -71,3 +99,10 @@ val conflictRequestAdapter: JsonAdapter<ConflictDetectionRequest> =
         .addLast(KotlinJsonAdapterFactory())
         .build()
         .adapter(ConflictDetectionRequest::class.java)
+
+val conflictSessionRequestAdapter: JsonAdapter<ConflictSessionRequest> =
+    Moshi.Builder()
+        .addLast(UnitAdapterFactory())
+        .addLast(KotlinJsonAdapterFactory())
+        .build()
+        .adapter(ConflictSessionRequest::class.java)
@@ -17,6 +17,19 @@ class ConflictDetectionResponse(
     val conflicts: Collection<ConflictResponse>
 )
 
+class ConflictSessionResponse(
+    /**
+     * False if there is no session for the timetable on this infra version: it was never started,
+     * or was evicted. No change was applied, the request must be sent again with `reset` set and
+     * all the trains and work schedules of the timetable.
+     */
+    @Json(name = "session_found") val sessionFound: Boolean,
+    /** Conflicts which appeared since the previous request on the session. */
+    @Json(name = "added_conflicts") val addedConflicts: Collection<ConflictResponse>,
+    /** Conflicts returned by previous requests on the session, which don't exist anymore. */
+    @Json(name = "removed_conflicts") val removedConflicts: Collection<ConflictResponse>,
+)
+
 /**
  * One conflict between a non-empty set of trains and a possibly empty set of work schedules. If one
  * given set of [train + work schedule] is conflicting over a continuous time range, only one
@@ -59,3 +72,10 @@ val conflictResponseAdapter: JsonAdapter<ConflictDetectionResponse> =
         .addLast(KotlinJsonAdapterFactory())
         .build()
         .adapter(ConflictDetectionResponse::class.java)
+
+val conflictSessionResponseAdapter: JsonAdapter<ConflictSessionResponse> =
+    Moshi.Builder()
+        .addLast(UnitAdapterFactory())
+        .addLast(KotlinJsonAdapterFactory())
+        .build()
+        .adapter(ConflictSessionResponse::class.java)
@@ -0,0 +1,74 @@
+package fr.sncf.osrd.api.conflicts
+
+import fr.sncf.osrd.api.ConflictSessionManager
+import fr.sncf.osrd.api.EPOCH_ZONED
+import fr.sncf.osrd.api.ExceptionHandler
+import fr.sncf.osrd.api.InfraProvider
+import fr.sncf.osrd.api.parseTrainsRequirements
+import fr.sncf.osrd.api.parseWorkSchedulesRequest
+import fr.sncf.osrd.conflicts.RequirementId
+import fr.sncf.osrd.conflicts.RequirementType
+import fr.sncf.osrd.conflicts.Requirements
+import org.takes.Request
+import org.takes.Response
+import org.takes.Take
+import org.takes.rq.RqPrint
+import org.takes.rs.RsJson
+import org.takes.rs.RsText
+import org.takes.rs.RsWithBody
+import org.takes.rs.RsWithStatus
+
+/**
+ * Incremental conflict detection: applies the changes of a timetable to its conflict session, and
+ * returns the conflicts which changed. Requirements are kept relative to EPOCH in sessions.
+ */
+class ConflictSessionEndpoint(
+    private val infraManager: InfraProvider,
+    private val sessionManager: ConflictSessionManager,
+) : Take {
+    override fun act(req: Request?): Response {
+        return try {
+            val body = RqPrint(req).printBody()
+            val request =
+                conflictSessionRequestAdapter.fromJson(body)
+                    ?: return RsWithStatus(RsText("missing request body"), 400)
+
+            val infra = infraManager.getInfra(request.infra, request.expectedVersion)
+
+            val updated = mutableListOf<Requirements>()
+            if (request.workSchedules != null) {
+                updated.addAll(
+                    parseWorkSchedulesRequest(infra.rawInfra, request.workSchedules, EPOCH_ZONED)
+                )
+            }
+            updated.addAll(
+                parseTrainsRequirements(infra.rawInfra, request.trainsRequirements, EPOCH_ZONED)
+            )
+            val deleted =
+                request.deletedTrainIds.map { RequirementId(it, RequirementType.TRAIN) } +
+                    request.deletedWorkScheduleIds.map {
+                        RequirementId(it, RequirementType.WORK_SCHEDULE)
+                    }
+            val changes =
+                sessionManager.update(
+                    request.infra,
+                    request.expectedVersion,
+                    request.timetableId,
+                    request.reset,
+                    updated,
+                    deleted,
+                )
+            val res =
+                if (changes == null) ConflictSessionResponse(false, listOf(), listOf())
+                else
+                    ConflictSessionResponse(
+                        true,
+                        makeConflictResponses(infra.rawInfra, changes.addedConflicts, EPOCH_ZONED),
+                        makeConflictResponses(infra.rawInfra, changes.removedConflicts, EPOCH_ZONED),
+                    )
+            RsJson(RsWithBody(conflictSessionResponseAdapter.toJson(res)))
+        } catch (ex: Throwable) {
+            ExceptionHandler.handle(ex)
+        }
+    }
+}
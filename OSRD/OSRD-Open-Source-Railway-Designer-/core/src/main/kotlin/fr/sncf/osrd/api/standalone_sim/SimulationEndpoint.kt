@@ -8,6 +8,7 @@ import io.opentelemetry.api.trace.Span
 import java.io.File
 import java.time.LocalDateTime
 import java.time.format.DateTimeFormatter
+import java.util.concurrent.ForkJoinPool
 import org.takes.Request
 import org.takes.Response
 import org.takes.Take
@@ -20,6 +21,7 @@ import org.takes.rs.RsWithStatus
 class SimulationEndpoint(
     private val infraManager: InfraProvider,
     private val electricalProfileSetManager: ElectricalProfileSetManager,
+    private val allowancePool: ForkJoinPool? = null,
 ) : Take {
     override fun act(req: Request): Response {
         // Parse request input
@@ -73,6 +75,7 @@ class SimulationEndpoint(
                     request.initialSpeed,
                     request.margins,
                     request.pathItemPositions,
+                    allowancePool = allowancePool,
                 )
             return RsJson(RsWithBody(simulationResponseAdapter.toJson(res)))
         } catch (ex: Throwable) {
@@ -1,14 +1,13 @@
 package fr.sncf.osrd.api.stdcm
 
 import com.google.common.collect.ImmutableRangeMap
-import com.google.common.collect.Range
-import com.google.common.collect.TreeRangeSet
 import fr.sncf.osrd.api.*
 import fr.sncf.osrd.api.pathfinding.findWaypointBlocks
 import fr.sncf.osrd.api.pathfinding.hasDuplicateTracks
 import fr.sncf.osrd.api.pathfinding.runPathfindingBlockPostProcessing
 import fr.sncf.osrd.api.standalone_sim.*
 import fr.sncf.osrd.conflicts.ParsedRequirements
+import fr.sncf.osrd.conflicts.SpacingRequirementIndex
 import fr.sncf.osrd.envelope_sim.allowances.AllowanceValue
 import fr.sncf.osrd.envelope_sim.allowances.AllowanceValue.Percentage
 import fr.sncf.osrd.envelope_sim.allowances.AllowanceValue.TimePerDistance
@@ -25,7 +24,6 @@ import fr.sncf.osrd.sim_infra.api.Block
 import fr.sncf.osrd.sim_infra.api.BlockId
 import fr.sncf.osrd.sim_infra.api.DirTrackChunkId
 import fr.sncf.osrd.sim_infra.api.SpeedLimitProperty
-import fr.sncf.osrd.sim_infra.api.ZoneId
 import fr.sncf.osrd.sim_infra.impl.TemporarySpeedLimitManager
 import fr.sncf.osrd.standalone_sim.makeElectricalProfiles
 import fr.sncf.osrd.standalone_sim.makeMRSPResponse
@@ -49,12 +47,13 @@ import io.opentelemetry.api.trace.Span
 import io.opentelemetry.api.trace.SpanKind
 import io.opentelemetry.instrumentation.annotations.WithSpan
 import java.io.File
+import java.security.MessageDigest
 import java.time.Duration.between
 import java.time.Duration.ofMillis
 import java.time.LocalDateTime
 import java.time.ZonedDateTime
 import java.time.format.DateTimeFormatter
-import java.util.TreeMap
+import java.util.HexFormat
 import kotlinx.coroutines.runBlocking
 import org.takes.Request
 import org.takes.Response
@@ -68,6 +67,7 @@ import org.takes.rs.RsWithStatus
 class STDCMEndpoint(
     private val infraManager: InfraProvider,
     private val timetableCacheManager: TimetableCacheManager,
+    private val blockEnvelopeCacheManager: BlockEnvelopeCacheManager? = null,
 ) : Take {
     @Throws(OSRDError::class)
     override fun act(req: Request): Response {
@@ -116,6 +116,9 @@ class STDCMEndpoint(
                 )
             val steps = parseSteps(infra, request.pathItems, request.startTime)
             val requirements = getRequirements(request, infra)
+            val blockEnvelopeCacheKey = getBlockEnvelopeCacheKey(request)
+            val blockEnvelopeCache =
+                blockEnvelopeCacheKey?.let { blockEnvelopeCacheManager!!.get(it) }
 
             // Run the STDCM pathfinding
             val path =
@@ -138,6 +141,7 @@ class STDCMEndpoint(
                     parseMarginValue(request.margin),
                     Pathfinding.TIMEOUT,
                     temporarySpeedLimitManager,
+                    blockEnvelopeCache,
                 )
             if (path == null || hasDuplicateTracks(infra, path.trainPath)) {
                 val response = PathNotFound()
@@ -165,22 +169,47 @@ class STDCMEndpoint(
         }
     }
 
+    /**
+     * Returns the key of the block envelopes this request can share with others, or null if they
+     * can't be shared. Temporary speed limits change the envelopes, so requests with some don't
+     * share them.
+     */
+    private fun getBlockEnvelopeCacheKey(request: STDCMRequest): BlockEnvelopeCacheKey? {
+        if (blockEnvelopeCacheManager == null || request.temporarySpeedLimits.isNotEmpty())
+            return null
+        val physicsConsist = physicsConsistAdapter.toJson(request.physicsConsist)
+        val digest = MessageDigest.getInstance("SHA-256").digest(physicsConsist.toByteArray())
+        return BlockEnvelopeCacheKey(
+            request.infra,
+            request.expectedVersion,
+            HexFormat.of().formatHex(digest),
+            request.comfort,
+            request.speedLimitTag,
+            request.timeStep!!.seconds,
+        )
+    }
+
     /**
      * Collect all spacing requirements in an easily fetchable format. Combines both train
      * requirements and work schedules.
      */
     private fun getRequirements(request: STDCMRequest, infra: FullInfra): ParsedRequirements {
-        val res = mutableMapOf<ZoneId, TreeRangeSet<Double>>()
+        val builder = SpacingRequirementIndex.Builder()
         convertWorkScheduleCollection(infra.rawInfra, request.workSchedules)
             .spacingRequirements
             .forEach { spacingReq ->
-                val set = res.computeIfAbsent(spacingReq.zone) { TreeRangeSet.create() }
-                set.add(Range.closedOpen(spacingReq.beginTime, spacingReq.endTime))
+                builder.add(spacingReq.zone, spacingReq.beginTime, spacingReq.endTime)
             }
 
-        val trainRequirements = runBlocking {
-            timetableCacheManager.get(request.infra, infra.rawInfra, request.timetableId)
-        }
+        val trainRequirements =
+            runBlocking(RequestCacheLeases.asContextElement()) {
+                timetableCacheManager.get(
+                    request.infra,
+                    infra.rawInfra,
+                    request.timetableId,
+                    request.timetableVersion,
+                )
+            }
         // Cached requirements are relative to EPOCH. Add time diff with request start time
         // to these requirements.
         val searchWindowBeginEpoch = request.startTime.durationSinceEpoch()
@@ -188,28 +217,14 @@ class STDCMEndpoint(
             searchWindowBeginEpoch +
                 request.maximumDepartureDelay!!.seconds +
                 request.maximumRunTime.seconds
-        for ((zoneId, rangeSet) in trainRequirements) {
-            val setBuilder = res.computeIfAbsent(zoneId) { TreeRangeSet.create() }
-            for (range in rangeSet.asRanges()) {
-                // Filter out unnecessary requirements
-                val included =
-                    range.upperEndpoint() > searchWindowBeginEpoch &&
-                        range.lowerEndpoint() < searchWindowEndEpoch
-                if (included) {
-                    val newRange =
-                        Range.range(
-                            range.lowerEndpoint() - searchWindowBeginEpoch,
-                            range.lowerBoundType(),
-                            range.upperEndpoint() - searchWindowBeginEpoch,
-                            range.upperBoundType(),
-                        )
-                    setBuilder.add(newRange)
-                }
-            }
-        }
-        return res.mapValues { rangeSet ->
-            TreeMap(rangeSet.value.asRanges().associateBy { it.upperEndpoint() })
-        }
+        // The timetable requirements are shared between requests, they're not copied:
+        // a view only gives access to the ones which are within the search window.
+        return ParsedRequirements(
+            listOf(
+                builder.build().view(),
+                trainRequirements.window(searchWindowBeginEpoch, searchWindowEndEpoch),
+            )
+        )
     }
 
     /** Build the simulation part of the response */
@@ -24,6 +24,8 @@ class STDCMRequest(
     var infra: String,
     @Json(name = "expected_version") var expectedVersion: Int,
     @Json(name = "timetable_id") var timetableId: TimetableId,
+    /// Version of the timetable, used to update the cached one. Unknown if null.
+    @Json(name = "timetable_version") var timetableVersion: Int? = null,
 
     // Rolling stock
     @Json(name = "physics_consist") val physicsConsist: PhysicsConsistModel,
@@ -76,11 +78,15 @@ data class StepTimingData(
     @Json(name = "arrival_time_tolerance_after") val arrivalTimeToleranceAfter: Duration,
 )
 
-val stdcmRequestAdapter: JsonAdapter<STDCMRequest> =
+private val stdcmMoshi: Moshi =
     Moshi.Builder()
         .add(MarginValueAdapter())
         .add(RJSRollingResistance.adapter)
         .addLast(UnitAdapterFactory())
         .addLast(KotlinJsonAdapterFactory())
         .build()
-        .adapter(STDCMRequest::class.java)
+
+val stdcmRequestAdapter: JsonAdapter<STDCMRequest> = stdcmMoshi.adapter(STDCMRequest::class.java)
+
+val physicsConsistAdapter: JsonAdapter<PhysicsConsistModel> =
+    stdcmMoshi.adapter(PhysicsConsistModel::class.java)
@@ -0,0 +1,163 @@
+package fr.sncf.osrd.conflicts
+
+import fr.sncf.osrd.sim_infra.api.ZoneId
+import java.util.concurrent.ForkJoinPool
+
+/** Conflicts which appeared or disappeared after an update of a [ConflictSession] */
+class ConflictChanges(
+    /** Conflicts which weren't detected before the update, merged as by [detectConflicts] */
+    val addedConflicts: List<Conflict>,
+    /** Conflicts which were returned by previous updates, and aren't detected anymore */
+    val removedConflicts: List<Conflict>,
+)
+
+/**
+ * The conflicts between the trains and work schedules of a timetable, kept up to date as their
+ * requirements are added, updated or removed.
+ *
+ * Requirements are organized by zone, as in [SweepConflictDetector]. An update only detects the
+ * conflicts of the zones used by the modified requirements, then merges again the conflicts between
+ * the trains and work schedules involved, and compares them with the previous ones.
+ *
+ * Sessions aren't thread safe.
+ */
+class ConflictSession(private val pool: ForkJoinPool? = null) {
+    private val requirements = HashMap<RequirementId, Requirements>()
+    // The requirements which use each zone, in insertion order
+    private val zoneUsers = HashMap<ZoneId, LinkedHashSet<RequirementId>>()
+    // The conflicts of each zone, before merging
+    private val zoneConflicts = HashMap<ZoneId, MutableList<Conflict>>()
+    // The conflicts before merging, and the merged ones, by conflicting trains and work schedules
+    private val groupConflicts = HashMap<ConflictGroup, LinkedHashSet<Conflict>>()
+    private val mergedConflicts = HashMap<ConflictGroup, List<Conflict>>()
+    private var zoneRequirementCount = 0L
+
+    private data class ConflictGroup(val type: ConflictType, val key: ConflictingGroupKey)
+
+    /** The number of trains and work schedules in the session */
+    val size: Int
+        get() = requirements.size
+
+    /** Returns all the current conflicts, merged as by [detectConflicts] */
+    fun getConflicts(): List<Conflict> {
+        return mergedConflicts.values.flatten()
+    }
+
+    /**
+     * Adds or replaces the requirements of some trains or work schedules, and removes others.
+     * Deletions are applied first. Returns the conflicts which changed.
+     */
+    fun update(
+        updated: Collection<Requirements>,
+        deleted: Collection<RequirementId>,
+    ): ConflictChanges {
+        val affectedZones = HashSet<ZoneId>()
+        for (id in deleted) removeRequirements(id, affectedZones)
+        for (req in updated) {
+            removeRequirements(req.id, affectedZones)
+            addRequirements(req, affectedZones)
+        }
+
+        // detect the conflicts of the affected zones again, between all the requirements using them
+        val users = LinkedHashSet<RequirementId>()
+        for (zone in affectedZones) zoneUsers[zone]?.let { users.addAll(it) }
+        val zoneReqs = users.map { requirements[it]!! }
+        val newConflicts = SweepConflictDetector(zoneReqs, pool, affectedZones).checkConflicts()
+
+        val affectedGroups = LinkedHashSet<ConflictGroup>()
+        for (zone in affectedZones) {
+            for (conflict in zoneConflicts.remove(zone) ?: continue) {
+                val group = groupOf(conflict)
+                affectedGroups.add(group)
+                val conflicts = groupConflicts[group]!!
+                conflicts.remove(conflict)
+                if (conflicts.isEmpty()) groupConflicts.remove(group)
+            }
+        }
+        for (conflict in newConflicts) {
+            val zone = conflict.requirements.single().zone
+            zoneConflicts.getOrPut(zone) { mutableListOf() }.add(conflict)
+            val group = groupOf(conflict)
+            affectedGroups.add(group)
+            groupConflicts.getOrPut(group) { LinkedHashSet() }.add(conflict)
+        }
+
+        // merge the conflicts of the affected groups again, and keep the ones which changed
+        val addedConflicts = mutableListOf<Conflict>()
+        val removedConflicts = mutableListOf<Conflict>()
+        for (group in affectedGroups) {
+            val previous = mergedConflicts.remove(group) ?: listOf()
+            // conflicts are merged in zone order, as when detecting all of them at once
+            val conflicts = groupConflicts[group]?.sortedBy { it.requirements.first().zone.index }
+            val current = if (conflicts == null) listOf() else mergeConflicts(conflicts)
+            if (current.isNotEmpty()) mergedConflicts[group] = current
+
+            val previousValues = previous.map { ConflictValue(it) }.toSet()
+            val currentValues = current.map { ConflictValue(it) }.toSet()
+            for (conflict in previous) {
+                if (!currentValues.contains(ConflictValue(conflict))) removedConflicts.add(conflict)
+            }
+            for (conflict in current) {
+                if (!previousValues.contains(ConflictValue(conflict))) addedConflicts.add(conflict)
+            }
+        }
+        return ConflictChanges(addedConflicts, removedConflicts)
+    }
+
+    /**
+     * Estimates the heap used by the session: about 100B per zone requirement, 300B per conflict
+     * before and after merging, and 200B per train or work schedule
+     */
+    fun estimateHeapFootprint(): Long {
+        var conflictCount = 0L
+        for (conflicts in zoneConflicts.values) conflictCount += conflicts.size
+        for (conflicts in mergedConflicts.values) conflictCount += conflicts.size
+        return zoneRequirementCount * 100 + conflictCount * 300 + requirements.size * 200L
+    }
+
+    private fun addRequirements(req: Requirements, affectedZones: MutableSet<ZoneId>) {
+        requirements[req.id] = req
+        forEachZone(req) { zone ->
+            affectedZones.add(zone)
+            zoneUsers.getOrPut(zone) { LinkedHashSet() }.add(req.id)
+            zoneRequirementCount++
+        }
+    }
+
+    private fun removeRequirements(id: RequirementId, affectedZones: MutableSet<ZoneId>) {
+        val req = requirements.remove(id) ?: return
+        forEachZone(req) { zone ->
+            affectedZones.add(zone)
+            zoneRequirementCount--
+            val users = zoneUsers[zone]
+            if (users != null && users.remove(id) && users.isEmpty()) zoneUsers.remove(zone)
+        }
+    }
+
+    private inline fun forEachZone(req: Requirements, action: (ZoneId) -> Unit) {
+        for (spacingReq in req.spacingRequirements) action(spacingReq.zone)
+        for (routeReq in req.routingRequirements) {
+            for (zoneReq in routeReq.zones) action(zoneReq.zone)
+        }
+    }
+
+    private fun groupOf(conflict: Conflict): ConflictGroup {
+        val key = ConflictingGroupKey(conflict.trainIds.toSet(), conflict.workScheduleIds.toSet())
+        return ConflictGroup(conflict.conflictType, key)
+    }
+
+    /** The content of a merged conflict, regardless of the order of its requirements */
+    private data class ConflictValue(
+        val startTime: Double,
+        val endTime: Double,
+        val requirements: Set<Triple<UInt, Double, Double>>,
+    ) {
+        constructor(
+            conflict: Conflict
+        ) : this(
+            conflict.startTime,
+            conflict.endTime,
+            conflict.requirements.map { Triple(it.zone.index, it.startTime, it.endTime) }.toSet(),
+        )
+    }
+}
@@ -1,10 +1,5 @@
 package fr.sncf.osrd.conflicts
 
-import com.google.common.collect.Range
-import com.google.common.collect.RangeSet
-import com.google.common.collect.TreeRangeSet
-import fr.sncf.osrd.sim_infra.api.ZoneId
-import java.util.TreeMap
 import kotlin.math.max
 import kotlin.math.min
 
@@ -26,9 +21,13 @@ data class NoConflictResponse(
     val timeOfNextConflict: Double,
 ) : IncrementalConflictResponse
 
-// Zone name -> (end time -> Range(start time, end time)).
-// The range is partially redundant, but it makes for easier and clearer processing.
-typealias ParsedRequirements = Map<ZoneId, TreeMap<Double, Range<Double>>>
+/** Time intervals during which zones are used. Intervals of different views may overlap. */
+class ParsedRequirements(val views: List<SpacingRequirementView>) {
+    /** Returns the same requirements, with intervals extended by the given margins */
+    fun withMargins(before: Double, after: Double): ParsedRequirements {
+        return ParsedRequirements(views.map { it.withMargins(before, after) })
+    }
+}
 
 /**
  * This class takes a list of requirements as input, and can only be used to compare them to a *new*
@@ -57,11 +56,17 @@ class IncrementalConflictDetector(private val spacingZoneUses: ParsedRequirement
             var maxDelay = Double.POSITIVE_INFINITY
             var timeOfNextConflict = Double.POSITIVE_INFINITY
             for (spacingRequirement in spacingRequirements) {
-                val map = spacingZoneUses[spacingRequirement.zone] ?: continue
-                val entry = map.higherEntry(spacingRequirement.beginTime) ?: continue
-                val nextUse = entry.value.lowerEndpoint()
-                maxDelay = min(maxDelay, nextUse - spacingRequirement.endTime)
-                timeOfNextConflict = min(timeOfNextConflict, nextUse)
+                for (zoneUses in spacingZoneUses.views) {
+                    val interval =
+                        zoneUses.nextIntervalEndingAfter(
+                            spacingRequirement.zone,
+                            spacingRequirement.beginTime,
+                        )
+                    if (interval == -1) continue
+                    val nextUse = zoneUses.getBegin(interval)
+                    maxDelay = min(maxDelay, nextUse - spacingRequirement.endTime)
+                    timeOfNextConflict = min(timeOfNextConflict, nextUse)
+                }
             }
             return NoConflictResponse(maxDelay, timeOfNextConflict)
         }
@@ -74,11 +79,18 @@ class IncrementalConflictDetector(private val spacingZoneUses: ParsedRequirement
     private fun earliestConflictTime(spacingRequirements: List<SpacingRequirement>): Double {
         var res = Double.POSITIVE_INFINITY
         for (spacingRequirement in spacingRequirements) {
-            val map = spacingZoneUses[spacingRequirement.zone] ?: continue
-            val entry = map.higherEntry(spacingRequirement.beginTime) ?: continue
-            if (entry.value.lowerEndpoint() > spacingRequirement.endTime) continue
-            val firstConflictTime = max(entry.value.lowerEndpoint(), spacingRequirement.beginTime)
-            res = min(res, firstConflictTime)
+            for (zoneUses in spacingZoneUses.views) {
+                val interval =
+                    zoneUses.nextIntervalEndingAfter(
+                        spacingRequirement.zone,
+                        spacingRequirement.beginTime,
+                    )
+                if (interval == -1) continue
+                val nextUse = zoneUses.getBegin(interval)
+                if (nextUse > spacingRequirement.endTime) continue
+                val firstConflictTime = max(nextUse, spacingRequirement.beginTime)
+                res = min(res, firstConflictTime)
+            }
         }
         return res
     }
@@ -95,17 +107,19 @@ class IncrementalConflictDetector(private val spacingZoneUses: ParsedRequirement
         while (true) {
             var hasIncreasedDelay = false
             for (spacingRequirement in spacingRequirements) {
-                val map = spacingZoneUses[spacingRequirement.zone] ?: continue
+                for (zoneUses in spacingZoneUses.views) {
+                    val requirementStart = minDelay + spacingRequirement.beginTime
+                    val requirementEnd = minDelay + spacingRequirement.endTime
 
-                val requirementStart = minDelay + spacingRequirement.beginTime
-                val requirementEnd = minDelay + spacingRequirement.endTime
+                    val firstIntervalEndingAfter =
+                        zoneUses.nextIntervalEndingAfter(spacingRequirement.zone, requirementStart)
+                    if (firstIntervalEndingAfter == -1) continue
+                    if (zoneUses.getBegin(firstIntervalEndingAfter) >= requirementEnd) continue
 
-                val firstEntryStartAfter = map.higherEntry(requirementStart) ?: continue
-                if (firstEntryStartAfter.value.lowerEndpoint() >= requirementEnd) continue
-
-                val extraDelay = firstEntryStartAfter.value.upperEndpoint() - requirementStart
-                minDelay += extraDelay
-                hasIncreasedDelay = true
+                    val extraDelay = zoneUses.getEnd(firstIntervalEndingAfter) - requirementStart
+                    minDelay += extraDelay
+                    hasIncreasedDelay = true
+                }
             }
             // No new conflicts
             if (!hasIncreasedDelay || minDelay.isInfinite()) return minDelay
@@ -114,18 +128,11 @@ class IncrementalConflictDetector(private val spacingZoneUses: ParsedRequirement
 }
 
 fun generateSpacingZoneUses(requirements: List<Requirements>): ParsedRequirements {
-    // We first create RangeSets to handle the overlaps, but then
-    // convert them to TreeMaps (`.higherEntry` is extremely convenient here)
-    val rangeSets = mutableMapOf<ZoneId, RangeSet<Double>>()
+    val builder = SpacingRequirementIndex.Builder()
     for (req in requirements) {
         for (spacingReq in req.spacingRequirements) {
-            val set = rangeSets.computeIfAbsent(spacingReq.zone) { TreeRangeSet.create() }
-            set.add(Range.closedOpen(spacingReq.beginTime, spacingReq.endTime))
+            builder.add(spacingReq.zone, spacingReq.beginTime, spacingReq.endTime)
         }
     }
-    return rangeSets
-        .map { range ->
-            range.key to TreeMap(range.value.asRanges().associateBy { it.upperEndpoint() })
-        }
-        .toMap()
+    return ParsedRequirements(listOf(builder.build().view()))
 }
@@ -0,0 +1,222 @@
+package fr.sncf.osrd.conflicts
+
+import fr.sncf.osrd.signaling.SignalingSimulator
+import fr.sncf.osrd.signaling.ZoneStatus
+import fr.sncf.osrd.sim_infra.api.BlockId
+import fr.sncf.osrd.sim_infra.api.BlockInfra
+import fr.sncf.osrd.sim_infra.api.LoadedSignalInfra
+import fr.sncf.osrd.sim_infra.api.LogicalSignalId
+import fr.sncf.osrd.sim_infra.api.RawInfra
+import fr.sncf.osrd.sim_infra.api.RouteId
+import fr.sncf.osrd.sim_infra.api.SigState
+import fr.sncf.osrd.utils.parallelMap
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.ForkJoinPool
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * Memoizes the signal states evaluated by [SpacingRequirementAutomaton] to find the zones required
+ * by each signal. The state of a signal only depends on the blocks evaluated from the block it
+ * belongs to, on which of their zones is occupied, and on the routes which select conditional
+ * signal parameters: it is the same for all the trains going through these blocks. Whether this
+ * state constrains a train depends on its speed, and is still checked for each train.
+ *
+ * A cache is bound to an infra, and shared by all the requests on it. It is thread safe. At most
+ * `maxEntries` states are kept, further states are evaluated but not stored.
+ */
+class SignalRequirementCache(private val maxEntries: Int = DEFAULT_MAX_ENTRIES) {
+    private val states = ConcurrentHashMap<Key, SigState>()
+    private val hits = AtomicLong()
+    private val misses = AtomicLong()
+
+    /**
+     * The signal, the occupied zone, the evaluated blocks, then the route selecting the parameters
+     * of each of their signals with conditional parameters (-1 if none does)
+     */
+    private class Key(private val data: IntArray) {
+        private val hash = data.contentHashCode()
+
+        override fun equals(other: Any?): Boolean {
+            return other is Key && hash == other.hash && data.contentEquals(other.data)
+        }
+
+        override fun hashCode(): Int {
+            return hash
+        }
+    }
+
+    /** The number of cached signal states */
+    val size: Int
+        get() = states.size
+
+    /** The number of states found in the cache */
+    val hitCount: Long
+        get() = hits.get()
+
+    /** The number of states which had to be evaluated */
+    val missCount: Long
+        get() = misses.get()
+
+    /**
+     * Returns the state of a signal of the first block, when the given zone is occupied and the
+     * others are clear. Zones are indexed from the start of the first block. If the zone is after
+     * the last block, all the given blocks are clear and the next zone is occupied.
+     */
+    fun getSignalState(
+        rawInfra: RawInfra,
+        loadedSignalInfra: LoadedSignalInfra,
+        blockInfra: BlockInfra,
+        simulator: SignalingSimulator,
+        signal: LogicalSignalId,
+        blocks: List<BlockId>,
+        routes: List<RouteId>,
+        occupiedZone: Int,
+    ): SigState {
+        val key = makeKey(loadedSignalInfra, blockInfra, signal, blocks, routes, occupiedZone)
+        val cached = states[key]
+        if (cached != null) {
+            hits.incrementAndGet()
+            return cached
+        }
+        misses.incrementAndGet()
+        val state =
+            evaluateSignalState(
+                rawInfra,
+                loadedSignalInfra,
+                blockInfra,
+                simulator,
+                signal,
+                blocks,
+                routes,
+                occupiedZone,
+            )
+        if (states.size < maxEntries) states.putIfAbsent(key, state)
+        return state
+    }
+
+    /**
+     * Evaluates the states of the signals of each block, for each occupied zone of the next block,
+     * as if on the path of a train. States which depend on conditional parameters aren't evaluated,
+     * as the routes of trains aren't known in advance.
+     */
+    fun prewarm(
+        rawInfra: RawInfra,
+        loadedSignalInfra: LoadedSignalInfra,
+        blockInfra: BlockInfra,
+        simulator: SignalingSimulator,
+        pool: ForkJoinPool? = null,
+    ) {
+        val blockIndices = (0..<blockInfra.blocks.size.toInt()).toList()
+        blockIndices.parallelMap(pool) { index ->
+            val block = BlockId(index.toUInt())
+            val nextBlocks =
+                if (blockInfra.blockStopAtBufferStop(block)) listOf()
+                else {
+                    val lastZonePath = blockInfra.getBlockZonePaths(block).last()
+                    blockInfra.getBlocksStartingAtDetector(rawInfra.getZonePathExit(lastZonePath))
+                }
+            val prefixes = listOf(listOf(block)) + nextBlocks.map { listOf(block, it) }
+            for (blocks in prefixes) {
+                if (blocks.any { hasConditionalParameters(loadedSignalInfra, blockInfra, it) })
+                    continue
+                // the zones for which the automaton evaluates these blocks: signals protect the
+                // zones after their block, and blocks are only added when the zone is after them
+                val lastBlockStart = blocks.dropLast(1).sumOf { nZones(blockInfra, it) }
+                val lastZone = lastBlockStart + nZones(blockInfra, blocks.last())
+                val firstZone = if (blocks.size == 1) lastZone else lastBlockStart + 1
+                for (signal in blockInfra.getBlockSignals(block)) {
+                    val sigSystem = loadedSignalInfra.getSignalingSystem(signal)
+                    if (simulator.sigModuleManager.isCurveBased(sigSystem)) continue
+                    for (zone in firstZone..lastZone) {
+                        getSignalState(
+                            rawInfra,
+                            loadedSignalInfra,
+                            blockInfra,
+                            simulator,
+                            signal,
+                            blocks,
+                            listOf(),
+                            zone,
+                        )
+                    }
+                }
+            }
+        }
+    }
+
+    private fun makeKey(
+        loadedSignalInfra: LoadedSignalInfra,
+        blockInfra: BlockInfra,
+        signal: LogicalSignalId,
+        blocks: List<BlockId>,
+        routes: List<RouteId>,
+        occupiedZone: Int,
+    ): Key {
+        val data = ArrayList<Int>(blocks.size + 3)
+        data.add(signal.index.toInt())
+        data.add(occupiedZone)
+        data.add(blocks.size)
+        for (block in blocks) data.add(block.index.toInt())
+        for (block in blocks) {
+            for (blockSignal in blockInfra.getBlockSignals(block)) {
+                val conditional = loadedSignalInfra.getParameters(blockSignal).conditional
+                if (conditional.isEmpty()) continue
+                // the simulator uses the parameters of the first matching route
+                val route = conditional.keys.firstOrNull { routes.contains(it) }
+                data.add(route?.index?.toInt() ?: -1)
+            }
+        }
+        return Key(data.toIntArray())
+    }
+
+    companion object {
+        /** About 20MB of signal states */
+        const val DEFAULT_MAX_ENTRIES = 100_000
+    }
+}
+
+/**
+ * Evaluates the state of a signal of the first block, when the given zone is occupied and the
+ * others are clear. See [SignalRequirementCache.getSignalState].
+ */
+fun evaluateSignalState(
+    rawInfra: RawInfra,
+    loadedSignalInfra: LoadedSignalInfra,
+    blockInfra: BlockInfra,
+    simulator: SignalingSimulator,
+    signal: LogicalSignalId,
+    blocks: List<BlockId>,
+    routes: List<RouteId>,
+    occupiedZone: Int,
+): SigState {
+    val zoneStates = MutableList(blocks.sumOf { nZones(blockInfra, it) }) { ZoneStatus.CLEAR }
+    if (occupiedZone < zoneStates.size) {
+        zoneStates[occupiedZone] = ZoneStatus.OCCUPIED
+    } // Otherwise we rely on the `followingZoneState` of `simulator.evaluate`
+    val simulatedSignalStates =
+        simulator.evaluate(
+            rawInfra,
+            loadedSignalInfra,
+            blockInfra,
+            blocks,
+            routes,
+            blocks.size,
+            zoneStates,
+            ZoneStatus.OCCUPIED,
+        )
+    return simulatedSignalStates[signal]!!
+}
+
+private fun nZones(blockInfra: BlockInfra, block: BlockId): Int {
+    return blockInfra.getBlockZonePaths(block).size
+}
+
+private fun hasConditionalParameters(
+    loadedSignalInfra: LoadedSignalInfra,
+    blockInfra: BlockInfra,
+    block: BlockId,
+): Boolean {
+    return blockInfra.getBlockSignals(block).any {
+        loadedSignalInfra.getParameters(it).conditional.isNotEmpty()
+    }
+}
@@ -0,0 +1,155 @@
+package fr.sncf.osrd.conflicts
+
+import fr.sncf.osrd.sim_infra.api.ZoneId
+import java.util.Arrays
+import kotlin.math.max
+
+/**
+ * For each zone, the union of the time intervals `[begin, end)` during which it is used.
+ *
+ * The intervals of all zones are stored in two flat primitive arrays, grouped by zone index. The
+ * intervals of a zone are sorted, and neither overlap nor touch each other: both their begin and
+ * end times are increasing, which makes lookups simple binary searches. This is much more compact
+ * than range sets or tree maps, which allocate several objects and boxed doubles per interval.
+ */
+class SpacingRequirementIndex
+private constructor(
+    // The intervals of the zone with index `i` are in `[zoneStarts[i], zoneStarts[i + 1])`
+    private val zoneStarts: IntArray,
+    private val begins: DoubleArray,
+    private val ends: DoubleArray,
+) {
+    /** Zones with an index greater or equal to this value have no interval */
+    val zoneCount: Int
+        get() = zoneStarts.size - 1
+
+    /** Total number of intervals, over all zones */
+    val size: Int
+        get() = begins.size
+
+    fun getBegin(interval: Int): Double {
+        return begins[interval]
+    }
+
+    fun getEnd(interval: Int): Double {
+        return ends[interval]
+    }
+
+    /** Returns the indices of the intervals of the given zone, sorted by time */
+    fun getIntervals(zone: ZoneId): IntRange {
+        val zoneIndex = zone.index.toInt()
+        if (zoneIndex >= zoneCount) return IntRange.EMPTY
+        return zoneStarts[zoneIndex]..<zoneStarts[zoneIndex + 1]
+    }
+
+    /**
+     * Returns the first interval of the zone which ends strictly after the given time, or -1 if
+     * there is none. This interval may start after the given time.
+     */
+    fun nextIntervalEndingAfter(zone: ZoneId, time: Double): Int {
+        val zoneIndex = zone.index.toInt()
+        if (zoneIndex >= zoneCount) return -1
+        var low = zoneStarts[zoneIndex]
+        val zoneEnd = zoneStarts[zoneIndex + 1]
+        var count = zoneEnd - low
+        while (count > 0) {
+            val half = count ushr 1
+            if (ends[low + half] <= time) {
+                low += half + 1
+                count -= half + 1
+            } else {
+                count = half
+            }
+        }
+        return if (low < zoneEnd) low else -1
+    }
+
+    /** Returns a view of all the intervals, without copying them */
+    fun view(): SpacingRequirementView {
+        return SpacingRequirementView(this)
+    }
+
+    /**
+     * Returns a view of the intervals which intersect `[begin, end)`, with times relative to
+     * `begin`, without copying them
+     */
+    fun window(begin: Double, end: Double): SpacingRequirementView {
+        return SpacingRequirementView(this, begin, begin, end)
+    }
+
+    /**
+     * Collects intervals, then merges them into a [SpacingRequirementIndex]. Empty intervals are
+     * ignored, overlapping or touching intervals of a zone are merged.
+     */
+    class Builder {
+        private var zones = IntArray(16)
+        private var begins = DoubleArray(16)
+        private var ends = DoubleArray(16)
+        private var size = 0
+        private var zoneCount = 0
+
+        fun add(zone: ZoneId, begin: Double, end: Double): Builder {
+            assert(begin <= end) { "interval ends before it begins: [$begin, $end)" }
+            if (begin >= end) return this
+            if (size == zones.size) {
+                val newCapacity = size * 2
+                zones = zones.copyOf(newCapacity)
+                begins = begins.copyOf(newCapacity)
+                ends = ends.copyOf(newCapacity)
+            }
+            val zoneIndex = zone.index.toInt()
+            zones[size] = zoneIndex
+            begins[size] = begin
+            ends[size] = end
+            size++
+            zoneCount = max(zoneCount, zoneIndex + 1)
+            return this
+        }
+
+        fun build(): SpacingRequirementIndex {
+            // Group intervals by zone (counting sort)
+            val zoneStarts = IntArray(zoneCount + 1)
+            for (i in 0..<size) zoneStarts[zones[i] + 1]++
+            for (zone in 0..<zoneCount) zoneStarts[zone + 1] += zoneStarts[zone]
+            val nextSlots = zoneStarts.copyOf(zoneCount)
+            val sortedBegins = DoubleArray(size)
+            val sortedEnds = DoubleArray(size)
+            for (i in 0..<size) {
+                val slot = nextSlots[zones[i]]++
+                sortedBegins[slot] = begins[i]
+                sortedEnds[slot] = ends[i]
+            }
+
+            // Begin and end times can be sorted separately: pairing the k-th begin with the k-th
+            // end gives different intervals, but the same union. This avoids sorting pairs.
+            var mergedSize = 0
+            for (zone in 0..<zoneCount) {
+                val zoneBegin = zoneStarts[zone]
+                val zoneEnd = zoneStarts[zone + 1]
+                Arrays.sort(sortedBegins, zoneBegin, zoneEnd)
+                Arrays.sort(sortedEnds, zoneBegin, zoneEnd)
+                zoneStarts[zone] = mergedSize
+                var i = zoneBegin
+                while (i < zoneEnd) {
+                    val begin = sortedBegins[i]
+                    var end = sortedEnds[i]
+                    i++
+                    while (i < zoneEnd && sortedBegins[i] <= end) {
+                        end = max(end, sortedEnds[i])
+                        i++
+                    }
+                    // Merged intervals are written over the ones that have already been read
+                    sortedBegins[mergedSize] = begin
+                    sortedEnds[mergedSize] = end
+                    mergedSize++
+                }
+            }
+            zoneStarts[zoneCount] = mergedSize
+            return SpacingRequirementIndex(
+                zoneStarts,
+                sortedBegins.copyOf(mergedSize),
+                sortedEnds.copyOf(mergedSize),
+            )
+        }
+    }
+}
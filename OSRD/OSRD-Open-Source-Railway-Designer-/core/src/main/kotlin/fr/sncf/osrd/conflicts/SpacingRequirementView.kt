@@ -0,0 +1,55 @@
+package fr.sncf.osrd.conflicts
+
+import fr.sncf.osrd.sim_infra.api.ZoneId
+import kotlin.math.max
+
+/**
+ * A read-only view of the intervals of a [SpacingRequirementIndex] which intersect a time window,
+ * with times relative to a given origin. Intervals can be extended by margins on both sides, in
+ * which case they may overlap each other: they stay sorted by begin and end times.
+ *
+ * Creating a view doesn't copy the index: it is meant to be created for each request over
+ * requirements shared by all requests.
+ */
+class SpacingRequirementView(
+    private val index: SpacingRequirementIndex,
+    // Time of the index which is the origin of the view times
+    private val timeOrigin: Double = 0.0,
+    // Intervals which don't intersect [windowBegin, windowEnd) are hidden, in index times
+    private val windowBegin: Double = Double.NEGATIVE_INFINITY,
+    private val windowEnd: Double = Double.POSITIVE_INFINITY,
+    // Duration added before and after each interval
+    private val marginBefore: Double = 0.0,
+    private val marginAfter: Double = 0.0,
+) {
+    fun getBegin(interval: Int): Double {
+        return index.getBegin(interval) - timeOrigin - marginBefore
+    }
+
+    fun getEnd(interval: Int): Double {
+        return index.getEnd(interval) - timeOrigin + marginAfter
+    }
+
+    /**
+     * Returns the first visible interval of the zone which ends strictly after the given time, or
+     * -1 if there is none. See [SpacingRequirementIndex.nextIntervalEndingAfter].
+     */
+    fun nextIntervalEndingAfter(zone: ZoneId, time: Double): Int {
+        val indexTime = max(time + timeOrigin - marginAfter, windowBegin)
+        val interval = index.nextIntervalEndingAfter(zone, indexTime)
+        if (interval == -1 || index.getBegin(interval) >= windowEnd) return -1
+        return interval
+    }
+
+    /** Returns a view of the same intervals, extended by the given margins */
+    fun withMargins(before: Double, after: Double): SpacingRequirementView {
+        return SpacingRequirementView(
+            index,
+            timeOrigin,
+            windowBegin,
+            windowEnd,
+            marginBefore + before,
+            marginAfter + after,
+        )
+    }
+}
@@ -8,7 +8,6 @@ import fr.sncf.osrd.envelope_sim.etcs.EoaType
 import fr.sncf.osrd.path.interfaces.BlockPath
 import fr.sncf.osrd.signaling.SignalingSimulator
 import fr.sncf.osrd.signaling.SignalingTrainState
-import fr.sncf.osrd.signaling.ZoneStatus
 import fr.sncf.osrd.signaling.etcs_level2.ETCS_LEVEL2
 import fr.sncf.osrd.sim_infra.api.*
 import fr.sncf.osrd.standalone_sim.CLOSED_SIGNAL_RESERVATION_MARGIN
@@ -61,6 +60,8 @@ class SpacingRequirementAutomaton(
     var incrementalPath: IncrementalPath, // Not read-only to be updated along the path
     // TODO: Required for ETCS (STDCM doesn't provide it currently, will have to eventually)
     val context: EnvelopeSimContext? = null,
+    // the signal states shared by all the trains on the infra, if set
+    val signalRequirementCache: SignalRequirementCache? = null,
 ) {
     private var nextProcessedBlock = 0
 
@@ -258,22 +259,27 @@ class SpacingRequirementAutomaton(
             nSimulatedZones += blockInfra.getBlockZonePaths(newBlock).size
         }
 
-        val zoneStates = MutableList(nSimulatedZones) { ZoneStatus.CLEAR }
-        if (probedZoneIndex - firstSimulatedZone < zoneStates.size) {
-            zoneStates[probedZoneIndex - firstSimulatedZone] = ZoneStatus.OCCUPIED
-        } // Otherwise we rely on the `followingZoneState` of `simulator.evaluate`
-        val simulatedSignalStates =
-            simulator.evaluate(
+        val signalState =
+            signalRequirementCache?.getSignalState(
                 rawInfra,
                 loadedSignalInfra,
                 blockInfra,
+                simulator,
+                pathSignal.signal,
                 blocks,
                 routes,
-                blocks.size,
-                zoneStates,
-                ZoneStatus.OCCUPIED,
+                probedZoneIndex - firstSimulatedZone,
             )
-        val signalState = simulatedSignalStates[pathSignal.signal]!!
+                ?: evaluateSignalState(
+                    rawInfra,
+                    loadedSignalInfra,
+                    blockInfra,
+                    simulator,
+                    pathSignal.signal,
+                    blocks,
+                    routes,
+                    probedZoneIndex - firstSimulatedZone,
+                )
 
         return simulator.sigModuleManager.isConstraining(
             loadedSignalInfra.getSignalingSystem(pathSignal.signal),
@@ -570,6 +576,7 @@ class SpacingRequirementAutomaton(
                 this.callbacks.clone(),
                 this.incrementalPath.clone(),
                 this.context,
+                this.signalRequirementCache,
             )
         res.nextProcessedBlock = nextProcessedBlock
         res.lastEmittedZone = lastEmittedZone
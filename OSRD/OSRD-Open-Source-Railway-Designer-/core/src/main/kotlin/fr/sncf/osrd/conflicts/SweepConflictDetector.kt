@@ -0,0 +1,343 @@
+package fr.sncf.osrd.conflicts
+
+import com.carrotsearch.hppc.IntArrayList
+import com.carrotsearch.hppc.sorting.IndirectSort
+import fr.sncf.osrd.sim_infra.api.ZoneId
+import fr.sncf.osrd.utils.parallelMap
+import java.util.Arrays
+import java.util.concurrent.ForkJoinPool
+import kotlin.math.max
+
+/**
+ * Detects the conflicts between the requirements of each zone, in `O(n log n)` time for `n`
+ * requirements on a zone, however busy the zone is.
+ *
+ * Requirements are stored in flat primitive columns, grouped by zone. The requirements of each zone
+ * are sorted by begin time, then swept:
+ * - spacing requirements conflict with every requirement they overlap, so conflict groups are runs
+ *   of requirements which begin before all the previous ones have ended
+ * - routing requirements only conflict with overlapping requirements of another zone config. The
+ *   active requirements are kept in a heap ordered by end time, and conflicting requirements are
+ *   joined in a union-find.
+ *
+ * Zones are independent, and are processed in parallel on the given pool, if any. Their conflicts
+ * are concatenated in zone order, so the result doesn't depend on the pool. If a set of zones is
+ * given, only the conflicts of these zones are detected.
+ */
+class SweepConflictDetector(
+    requirements: List<Requirements>,
+    private val pool: ForkJoinPool? = null,
+    zones: Set<ZoneId>? = null,
+) : ConflictDetector {
+    private val owners = ArrayList<RequirementId>(requirements.size)
+    private val spacing = ZoneRequirementColumns()
+    private val routing = ZoneRequirementColumns()
+    private val routingConfigs = HashMap<RoutingZoneConfig, Int>()
+
+    init {
+        for (req in requirements) {
+            val owner = owners.size
+            owners.add(req.id)
+            for (spacingReq in req.spacingRequirements) {
+                if (zones != null && !zones.contains(spacingReq.zone)) continue
+                spacing.add(spacingReq.zone, spacingReq.beginTime, spacingReq.endTime, owner, 0)
+            }
+            for (routeReq in req.routingRequirements) {
+                var beginTime = routeReq.beginTime
+                if (routeReq.zones.any { it.switches.isNotEmpty() }) beginTime -= SWITCH_MOVE_TIME
+                for (zoneReq in routeReq.zones) {
+                    if (zones != null && !zones.contains(zoneReq.zone)) continue
+                    val config =
+                        RoutingZoneConfig(
+                            zoneReq.entryDetector,
+                            zoneReq.exitDetector,
+                            zoneReq.switches,
+                        )
+                    val configId = routingConfigs.getOrPut(config) { routingConfigs.size }
+                    routing.add(zoneReq.zone, beginTime, zoneReq.endTime, owner, configId)
+                }
+            }
+        }
+    }
+
+    override fun checkConflicts(): List<Conflict> {
+        val res = mutableListOf<Conflict>()
+        val spacingZones = spacing.groupByZone()
+        for (zoneConflicts in spacingZones.parallelMap(pool) { detectSpacingConflicts(it) }) {
+            res.addAll(zoneConflicts)
+        }
+        val routingZones = routing.groupByZone()
+        for (zoneConflicts in routingZones.parallelMap(pool) { detectRoutingConflicts(it) }) {
+            res.addAll(zoneConflicts)
+        }
+        return res
+    }
+
+    private fun detectSpacingConflicts(zone: ZoneRequirementColumns.Zone): List<Conflict> {
+        val order = zone.sortByBeginTime()
+        val begins = spacing.begins
+        val ends = spacing.ends
+        var res: MutableList<Conflict>? = null
+        var i = 0
+        while (i < order.size) {
+            val groupStart = i
+            var groupEnd = ends[order[i++]]
+            while (i < order.size && begins[order[i]] < groupEnd) {
+                groupEnd = max(groupEnd, ends[order[i++]])
+            }
+            if (i - groupStart < 2) continue
+
+            val trains = mutableListOf<String>()
+            val workSchedules = mutableListOf<String>()
+            for (k in groupStart..<i) {
+                val owner = owners[spacing.owners[order[k]]]
+                when (owner.type) {
+                    RequirementType.TRAIN -> trains.add(owner.id)
+                    RequirementType.WORK_SCHEDULE -> workSchedules.add(owner.id)
+                }
+            }
+            // If there are only conflicting work schedules, skip conflict group
+            if (trains.isEmpty()) continue
+            val groupBegin = begins[order[groupStart]]
+            val conflictReq = ConflictRequirement(zone.id, groupBegin, groupEnd)
+            if (res == null) res = mutableListOf()
+            res.add(
+                Conflict(
+                    groupBegin,
+                    groupEnd,
+                    ConflictType.SPACING,
+                    listOf(conflictReq),
+                    trains,
+                    workSchedules,
+                )
+            )
+        }
+        return res ?: listOf()
+    }
+
+    private fun detectRoutingConflicts(zone: ZoneRequirementColumns.Zone): List<Conflict> {
+        val order = zone.sortByBeginTime()
+        val size = order.size
+        val begins = DoubleArray(size) { routing.begins[order[it]] }
+        val ends = DoubleArray(size) { routing.ends[order[it]] }
+        val configs = renumberConfigs(IntArray(size) { routing.configs[order[it]] })
+        val components = UnionFind(size)
+
+        val active = EndTimeHeap(ends)
+        val activeConfigCounts = IntArray(size)
+        var activeConfigs = 0
+        // Active requirements are either part of a connected set, of which `unifiedRep` is the
+        // member which ends last, or were added since without conflicting with anything
+        var unifiedRep = -1
+        val newcomers = IntArrayList()
+        for (req in 0..<size) {
+            val begin = begins[req]
+            while (!active.isEmpty() && ends[active.peek()] <= begin) {
+                if (--activeConfigCounts[configs[active.pop()]] == 0) activeConfigs--
+            }
+            val config = configs[req]
+            if (active.isEmpty()) {
+                unifiedRep = req
+                newcomers.clear()
+            } else if (activeConfigs >= 2 || configs[active.peek()] != config) {
+                // If a single config is active, it conflicts with all active requirements. If
+                // several are, all active requirements are already connected: they all overlap,
+                // and each conflicts with the ones of other configs.
+                var rep = req
+                if (ends[unifiedRep] > begin) {
+                    components.union(req, unifiedRep)
+                    if (ends[unifiedRep] > ends[rep]) rep = unifiedRep
+                }
+                for (cursor in newcomers) {
+                    val newcomer = cursor.value
+                    if (ends[newcomer] <= begin) continue
+                    components.union(req, newcomer)
+                    if (ends[newcomer] > ends[rep]) rep = newcomer
+                }
+                unifiedRep = rep
+                newcomers.clear()
+            } else {
+                newcomers.add(req)
+            }
+            active.push(req)
+            if (activeConfigCounts[config]++ == 0) activeConfigs++
+        }
+
+        // Gather the connected components of more than one requirement, in order of begin time
+        var res: MutableList<Conflict>? = null
+        val groupOfRoot = IntArray(size) { -1 }
+        val groups = mutableListOf<IntArrayList>()
+        for (req in 0..<size) {
+            val root = components.find(req)
+            if (components.size(root) < 2) continue
+            if (groupOfRoot[root] == -1) {
+                groupOfRoot[root] = groups.size
+                groups.add(IntArrayList())
+            }
+            groups[groupOfRoot[root]].add(req)
+        }
+        for (group in groups) {
+            val trains = ArrayList<String>(group.size())
+            var groupEnd = Double.NEGATIVE_INFINITY
+            for (cursor in group) {
+                trains.add(owners[routing.owners[order[cursor.value]]].id)
+                groupEnd = max(groupEnd, ends[cursor.value])
+            }
+            val groupBegin = begins[group[0]]
+            val conflictReq = ConflictRequirement(zone.id, groupBegin, groupEnd)
+            if (res == null) res = mutableListOf()
+            res.add(
+                Conflict(groupBegin, groupEnd, ConflictType.ROUTING, listOf(conflictReq), trains)
+            )
+        }
+        return res ?: listOf()
+    }
+}
+
+/** Renumbers the given config ids from 0 to the number of distinct configs */
+private fun renumberConfigs(configs: IntArray): IntArray {
+    val distinct = configs.copyOf()
+    Arrays.sort(distinct)
+    var distinctCount = 0
+    for (i in distinct.indices) {
+        if (i == 0 || distinct[i] != distinct[i - 1]) distinct[distinctCount++] = distinct[i]
+    }
+    for (i in configs.indices) configs[i] =
+        Arrays.binarySearch(distinct, 0, distinctCount, configs[i])
+    return configs
+}
+
+/** Requirements of any zone, stored in growable primitive columns */
+private class ZoneRequirementColumns {
+    var zones = IntArray(16)
+    var begins = DoubleArray(16)
+    var ends = DoubleArray(16)
+    var owners = IntArray(16)
+    var configs = IntArray(16)
+    var size = 0
+    private var zoneCount = 0
+
+    fun add(zone: ZoneId, begin: Double, end: Double, owner: Int, config: Int) {
+        if (size == zones.size) {
+            val newCapacity = size * 2
+            zones = zones.copyOf(newCapacity)
+            begins = begins.copyOf(newCapacity)
+            ends = ends.copyOf(newCapacity)
+            owners = owners.copyOf(newCapacity)
+            configs = configs.copyOf(newCapacity)
+        }
+        val zoneIndex = zone.index.toInt()
+        zones[size] = zoneIndex
+        begins[size] = begin
+        ends[size] = end
+        owners[size] = owner
+        configs[size] = config
+        size++
+        zoneCount = max(zoneCount, zoneIndex + 1)
+    }
+
+    /** The requirements of a zone, as indices in the columns */
+    inner class Zone(val id: ZoneId, private val requirements: IntArray) {
+        /**
+         * Returns the requirements of the zone, sorted by begin time, in insertion order on ties
+         */
+        fun sortByBeginTime(): IntArray {
+            val sorted =
+                IndirectSort.mergesort(0, requirements.size) { a, b ->
+                    begins[requirements[a]].compareTo(begins[requirements[b]])
+                }
+            for (i in sorted.indices) sorted[i] = requirements[sorted[i]]
+            return sorted
+        }
+    }
+
+    /** Returns the zones with at least one requirement, by increasing zone index */
+    fun groupByZone(): List<Zone> {
+        // counting sort
+        val zoneStarts = IntArray(zoneCount + 1)
+        for (i in 0..<size) zoneStarts[zones[i] + 1]++
+        for (zone in 0..<zoneCount) zoneStarts[zone + 1] += zoneStarts[zone]
+        val nextSlots = zoneStarts.copyOf(zoneCount)
+        val grouped = IntArray(size)
+        for (i in 0..<size) grouped[nextSlots[zones[i]]++] = i
+
+        val res = mutableListOf<Zone>()
+        for (zone in 0..<zoneCount) {
+            val zoneBegin = zoneStarts[zone]
+            val zoneEnd = zoneStarts[zone + 1]
+            if (zoneBegin == zoneEnd) continue
+            res.add(Zone(ZoneId(zone.toUInt()), grouped.copyOfRange(zoneBegin, zoneEnd)))
+        }
+        return res
+    }
+}
+
+/** A binary min-heap of requirements, ordered by end time */
+private class EndTimeHeap(private val ends: DoubleArray) {
+    private val heap = IntArray(ends.size)
+    private var size = 0
+
+    fun isEmpty(): Boolean {
+        return size == 0
+    }
+
+    fun peek(): Int {
+        return heap[0]
+    }
+
+    fun push(req: Int) {
+        var i = size++
+        while (i > 0) {
+            val parent = (i - 1) ushr 1
+            if (ends[heap[parent]] <= ends[req]) break
+            heap[i] = heap[parent]
+            i = parent
+        }
+        heap[i] = req
+    }
+
+    fun pop(): Int {
+        val res = heap[0]
+        val last = heap[--size]
+        var i = 0
+        while (true) {
+            var child = 2 * i + 1
+            if (child >= size) break
+            if (child + 1 < size && ends[heap[child + 1]] < ends[heap[child]]) child++
+            if (ends[last] <= ends[heap[child]]) break
+            heap[i] = heap[child]
+            i = child
+        }
+        heap[i] = last
+        return res
+    }
+}
+
+/** Disjoint sets of integers in `[0, size)`, with path halving and union by size */
+private class UnionFind(size: Int) {
+    private val parents = IntArray(size) { it }
+    private val sizes = IntArray(size) { 1 }
+
+    fun find(element: Int): Int {
+        var i = element
+        while (parents[i] != i) {
+            parents[i] = parents[parents[i]]
+            i = parents[i]
+        }
+        return i
+    }
+
+    /** Returns the size of the set, given its root */
+    fun size(root: Int): Int {
+        return sizes[root]
+    }
+
+    fun union(a: Int, b: Int) {
+        var rootA = find(a)
+        var rootB = find(b)
+        if (rootA == rootB) return
+        if (sizes[rootA] < sizes[rootB]) rootA = rootB.also { rootB = rootA }
+        parents[rootB] = rootA
+        sizes[rootA] += sizes[rootB]
+    }
+}
@@ -208,6 +208,7 @@ fun runScheduleMetadataExtractor(
             envelopeAdapter,
             incrementalPath,
             context,
+            fullInfra.signalRequirementCache,
         )
     incrementalPath.extend(
         PathFragment(
@@ -43,12 +43,16 @@ import fr.sncf.osrd.utils.units.Offset
 import fr.sncf.osrd.utils.units.meters
 import fr.sncf.osrd.utils.units.metersPerSecond
 import fr.sncf.osrd.utils.values
+import java.util.concurrent.ForkJoinPool
 import org.slf4j.Logger
 import org.slf4j.LoggerFactory
 
 val standaloneSimLogger: Logger = LoggerFactory.getLogger("StandaloneSimulation")
 
-/** Run a simulation for a single train. */
+/**
+ * Run a simulation for a single train. Allowances compute their independent ranges and sections on
+ * `allowancePool`, if any.
+ */
 fun runStandaloneSimulation(
     infra: FullInfra,
     trainPath: TrainPath,
@@ -65,6 +69,7 @@ fun runStandaloneSimulation(
     margins: RangeValues<MarginValue>,
     pathItemPositions: List<Offset<TravelledPath>>,
     driverBehaviour: DriverBehaviour = DriverBehaviour(),
+    allowancePool: ForkJoinPool? = null,
 ): SimulationSuccess {
     if (trainPath.getLength() == 0.meters) throw OSRDError(ZeroLengthPath)
     val signalingRanges = buildSignalingRanges(infra, trainPath)
@@ -126,7 +131,14 @@ fun runStandaloneSimulation(
     // Provisional envelope: the train matches the standard allowances
     val provisionalEnvelope =
         if (margins.values.isEmpty()) maxEffortEnvelope
-        else buildProvisionalEnvelope(maxEffortEnvelope, context, margins, constraintDistribution)
+        else
+            buildProvisionalEnvelope(
+                maxEffortEnvelope,
+                context,
+                margins,
+                constraintDistribution,
+                allowancePool,
+            )
     // Final envelope: the train matches the standard allowances and given scheduled points
     val finalEnvelope =
         buildFinalEnvelope(
@@ -136,6 +148,7 @@ fun runStandaloneSimulation(
             margins,
             constraintDistribution,
             schedule,
+            allowancePool,
         )
 
     // Extract all kinds of metadata from the simulation,
@@ -259,6 +272,7 @@ fun buildFinalEnvelope(
     margins: RangeValues<MarginValue>,
     allowanceType: RJSAllowanceDistribution,
     scheduledPoints: List<SimulationScheduleItem>,
+    allowancePool: ForkJoinPool? = null,
 ): Envelope {
     fun getEnvelopeTimeAt(offset: Offset<TravelledPath>): Double {
         return provisionalEnvelope.interpolateDepartureFromClamp(offset.meters)
@@ -343,8 +357,8 @@ fun buildFinalEnvelope(
     }
     val margin =
         if (allowanceType == RJSAllowanceDistribution.MARECO)
-            MarecoAllowance(0.0, maxEffortEnvelope.endPos, 1.0, marginRanges)
-        else LinearAllowance(0.0, maxEffortEnvelope.endPos, 0.0, marginRanges)
+            MarecoAllowance(0.0, maxEffortEnvelope.endPos, 1.0, marginRanges, allowancePool)
+        else LinearAllowance(0.0, maxEffortEnvelope.endPos, 0.0, marginRanges, allowancePool)
     return margin.apply(maxEffortEnvelope, context)
 }
 
@@ -413,6 +427,7 @@ fun buildProvisionalEnvelope(
     context: EnvelopeSimContext,
     rawMargins: RangeValues<MarginValue>,
     constraintDistribution: RJSAllowanceDistribution,
+    allowancePool: ForkJoinPool? = null,
 ): Envelope {
     val marginRanges = mutableListOf<AllowanceRange>()
     // Add path extremities to boundaries
@@ -438,8 +453,8 @@ fun buildProvisionalEnvelope(
     }
     val margin =
         if (constraintDistribution == RJSAllowanceDistribution.MARECO)
-            MarecoAllowance(0.0, maxEffortEnvelope.endPos, 1.0, marginRanges)
-        else LinearAllowance(0.0, maxEffortEnvelope.endPos, 0.0, marginRanges)
+            MarecoAllowance(0.0, maxEffortEnvelope.endPos, 1.0, marginRanges, allowancePool)
+        else LinearAllowance(0.0, maxEffortEnvelope.endPos, 0.0, marginRanges, allowancePool)
     return margin.apply(maxEffortEnvelope, context)
 }
 
@@ -0,0 +1,94 @@
+package fr.sncf.osrd.stdcm.graph
+
+import fr.sncf.osrd.envelope.Envelope
+import java.util.concurrent.atomic.LongAdder
+
+/**
+ * Block envelopes simulated by STDCM, shared by the requests using the same infra version, rolling
+ * stock, comfort, speed limit tag and time step. It can be read and filled by several requests at
+ * once. When the estimated footprint exceeds `maxBytes`, or when `charge` asks for it, the least
+ * recently used envelopes are dropped to make room for new ones.
+ *
+ * `charge` is called with the footprint of the cache each time it changes. It returns how many
+ * bytes the cache must release to stay within a budget shared with other caches, or null if the
+ * cache shouldn't be filled anymore.
+ */
+class BlockEnvelopeCache(
+    private val maxBytes: Long = Long.MAX_VALUE,
+    private val charge: BlockEnvelopeCache.(footprint: Long) -> Long? = { 0 },
+) {
+    // ordered from the least to the most recently used
+    private val envelopes = LinkedHashMap<BlockSimulationParameters, Envelope>(16, 0.75f, true)
+    private var footprint = 0L
+    private val hits = LongAdder()
+    private val misses = LongAdder()
+
+    /** The number of cached envelopes */
+    val size: Int
+        @Synchronized get() = envelopes.size
+
+    /** The number of lookups which found an envelope */
+    val hitCount: Long
+        get() = hits.sum()
+
+    /** The number of lookups which didn't find an envelope */
+    val missCount: Long
+        get() = misses.sum()
+
+    /** Returns the cached envelope of a block, if any */
+    @Synchronized
+    fun get(blockParams: BlockSimulationParameters): Envelope? {
+        val envelope = envelopes[blockParams]
+        if (envelope != null) hits.increment() else misses.increment()
+        return envelope
+    }
+
+    /**
+     * Adds the envelope of a block, dropping the least recently used ones if needed. Returns false
+     * if the envelope wasn't kept.
+     */
+    @Synchronized
+    fun put(blockParams: BlockSimulationParameters, envelope: Envelope): Boolean {
+        if (envelopes.containsKey(blockParams)) return true
+        // envelopes compute their times lazily: do it before other threads can read them
+        envelope.totalTime
+        envelopes[blockParams] = envelope
+        footprint += estimateHeapFootprint(envelope)
+        val excess = charge(footprint)
+        if (excess == null) {
+            remove(blockParams)
+            return false
+        }
+        val target = minOf(maxBytes, footprint - excess)
+        if (footprint > target) {
+            val iterator = envelopes.values.iterator()
+            while (footprint > target && iterator.hasNext()) {
+                footprint -= estimateHeapFootprint(iterator.next())
+                iterator.remove()
+            }
+            charge(footprint)
+        }
+        return envelopes.containsKey(blockParams)
+    }
+
+    /** Returns the estimated heap used by the cached envelopes */
+    @Synchronized
+    fun estimateHeapFootprint(): Long {
+        return footprint
+    }
+
+    private fun remove(blockParams: BlockSimulationParameters) {
+        val envelope = envelopes.remove(blockParams) ?: return
+        footprint -= estimateHeapFootprint(envelope)
+    }
+}
+
+/**
+ * Estimates the heap used by a cached block envelope: 32B per point for its positions, speeds, time
+ * deltas and cumulative times, about 200B per part, and 200B for the envelope and its key
+ */
+private fun estimateHeapFootprint(envelope: Envelope): Long {
+    var points = 0L
+    for (part in envelope) points += part.pointCount()
+    return points * 32 + envelope.size() * 200L + 200
+}
@@ -41,10 +41,11 @@ class STDCMGraph(
     val tag: String?,
     val standardAllowance: AllowanceValue?,
     val temporarySpeedLimitManager: TemporarySpeedLimitManager = TemporarySpeedLimitManager(),
+    blockEnvelopeCache: BlockEnvelopeCache? = null,
 ) : Graph<STDCMNode, STDCMEdge, STDCMEdge> {
     val rawInfra = fullInfra.rawInfra!!
     val blockInfra = fullInfra.blockInfra!!
-    var stdcmSimulations: STDCMSimulations = STDCMSimulations()
+    var stdcmSimulations: STDCMSimulations = STDCMSimulations(blockEnvelopeCache)
     val delayManager: DelayManager =
         DelayManager(minScheduleTimeStart, maxRunTime, blockAvailability, this, timeStep)
     val allowanceManager = EngineeringAllowanceManager(rollingStock.constGamma, this)
@@ -41,6 +41,8 @@ val logger: Logger = LoggerFactory.getLogger("STDCM")
 
 /**
  * Find a path for a new train that exclusively uses tracks at times when they're available.
+ * `blockEnvelopeCache` holds block envelopes shared with other requests, it must match the infra,
+ * rolling stock, comfort, tag and time step. It must not be set with temporary speed limits.
  *
  * For a detailed explanation of how this module works, there is some general documentation on the
  * OSRD website: https://osrd.fr/en/docs/reference/design-docs/stdcm/
@@ -59,6 +61,7 @@ fun findPath(
     standardAllowance: AllowanceValue?,
     pathfindingTimeout: Double,
     temporarySpeedLimitManager: TemporarySpeedLimitManager,
+    blockEnvelopeCache: BlockEnvelopeCache? = null,
 ): STDCMResult? {
     return STDCMPathfinding(
             fullInfra,
@@ -74,6 +77,7 @@ fun findPath(
             standardAllowance,
             pathfindingTimeout,
             temporarySpeedLimitManager,
+            blockEnvelopeCache,
         )
         .findPath()
 }
@@ -92,6 +96,7 @@ class STDCMPathfinding(
     standardAllowance: AllowanceValue?,
     private val pathfindingTimeout: Double = Pathfinding.TIMEOUT,
     private val temporarySpeedLimitManager: TemporarySpeedLimitManager,
+    blockEnvelopeCache: BlockEnvelopeCache? = null,
 ) {
 
     private var starts: Set<STDCMNode> = HashSet()
@@ -109,6 +114,7 @@ class STDCMPathfinding(
             tag,
             standardAllowance,
             temporarySpeedLimitManager,
+            blockEnvelopeCache,
         )
 
     @WithSpan(value = "STDCM pathfinding", kind = SpanKind.SERVER)
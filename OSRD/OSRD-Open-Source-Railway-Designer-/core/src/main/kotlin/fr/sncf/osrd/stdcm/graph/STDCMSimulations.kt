@@ -29,17 +29,29 @@ import fr.sncf.osrd.utils.units.Distance
 import fr.sncf.osrd.utils.units.Offset
 import java.lang.ref.SoftReference
 
-/** This class contains all the methods used to simulate the train behavior. */
-class STDCMSimulations {
+/**
+ * This class contains all the methods used to simulate the train behavior. Block envelopes are
+ * looked up in `sharedEnvelopes` first, if set, which is filled by previous requests.
+ */
+class STDCMSimulations(private val sharedEnvelopes: BlockEnvelopeCache? = null) {
     private var simulatedEnvelopes: HashMap<BlockSimulationParameters, SoftReference<Envelope>?> =
         HashMap()
 
     // Used to log how many simulations failed (to log it once at the end of the processing)
     private var nFailedSimulation = 0
 
+    /** The number of block envelopes found in a cache */
+    var nCacheHits = 0
+        private set
+
+    /** The number of block envelopes which had to be simulated */
+    var nCacheMisses = 0
+        private set
+
     /**
      * Returns the corresponding envelope if the block's envelope has already been computed in
-     * simulatedEnvelopes, otherwise computes the matching envelope and adds it to the STDCMGraph.
+     * sharedEnvelopes or simulatedEnvelopes, otherwise computes the matching envelope and adds it
+     * to the STDCMGraph.
      */
     fun simulateBlock(
         rawInfra: RawSignalingInfra,
@@ -51,8 +63,14 @@ class STDCMSimulations {
         infraExplorer: InfraExplorer,
         blockParams: BlockSimulationParameters,
     ): Envelope? {
-        val cached = simulatedEnvelopes.getOrDefault(blockParams, null)?.get()
-        if (cached != null) return cached
+        val cached =
+            sharedEnvelopes?.get(blockParams)
+                ?: simulatedEnvelopes.getOrDefault(blockParams, null)?.get()
+        if (cached != null) {
+            nCacheHits++
+            return cached
+        }
+        nCacheMisses++
         val simulatedEnvelope =
             simulateBlock(
                 rawInfra,
@@ -66,7 +84,12 @@ class STDCMSimulations {
                 trainTag,
                 temporarySpeedLimitManager,
             )
-        simulatedEnvelopes[blockParams] = SoftReference(simulatedEnvelope)
+        // failed simulations, and envelopes which don't fit in the shared cache, stay local
+        if (
+            simulatedEnvelope == null ||
+                sharedEnvelopes?.put(blockParams, simulatedEnvelope) != true
+        )
+            simulatedEnvelopes[blockParams] = SoftReference(simulatedEnvelope)
         return simulatedEnvelope
     }
 
@@ -129,6 +152,10 @@ class STDCMSimulations {
      * end. Aggregates events into fewer log entries.
      */
     fun logWarnings() {
+        if (sharedEnvelopes != null)
+            logger.info(
+                "$nCacheHits block envelopes were found in the cache, $nCacheMisses were simulated"
+            )
         if (nFailedSimulation > 0)
             logger.info(
                 "A total of $nFailedSimulation STDCM Simulations failed during the search (usually because of lack of traction)"
@@ -110,6 +110,7 @@ fun initInfraExplorerWithEnvelope(
                     fullInfra.signalingSimulator,
                     IncrementalRequirementEnvelopeAdapter(rollingStock, null, false),
                     explorer.getIncrementalPath(),
+                    signalRequirementCache = fullInfra.signalRequirementCache,
                 ),
                 rollingStock,
             )
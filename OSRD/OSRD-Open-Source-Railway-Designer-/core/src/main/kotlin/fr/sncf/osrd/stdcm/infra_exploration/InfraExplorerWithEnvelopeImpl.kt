@@ -102,6 +102,7 @@ data class InfraExplorerWithEnvelopeImpl(
                         endAtStop(),
                     ),
                     getIncrementalPath(),
+                    signalRequirementCache = spacingRequirementAutomaton.signalRequirementCache,
                 ),
             spacingRequirementsCache = null,
             envelopeCache = null,
@@ -160,6 +161,7 @@ data class InfraExplorerWithEnvelopeImpl(
                     endAtStop(),
                 ),
                 getIncrementalPath(),
+                signalRequirementCache = spacingRequirementAutomaton.signalRequirementCache,
             )
         val res =
             newAutomaton.processPathUpdate() as? SpacingRequirements
@@ -1,13 +1,9 @@
 package fr.sncf.osrd.stdcm.preprocessing.implementation
 
-import com.google.common.collect.Range
-import com.google.common.collect.RangeSet
-import com.google.common.collect.TreeRangeSet
 import fr.sncf.osrd.conflicts.*
 import fr.sncf.osrd.envelope_utils.DoubleBinarySearch
 import fr.sncf.osrd.path.interfaces.TrainPath
 import fr.sncf.osrd.path.interfaces.TravelledPath
-import fr.sncf.osrd.sim_infra.api.ZoneId
 import fr.sncf.osrd.standalone_sim.CLOSED_SIGNAL_RESERVATION_MARGIN
 import fr.sncf.osrd.stdcm.infra_exploration.InfraExplorerWithEnvelope
 import fr.sncf.osrd.stdcm.infra_exploration.LocatedStep
@@ -378,24 +374,7 @@ fun makeBlockAvailability(
     var requirements = parsedRequirements
     if (gridMarginAfterTrain != 0.0 || gridMarginBeforeTrain != 0.0) {
         // The margin expected *after* the new train is added *before* the other train resource uses
-        val rangeSets = mutableMapOf<ZoneId, RangeSet<Double>>()
-        for ((zoneId, map) in parsedRequirements) {
-            val set = rangeSets.computeIfAbsent(zoneId) { TreeRangeSet.create() }
-            for (range in map.values) {
-                set.add(
-                    Range.closedOpen(
-                        range.lowerEndpoint() - gridMarginAfterTrain,
-                        range.upperEndpoint() + gridMarginBeforeTrain,
-                    )
-                )
-            }
-        }
-        requirements =
-            rangeSets
-                .map {
-                    it.key to TreeMap(it.value.asRanges().associate { it.upperEndpoint() to it })
-                }
-                .toMap()
+        requirements = parsedRequirements.withMargins(gridMarginAfterTrain, gridMarginBeforeTrain)
     }
 
     // Only keep steps with planned timing data
@@ -20,7 +20,7 @@ public class ApiTest {
 
     ElectricalProfileSetManager electricalProfileSetManager = null;
 
-    private static OkHttpClient mockHttpClient(String regex) throws IOException {
+    protected static OkHttpClient mockHttpClient(String regex) throws IOException {
         final OkHttpClient okHttpClient = mock(OkHttpClient.class);
         final Call remoteCall = mock(Call.class);
 
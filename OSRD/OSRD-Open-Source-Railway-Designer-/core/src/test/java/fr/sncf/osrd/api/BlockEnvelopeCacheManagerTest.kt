@@ -0,0 +1,120 @@
+package fr.sncf.osrd.api
+
+import fr.sncf.osrd.envelope.Envelope
+import fr.sncf.osrd.envelope.part.EnvelopePart
+import fr.sncf.osrd.envelope_sim.EnvelopeProfile
+import fr.sncf.osrd.railjson.schema.rollingstock.Comfort
+import fr.sncf.osrd.sim_infra.api.BlockId
+import fr.sncf.osrd.stdcm.graph.BlockSimulationParameters
+import fr.sncf.osrd.utils.units.Offset
+import fr.sncf.osrd.utils.units.meters
+import java.util.concurrent.CyclicBarrier
+import java.util.concurrent.Executors
+import kotlin.test.assertEquals
+import kotlin.test.assertFalse
+import kotlin.test.assertNotNull
+import kotlin.test.assertNotSame
+import kotlin.test.assertNull
+import kotlin.test.assertSame
+import kotlin.test.assertTrue
+import org.junit.jupiter.api.Test
+
+class BlockEnvelopeCacheManagerTest {
+    @Test
+    fun envelopesAreSharedPerKey() {
+        val manager = BlockEnvelopeCacheManager(CacheBudget(1_000_000))
+        val cache = manager.get(key("train"))
+        assertSame(cache, manager.get(key("train")))
+        assertNotSame(cache, manager.get(key("other train")))
+        assertNotSame(cache, manager.get(key("train", infraVersion = 2)))
+
+        assertNull(cache.get(params(0)))
+        assertTrue(cache.put(params(0), envelope()))
+        assertSame(cache.get(params(0)), manager.get(key("train")).get(params(0)))
+        assertEquals(BlockEnvelopeCacheManager.Metrics(2, 1), manager.getMetrics())
+        assertEquals(2.0 / 3, manager.getMetrics().hitRate)
+    }
+
+    @Test
+    fun envelopesAreEvicted() {
+        val budget = CacheBudget(10_000)
+        val manager = BlockEnvelopeCacheManager(budget)
+        val first = manager.get(key("a"))
+        first.put(params(0), envelope())
+        first.get(params(0))
+        val second = manager.get(key("b"))
+        // the group grows up to the budget, which evicts the other group
+        for (block in 0..<100) assertTrue(second.put(params(block), envelope()))
+        assertFalse(manager.isCached(key("a")))
+        assertTrue(manager.isCached(key("b")))
+        assertEquals(1, budget.getMetrics(BlockEnvelopeCacheManager.BUDGET_CACHE_NAME).evictions)
+        // lookups of evicted groups are still counted
+        assertEquals(1, manager.getMetrics().hits)
+        // then it drops its least recently used envelopes
+        assertTrue(second.estimateHeapFootprint() <= 10_000)
+        assertEquals(second.estimateHeapFootprint(), budget.usedBytes())
+        assertNull(second.get(params(0)))
+        assertNotNull(second.get(params(99)))
+        // envelopes added to an evicted group are not kept
+        assertFalse(first.put(params(1), envelope()))
+    }
+
+    @Test
+    fun groupsInUseShareTheBudget() {
+        val budget = CacheBudget(10_000)
+        val manager = BlockEnvelopeCacheManager(budget)
+        val filled = CyclicBarrier(3)
+        val checked = CyclicBarrier(3)
+        val executor = Executors.newFixedThreadPool(2)
+        val requests =
+            listOf("a", "b").map { rollingStock ->
+                executor.submit {
+                    RequestCacheLeases.run {
+                        val cache = manager.get(key(rollingStock))
+                        for (block in 0..<100) cache.put(params(block), envelope())
+                        filled.await()
+                        checked.await()
+                    }
+                }
+            }
+        filled.await()
+        // neither group can evict the other while they are in use
+        assertTrue(manager.isCached(key("a")))
+        assertTrue(manager.isCached(key("b")))
+        assertTrue(budget.usedBytes() <= 10_000)
+        checked.await()
+        for (request in requests) request.get()
+        executor.shutdown()
+
+        // another corridor searched with the full group is still cached
+        val cache = manager.get(key("a"))
+        for (block in 1000..<1010) assertTrue(cache.put(params(block), envelope()))
+        for (block in 1000..<1010) assertNotNull(cache.get(params(block)))
+        assertTrue(budget.usedBytes() <= 10_000)
+    }
+
+    private fun key(rollingStock: String, infraVersion: Int = 1): BlockEnvelopeCacheKey {
+        return BlockEnvelopeCacheKey(
+            "infra",
+            infraVersion,
+            rollingStock,
+            Comfort.STANDARD,
+            null,
+            2.0,
+        )
+    }
+
+    private fun params(block: Int): BlockSimulationParameters {
+        return BlockSimulationParameters(BlockId(block.toUInt()), 0.0, Offset(0.meters), null)
+    }
+
+    private fun envelope(): Envelope {
+        return Envelope.make(
+            EnvelopePart.generateTimes(
+                listOf(EnvelopeProfile.CONSTANT_SPEED),
+                doubleArrayOf(0.0, 100.0),
+                doubleArrayOf(30.0, 30.0),
+            )
+        )
+    }
+}
@@ -0,0 +1,123 @@
+package fr.sncf.osrd.api
+
+import fr.sncf.osrd.utils.parallelMap
+import java.time.Duration
+import java.util.concurrent.ForkJoinPool
+import kotlin.test.assertEquals
+import kotlin.test.assertFalse
+import kotlin.test.assertTrue
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.runBlocking
+import kotlinx.coroutines.withContext
+import org.junit.jupiter.api.Test
+
+class CacheBudgetTest {
+    private val evicted = mutableListOf<String>()
+
+    private fun CacheBudget.load(id: String, footprint: Long = 10) {
+        recordLoad(CacheBudget.Key("test", id), footprint, Duration.ofSeconds(1)) {
+            evicted.add(id)
+        }
+    }
+
+    private fun CacheBudget.hit(id: String) {
+        assertTrue(recordHit(CacheBudget.Key("test", id)))
+    }
+
+    @Test
+    fun lruEvictsLeastRecentlyUsed() {
+        val budget = CacheBudget(30, EvictionPolicy.LRU)
+        budget.load("a")
+        budget.load("b")
+        budget.load("c")
+        budget.hit("a")
+        budget.hit("a")
+        budget.hit("b")
+        budget.load("d")
+        assertEquals(listOf("c"), evicted)
+        assertEquals(30, budget.usedBytes())
+    }
+
+    @Test
+    fun lfuEvictsLeastFrequentlyUsed() {
+        val budget = CacheBudget(30, EvictionPolicy.LFU)
+        budget.load("a")
+        budget.load("b")
+        budget.load("c")
+        budget.hit("a")
+        budget.hit("c")
+        budget.load("d")
+        assertEquals(listOf("b"), evicted)
+    }
+
+    @Test
+    fun loadedEntryIsKeptWhenAloneOverBudget() {
+        val budget = CacheBudget(5)
+        budget.load("a")
+        budget.load("b")
+        assertEquals(listOf("a"), evicted)
+        assertEquals(10, budget.usedBytes())
+    }
+
+    @Test
+    fun entriesInUseAreNotEvicted() {
+        val budget = CacheBudget(20)
+        budget.load("a")
+        budget.load("b")
+        RequestCacheLeases.run {
+            budget.hit("a")
+            budget.load("c")
+            // b is evicted instead of a, which was used earlier but is still in use
+            assertEquals(listOf("b"), evicted)
+            budget.load("d")
+            // a and c are in use, and d was just loaded
+            assertEquals(listOf("b"), evicted)
+            assertEquals(30, budget.usedBytes())
+        }
+        // once released, the least recently used entry in excess is evicted
+        assertEquals(listOf("b", "a"), evicted)
+        assertEquals(20, budget.usedBytes())
+    }
+
+    @Test
+    fun entriesUsedOnOtherThreadsAreHeldByTheRequest() {
+        val budget = CacheBudget(20)
+        budget.load("a")
+        budget.load("b")
+        budget.load("c")
+        assertEquals(listOf("a"), evicted)
+        RequestCacheLeases.run {
+            listOf("b", "c").parallelMap(pool) { budget.hit(it) }
+            runBlocking(RequestCacheLeases.asContextElement()) {
+                withContext(Dispatchers.Default) { budget.load("d") }
+            }
+            // b, c and d are in use by the request
+            assertEquals(listOf("a"), evicted)
+            assertEquals(30, budget.usedBytes())
+        }
+        // then b or c, whichever was used first, is evicted
+        assertEquals(2, evicted.size)
+        assertEquals(20, budget.usedBytes())
+    }
+
+    @Test
+    fun metrics() {
+        val budget = CacheBudget(10)
+        budget.load("a")
+        budget.hit("a")
+        budget.load("b")
+        budget.load("a")
+        assertFalse(budget.recordHit(CacheBudget.Key("test", "b")))
+
+        val metrics = budget.getMetrics("test")
+        assertEquals(1, metrics.hits)
+        assertEquals(3, metrics.misses)
+        assertEquals(2, metrics.evictions)
+        assertEquals(1, metrics.reloads)
+        assertEquals(Duration.ofSeconds(1), metrics.reloadTime)
+    }
+
+    companion object {
+        private val pool = ForkJoinPool(2)
+    }
+}
@@ -0,0 +1,53 @@
+package fr.sncf.osrd.api
+
+import fr.sncf.osrd.conflicts.RequirementId
+import fr.sncf.osrd.conflicts.RequirementType
+import fr.sncf.osrd.conflicts.Requirements
+import fr.sncf.osrd.conflicts.SpacingRequirement
+import fr.sncf.osrd.sim_infra.api.ZoneId
+import kotlin.test.assertEquals
+import kotlin.test.assertFalse
+import kotlin.test.assertNotNull
+import kotlin.test.assertNull
+import kotlin.test.assertTrue
+import org.junit.jupiter.api.Test
+
+class ConflictSessionManagerTest {
+    @Test
+    fun sessionsAreBoundToInfraVersions() {
+        val manager = ConflictSessionManager(CacheBudget(Long.MAX_VALUE))
+        assertNull(manager.update("infra", 1, TIMETABLE_ID, false, listOf(train("a")), listOf()))
+        val first = manager.update("infra", 1, TIMETABLE_ID, true, listOf(train("a")), listOf())
+        assertEquals(0, first!!.addedConflicts.size)
+        val second = manager.update("infra", 1, TIMETABLE_ID, false, listOf(train("b")), listOf())
+        assertEquals(1, second!!.addedConflicts.size)
+        assertNull(manager.update("infra", 2, TIMETABLE_ID, false, listOf(), listOf()))
+    }
+
+    @Test
+    fun sessionsAreEvicted() {
+        val budget = CacheBudget(1_000)
+        val manager = ConflictSessionManager(budget)
+        manager.update("infra", 1, 1, true, listOf(train("a")), listOf())
+        assertTrue(manager.hasSession(1))
+        // the session grows over the budget, which evicts the other session
+        manager.update("infra", 1, 2, true, listOf(train("a")), listOf())
+        assertTrue(manager.hasSession(1))
+        val trains = (0..<10).map { train("$it") }
+        assertNotNull(manager.update("infra", 1, 2, false, trains, listOf()))
+        assertFalse(manager.hasSession(1))
+        assertEquals(1, budget.getMetrics(ConflictSessionManager.BUDGET_CACHE_NAME).evictions)
+    }
+
+    private fun train(id: String): Requirements {
+        return Requirements(
+            RequirementId(id, RequirementType.TRAIN),
+            listOf(SpacingRequirement(ZoneId(0u), 0.0, 100.0, true)),
+            listOf(),
+        )
+    }
+
+    companion object {
+        private const val TIMETABLE_ID = 42
+    }
+}
@@ -2,7 +2,10 @@ package fr.sncf.osrd.api;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.AssertionsForClassTypes.assertThatThrownBy;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import fr.sncf.osrd.path.legacy_objects.ElectricalProfileMapping;
 import fr.sncf.osrd.reporting.exceptions.ErrorType;
@@ -55,6 +58,20 @@ public class ElectricalProfileSetManagerTest extends ApiTest {
         verifyProfileMap(profileMap);
     }
 
+    @Test
+    public void profileSetsAreAccountedInCacheBudget() throws IOException {
+        var budget = new CacheBudget(Long.MAX_VALUE, EvictionPolicy.LRU);
+        var manager = new ElectricalProfileSetManager(
+                "http://test.com/", null, mockHttpClient(".*/electrical_profile_set/(.*)/"), budget);
+        var profileMap = manager.getProfileMap("small_infra/external_generated_inputs.json");
+        assertSame(profileMap, manager.getProfileMap("small_infra/external_generated_inputs.json"));
+
+        var metrics = budget.getMetrics(ElectricalProfileSetManager.BUDGET_CACHE_NAME);
+        assertEquals(1, metrics.getMisses());
+        assertEquals(1, metrics.getHits());
+        assertTrue(budget.usedBytes() > 0);
+    }
+
     /** Check that a profile map is coherent */
     public static void verifyProfileMap(ElectricalProfileMapping profileMap) {
         assert profileMap != null;
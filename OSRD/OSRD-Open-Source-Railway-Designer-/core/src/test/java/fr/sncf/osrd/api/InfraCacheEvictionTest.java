@@ -0,0 +1,75 @@
+package fr.sncf.osrd.api;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import fr.sncf.osrd.reporting.exceptions.OSRDError;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+
+public class InfraCacheEvictionTest extends ApiTest {
+    private static final String SMALL_INFRA = "small_infra/infra.json";
+    private static final String TINY_INFRA = "tiny_infra/infra.json";
+
+    private static Set<String> cachedInfras(InfraManager manager) {
+        var ids = new HashSet<String>();
+        manager.forEach((id, entry) -> ids.add(id));
+        return ids;
+    }
+
+    private static InfraManager makeManager(CacheBudget budget) throws IOException {
+        return new InfraManager(
+                "http://test.com/", null, mockHttpClient(".*/infra/(.*)/railjson.*"), null, null, budget);
+    }
+
+    @Test
+    public void leastRecentlyUsedInfraIsEvicted() throws IOException, OSRDError, InterruptedException {
+        // only fits one infra at a time
+        var budget = new CacheBudget(1, EvictionPolicy.LRU);
+        var manager = makeManager(budget);
+        manager.load(SMALL_INFRA, null);
+        manager.load(TINY_INFRA, null);
+        assertEquals(Set.of(TINY_INFRA), cachedInfras(manager));
+        assertFalse(budget.isCached(new CacheBudget.Key(InfraManager.BUDGET_CACHE_NAME, SMALL_INFRA)));
+
+        manager.getInfra(SMALL_INFRA, null);
+        assertEquals(Set.of(SMALL_INFRA), cachedInfras(manager));
+        var metrics = budget.getMetrics(InfraManager.BUDGET_CACHE_NAME);
+        assertEquals(3, metrics.getMisses());
+        assertEquals(2, metrics.getEvictions());
+        assertEquals(1, metrics.getReloads());
+    }
+
+    @Test
+    public void infraInUseIsNotEvicted() throws IOException, OSRDError, InterruptedException {
+        // only fits small_infra
+        var smallFootprint = InfraManagerKt.estimateHeapFootprint(makeManager(null).load(SMALL_INFRA, null));
+        var budget = new CacheBudget(smallFootprint, EvictionPolicy.LRU);
+        var manager = makeManager(budget);
+        RequestCacheLeases.run(() -> {
+            try {
+                var small = manager.getInfra(SMALL_INFRA, null);
+                manager.getInfra(TINY_INFRA, null);
+                assertEquals(Set.of(SMALL_INFRA, TINY_INFRA), cachedInfras(manager));
+                assertSame(small, manager.getInfra(SMALL_INFRA, null));
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+            return null;
+        });
+        // once the request is done, the least recently used infra is evicted
+        assertEquals(Set.of(SMALL_INFRA), cachedInfras(manager));
+        assertEquals(1, budget.getMetrics(InfraManager.BUDGET_CACHE_NAME).getHits());
+    }
+
+    @Test
+    public void footprintGrowsWithInfraSize() throws IOException, OSRDError, InterruptedException {
+        var manager = makeManager(null);
+        var small = InfraManagerKt.estimateHeapFootprint(manager.load(SMALL_INFRA, null));
+        var tiny = InfraManagerKt.estimateHeapFootprint(manager.load(TINY_INFRA, null));
+        assertTrue(tiny < small);
+        // small_infra was measured to take about 1MB of heap
+        assertTrue(small > 500_000 && small < 2_000_000);
+    }
+}
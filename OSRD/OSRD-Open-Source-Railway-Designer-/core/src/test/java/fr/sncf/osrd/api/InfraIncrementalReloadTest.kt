@@ -0,0 +1,112 @@
+package fr.sncf.osrd.api
+
+import fr.sncf.osrd.railjson.schema.infra.RJSInfra
+import fr.sncf.osrd.railjson.schema.infra.RJSInfraDiff
+import fr.sncf.osrd.railjson.schema.infra.trackobjects.RJSSignal
+import fr.sncf.osrd.sim_infra.api.LogicalSignalId
+import fr.sncf.osrd.sim_infra.api.RawInfra
+import fr.sncf.osrd.utils.Helpers
+import java.nio.file.Files
+import java.nio.file.Path
+import kotlin.test.assertEquals
+import kotlin.test.assertSame
+import okhttp3.OkHttpClient
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.io.TempDir
+import org.mockito.Mockito.mockingDetails
+
+class InfraIncrementalReloadTest : ApiTest() {
+    @Test
+    fun signalUpdateIsAppliedWithoutDownload(@TempDir diffDir: Path) {
+        writeSignalDiff(diffDir) {
+            it.logicalSignals.first().defaultParameters = mapOf("jaune_cli" to "true")
+        }
+        val httpClient = mockHttpClient(INFRA_REGEX)
+        val manager = makeManager(httpClient, diffDir)
+        val oldInfra = manager.load(INFRA_ID, null)
+
+        val newInfra = manager.getInfra(INFRA_ID, 2)
+        assertEquals(1, countDownloads(httpClient))
+        val entry = getEntry(manager)
+        assertEquals(InfraManager.InfraStatus.CACHED, entry.status)
+        assertEquals(2, entry.version)
+        assertSame(newInfra, manager.getInfra(INFRA_ID, 2))
+
+        val signal = findLogicalSignal(newInfra.rawInfra, "SA2")
+        assertEquals(
+            mapOf("jaune_cli" to "true"),
+            newInfra.rawInfra.getRawParameters(signal).default,
+        )
+        // the previous version isn't modified, requests using it are unaffected
+        assertEquals(
+            mapOf("jaune_cli" to "false"),
+            oldInfra.rawInfra.getRawParameters(signal).default,
+        )
+    }
+
+    @Test
+    fun unsupportedDiffIsDownloaded(@TempDir diffDir: Path) {
+        writeSignalDiff(diffDir) { it.position += 10.0 }
+        val httpClient = mockHttpClient(INFRA_REGEX)
+        val manager = makeManager(httpClient, diffDir)
+        manager.load(INFRA_ID, null)
+
+        manager.load(INFRA_ID, 2)
+        assertEquals(2, countDownloads(httpClient))
+        assertEquals(InfraManager.InfraStatus.BUILDING_BLOCKS, getEntry(manager).lastStatus)
+    }
+
+    @Test
+    fun missingDiffIsDownloaded(@TempDir diffDir: Path) {
+        val httpClient = mockHttpClient(INFRA_REGEX)
+        val manager = makeManager(httpClient, diffDir)
+        manager.load(INFRA_ID, null)
+
+        manager.load(INFRA_ID, 2)
+        assertEquals(2, countDownloads(httpClient))
+    }
+
+    companion object {
+        private const val INFRA_ID = "small_infra/infra.json"
+        private const val INFRA_REGEX = ".*/infra/(.*)/railjson.*"
+
+        private fun makeManager(httpClient: OkHttpClient, diffDir: Path): InfraManager {
+            return InfraManager(
+                "http://test.com/",
+                null,
+                httpClient,
+                diffProvider = JsonInfraDiffProvider(diffDir.toString()),
+            )
+        }
+
+        private fun countDownloads(httpClient: OkHttpClient): Int {
+            return mockingDetails(httpClient).invocations.count { it.method.name == "newCall" }
+        }
+
+        private fun getEntry(manager: InfraManager): InfraManager.InfraCacheEntry {
+            var entry: InfraManager.InfraCacheEntry? = null
+            manager.forEach { _, it -> entry = it }
+            return entry!!
+        }
+
+        /** Writes the diff of an update of the signal SA2 from version 1 to version 2 */
+        private fun writeSignalDiff(diffDir: Path, update: (RJSSignal) -> Unit) {
+            val rjsInfra = Helpers.getExampleInfra(INFRA_ID)
+            val signal = rjsInfra.signals.first { it.id == "SA2" }
+            update(signal)
+            val diff = RJSInfraDiff()
+            diff.fromVersion = 1
+            diff.toVersion = 2
+            diff.updated = RJSInfra()
+            diff.updated.signals = listOf(signal)
+            val path = diffDir.resolve(INFRA_ID).resolve("1-2.json")
+            Files.createDirectories(path.parent)
+            Files.writeString(path, RJSInfraDiff.adapter.toJson(diff))
+        }
+
+        private fun findLogicalSignal(infra: RawInfra, name: String): LogicalSignalId {
+            val signal = infra.physicalSignals.first { infra.getPhysicalSignalName(it) == name }
+            return infra.getLogicalSignals(signal).first()
+        }
+    }
+}
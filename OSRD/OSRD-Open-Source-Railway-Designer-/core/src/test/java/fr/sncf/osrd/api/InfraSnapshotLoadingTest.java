@@ -0,0 +1,66 @@
+package fr.sncf.osrd.api;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import fr.sncf.osrd.api.InfraManager.InfraStatus;
+import fr.sncf.osrd.reporting.exceptions.OSRDError;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class InfraSnapshotLoadingTest extends ApiTest {
+    private static final String INFRA_ID = "small_infra/infra.json";
+
+    private static InfraManager.InfraCacheEntry getEntry(InfraManager manager) {
+        var entries = new InfraManager.InfraCacheEntry[1];
+        manager.forEach((id, entry) -> entries[0] = entry);
+        return entries[0];
+    }
+
+    private static InfraManager makeManager(Path cacheDir) throws IOException {
+        return new InfraManager(
+                "http://test.com/", null, mockHttpClient(".*/infra/(.*)/railjson.*"), cacheDir.toString());
+    }
+
+    @Test
+    public void restartedManagerLoadsSnapshot(@TempDir Path cacheDir)
+            throws IOException, OSRDError, InterruptedException {
+        var downloaded = makeManager(cacheDir).load(INFRA_ID, null);
+        try (var files = Files.list(cacheDir)) {
+            assertEquals(1, files.count());
+        }
+
+        var restarted = makeManager(cacheDir);
+        var loaded = restarted.load(INFRA_ID, 1);
+        var entry = getEntry(restarted);
+        assertEquals(InfraStatus.CACHED, entry.getStatus());
+        assertEquals(InfraStatus.LOADING_SNAPSHOT, entry.getLastStatus());
+        assertEquals(1, entry.getVersion());
+        assertNotSame(downloaded.rawInfra(), loaded.rawInfra());
+    }
+
+    @Test
+    public void outdatedSnapshotIsIgnored(@TempDir Path cacheDir) throws IOException, OSRDError, InterruptedException {
+        makeManager(cacheDir).load(INFRA_ID, null);
+
+        var restarted = makeManager(cacheDir);
+        restarted.load(INFRA_ID, 2);
+        assertEquals(InfraStatus.BUILDING_BLOCKS, getEntry(restarted).getLastStatus());
+    }
+
+    @Test
+    public void corruptedSnapshotIsIgnored(@TempDir Path cacheDir) throws IOException, OSRDError, InterruptedException {
+        makeManager(cacheDir).load(INFRA_ID, null);
+        try (var files = Files.list(cacheDir)) {
+            var snapshot = files.findFirst().orElseThrow();
+            var bytes = Files.readAllBytes(snapshot);
+            Files.write(snapshot, java.util.Arrays.copyOf(bytes, bytes.length / 2));
+        }
+
+        var restarted = makeManager(cacheDir);
+        restarted.load(INFRA_ID, null);
+        assertEquals(InfraStatus.BUILDING_BLOCKS, getEntry(restarted).getLastStatus());
+    }
+}
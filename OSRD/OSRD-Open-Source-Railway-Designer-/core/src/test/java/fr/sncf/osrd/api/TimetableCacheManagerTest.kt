@@ -0,0 +1,172 @@
+package fr.sncf.osrd.api
+
+import fr.sncf.osrd.sim_infra.api.RawInfra
+import fr.sncf.osrd.sim_infra.api.ZoneId
+import java.nio.file.Path
+import kotlin.test.assertEquals
+import kotlin.test.assertNull
+import kotlinx.coroutines.runBlocking
+import okhttp3.OkHttpClient
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.io.TempDir
+import org.mockito.Mockito.mock
+
+class TimetableCacheManagerTest {
+    private val infra = mock(RawInfra::class.java)
+
+    /** Serves versions of a timetable, and the changes between consecutive versions */
+    private class FakeTimetableProvider : TimetableProvider {
+        val versions = mutableListOf<Map<String, TrainSpacingRequirements>>()
+        var fetches = 0
+        var deltaFetches = 0
+        var hasDeltas = true
+
+        override fun getTimetableRequirements(
+            infraId: String,
+            infra: RawInfra,
+            timetableId: TimetableId,
+        ): Map<String, TrainSpacingRequirements> {
+            fetches++
+            return versions.last()
+        }
+
+        override fun getTimetableDelta(
+            infraId: String,
+            infra: RawInfra,
+            timetableId: TimetableId,
+            fromVersion: Int,
+            toVersion: Int,
+        ): TimetableDelta? {
+            if (!hasDeltas) return null
+            deltaFetches++
+            val from = versions[fromVersion]
+            val to = versions[toVersion]
+            return TimetableDelta(
+                to.filter { from[it.key] !== it.value },
+                from.keys.filter { !to.containsKey(it) },
+            )
+        }
+    }
+
+    @Test
+    fun deltasAreApplied() {
+        val provider = FakeTimetableProvider()
+        provider.versions.add(mapOf("a" to train(0, 0.0, 100.0), "b" to train(0, 50.0, 200.0)))
+        val cache = TimetableCacheManager(provider, CacheBudget(Long.MAX_VALUE))
+        val first = get(cache, 0)
+        assertEquals(listOf(0.0 to 200.0), getIntervals(first, 0))
+
+        // replace a train, add another one
+        provider.versions.add(
+            mapOf(
+                "a" to train(0, 0.0, 100.0),
+                "b" to train(0, 300.0, 400.0),
+                "c" to train(1, 0.0, 10.0),
+            )
+        )
+        val second = get(cache, 1)
+        assertEquals(listOf(0.0 to 100.0, 300.0 to 400.0), getIntervals(second, 0))
+        assertEquals(listOf(0.0 to 10.0), getIntervals(second, 1))
+        // removals are exact, even when requirements of trains overlap
+        provider.versions.add(mapOf("b" to train(0, 300.0, 400.0)))
+        val third = get(cache, 2)
+        assertEquals(listOf(300.0 to 400.0), getIntervals(third, 0))
+        assertEquals(listOf(), getIntervals(third, 1))
+
+        assertEquals(1, provider.fetches)
+        assertEquals(2, provider.deltaFetches)
+        assertEquals(2, cache.getCachedTimetable(TIMETABLE_ID)!!.version)
+        // requests on the previous versions are unaffected
+        assertEquals(listOf(0.0 to 200.0), getIntervals(first, 0))
+    }
+
+    @Test
+    fun upToDateTimetableIsNotFetched() {
+        val provider = FakeTimetableProvider()
+        provider.versions.add(mapOf("a" to train(0, 0.0, 100.0)))
+        provider.versions.add(mapOf("a" to train(0, 0.0, 100.0)))
+        val cache = TimetableCacheManager(provider, CacheBudget(Long.MAX_VALUE))
+        get(cache, 1)
+        get(cache, 1)
+        get(cache, 0)
+        get(cache, null)
+        assertEquals(1, provider.fetches)
+        assertEquals(0, provider.deltaFetches)
+    }
+
+    @Test
+    fun missingDeltaIsFetched() {
+        val provider = FakeTimetableProvider()
+        provider.hasDeltas = false
+        provider.versions.add(mapOf("a" to train(0, 0.0, 100.0)))
+        val cache = TimetableCacheManager(provider, CacheBudget(Long.MAX_VALUE))
+        get(cache, 0)
+        provider.versions.add(mapOf("a" to train(0, 50.0, 100.0)))
+        assertEquals(listOf(50.0 to 100.0), getIntervals(get(cache, 1), 0))
+        assertEquals(2, provider.fetches)
+    }
+
+    @Test
+    fun downloaderDoesNotFetchDeltasByDefault() {
+        // no request is sent: the server doesn't exist
+        val downloader = TimetableDownloader("http://localhost:1/", "", OkHttpClient())
+        assertNull(downloader.getTimetableDelta("infra", infra, 1, 0, 1))
+    }
+
+    @Test
+    fun timetablesAreEvicted() {
+        val provider = FakeTimetableProvider()
+        provider.versions.add(mapOf("a" to train(0, 0.0, 100.0)))
+        val footprint = CachedTimetable(null, provider.versions.last()).estimateHeapFootprint()
+        val budget = CacheBudget(footprint * 3 / 2)
+        val cache = TimetableCacheManager(provider, budget)
+        runBlocking {
+            cache.get("infra", infra, 1)
+            cache.get("infra", infra, 2)
+        }
+        assertNull(cache.getCachedTimetable(1))
+        runBlocking { cache.get("infra", infra, 1) }
+        assertEquals(3, provider.fetches)
+        assertEquals(1, budget.getMetrics(TimetableCacheManager.BUDGET_CACHE_NAME).reloads)
+    }
+
+    @Test
+    fun localCacheIsVersioned(@TempDir cacheDir: Path) {
+        val provider = FakeTimetableProvider()
+        provider.hasDeltas = false
+        provider.versions.add(mapOf("a" to train(0, 0.0, 100.0)))
+        get(TimetableCacheManager(provider, CacheBudget(Long.MAX_VALUE), cacheDir.toString()), 0)
+        get(TimetableCacheManager(provider, CacheBudget(Long.MAX_VALUE), cacheDir.toString()), 0)
+        assertEquals(1, provider.fetches)
+
+        provider.versions.add(mapOf("a" to train(0, 50.0, 100.0)))
+        val requirements =
+            get(
+                TimetableCacheManager(provider, CacheBudget(Long.MAX_VALUE), cacheDir.toString()),
+                1,
+            )
+        assertEquals(listOf(50.0 to 100.0), getIntervals(requirements, 0))
+        assertEquals(2, provider.fetches)
+    }
+
+    private fun get(cache: TimetableCacheManager, version: Int?): STDCMRequirements {
+        return runBlocking { cache.get("infra", infra, TIMETABLE_ID, version) }
+    }
+
+    private fun train(zone: Int, begin: Double, end: Double): TrainSpacingRequirements {
+        return TrainSpacingRequirements(intArrayOf(zone), doubleArrayOf(begin), doubleArrayOf(end))
+    }
+
+    private fun getIntervals(
+        requirements: STDCMRequirements,
+        zone: Int,
+    ): List<Pair<Double, Double>> {
+        return requirements.getIntervals(ZoneId(zone.toUInt())).map {
+            requirements.getBegin(it) to requirements.getEnd(it)
+        }
+    }
+
+    companion object {
+        private const val TIMETABLE_ID = 42
+    }
+}
@@ -311,6 +311,57 @@ class SpacingResourceGeneratorTest {
         assertTrue { iterationResult != NotEnoughPath }
     }
 
+    @Test
+    fun testSignalRequirementCache() {
+        val length = Distance(millimeters = blockLengths.sumOf { it.distance.millimeters })
+        fun generate(cache: SignalRequirementCache): List<SpacingRequirement> {
+            val path = incrementalPathOf(infra.rawInfra, infra.blockInfra)
+            path.extend(
+                PathFragment(
+                    routes,
+                    blocks,
+                    stops = listOf(),
+                    containsStart = true,
+                    containsEnd = true,
+                    0.meters,
+                    0.meters,
+                )
+            )
+            val automaton =
+                SpacingRequirementAutomaton(
+                    infra.rawInfra,
+                    infra.loadedSignalInfra,
+                    infra.blockInfra,
+                    infra.signalingSimulator,
+                    makeCallbacks(length, true),
+                    path,
+                    signalRequirementCache = cache,
+                )
+            return (automaton.processPathUpdate() as SpacingRequirements).requirements
+        }
+
+        // the second train on the same path doesn't evaluate any signal state
+        val cache = SignalRequirementCache()
+        assertEquals(resourceUseOnSingleCall, generate(cache))
+        val misses = cache.missCount
+        assertTrue(misses > 0)
+        assertEquals(resourceUseOnSingleCall, generate(cache))
+        assertEquals(misses, cache.missCount)
+        assertEquals(misses, cache.hitCount)
+
+        val prewarmedCache = SignalRequirementCache()
+        prewarmedCache.prewarm(
+            infra.rawInfra,
+            infra.loadedSignalInfra,
+            infra.blockInfra,
+            infra.signalingSimulator,
+        )
+        val prewarmMisses = prewarmedCache.missCount
+        assertEquals(resourceUseOnSingleCall, generate(prewarmedCache))
+        assertTrue(prewarmedCache.hitCount > 0)
+        assertTrue(prewarmedCache.missCount - prewarmMisses < misses)
+    }
+
     /**
      * The train stops and restarts within sight distance of a signal, with a stop on closed signal.
      */
@@ -0,0 +1,187 @@
+package fr.sncf.osrd.conflicts
+
+import com.carrotsearch.hppc.IntArrayList
+import fr.sncf.osrd.sim_infra.api.RouteId
+import fr.sncf.osrd.sim_infra.api.ZoneId
+
+interface ResourceRequirement {
+    val beginTime: Double
+    val endTime: Double
+}
+
+/**
+ * The conflict detector used before [SweepConflictDetector], which compares the overlapping
+ * requirements of each zone pairwise. It is kept as a reference for tests and benchmarks.
+ */
+class ConflictDetectorImpl(requirements: List<Requirements>) : ConflictDetector {
+    private val spacingZoneRequirements =
+        mutableMapOf<ZoneId, MutableList<SpacingZoneRequirement>>()
+    private val routingZoneRequirements =
+        mutableMapOf<ZoneId, MutableList<RoutingZoneRequirement>>()
+
+    init {
+        generateSpacingRequirements(requirements)
+        generateRoutingRequirements(requirements)
+    }
+
+    data class SpacingZoneRequirement(
+        val id: RequirementId,
+        override val beginTime: Double,
+        override val endTime: Double,
+    ) : ResourceRequirement
+
+    private fun generateSpacingRequirements(requirements: List<Requirements>) {
+        // organize requirements by zone
+        for (req in requirements) {
+            for (spacingReq in req.spacingRequirements) {
+                val zoneReq =
+                    SpacingZoneRequirement(req.id, spacingReq.beginTime, spacingReq.endTime)
+                spacingZoneRequirements.getOrPut(spacingReq.zone) { mutableListOf() }.add(zoneReq)
+            }
+        }
+    }
+
+    data class RoutingZoneRequirement(
+        val trainId: String,
+        val route: RouteId,
+        override val beginTime: Double,
+        override val endTime: Double,
+        val config: RoutingZoneConfig,
+    ) : ResourceRequirement
+
+    private fun generateRoutingRequirements(requirements: List<Requirements>) {
+        // reorganize requirements by zone
+        for (trainRequirements in requirements) {
+            val trainId = trainRequirements.id.id
+            for (routeRequirements in trainRequirements.routingRequirements) {
+                val route = routeRequirements.route
+                var beginTime = routeRequirements.beginTime
+                if (routeRequirements.zones.any { it.switches.isNotEmpty() })
+                    beginTime -= SWITCH_MOVE_TIME
+                for (zoneRequirement in routeRequirements.zones) {
+                    val endTime = zoneRequirement.endTime
+                    val config =
+                        RoutingZoneConfig(
+                            zoneRequirement.entryDetector,
+                            zoneRequirement.exitDetector,
+                            zoneRequirement.switches,
+                        )
+                    val requirement =
+                        RoutingZoneRequirement(trainId, route, beginTime, endTime, config)
+                    routingZoneRequirements
+                        .getOrPut(zoneRequirement.zone) { mutableListOf() }
+                        .add(requirement)
+                }
+            }
+        }
+    }
+
+    override fun checkConflicts(): List<Conflict> {
+        val res = mutableListOf<Conflict>()
+        res.addAll(detectSpacingConflicts())
+        res.addAll(detectRoutingConflicts())
+        return res
+    }
+
+    private fun detectSpacingConflicts(): List<Conflict> {
+        // look for requirement times overlaps.
+        // as spacing requirements are exclusive, any overlap is a conflict
+        val res = mutableListOf<Conflict>()
+        for (entry in spacingZoneRequirements) {
+            for (conflictGroup in detectConflicts(entry.value) { _, _ -> true }) {
+                val beginTime = conflictGroup.minBy { it.beginTime }.beginTime
+                val endTime = conflictGroup.maxBy { it.endTime }.endTime
+                // If there are only conflicting work schedules, skip conflict group
+                if (conflictGroup.all { it.id.type == RequirementType.WORK_SCHEDULE }) {
+                    continue
+                }
+                val trains =
+                    conflictGroup.filter { it.id.type == RequirementType.TRAIN }.map { it.id.id }
+                val workSchedules =
+                    conflictGroup
+                        .filter { it.id.type == RequirementType.WORK_SCHEDULE }
+                        .map { it.id.id }
+                val conflictReq = ConflictRequirement(entry.key, beginTime, endTime)
+                res.add(
+                    Conflict(
+                        beginTime,
+                        endTime,
+                        ConflictType.SPACING,
+                        listOf(conflictReq),
+                        trains,
+                        workSchedules,
+                    )
+                )
+            }
+        }
+        return res
+    }
+
+    private fun detectRoutingConflicts(): List<Conflict> {
+        // for each zone, check compatibility of overlapping requirements
+        val res = mutableListOf<Conflict>()
+        for (entry in routingZoneRequirements) {
+            for (conflictGroup in detectConflicts(entry.value) { a, b -> a.config != b.config }) {
+                val trains = conflictGroup.map { it.trainId }
+                val beginTime = conflictGroup.minBy { it.beginTime }.beginTime
+                val endTime = conflictGroup.maxBy { it.endTime }.endTime
+                val conflictReq = ConflictRequirement(entry.key, beginTime, endTime)
+                res.add(
+                    Conflict(beginTime, endTime, ConflictType.ROUTING, listOf(conflictReq), trains)
+                )
+            }
+        }
+        return res
+    }
+}
+
+/**
+ * Return a list of requirement conflict groups. If requirements pairs (A, B) and (B, C) are
+ * conflicting, then (A, B, C) are part of the same conflict group.
+ */
+private fun <ReqT : ResourceRequirement> detectConflicts(
+    requirements: MutableList<ReqT>,
+    conflicting: (ReqT, ReqT) -> Boolean,
+): List<List<ReqT>> {
+    val conflictGroups = mutableListOf<MutableList<ReqT>>()
+
+    // a lookup table from requirement to conflict group index, if any
+    val conflictGroupMap = Array(requirements.size) { -1 }
+
+    val activeRequirements = IntArrayList()
+
+    requirements.sortBy { it.beginTime }
+    for (requirementIndex in 0 until requirements.size) {
+        val requirement = requirements[requirementIndex]
+        // remove inactive requirements
+        activeRequirements.removeAll { requirements[it].endTime <= requirement.beginTime }
+
+        // check compatibility with active requirements
+        val conflictingGroups = IntArrayList()
+        for (activeRequirementCursor in activeRequirements) {
+            val activeRequirementIndex = activeRequirementCursor.value
+            val activeRequirement = requirements[activeRequirementIndex]
+            if (!conflicting(activeRequirement, requirement)) continue
+
+            val conflictGroup = conflictGroupMap[activeRequirementIndex]
+            // if there is no conflict group for this active requirement, create one
+            if (conflictGroup == -1) {
+                conflictGroupMap[activeRequirementIndex] = conflictGroups.size
+                conflictGroupMap[requirementIndex] = conflictGroups.size
+                conflictGroups.add(mutableListOf(activeRequirement, requirement))
+                continue
+            }
+
+            // if this requirement was already added to the conflict group, skip it
+            if (conflictingGroups.contains(conflictGroup)) continue
+            conflictingGroups.add(conflictGroup)
+
+            // otherwise, add the requirement to the existing conflict group
+            conflictGroups[conflictGroup].add(requirement)
+        }
+
+        // add to active requirements
+        activeRequirements.add(requirementIndex)
+    }
+    return conflictGroups
+}
@@ -0,0 +1,126 @@
+package fr.sncf.osrd.conflicts
+
+import fr.sncf.osrd.sim_infra.api.DetectorId
+import fr.sncf.osrd.sim_infra.api.DirDetectorId
+import fr.sncf.osrd.sim_infra.api.RouteId
+import fr.sncf.osrd.sim_infra.api.ZoneId
+import fr.sncf.osrd.utils.Direction
+import kotlin.random.Random
+import kotlin.test.assertEquals
+import org.junit.jupiter.api.Test
+
+class ConflictSessionTests {
+    @Test
+    fun onlyChangedConflictsAreReturned() {
+        val session = ConflictSession()
+        val initial =
+            session.update(
+                listOf(
+                    train("a", 0, 0.0, 100.0),
+                    train("b", 0, 50.0, 150.0),
+                    train("c", 1, 0.0, 100.0),
+                    train("d", 1, 50.0, 150.0),
+                ),
+                listOf(),
+            )
+        assertEquals(2, initial.addedConflicts.size)
+        assertEquals(0, initial.removedConflicts.size)
+
+        // moving d away solves its conflict with c, and leaves the one between a and b untouched
+        val moved = session.update(listOf(train("d", 1, 100.0, 150.0)), listOf())
+        assertEquals(0, moved.addedConflicts.size)
+        assertEquals(listOf(setOf("c", "d")), moved.removedConflicts.map { it.trainIds.toSet() })
+
+        // moving b only changes the time range of its conflict with a
+        val extended = session.update(listOf(train("b", 0, 50.0, 200.0)), listOf())
+        assertEquals(200.0, extended.addedConflicts.single().endTime)
+        assertEquals(150.0, extended.removedConflicts.single().endTime)
+
+        val deleted = session.update(listOf(), listOf(RequirementId("a", RequirementType.TRAIN)))
+        assertEquals(0, deleted.addedConflicts.size)
+        assertEquals(listOf(setOf("a", "b")), deleted.removedConflicts.map { it.trainIds.toSet() })
+        assertEquals(0, session.getConflicts().size)
+    }
+
+    @Test
+    fun randomUpdatesMatchFullDetection() {
+        for (seed in 0..<50) {
+            val random = Random(seed)
+            val session = ConflictSession()
+            val timetable = mutableMapOf<RequirementId, Requirements>()
+            var known = setOf<String>()
+            repeat(30) { step ->
+                val updated = mutableListOf<Requirements>()
+                val deleted = mutableListOf<RequirementId>()
+                repeat(random.nextInt(1, 4)) {
+                    val id = RequirementId("${random.nextInt(15)}", randomType(random))
+                    // only the last change of each id is kept
+                    updated.removeIf { it.id == id }
+                    deleted.remove(id)
+                    if (random.nextInt(4) == 0) {
+                        deleted.add(id)
+                        timetable.remove(id)
+                    } else {
+                        val requirements = generateRequirements(random, id)
+                        updated.add(requirements)
+                        timetable[id] = requirements
+                    }
+                }
+                val changes = session.update(updated, deleted)
+
+                val expected = detectConflicts(timetable.values.toList()).map { describe(it) }
+                val actual = session.getConflicts().map { describe(it) }
+                assertEquals(expected.sorted(), actual.sorted(), "seed $seed, step $step")
+                val removed = changes.removedConflicts.map { describe(it) }.toSet()
+                val added = changes.addedConflicts.map { describe(it) }.toSet()
+                assertEquals(actual.toSet(), known - removed + added, "seed $seed, step $step")
+                known = actual.toSet()
+            }
+        }
+    }
+
+    private fun describe(conflict: Conflict): String {
+        val requirements =
+            conflict.requirements.map { "${it.zone.index} [${it.startTime}, ${it.endTime})" }
+        return "${conflict.conflictType} [${conflict.startTime}, ${conflict.endTime}) " +
+            "${conflict.trainIds.sorted()} ${conflict.workScheduleIds.sorted()} $requirements"
+    }
+
+    private fun randomType(random: Random): RequirementType {
+        return if (random.nextInt(5) == 0) RequirementType.WORK_SCHEDULE else RequirementType.TRAIN
+    }
+
+    private fun generateRequirements(random: Random, id: RequirementId): Requirements {
+        val spacingReqs = mutableListOf<SpacingRequirement>()
+        val routingReqs = mutableListOf<RoutingRequirement>()
+        val detector = DirDetectorId(DetectorId(0u), Direction.INCREASING)
+        repeat(random.nextInt(1, 5)) {
+            val zone = ZoneId(random.nextInt(6).toUInt())
+            val begin = random.nextInt(100).toDouble()
+            val end = begin + random.nextInt(1, 30)
+            spacingReqs.add(SpacingRequirement(zone, begin, end, true))
+            if (id.type == RequirementType.TRAIN) {
+                val config = random.nextInt(3)
+                val switches = if (config == 0) mapOf() else mapOf("switch" to "position $config")
+                val zoneReq =
+                    RoutingRequirement.RoutingZoneRequirement(
+                        zone,
+                        detector,
+                        detector,
+                        switches,
+                        end,
+                    )
+                routingReqs.add(RoutingRequirement(RouteId(0u), begin, listOf(zoneReq)))
+            }
+        }
+        return Requirements(id, spacingReqs, routingReqs)
+    }
+
+    private fun train(id: String, zone: Int, begin: Double, end: Double): Requirements {
+        return Requirements(
+            RequirementId(id, RequirementType.TRAIN),
+            listOf(SpacingRequirement(ZoneId(zone.toUInt()), begin, end, true)),
+            listOf(),
+        )
+    }
+}
@@ -26,6 +26,25 @@ class IncrementalConflictDetectorTests {
         assertEquals(1_800.0, res.minDelayWithoutConflicts)
     }
 
+    @Test
+    fun overlappingViewsTest() {
+        val first = SpacingRequirementIndex.Builder().add(ZoneId(0u), 0.0, 1_000.0).build()
+        val second =
+            SpacingRequirementIndex.Builder()
+                .add(ZoneId(0u), 900.0, 1_500.0)
+                .add(ZoneId(0u), 2_000.0, 3_000.0)
+                .build()
+        val detector =
+            IncrementalConflictDetector(ParsedRequirements(listOf(first.view(), second.view())))
+        val res = checkConflict(detector, SimpleRequirement(0, 200.0, 450.0)) as ConflictResponse
+        assertEquals(200.0, res.firstConflictTime)
+        assertEquals(1_300.0, res.minDelayWithoutConflicts)
+        val available =
+            checkConflict(detector, SimpleRequirement(0, 1_600.0, 1_700.0)) as NoConflictResponse
+        assertEquals(300.0, available.maxDelayWithoutConflicts)
+        assertEquals(2_000.0, available.timeOfNextConflict)
+    }
+
     fun makeDetector(vararg requirements: SimpleRequirement): IncrementalConflictDetector {
         return IncrementalConflictDetector(
             generateSpacingZoneUses(
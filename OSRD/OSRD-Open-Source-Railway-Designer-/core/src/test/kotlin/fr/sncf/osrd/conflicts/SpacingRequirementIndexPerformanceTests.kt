@@ -0,0 +1,125 @@
+package fr.sncf.osrd.conflicts
+
+import com.google.common.collect.Range
+import com.google.common.collect.TreeRangeSet
+import fr.sncf.osrd.sim_infra.api.ZoneId
+import java.util.TreeMap
+import kotlin.random.Random
+import org.junit.jupiter.api.Disabled
+import org.junit.jupiter.api.Test
+
+@Disabled(
+    "to be enabled when running profilers or benchmarks, not part of the tests to run by default"
+)
+class SpacingRequirementIndexPerformanceTests {
+    @Test
+    fun compareWithTreeMaps() {
+        /*
+        Compares the heap usage and lookup time of the spacing requirements of a large timetable,
+        stored in a SpacingRequirementIndex or in tree maps of guava ranges (previous format).
+
+        The generated timetable has 5000 trains, each going through 300 consecutive zones of a
+        line of 20 000 zones, over a day. The lookups are the ones made by the conflict detector
+        when checking a new train.
+         */
+        val requirements = generateTimetable(Random(0), 5_000, 300, 20_000)
+        println("${requirements.size} spacing requirements")
+
+        val treeMapHeap = measureHeap { buildTreeMaps(requirements) }
+        val indexHeap = measureHeap { buildIndex(requirements) }
+        println("heap: tree maps %.1fMB, index %.1fMB".format(treeMapHeap.second, indexHeap.second))
+
+        val detectors =
+            listOf(
+                "tree maps" to TreeMapConflictDetector(treeMapHeap.first),
+                "index" to
+                    IncrementalConflictDetector(ParsedRequirements(listOf(indexHeap.first.view()))),
+            )
+        val newTrains = (0..<1_000).map { generateTimetable(Random(it), 1, 300, 20_000) }
+        for ((name, detector) in detectors) {
+            var best = Double.POSITIVE_INFINITY
+            repeat(5) {
+                val start = System.nanoTime()
+                for (newTrain in newTrains) {
+                    when (detector) {
+                        is TreeMapConflictDetector -> detector.minDelay(newTrain)
+                        is IncrementalConflictDetector -> detector.analyseConflicts(newTrain)
+                    }
+                }
+                best = minOf(best, (System.nanoTime() - start) / 1e6)
+            }
+            println("$name: %.1fms for ${newTrains.size} trains".format(best))
+        }
+    }
+
+    private fun generateTimetable(
+        random: Random,
+        trainCount: Int,
+        zonesPerTrain: Int,
+        zoneCount: Int,
+    ): List<SpacingRequirement> {
+        val res = ArrayList<SpacingRequirement>(trainCount * zonesPerTrain)
+        repeat(trainCount) {
+            val firstZone = random.nextInt(zoneCount - zonesPerTrain)
+            var time = random.nextDouble(86_400.0)
+            for (zone in firstZone..<firstZone + zonesPerTrain) {
+                val duration = random.nextDouble(30.0, 120.0)
+                res.add(SpacingRequirement(ZoneId(zone.toUInt()), time, time + duration, true))
+                time += duration / 3
+            }
+        }
+        return res
+    }
+
+    private fun buildIndex(requirements: List<SpacingRequirement>): SpacingRequirementIndex {
+        val builder = SpacingRequirementIndex.Builder()
+        for (req in requirements) builder.add(req.zone, req.beginTime, req.endTime)
+        return builder.build()
+    }
+
+    private fun buildTreeMaps(
+        requirements: List<SpacingRequirement>
+    ): Map<ZoneId, TreeMap<Double, Range<Double>>> {
+        val rangeSets = mutableMapOf<ZoneId, TreeRangeSet<Double>>()
+        for (req in requirements) {
+            val set = rangeSets.computeIfAbsent(req.zone) { TreeRangeSet.create() }
+            set.add(Range.closedOpen(req.beginTime, req.endTime))
+        }
+        return rangeSets.mapValues {
+            TreeMap(it.value.asRanges().associateBy { it.upperEndpoint() })
+        }
+    }
+
+    /** Returns the built value and the heap it retains, in MB */
+    private fun <T> measureHeap(build: () -> T): Pair<T, Double> {
+        val runtime = Runtime.getRuntime()
+        System.gc()
+        val before = runtime.totalMemory() - runtime.freeMemory()
+        val res = build()
+        System.gc()
+        val after = runtime.totalMemory() - runtime.freeMemory()
+        return Pair(res, (after - before) / 1e6)
+    }
+
+    /** The conflict detection loop, as it used to be written over tree maps */
+    private class TreeMapConflictDetector(
+        val spacingZoneUses: Map<ZoneId, TreeMap<Double, Range<Double>>>
+    ) {
+        fun minDelay(spacingRequirements: List<SpacingRequirement>): Double {
+            var minDelay = 0.0
+            while (true) {
+                var hasIncreasedDelay = false
+                for (spacingRequirement in spacingRequirements) {
+                    val map = spacingZoneUses[spacingRequirement.zone] ?: continue
+                    val requirementStart = minDelay + spacingRequirement.beginTime
+                    val requirementEnd = minDelay + spacingRequirement.endTime
+                    val entry = map.higherEntry(requirementStart) ?: continue
+                    if (entry.value.lowerEndpoint() >= requirementEnd) continue
+                    minDelay += entry.value.upperEndpoint() - requirementStart
+                    hasIncreasedDelay = true
+                }
+                if (!hasIncreasedDelay || minDelay.isInfinite()) return minDelay
+            }
+        }
+    }
+}
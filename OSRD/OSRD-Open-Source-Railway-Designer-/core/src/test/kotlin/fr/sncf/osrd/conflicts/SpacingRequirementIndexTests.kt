@@ -0,0 +1,122 @@
+package fr.sncf.osrd.conflicts
+
+import com.google.common.collect.Range
+import com.google.common.collect.TreeRangeSet
+import fr.sncf.osrd.sim_infra.api.ZoneId
+import kotlin.random.Random
+import kotlin.test.Test
+import kotlin.test.assertEquals
+
+class SpacingRequirementIndexTests {
+    @Test
+    fun mergesOverlappingIntervals() {
+        val index =
+            SpacingRequirementIndex.Builder()
+                .add(ZoneId(1u), 10.0, 20.0)
+                .add(ZoneId(1u), 0.0, 5.0)
+                .add(ZoneId(1u), 15.0, 30.0)
+                .add(ZoneId(1u), 30.0, 40.0)
+                .add(ZoneId(1u), 50.0, 50.0)
+                .add(ZoneId(3u), 0.0, 1.0)
+                .build()
+        assertEquals(listOf(0.0 to 5.0, 10.0 to 40.0), getIntervals(index, ZoneId(1u)))
+        assertEquals(listOf(), getIntervals(index, ZoneId(0u)))
+        assertEquals(listOf(), getIntervals(index, ZoneId(2u)))
+        assertEquals(listOf(0.0 to 1.0), getIntervals(index, ZoneId(3u)))
+        assertEquals(listOf(), getIntervals(index, ZoneId(42u)))
+        assertEquals(3, index.size)
+    }
+
+    @Test
+    fun nextIntervalEndingAfter() {
+        val index =
+            SpacingRequirementIndex.Builder()
+                .add(ZoneId(0u), 0.0, 5.0)
+                .add(ZoneId(0u), 10.0, 20.0)
+                .add(ZoneId(1u), 100.0, 200.0)
+                .build()
+        val zone = ZoneId(0u)
+        assertEquals(0, index.nextIntervalEndingAfter(zone, -1.0))
+        assertEquals(0, index.nextIntervalEndingAfter(zone, 4.0))
+        assertEquals(1, index.nextIntervalEndingAfter(zone, 5.0))
+        assertEquals(1, index.nextIntervalEndingAfter(zone, 15.0))
+        assertEquals(-1, index.nextIntervalEndingAfter(zone, 20.0))
+        assertEquals(-1, index.nextIntervalEndingAfter(ZoneId(2u), 0.0))
+    }
+
+    @Test
+    fun sameUnionAsRangeSet() {
+        val random = Random(42)
+        val builder = SpacingRequirementIndex.Builder()
+        val rangeSets = mutableMapOf<ZoneId, TreeRangeSet<Double>>()
+        repeat(10_000) {
+            val zone = ZoneId(random.nextInt(50).toUInt())
+            val begin = random.nextInt(100_000).toDouble()
+            val end = begin + random.nextInt(1_000)
+            builder.add(zone, begin, end)
+            rangeSets
+                .computeIfAbsent(zone) { TreeRangeSet.create() }
+                .add(Range.closedOpen(begin, end))
+        }
+        val index = builder.build()
+        for (zoneIndex in 0..<50) {
+            val zone = ZoneId(zoneIndex.toUInt())
+            val expected =
+                rangeSets[zone]?.asRanges()?.map { it.lowerEndpoint() to it.upperEndpoint() }
+            assertEquals(expected.orEmpty(), getIntervals(index, zone))
+            repeat(100) {
+                val time = random.nextInt(101_000).toDouble()
+                val expectedEntry =
+                    rangeSets[zone]?.asRanges()?.firstOrNull { it.upperEndpoint() > time }
+                val interval = index.nextIntervalEndingAfter(zone, time)
+                assertEquals(
+                    expectedEntry?.lowerEndpoint(),
+                    if (interval == -1) null else index.getBegin(interval),
+                )
+            }
+        }
+    }
+
+    @Test
+    fun windowView() {
+        val index =
+            SpacingRequirementIndex.Builder()
+                .add(ZoneId(0u), 0.0, 100.0)
+                .add(ZoneId(0u), 200.0, 300.0)
+                .add(ZoneId(0u), 400.0, 500.0)
+                .build()
+        val view = index.window(150.0, 400.0)
+        val zone = ZoneId(0u)
+        // The first interval ends before the window, the last one starts at its end
+        assertEquals(1, view.nextIntervalEndingAfter(zone, -1_000.0))
+        assertEquals(50.0, view.getBegin(1))
+        assertEquals(150.0, view.getEnd(1))
+        assertEquals(-1, view.nextIntervalEndingAfter(zone, 150.0))
+        assertEquals(-1, view.nextIntervalEndingAfter(ZoneId(1u), 0.0))
+    }
+
+    @Test
+    fun viewWithMargins() {
+        val index =
+            SpacingRequirementIndex.Builder()
+                .add(ZoneId(0u), 0.0, 100.0)
+                .add(ZoneId(0u), 110.0, 200.0)
+                .build()
+        val view = index.view().withMargins(20.0, 10.0)
+        val zone = ZoneId(0u)
+        assertEquals(-20.0, view.getBegin(0))
+        assertEquals(110.0, view.getEnd(0))
+        // Extended intervals overlap, they stay sorted
+        assertEquals(0, view.nextIntervalEndingAfter(zone, 105.0))
+        assertEquals(1, view.nextIntervalEndingAfter(zone, 110.0))
+        assertEquals(90.0, view.getBegin(1))
+        assertEquals(-1, view.nextIntervalEndingAfter(zone, 210.0))
+    }
+
+    private fun getIntervals(
+        index: SpacingRequirementIndex,
+        zone: ZoneId,
+    ): List<Pair<Double, Double>> {
+        return index.getIntervals(zone).map { index.getBegin(it) to index.getEnd(it) }
+    }
+}
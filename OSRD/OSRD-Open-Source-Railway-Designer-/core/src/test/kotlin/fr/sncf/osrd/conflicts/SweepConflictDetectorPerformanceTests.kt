@@ -0,0 +1,118 @@
+package fr.sncf.osrd.conflicts
+
+import fr.sncf.osrd.sim_infra.api.DetectorId
+import fr.sncf.osrd.sim_infra.api.DirDetectorId
+import fr.sncf.osrd.sim_infra.api.RouteId
+import fr.sncf.osrd.sim_infra.api.ZoneId
+import fr.sncf.osrd.utils.Direction
+import java.util.concurrent.ForkJoinPool
+import kotlin.random.Random
+import org.junit.jupiter.api.Disabled
+import org.junit.jupiter.api.Test
+
+@Disabled(
+    "to be enabled when running profilers or benchmarks, not part of the tests to run by default"
+)
+class SweepConflictDetectorPerformanceTests {
+    @Test
+    fun nationalTimetable() {
+        /*
+        20 000 trains over a day, each going through 80 consecutive zones of a network of 20 000
+        zones, on routes of 4 zones. Zones are used by 80 trains on average.
+         */
+        benchmark(generateTimetable(Random(0), 20_000, 80, 20_000, 86_400.0), compareToOld = true)
+    }
+
+    @Test
+    fun denseCorridor() {
+        /*
+        20 000 trains over a day on the same 80 zones: each zone is used by all trains, which keeps
+        dozens of requirements active at once.
+         */
+        benchmark(generateTimetable(Random(0), 20_000, 80, 80, 86_400.0), compareToOld = true)
+    }
+
+    @Test
+    fun saturatedStation() {
+        /*
+        5 000 trains over an hour on the same 20 zones, which they occupy for up to 5 minutes:
+        thousands of requirements are active at once.
+         */
+        benchmark(generateTimetable(Random(0), 5_000, 20, 20, 3_600.0), compareToOld = true)
+    }
+
+    private fun benchmark(requirements: List<Requirements>, compareToOld: Boolean) {
+        val pool = ForkJoinPool(Runtime.getRuntime().availableProcessors())
+        val detectors =
+            mutableListOf<Pair<String, () -> List<Conflict>>>(
+                "sweep" to { detectConflicts(requirements) },
+                "sweep, ${pool.parallelism} threads" to { detectConflicts(requirements, pool) },
+            )
+        if (compareToOld)
+            detectors.add(
+                "previous" to
+                    {
+                        mergeConflicts(ConflictDetectorImpl(requirements).checkConflicts())
+                    }
+            )
+        for ((name, detect) in detectors) {
+            var best = Double.POSITIVE_INFINITY
+            var conflictCount = 0
+            repeat(3) {
+                val start = System.nanoTime()
+                conflictCount = detect().size
+                best = minOf(best, (System.nanoTime() - start) / 1e6)
+            }
+            println("$name: %.0fms, $conflictCount conflicts".format(best))
+        }
+        pool.shutdown()
+    }
+
+    private fun generateTimetable(
+        random: Random,
+        trainCount: Int,
+        zonesPerTrain: Int,
+        zoneCount: Int,
+        duration: Double,
+    ): List<Requirements> {
+        val detector = DirDetectorId(DetectorId(0u), Direction.INCREASING)
+        val switchPositions = listOf(mapOf(), mapOf("switch" to "A"), mapOf("switch" to "B"))
+        return (0..<trainCount).map { train ->
+            val firstZone = random.nextInt(zoneCount - zonesPerTrain + 1)
+            var time = random.nextDouble(duration)
+            val spacingReqs = ArrayList<SpacingRequirement>(zonesPerTrain)
+            val routingReqs = ArrayList<RoutingRequirement>(zonesPerTrain / ZONES_PER_ROUTE)
+            var routeZones = ArrayList<RoutingRequirement.RoutingZoneRequirement>()
+            var routeBegin = time - 60.0
+            for (zoneIndex in firstZone..<firstZone + zonesPerTrain) {
+                val zone = ZoneId(zoneIndex.toUInt())
+                val zoneDuration = random.nextDouble(30.0, 300.0)
+                spacingReqs.add(SpacingRequirement(zone, time, time + zoneDuration, true))
+                routeZones.add(
+                    RoutingRequirement.RoutingZoneRequirement(
+                        zone,
+                        detector,
+                        detector,
+                        switchPositions[random.nextInt(switchPositions.size)],
+                        time + zoneDuration,
+                    )
+                )
+                if (routeZones.size == ZONES_PER_ROUTE) {
+                    routingReqs.add(RoutingRequirement(RouteId(0u), routeBegin, routeZones))
+                    routeZones = ArrayList()
+                    routeBegin = time
+                }
+                time += zoneDuration / 3
+            }
+            Requirements(
+                RequirementId(train.toString(), RequirementType.TRAIN),
+                spacingReqs,
+                routingReqs,
+            )
+        }
+    }
+
+    companion object {
+        private const val ZONES_PER_ROUTE = 4
+    }
+}
@@ -0,0 +1,312 @@
+package fr.sncf.osrd.conflicts
+
+import fr.sncf.osrd.sim_infra.api.DetectorId
+import fr.sncf.osrd.sim_infra.api.DirDetectorId
+import fr.sncf.osrd.sim_infra.api.RouteId
+import fr.sncf.osrd.sim_infra.api.ZoneId
+import fr.sncf.osrd.utils.Direction
+import java.util.concurrent.ForkJoinPool
+import kotlin.random.Random
+import kotlin.test.assertEquals
+import org.junit.jupiter.api.Test
+
+class SweepConflictDetectorTests {
+    @Test
+    fun spacingConflictChainsAreGrouped() {
+        val requirements =
+            listOf(
+                spacing("a", 0, 0.0, 10.0),
+                spacing("b", 0, 5.0, 15.0),
+                spacing("c", 0, 12.0, 20.0),
+                spacing("d", 0, 30.0, 40.0),
+            )
+        val conflicts = detectConflicts(requirements)
+        assertEquals(1, conflicts.size)
+        val conflict = conflicts[0]
+        assertEquals(ConflictType.SPACING, conflict.conflictType)
+        assertEquals(setOf("a", "b", "c"), conflict.trainIds.toSet())
+        assertEquals(0.0, conflict.startTime)
+        assertEquals(20.0, conflict.endTime)
+    }
+
+    @Test
+    fun workSchedulesOnlyConflictWithTrains() {
+        val workSchedule = RequirementId("ws", RequirementType.WORK_SCHEDULE)
+        val otherWorkSchedule = RequirementId("other ws", RequirementType.WORK_SCHEDULE)
+        val requirements =
+            listOf(
+                Requirements(workSchedule, listOf(spacingReq(0, 0.0, 100.0)), listOf()),
+                Requirements(otherWorkSchedule, listOf(spacingReq(0, 50.0, 150.0)), listOf()),
+                Requirements(workSchedule, listOf(spacingReq(1, 0.0, 100.0)), listOf()),
+                spacing("a", 1, 90.0, 110.0),
+            )
+        val conflicts = detectConflicts(requirements)
+        assertEquals(1, conflicts.size)
+        assertEquals(listOf("a"), conflicts[0].trainIds)
+        assertEquals(listOf("ws"), conflicts[0].workScheduleIds)
+        assertEquals(0.0, conflicts[0].startTime)
+        assertEquals(110.0, conflicts[0].endTime)
+    }
+
+    @Test
+    fun routingConflictsNeedDifferentConfigs() {
+        val requirements =
+            listOf(
+                routing("a", 0, 0.0, 100.0, 0),
+                routing("b", 0, 50.0, 150.0, 0),
+                // moving the switches takes some time before the route begins
+                routing("c", 1, 0.0, 100.0, 0),
+                routing("d", 1, 103.0, 150.0, 1),
+            )
+        val conflicts = detectConflicts(requirements)
+        assertEquals(1, conflicts.size)
+        val conflict = conflicts[0]
+        assertEquals(ConflictType.ROUTING, conflict.conflictType)
+        assertEquals(setOf("c", "d"), conflict.trainIds.toSet())
+        assertEquals(0.0, conflict.startTime)
+        assertEquals(150.0, conflict.endTime)
+    }
+
+    @Test
+    fun routingConflictChainsAreGrouped() {
+        // a and b are compatible, but both conflict with c
+        val requirements =
+            listOf(
+                routing("a", 0, 0.0, 100.0, 0),
+                routing("b", 0, 50.0, 150.0, 0),
+                routing("c", 0, 90.0, 200.0, 1),
+                routing("d", 0, 210.0, 300.0, 1),
+            )
+        val conflicts = detectConflicts(requirements)
+        assertEquals(1, conflicts.size)
+        assertEquals(setOf("a", "b", "c"), conflicts[0].trainIds.toSet())
+    }
+
+    @Test
+    fun touchingConflictsAreMerged() {
+        val requirements =
+            listOf(
+                spacing("a", 0, 0.0, 10.0),
+                spacing("b", 0, 5.0, 10.0),
+                spacing("a", 1, 10.0, 20.0),
+                spacing("b", 1, 15.0, 20.0),
+                spacing("a", 2, 30.0, 40.0),
+                spacing("b", 2, 35.0, 40.0),
+            )
+        val conflicts = detectConflicts(requirements)
+        assertEquals(2, conflicts.size)
+        assertEquals(0.0, conflicts[0].startTime)
+        assertEquals(20.0, conflicts[0].endTime)
+        assertEquals(listOf(0, 1), conflicts[0].requirements.map { it.zone.index.toInt() })
+        assertEquals(30.0, conflicts[1].startTime)
+        assertEquals(40.0, conflicts[1].endTime)
+    }
+
+    @Test
+    fun randomComparisonWithBruteForce() {
+        for (seed in 0..<200) {
+            val random = Random(seed)
+            val requirements = generateRequirements(random, random.nextInt(1, 30), 4, 3)
+            val expected = bruteForceConflicts(requirements)
+            val actual = SweepConflictDetector(requirements).checkConflicts().map { describe(it) }
+            assertEquals(expected.sorted(), actual.sorted(), "seed $seed")
+        }
+    }
+
+    @Test
+    fun sameConflictsAsPairwiseDetector() {
+        // the pairwise detector doesn't join conflict groups which share a requirement, so only
+        // the conflicting trains and the conflict times of each zone are compared. Work schedules
+        // are left out: it drops the groups made only of work schedules before joining them.
+        for (seed in 0..<200) {
+            val random = Random(seed)
+            val requirements =
+                generateRequirements(random, random.nextInt(1, 30), 4, 3).filter {
+                    it.id.type == RequirementType.TRAIN
+                }
+            val expected = ConflictDetectorImpl(requirements).checkConflicts()
+            val actual = SweepConflictDetector(requirements).checkConflicts()
+            assertEquals(describeByZone(expected), describeByZone(actual), "seed $seed")
+        }
+    }
+
+    @Test
+    fun parallelDetectionIsDeterministic() {
+        val requirements = generateRequirements(Random(42), 500, 50, 3)
+        val sequential = detectConflicts(requirements).map { describe(it) }
+        val pool = ForkJoinPool(4)
+        try {
+            repeat(5) {
+                val parallel = detectConflicts(requirements, pool).map { describe(it) }
+                assertEquals(sequential, parallel)
+            }
+        } finally {
+            pool.shutdown()
+        }
+    }
+
+    /** Groups requirements by zone, then connects all conflicting pairs of requirements */
+    private fun bruteForceConflicts(requirements: List<Requirements>): List<String> {
+        class Req(val owner: RequirementId, val begin: Double, val end: Double, val config: Any?)
+
+        val spacingZones = mutableMapOf<ZoneId, MutableList<Req>>()
+        val routingZones = mutableMapOf<ZoneId, MutableList<Req>>()
+        for (req in requirements) {
+            for (spacingReq in req.spacingRequirements) {
+                spacingZones
+                    .getOrPut(spacingReq.zone) { mutableListOf() }
+                    .add(Req(req.id, spacingReq.beginTime, spacingReq.endTime, null))
+            }
+            for (routeReq in req.routingRequirements) {
+                var begin = routeReq.beginTime
+                if (routeReq.zones.any { it.switches.isNotEmpty() }) begin -= SWITCH_MOVE_TIME
+                for (zoneReq in routeReq.zones) {
+                    val config =
+                        listOf(zoneReq.entryDetector, zoneReq.exitDetector, zoneReq.switches)
+                    routingZones
+                        .getOrPut(zoneReq.zone) { mutableListOf() }
+                        .add(Req(req.id, begin, zoneReq.endTime, config))
+                }
+            }
+        }
+
+        val res = mutableListOf<String>()
+        for ((type, zones) in
+            listOf(ConflictType.SPACING to spacingZones, ConflictType.ROUTING to routingZones)) {
+            for ((zone, reqs) in zones) {
+                val parents = IntArray(reqs.size) { it }
+                fun find(i: Int): Int = if (parents[i] == i) i else find(parents[i])
+                for (i in reqs.indices) {
+                    for (j in 0..<i) {
+                        val a = reqs[i]
+                        val b = reqs[j]
+                        if (a.begin >= b.end || b.begin >= a.end) continue
+                        if (type == ConflictType.ROUTING && a.config == b.config) continue
+                        parents[find(i)] = find(j)
+                    }
+                }
+                for (group in reqs.indices.groupBy { find(it) }.values) {
+                    if (group.size < 2) continue
+                    val owners = group.map { reqs[it].owner }
+                    if (owners.all { it.type == RequirementType.WORK_SCHEDULE }) continue
+                    val begin = group.minOf { reqs[it].begin }
+                    val end = group.maxOf { reqs[it].end }
+                    res.add(describe(type, zone, begin, end, owners.map { it.id }))
+                }
+            }
+        }
+        return res
+    }
+
+    private fun describe(conflict: Conflict): String {
+        val requirement = conflict.requirements.single()
+        assertEquals(conflict.startTime, requirement.startTime)
+        assertEquals(conflict.endTime, requirement.endTime)
+        return describe(
+            conflict.conflictType,
+            requirement.zone,
+            conflict.startTime,
+            conflict.endTime,
+            conflict.trainIds + conflict.workScheduleIds,
+        )
+    }
+
+    /** Describes the conflicting trains and the union of the conflict times of each zone */
+    private fun describeByZone(conflicts: List<Conflict>): Map<String, String> {
+        val byZone =
+            conflicts.groupBy { "${it.conflictType} ${it.requirements.single().zone.index}" }
+        return byZone.mapValues { (_, zoneConflicts) ->
+            val ids = zoneConflicts.flatMap { it.trainIds + it.workScheduleIds }.toSortedSet()
+            val times = mutableListOf<Pair<Double, Double>>()
+            for (conflict in zoneConflicts.sortedBy { it.startTime }) {
+                val last = times.lastOrNull()
+                if (last != null && conflict.startTime <= last.second)
+                    times[times.size - 1] = last.first to maxOf(last.second, conflict.endTime)
+                else times.add(conflict.startTime to conflict.endTime)
+            }
+            "$ids $times"
+        }
+    }
+
+    private fun describe(
+        type: ConflictType,
+        zone: ZoneId,
+        begin: Double,
+        end: Double,
+        ids: Collection<String>,
+    ): String {
+        return "$type ${zone.index} [$begin, $end) ${ids.sorted()}"
+    }
+
+    private fun generateRequirements(
+        random: Random,
+        count: Int,
+        zoneCount: Int,
+        configCount: Int,
+    ): List<Requirements> {
+        val res = mutableListOf<Requirements>()
+        repeat(count) {
+            val type =
+                if (random.nextInt(5) == 0) RequirementType.WORK_SCHEDULE else RequirementType.TRAIN
+            val id = RequirementId("${random.nextInt(count)}", type)
+            val spacingReqs = mutableListOf<SpacingRequirement>()
+            val routingReqs = mutableListOf<RoutingRequirement>()
+            repeat(random.nextInt(1, 4)) {
+                // integer times, to get many ties and touching requirements
+                val zone = random.nextInt(zoneCount)
+                val begin = random.nextInt(100).toDouble()
+                val end = begin + random.nextInt(1, 30)
+                spacingReqs.add(spacingReq(zone, begin, end))
+                if (type == RequirementType.TRAIN)
+                    routingReqs.add(routingReq(zone, begin, end, random.nextInt(configCount)))
+            }
+            res.add(Requirements(id, spacingReqs, routingReqs))
+        }
+        return res
+    }
+
+    private fun spacing(train: String, zone: Int, begin: Double, end: Double): Requirements {
+        return Requirements(
+            RequirementId(train, RequirementType.TRAIN),
+            listOf(spacingReq(zone, begin, end)),
+            listOf(),
+        )
+    }
+
+    private fun routing(
+        train: String,
+        zone: Int,
+        begin: Double,
+        end: Double,
+        config: Int,
+    ): Requirements {
+        return Requirements(
+            RequirementId(train, RequirementType.TRAIN),
+            listOf(),
+            listOf(routingReq(zone, begin, end, config)),
+        )
+    }
+
+    private fun spacingReq(zone: Int, begin: Double, end: Double): SpacingRequirement {
+        return SpacingRequirement(ZoneId(zone.toUInt()), begin, end, true)
+    }
+
+    /** Config 0 has no switch, the others each have a switch position */
+    private fun routingReq(zone: Int, begin: Double, end: Double, config: Int): RoutingRequirement {
+        val switches = if (config == 0) mapOf() else mapOf("switch" to "position $config")
+        val detector = DirDetectorId(DetectorId(0u), Direction.INCREASING)
+        return RoutingRequirement(
+            RouteId(0u),
+            begin,
+            listOf(
+                RoutingRequirement.RoutingZoneRequirement(
+                    ZoneId(zone.toUInt()),
+                    detector,
+                    detector,
+                    switches,
+                    end,
+                )
+            ),
+        )
+    }
+}
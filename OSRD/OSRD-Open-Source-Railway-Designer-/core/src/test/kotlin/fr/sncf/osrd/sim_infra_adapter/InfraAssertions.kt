@@ -0,0 +1,211 @@
+package fr.sncf.osrd.sim_infra_adapter
+
+import fr.sncf.osrd.sim_infra.api.*
+import fr.sncf.osrd.utils.Direction
+import fr.sncf.osrd.utils.indexing.*
+import kotlin.test.assertContentEquals
+import kotlin.test.assertEquals
+
+/** Checks that two infras are identical, as far as their public interfaces can tell */
+fun assertSameRawInfra(expected: RawInfra, actual: RawInfra) {
+    assertEquals(expected.trackSections.size, actual.trackSections.size)
+    for (track in expected.trackSections) {
+        assertEquals(expected.getTrackSectionName(track), actual.getTrackSectionName(track))
+        assertEquals(expected.getTrackSectionLength(track), actual.getTrackSectionLength(track))
+        assertEquals(expected.getTrackSectionChunks(track), actual.getTrackSectionChunks(track))
+        val name = expected.getTrackSectionName(track)
+        assertEquals(track, actual.getTrackSectionFromName(name))
+        for (chunk in expected.getTrackSectionChunks(track)) assertSameChunk(
+            expected,
+            actual,
+            chunk,
+        )
+    }
+
+    assertEquals(expected.trackNodes.size, actual.trackNodes.size)
+    for (node in expected.trackNodes) {
+        assertEquals(expected.getTrackNodeName(node), actual.getTrackNodeName(node))
+        assertEquals(expected.getTrackNodeDelay(node), actual.getTrackNodeDelay(node))
+        assertEquals(expected.getTrackNodePorts(node), actual.getTrackNodePorts(node))
+        for (config in expected.getTrackNodeConfigs(node)) {
+            assertEquals(
+                expected.getTrackNodeConfigName(node, config),
+                actual.getTrackNodeConfigName(node, config),
+            )
+            for (port in expected.getTrackNodePorts(node)) {
+                assertEquals(
+                    expected.getTrackNodeExitPort(node, config, port),
+                    actual.getTrackNodeExitPort(node, config, port),
+                )
+            }
+        }
+    }
+
+    assertEquals(expected.zones.size, actual.zones.size)
+    for (zone in expected.zones) {
+        assertEquals(expected.getZoneName(zone), actual.getZoneName(zone))
+        assertEquals(expected.getMovableElements(zone), actual.getMovableElements(zone))
+        assertEquals(expected.getZoneBounds(zone), actual.getZoneBounds(zone))
+    }
+
+    assertEquals(expected.detectors.size, actual.detectors.size)
+    for (detector in expected.detectors) {
+        assertEquals(expected.getDetectorName(detector), actual.getDetectorName(detector))
+        for (dirDetector in listOf(detector.increasing, detector.decreasing)) {
+            assertEquals(expected.getNextZone(dirDetector), actual.getNextZone(dirDetector))
+            assertEquals(
+                expected.getRoutesStartingAtDet(dirDetector),
+                actual.getRoutesStartingAtDet(dirDetector),
+            )
+        }
+    }
+
+    assertEquals(expected.zonePaths.size, actual.zonePaths.size)
+    for (zonePath in expected.zonePaths) {
+        assertEquals(expected.getZonePathEntry(zonePath), actual.getZonePathEntry(zonePath))
+        assertEquals(expected.getZonePathExit(zonePath), actual.getZonePathExit(zonePath))
+        assertEquals(expected.getZonePathLength(zonePath), actual.getZonePathLength(zonePath))
+        assertEquals(expected.getZonePathChunks(zonePath), actual.getZonePathChunks(zonePath))
+        assertEquals(expected.getSignals(zonePath), actual.getSignals(zonePath))
+        assertEquals(expected.getSignalPositions(zonePath), actual.getSignalPositions(zonePath))
+        assertEquals(
+            zonePath,
+            actual.findZonePath(
+                expected.getZonePathEntry(zonePath),
+                expected.getZonePathExit(zonePath),
+                expected.getZonePathMovableElements(zonePath),
+                expected.getZonePathMovableElementsConfigs(zonePath),
+            ),
+        )
+    }
+
+    assertEquals(expected.routes.size, actual.routes.size)
+    for (route in expected.routes) {
+        assertEquals(expected.getRouteName(route), actual.getRouteName(route))
+        assertEquals(route, actual.getRouteFromName(expected.getRouteName(route)))
+        assertEquals(expected.getRouteLength(route), actual.getRouteLength(route))
+        assertEquals(expected.getRoutePath(route), actual.getRoutePath(route))
+        assertContentEquals(
+            expected.getRouteReleaseZones(route),
+            actual.getRouteReleaseZones(route),
+        )
+        assertEquals(expected.getChunksOnRoute(route), actual.getChunksOnRoute(route))
+    }
+
+    assertEquals(expected.physicalSignals.size, actual.physicalSignals.size)
+    for (signal in expected.physicalSignals) {
+        assertEquals(expected.getPhysicalSignalName(signal), actual.getPhysicalSignalName(signal))
+        assertEquals(expected.getSignalSightDistance(signal), actual.getSignalSightDistance(signal))
+        assertEquals(expected.getLogicalSignals(signal), actual.getLogicalSignals(signal))
+    }
+    for (signal in expected.logicalSignals) {
+        assertEquals(expected.getSignalingSystemId(signal), actual.getSignalingSystemId(signal))
+        assertEquals(expected.getRawSettings(signal), actual.getRawSettings(signal))
+        assertEquals(expected.getRawParameters(signal), actual.getRawParameters(signal))
+        assertEquals(
+            expected.getNextSignalingSystemIds(signal),
+            actual.getNextSignalingSystemIds(signal),
+        )
+    }
+}
+
+private fun assertSameChunk(expected: RawInfra, actual: RawInfra, chunk: TrackChunkId) {
+    assertEquals(expected.getTrackFromChunk(chunk), actual.getTrackFromChunk(chunk))
+    assertEquals(expected.getTrackChunkOffset(chunk), actual.getTrackChunkOffset(chunk))
+    assertEquals(expected.getTrackChunkLength(chunk), actual.getTrackChunkLength(chunk))
+    val expectedGeo = expected.getTrackChunkGeom(chunk)
+    val actualGeo = actual.getTrackChunkGeom(chunk)
+    assertContentEquals(expectedGeo.bufferLat, actualGeo.bufferLat)
+    assertContentEquals(expectedGeo.bufferLon, actualGeo.bufferLon)
+    assertContentEquals(expectedGeo.cumulativeLengths, actualGeo.cumulativeLengths)
+    assertEquals(
+        expected.getTrackChunkOperationalPointParts(chunk),
+        actual.getTrackChunkOperationalPointParts(chunk),
+    )
+    for (part in expected.getTrackChunkOperationalPointParts(chunk)) {
+        assertEquals(
+            expected.getOperationalPointPartOpId(part),
+            actual.getOperationalPointPartOpId(part),
+        )
+        assertEquals(
+            expected.getOperationalPointPartChunk(part),
+            actual.getOperationalPointPartChunk(part),
+        )
+        assertEquals(
+            expected.getOperationalPointPartChunkOffset(part),
+            actual.getOperationalPointPartChunkOffset(part),
+        )
+        assertEquals(
+            expected.getOperationalPointPartProps(part),
+            actual.getOperationalPointPartProps(part),
+        )
+    }
+    assertEquals(
+        expected.getTrackChunkLoadingGaugeConstraints(chunk).asList(),
+        actual.getTrackChunkLoadingGaugeConstraints(chunk).asList(),
+    )
+    assertEquals(
+        expected.getTrackChunkElectrificationVoltage(chunk).asList(),
+        actual.getTrackChunkElectrificationVoltage(chunk).asList(),
+    )
+    for (direction in Direction.entries) {
+        val dirChunk = DirTrackChunkId(chunk, direction)
+        assertEquals(
+            expected.getTrackChunkSlope(dirChunk).asList(),
+            actual.getTrackChunkSlope(dirChunk).asList(),
+        )
+        assertEquals(
+            expected.getTrackChunkCurve(dirChunk).asList(),
+            actual.getTrackChunkCurve(dirChunk).asList(),
+        )
+        assertEquals(
+            expected.getTrackChunkGradient(dirChunk).asList(),
+            actual.getTrackChunkGradient(dirChunk).asList(),
+        )
+        assertEquals(
+            expected.getTrackChunkNeutralSections(dirChunk).asList(),
+            actual.getTrackChunkNeutralSections(dirChunk).asList(),
+        )
+        assertEquals(
+            expected.getRoutesOnTrackChunk(dirChunk),
+            actual.getRoutesOnTrackChunk(dirChunk),
+        )
+        for (trainTag in listOf(null, "MA100", "E32C")) {
+            assertEquals(
+                expected.getTrackChunkSpeedLimitProperties(dirChunk, trainTag, null).asList(),
+                actual.getTrackChunkSpeedLimitProperties(dirChunk, trainTag, null).asList(),
+            )
+        }
+    }
+}
+
+fun assertSameLoadedSignals(expected: LoadedSignalInfra, actual: LoadedSignalInfra) {
+    assertEquals(expected.physicalSignals.size, actual.physicalSignals.size)
+    for (signal in expected.physicalSignals) assertEquals(
+        expected.getLogicalSignals(signal),
+        actual.getLogicalSignals(signal),
+    )
+    assertEquals(expected.logicalSignals.size, actual.logicalSignals.size)
+    for (signal in expected.logicalSignals) {
+        assertEquals(expected.getPhysicalSignal(signal), actual.getPhysicalSignal(signal))
+        assertEquals(expected.getSignalingSystem(signal), actual.getSignalingSystem(signal))
+        assertEquals(expected.getSettings(signal), actual.getSettings(signal))
+        assertEquals(expected.getParameters(signal), actual.getParameters(signal))
+        assertEquals(expected.getDrivers(signal), actual.getDrivers(signal))
+        assertEquals(expected.isBlockDelimiter(signal), actual.isBlockDelimiter(signal))
+    }
+}
+
+fun assertSameBlocks(expected: BlockInfra, actual: BlockInfra) {
+    assertEquals(expected.blocks.size, actual.blocks.size)
+    for (block in expected.blocks) {
+        assertEquals(expected.getBlockName(block), actual.getBlockName(block))
+        assertEquals(expected.getBlockLength(block), actual.getBlockLength(block))
+        assertEquals(expected.getBlockZonePaths(block), actual.getBlockZonePaths(block))
+        assertEquals(expected.getBlockSignals(block), actual.getBlockSignals(block))
+        assertEquals(expected.getSignalsPositions(block), actual.getSignalsPositions(block))
+        assertEquals(expected.blockStartAtBufferStop(block), actual.blockStartAtBufferStop(block))
+        assertEquals(expected.blockStopAtBufferStop(block), actual.blockStopAtBufferStop(block))
+        assertEquals(expected.getTrackChunksFromBlock(block), actual.getTrackChunksFromBlock(block))
+    }
+}
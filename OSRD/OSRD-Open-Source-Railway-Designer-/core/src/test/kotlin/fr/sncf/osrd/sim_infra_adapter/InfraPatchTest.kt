@@ -0,0 +1,105 @@
+package fr.sncf.osrd.sim_infra_adapter
+
+import fr.sncf.osrd.api.makeSignalingSimulator
+import fr.sncf.osrd.parseRJSInfra
+import fr.sncf.osrd.patchRJSInfra
+import fr.sncf.osrd.railjson.schema.infra.RJSInfra
+import fr.sncf.osrd.railjson.schema.infra.RJSInfraDiff
+import fr.sncf.osrd.railjson.schema.infra.trackobjects.RJSSignal
+import fr.sncf.osrd.utils.Helpers
+import kotlin.test.assertEquals
+import kotlin.test.assertNotNull
+import kotlin.test.assertNull
+import org.junit.jupiter.api.Test
+
+class InfraPatchTest {
+    private val simulator = makeSignalingSimulator()
+
+    @Test
+    fun updatedParametersKeepBlocks() {
+        assertSamePatchedInfra("SA2") { it.defaultParameters = mapOf("jaune_cli" to "true") }
+    }
+
+    @Test
+    fun updatedSettings() {
+        assertSamePatchedInfra("SA2") { it.settings = mapOf("Nf" to "false") }
+    }
+
+    @Test
+    fun updatedSignalingSystemRebuildsBlocks() {
+        assertSamePatchedInfra("SA2") {
+            it.signalingSystem = "BAPR"
+            it.settings = mapOf("Nf" to "true", "distant" to "false")
+            it.defaultParameters = mapOf()
+        }
+    }
+
+    @Test
+    fun movedSignalIsNotPatched() {
+        val rjsInfra = Helpers.getExampleInfra("small_infra/infra.json")
+        val rawInfra = parseRJSInfra(rjsInfra)
+        val signal = rjsInfra.signals.first { it.id == "SA2" }
+        signal.position += 10.0
+        assertNull(patchRJSInfra(rawInfra, makeDiff(listOf(signal))))
+    }
+
+    @Test
+    fun otherChangesAreNotPatched() {
+        val rjsInfra = Helpers.getExampleInfra("small_infra/infra.json")
+        val rawInfra = parseRJSInfra(rjsInfra)
+        val diff = makeDiff(listOf())
+        diff.updated.routes = listOf(rjsInfra.routes.first())
+        assertNull(patchRJSInfra(rawInfra, diff))
+        val deletion = makeDiff(listOf())
+        deletion.deleted = mapOf("signals" to listOf("SA2"))
+        assertNull(patchRJSInfra(rawInfra, deletion))
+    }
+
+    /**
+     * Updates a signal of small_infra, and checks that patching the infra gives the same infra as
+     * building the updated infra from scratch
+     */
+    private fun assertSamePatchedInfra(
+        signalId: String,
+        update: (RJSSignal.LogicalSignal) -> Unit,
+    ) {
+        val rjsInfra = Helpers.getExampleInfra("small_infra/infra.json")
+        val rawInfra = parseRJSInfra(rjsInfra)
+        val loadedSignalInfra = simulator.loadSignals(rawInfra)
+        val blockInfra = simulator.buildBlocks(rawInfra, loadedSignalInfra)
+
+        val signal = rjsInfra.signals.first { it.id == signalId }
+        update(signal.logicalSignals.first())
+        val patch = assertNotNull(patchRJSInfra(rawInfra, makeDiff(listOf(signal))))
+        assertEquals(1, patch.updatedSignals.size)
+        val patchedLoadedSignalInfra =
+            simulator.reloadSignals(patch.rawInfra, loadedSignalInfra, patch.updatedSignals)
+        val patchedBlockInfra =
+            simulator.updateBlocks(
+                patch.rawInfra,
+                loadedSignalInfra,
+                patchedLoadedSignalInfra,
+                blockInfra,
+                patch.updatedSignals,
+                null,
+            )
+
+        val expectedRawInfra = parseRJSInfra(rjsInfra)
+        val expectedLoadedSignalInfra = simulator.loadSignals(expectedRawInfra)
+        assertSameRawInfra(expectedRawInfra, patch.rawInfra)
+        assertSameLoadedSignals(expectedLoadedSignalInfra, patchedLoadedSignalInfra)
+        assertSameBlocks(
+            simulator.buildBlocks(expectedRawInfra, expectedLoadedSignalInfra),
+            patchedBlockInfra,
+        )
+    }
+
+    private fun makeDiff(signals: List<RJSSignal>): RJSInfraDiff {
+        val diff = RJSInfraDiff()
+        diff.fromVersion = 1
+        diff.toVersion = 2
+        diff.updated = RJSInfra()
+        diff.updated.signals = signals
+        return diff
+    }
+}
@@ -0,0 +1,93 @@
+package fr.sncf.osrd.sim_infra_adapter
+
+import fr.sncf.osrd.api.makeSignalingSimulator
+import fr.sncf.osrd.parseRJSInfra
+import fr.sncf.osrd.railjson.schema.infra.RJSInfra
+import fr.sncf.osrd.sim_infra.impl.InfraSnapshotHeader
+import fr.sncf.osrd.sim_infra.impl.readInfraSnapshot
+import fr.sncf.osrd.sim_infra.impl.writeInfraSnapshot
+import java.nio.file.Files
+import java.nio.file.Path
+import kotlin.test.assertEquals
+import okio.Buffer
+import org.junit.jupiter.api.Disabled
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.io.TempDir
+
+@Disabled(
+    "to be enabled when running profilers or benchmarks, not part of the tests to run by default"
+)
+class InfraSnapshotPerformanceTests {
+    @TempDir lateinit var tempDir: Path
+
+    @Test
+    fun workerStartup() {
+        /*
+        Compares the time it takes a worker to get a usable infra, by building it from railjson
+        (minus the download) or by loading its snapshot.
+
+        The infra is generated by copying small_infra many times, with all ids prefixed by the index
+        of the copy. Set -Dosrd.snapshot.copies to change the size of the generated infra.
+         */
+        val copies = System.getProperty("osrd.snapshot.copies")?.toInt() ?: 100
+        val json = generateLargeInfraJson(copies)
+        val simulator = makeSignalingSimulator()
+
+        var start = System.nanoTime()
+        val rjsInfra = RJSInfra.adapter.fromJson(Buffer().write(json))!!
+        val jsonTime = lap(start)
+        start = System.nanoTime()
+        val rawInfra = parseRJSInfra(rjsInfra)
+        val parseTime = lap(start)
+        start = System.nanoTime()
+        val loadedSignalInfra = simulator.loadSignals(rawInfra)
+        val signalsTime = lap(start)
+        start = System.nanoTime()
+        val blockInfra = simulator.buildBlocks(rawInfra, loadedSignalInfra)
+        val blocksTime = lap(start)
+
+        val path = tempDir.resolve("infra.snapshot")
+        start = System.nanoTime()
+        writeInfraSnapshot(
+            path,
+            InfraSnapshotHeader("generated", 1),
+            rawInfra,
+            loadedSignalInfra,
+            blockInfra,
+            simulator.sigModuleManager,
+        )
+        val writeTime = lap(start)
+
+        var readTime = Double.POSITIVE_INFINITY
+        repeat(5) {
+            start = System.nanoTime()
+            val snapshot = readInfraSnapshot(path, simulator.sigModuleManager)!!
+            readTime = minOf(readTime, lap(start))
+            assertEquals(blockInfra.blocks.size, snapshot.blockInfra.blocks.size)
+        }
+
+        println(
+            "generated infra: ${json.size / 1_000_000} MB of railjson, " +
+                "${rawInfra.trackSections.size} track sections, " +
+                "${rawInfra.physicalSignals.size} signals, ${blockInfra.blocks.size} blocks"
+        )
+        println(
+            "building: %.2fs (json %.2fs, infra %.2fs, signals %.2fs, blocks %.2fs)"
+                .format(
+                    jsonTime + parseTime + signalsTime + blocksTime,
+                    jsonTime,
+                    parseTime,
+                    signalsTime,
+                    blocksTime,
+                )
+        )
+        println(
+            "snapshot: %d MB written in %.2fs, loaded in %.2fs"
+                .format(Files.size(path) / 1_000_000, writeTime, readTime)
+        )
+    }
+
+    private fun lap(start: Long): Double {
+        return (System.nanoTime() - start) / 1e9
+    }
+}
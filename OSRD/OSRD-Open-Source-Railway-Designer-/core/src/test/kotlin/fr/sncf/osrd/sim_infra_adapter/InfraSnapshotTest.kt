@@ -0,0 +1,56 @@
+package fr.sncf.osrd.sim_infra_adapter
+
+import fr.sncf.osrd.api.makeSignalingSimulator
+import fr.sncf.osrd.parseRJSInfra
+import fr.sncf.osrd.sim_infra.api.*
+import fr.sncf.osrd.sim_infra.impl.InfraSnapshotHeader
+import fr.sncf.osrd.sim_infra.impl.readInfraSnapshot
+import fr.sncf.osrd.sim_infra.impl.readInfraSnapshotHeader
+import fr.sncf.osrd.sim_infra.impl.writeInfraSnapshot
+import fr.sncf.osrd.utils.Helpers
+import fr.sncf.osrd.utils.indexing.*
+import java.nio.file.Files
+import java.nio.file.Path
+import kotlin.test.assertEquals
+import kotlin.test.assertNotNull
+import kotlin.test.assertNull
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.io.TempDir
+
+class InfraSnapshotTest {
+    @TempDir lateinit var tempDir: Path
+
+    @Test
+    fun smallInfraRoundTrip() {
+        val simulator = makeSignalingSimulator()
+        val rawInfra = parseRJSInfra(Helpers.getExampleInfra("small_infra/infra.json"))
+        val loadedSignalInfra = simulator.loadSignals(rawInfra)
+        val blockInfra = simulator.buildBlocks(rawInfra, loadedSignalInfra)
+        val path = tempDir.resolve("small_infra.snapshot")
+        val header = InfraSnapshotHeader("small_infra", 42)
+        writeInfraSnapshot(
+            path,
+            header,
+            rawInfra,
+            loadedSignalInfra,
+            blockInfra,
+            simulator.sigModuleManager,
+        )
+
+        assertEquals(header, readInfraSnapshotHeader(path))
+        val snapshot = readInfraSnapshot(path, simulator.sigModuleManager)
+        assertNotNull(snapshot)
+        assertEquals(header, snapshot.header)
+        assertSameRawInfra(rawInfra, snapshot.rawInfra)
+        assertSameLoadedSignals(loadedSignalInfra, snapshot.loadedSignalInfra)
+        assertSameBlocks(blockInfra, snapshot.blockInfra)
+    }
+
+    @Test
+    fun otherFilesAreIgnored() {
+        val path = tempDir.resolve("not_a_snapshot")
+        Files.writeString(path, "{\"version\": \"3.4.13\"}")
+        assertNull(readInfraSnapshotHeader(path))
+        assertNull(readInfraSnapshot(path, makeSignalingSimulator().sigModuleManager))
+    }
+}
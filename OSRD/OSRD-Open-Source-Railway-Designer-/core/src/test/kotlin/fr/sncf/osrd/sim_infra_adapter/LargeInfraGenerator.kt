@@ -0,0 +1,67 @@
+package fr.sncf.osrd.sim_infra_adapter
+
+import com.squareup.moshi.Moshi
+import fr.sncf.osrd.utils.Helpers
+import java.nio.file.Files
+
+/** The order in which editoast sends the sections of a railjson infra */
+val editoastSectionOrder =
+    listOf(
+        "version",
+        "track_sections",
+        "signals",
+        "speed_sections",
+        "detectors",
+        "switches",
+        "extended_switch_types",
+        "buffer_stops",
+        "routes",
+        "operational_points",
+        "electrifications",
+        "neutral_sections",
+    )
+
+/**
+ * Generates the railjson of a large infra, by copying small_infra the given number of times with
+ * all ids prefixed by the index of the copy. Sections are in the order editoast sends them in.
+ */
+@Suppress("UNCHECKED_CAST")
+fun generateLargeInfraJson(copies: Int): ByteArray {
+    val adapter = Moshi.Builder().build().adapter(Any::class.java)
+    val source = Files.readString(Helpers.getResourcePath("infras/small_infra/infra.json"))
+    val smallInfra = adapter.fromJson(source) as Map<String, Any?>
+    val ids = HashSet<String>()
+    collectIds(smallInfra, ids)
+
+    val res = LinkedHashMap<String, Any?>()
+    for (key in editoastSectionOrder) {
+        val value = smallInfra[key]
+        res[key] =
+            if (value !is List<*>) value
+            else (0 until copies).flatMap { copy -> prefixIds(value, ids, "$copy.") as List<*> }
+    }
+    return adapter.toJson(res).toByteArray()
+}
+
+private fun collectIds(value: Any?, ids: MutableSet<String>) {
+    when (value) {
+        is Map<*, *> -> {
+            val id = value["id"]
+            if (id is String) ids.add(id)
+            value.values.forEach { collectIds(it, ids) }
+        }
+        is List<*> -> value.forEach { collectIds(it, ids) }
+    }
+}
+
+private fun prefixIds(value: Any?, ids: Set<String>, prefix: String): Any? {
+    return when (value) {
+        is String -> if (value in ids) prefix + value else value
+        is Map<*, *> ->
+            value.entries.associate {
+                prefixIds(it.key, ids, prefix) to prefixIds(it.value, ids, prefix)
+            }
+        is List<*> -> value.map { prefixIds(it, ids, prefix) }
+        else -> value
+    }
+}
@@ -0,0 +1,50 @@
+package fr.sncf.osrd.sim_infra_adapter
+
+import fr.sncf.osrd.api.makeSignalingSimulator
+import fr.sncf.osrd.parseRJSInfra
+import fr.sncf.osrd.railjson.schema.infra.RJSInfra
+import java.util.concurrent.ForkJoinPool
+import okio.Buffer
+import org.junit.jupiter.api.Disabled
+import org.junit.jupiter.api.Test
+
+@Disabled(
+    "to be enabled when running profilers or benchmarks, not part of the tests to run by default"
+)
+class ParallelInfraBuildPerformanceTests {
+    @Test
+    fun buildTime() {
+        /*
+        Compares the time it takes to build a large infra sequentially and in parallel, from an
+        already deserialized RJSInfra. Each build is repeated, and the fastest run is kept.
+
+        Set -Dosrd.snapshot.copies to change the size of the generated infra.
+         */
+        val copies = System.getProperty("osrd.snapshot.copies")?.toInt() ?: 100
+        val rjsInfra = RJSInfra.adapter.fromJson(Buffer().write(generateLargeInfraJson(copies)))!!
+        println("sequential: %s".format(measureBuild(rjsInfra, null)))
+        val threads = Runtime.getRuntime().availableProcessors()
+        println("$threads threads: %s".format(measureBuild(rjsInfra, ForkJoinPool(threads))))
+    }
+
+    private fun measureBuild(rjsInfra: RJSInfra, pool: ForkJoinPool?): String {
+        val simulator = makeSignalingSimulator()
+        val times = DoubleArray(3) { Double.POSITIVE_INFINITY }
+        repeat(3) {
+            var start = System.nanoTime()
+            val rawInfra = parseRJSInfra(rjsInfra, pool)
+            times[0] = minOf(times[0], lap(start))
+            start = System.nanoTime()
+            val loadedSignalInfra = simulator.loadSignals(rawInfra, pool)
+            times[1] = minOf(times[1], lap(start))
+            start = System.nanoTime()
+            simulator.buildBlocks(rawInfra, loadedSignalInfra, pool)
+            times[2] = minOf(times[2], lap(start))
+        }
+        return "infra %.2fs, signals %.2fs, blocks %.2fs".format(times[0], times[1], times[2])
+    }
+
+    private fun lap(start: Long): Double {
+        return (System.nanoTime() - start) / 1e9
+    }
+}
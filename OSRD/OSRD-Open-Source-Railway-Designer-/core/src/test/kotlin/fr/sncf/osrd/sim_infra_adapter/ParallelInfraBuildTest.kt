@@ -0,0 +1,46 @@
+package fr.sncf.osrd.sim_infra_adapter
+
+import fr.sncf.osrd.api.makeSignalingSimulator
+import fr.sncf.osrd.parseRJSInfra
+import fr.sncf.osrd.railjson.schema.infra.RJSInfra
+import fr.sncf.osrd.utils.Helpers
+import java.nio.file.Files
+import java.util.concurrent.ForkJoinPool
+import okio.Buffer
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.params.ParameterizedTest
+import org.junit.jupiter.params.provider.ValueSource
+
+class ParallelInfraBuildTest {
+    @ParameterizedTest
+    @ValueSource(strings = ["tiny_infra", "small_infra", "circle_infra"])
+    fun sameInfraAsSequentialBuild(infraName: String) {
+        assertSameBuild(Files.readAllBytes(Helpers.getResourcePath("infras/$infraName/infra.json")))
+    }
+
+    @Test
+    fun sameLargeInfraAsSequentialBuild() {
+        assertSameBuild(generateLargeInfraJson(5))
+    }
+
+    private fun assertSameBuild(json: ByteArray) {
+        val simulator = makeSignalingSimulator()
+        val rjsInfra = RJSInfra.adapter.fromJson(Buffer().write(json))!!
+        val rawInfra = parseRJSInfra(rjsInfra)
+        val loadedSignalInfra = simulator.loadSignals(rawInfra)
+        val blockInfra = simulator.buildBlocks(rawInfra, loadedSignalInfra)
+
+        val parallelRawInfra = parseRJSInfra(rjsInfra, pool)
+        assertSameRawInfra(rawInfra, parallelRawInfra)
+        assertSameRawInfra(rawInfra, parseRJSInfra(Buffer().write(json), pool))
+        val parallelLoadedSignalInfra = simulator.loadSignals(parallelRawInfra, pool)
+        assertSameLoadedSignals(loadedSignalInfra, parallelLoadedSignalInfra)
+        val parallelBlockInfra =
+            simulator.buildBlocks(parallelRawInfra, parallelLoadedSignalInfra, pool)
+        assertSameBlocks(blockInfra, parallelBlockInfra)
+    }
+
+    companion object {
+        private val pool = ForkJoinPool(4)
+    }
+}
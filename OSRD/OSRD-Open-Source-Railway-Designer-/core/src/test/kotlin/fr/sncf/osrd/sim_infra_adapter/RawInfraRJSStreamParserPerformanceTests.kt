@@ -0,0 +1,68 @@
+package fr.sncf.osrd.sim_infra_adapter
+
+import fr.sncf.osrd.RawInfraRJSStreamParser
+import fr.sncf.osrd.parseRJSInfra
+import fr.sncf.osrd.railjson.schema.infra.RJSInfra
+import java.lang.management.ManagementFactory
+import java.lang.ref.Reference
+import okio.Buffer
+import org.junit.jupiter.api.Disabled
+import org.junit.jupiter.api.Test
+
+@Disabled(
+    "to be enabled when running profilers or benchmarks, not part of the tests to run by default"
+)
+class RawInfraRJSStreamParserPerformanceTests {
+    @Test
+    fun peakMemory() {
+        /*
+        Compares the heap used while parsing a large infra, by deserializing the whole RJSInfra first
+        or by streaming it. The peak is estimated from the live heap at the end of each step, which
+        is when the most intermediate objects are alive.
+
+        Set -Dosrd.snapshot.copies to change the size of the generated infra.
+         */
+        val copies = System.getProperty("osrd.snapshot.copies")?.toInt() ?: 100
+        val json = generateLargeInfraJson(copies)
+        println("generated infra: ${json.size / 1_000_000} MB of railjson")
+        println("RJSInfra: %s".format(measureRJSInfra(json)))
+        println("streaming: %s".format(measureStreaming(json)))
+    }
+
+    private fun measureRJSInfra(json: ByteArray): String {
+        val baseline = usedHeapAfterGc()
+        val start = System.nanoTime()
+        val rjsInfra = RJSInfra.adapter.fromJson(Buffer().write(json))!!
+        val rjsHeap = usedHeapAfterGc() - baseline
+        val rawInfra = parseRJSInfra(rjsInfra)
+        val parsedHeap = usedHeapAfterGc() - baseline
+        Reference.reachabilityFence(rjsInfra)
+        Reference.reachabilityFence(rawInfra)
+        return "%.2fs, %d MB after deserialization, %d MB after parsing"
+            .format(lap(start), rjsHeap / 1_000_000, parsedHeap / 1_000_000)
+    }
+
+    private fun measureStreaming(json: ByteArray): String {
+        val baseline = usedHeapAfterGc()
+        val start = System.nanoTime()
+        val parser = RawInfraRJSStreamParser()
+        parser.read(Buffer().write(json))
+        val readHeap = usedHeapAfterGc() - baseline
+        val rawInfra = parser.build()
+        val builtHeap = usedHeapAfterGc() - baseline
+        Reference.reachabilityFence(rawInfra)
+        return "%.2fs, %d MB after reading, %d MB after building"
+            .format(lap(start), readHeap / 1_000_000, builtHeap / 1_000_000)
+    }
+
+    private fun usedHeapAfterGc(): Long {
+        val memory = ManagementFactory.getMemoryMXBean()
+        System.gc()
+        System.gc()
+        return memory.heapMemoryUsage.used
+    }
+
+    private fun lap(start: Long): Double {
+        return (System.nanoTime() - start) / 1e9
+    }
+}
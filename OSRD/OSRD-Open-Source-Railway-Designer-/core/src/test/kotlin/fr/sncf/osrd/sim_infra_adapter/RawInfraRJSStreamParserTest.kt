@@ -0,0 +1,57 @@
+package fr.sncf.osrd.sim_infra_adapter
+
+import com.squareup.moshi.Moshi
+import fr.sncf.osrd.parseRJSInfra
+import fr.sncf.osrd.sim_infra.api.RawInfra
+import fr.sncf.osrd.utils.Helpers
+import java.nio.file.Files
+import okio.Buffer
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.params.ParameterizedTest
+import org.junit.jupiter.params.provider.ValueSource
+
+class RawInfraRJSStreamParserTest {
+    @ParameterizedTest
+    @ValueSource(strings = ["tiny_infra", "small_infra", "circle_infra"])
+    fun sameInfraAsFromRJSInfra(infraName: String) {
+        val path = "$infraName/infra.json"
+        val expected = parseRJSInfra(Helpers.getExampleInfra(path))
+        assertSameRawInfra(expected, parseStream(readInfraJson(path)))
+    }
+
+    @Test
+    fun sectionOrderDoesNotMatter() {
+        val expected = parseRJSInfra(Helpers.getExampleInfra("small_infra/infra.json"))
+        val json = readInfraJson("small_infra/infra.json")
+        // the order in which editoast sends the sections, then the worst case
+        for (order in listOf(editoastSectionOrder, json.keys.reversed())) {
+            val reordered = order.associateWith { json[it] }
+            assertSameRawInfra(expected, parseStream(reordered))
+        }
+    }
+
+    @Test
+    fun missingSectionsAreEmpty() {
+        val json = readInfraJson("tiny_infra/infra.json").toMutableMap()
+        json["neutral_sections"] = listOf<Any>()
+        json["extended_switch_types"] = listOf<Any>()
+        val expected = parseStream(json)
+        json.remove("neutral_sections")
+        json["extended_switch_types"] = null
+        assertSameRawInfra(expected, parseStream(json))
+    }
+
+    @Suppress("UNCHECKED_CAST")
+    private fun readInfraJson(path: String): Map<String, Any?> {
+        val source = Files.readString(Helpers.getResourcePath("infras/$path"))
+        return jsonAdapter.fromJson(source) as Map<String, Any?>
+    }
+
+    private fun parseStream(json: Map<String, Any?>): RawInfra {
+        return parseRJSInfra(Buffer().writeUtf8(jsonAdapter.serializeNulls().toJson(json)))
+    }
+
+    companion object {
+        private val jsonAdapter = Moshi.Builder().build().adapter(Any::class.java)
+    }
+}
@@ -10,6 +10,7 @@ import fr.sncf.osrd.railjson.schema.rollingstock.Comfort
 import fr.sncf.osrd.sim_infra.api.Block
 import fr.sncf.osrd.sim_infra.api.BlockId
 import fr.sncf.osrd.sim_infra.impl.TemporarySpeedLimitManager
+import fr.sncf.osrd.stdcm.graph.BlockEnvelopeCache
 import fr.sncf.osrd.stdcm.graph.findPath
 import fr.sncf.osrd.stdcm.preprocessing.DummyBlockAvailability
 import fr.sncf.osrd.stdcm.preprocessing.OccupancySegment
@@ -44,6 +45,7 @@ data class STDCMPathfindingBuilder(
     var standardAllowance: AllowanceValue? = null,
     var blockAvailability: BlockAvailabilityInterface? = null,
     var temporarySpeedLimitManager: TemporarySpeedLimitManager = TemporarySpeedLimitManager(),
+    var blockEnvelopeCache: BlockEnvelopeCache? = null,
 ) {
     // endregion OPTIONAL
     // region SETTERS
@@ -153,6 +155,12 @@ data class STDCMPathfindingBuilder(
         return this
     }
 
+    /** Sets the block envelopes shared with other searches */
+    fun setBlockEnvelopeCache(blockEnvelopeCache: BlockEnvelopeCache?): STDCMPathfindingBuilder {
+        this.blockEnvelopeCache = blockEnvelopeCache
+        return this
+    }
+
     // endregion SETTERS
     /** Runs the pathfinding request with the given parameters */
     fun run(): STDCMResult? {
@@ -177,6 +185,7 @@ data class STDCMPathfindingBuilder(
             standardAllowance,
             pathfindingTimeout,
             temporarySpeedLimitManager,
+            blockEnvelopeCache,
         )
     }
 }
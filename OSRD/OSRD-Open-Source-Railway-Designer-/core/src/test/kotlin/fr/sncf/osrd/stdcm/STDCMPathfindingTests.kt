@@ -4,6 +4,7 @@ import com.google.common.collect.ImmutableMultimap
 import fr.sncf.osrd.pathfinding.Pathfinding.EdgeLocation
 import fr.sncf.osrd.sim_infra.api.BlockId
 import fr.sncf.osrd.sim_infra.api.SpeedLimitProperty
+import fr.sncf.osrd.stdcm.graph.BlockEnvelopeCache
 import fr.sncf.osrd.stdcm.preprocessing.OccupancySegment
 import fr.sncf.osrd.train.TestTrains
 import fr.sncf.osrd.utils.DistanceRangeMap
@@ -845,4 +846,36 @@ class STDCMPathfindingTests {
             .setMaxDepartureDelay(0.0)
             .run()!!
     }
+
+    /** Searches sharing block envelopes find the same path, without simulating blocks again */
+    @Test
+    fun sharedBlockEnvelopes() {
+        /*
+        a --> b --> c --> d
+         */
+        val infra = DummyInfra()
+        val blocks =
+            listOf(infra.addBlock("a", "b"), infra.addBlock("b", "c"), infra.addBlock("c", "d"))
+        val occupancyGraph =
+            ImmutableMultimap.of(blocks[1], OccupancySegment(0.0, 600.0, 0.meters, 100.meters))
+        val cache = BlockEnvelopeCache()
+        val builder =
+            STDCMPathfindingBuilder()
+                .setInfra(infra.fullInfra())
+                .setStartLocations(setOf(EdgeLocation(blocks[0], Offset(0.meters))))
+                .setEndLocations(setOf(EdgeLocation(blocks[2], Offset(50.meters))))
+                .setUnavailableTimes(occupancyGraph)
+        val expected = builder.run()!!
+        val first = builder.copy().setBlockEnvelopeCache(cache).run()!!
+        val cachedEnvelopes = cache.size
+        val misses = cache.missCount
+        assertTrue(cachedEnvelopes > 0)
+        val second = builder.copy().setBlockEnvelopeCache(cache).run()!!
+        for (res in listOf(first, second)) {
+            assertEquals(expected.departureTime, res.departureTime)
+            assertEquals(expected.envelope.totalTime, res.envelope.totalTime)
+        }
+        assertEquals(cachedEnvelopes, cache.size)
+        assertEquals(misses, cache.missCount)
+    }
 }